@@ -34,17 +34,12 @@ import javafx.scene.Scene;
 import javafx.scene.SceneAntialiasing;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
-import javafx.scene.image.WritableImage;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.input.PickResult;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.stage.*;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ForkJoinPool;
 
 /**
  *
@@ -164,48 +159,9 @@ public class TestApp7 extends Application {
 		launch(args);
 	}
 
-	private Image mercatorUVtoGlobeUV(final Image input, final GlobeViewer gv){
-		final WritableImage output = new WritableImage((int)input.getWidth(), (int)input.getHeight());
-		List<Callable<Object>> tasks = new ArrayList<>((int)output.getHeight());
-		final Object locker = new Object();
-		for(int row = 0; row < (int)output.getHeight(); row++){
-			final int y = row;
-			tasks.add(()->{
-				int old_x = -1, old_y = -1, x = -1;
-				try{
-				final double oneOverTwoPi = 1.0/(2*Math.PI);
-				final double oneOverPi = 1.0/(Math.PI);
-				final double piOverTwo = Math.PI/2;
-				for(x = 0; x < (int)output.getWidth(); x++){
-					double rx = (double)x / output.getWidth();
-					double ry = (double)y / output.getHeight();
-//					System.err.printf("rx, ry = %s, %s\n", rx, ry);
-					Point2D new_lonLat = gv.convertRelativePixelXYToLonLat(new Point2D(rx, ry));
-//					System.err.printf("new_lonLat = %s\n", new_lonLat);
-					Point2D old_XY = mercatorLonLatToRelativePixelXY(new_lonLat);
-//					System.err.printf("old_XY = %s\n", old_XY);
-					old_x = (int)(old_XY.getX() * input.getWidth());
-					old_y = (int)(old_XY.getY() * input.getHeight());
-//					System.err.printf("old_x, old_y = %s, %s\n", old_x, old_y);
-					output.getPixelWriter().setArgb(x, y, 
-								input.getPixelReader().getArgb(old_x, old_y)
-							);
-				}
-				return null;
-				} catch(Throwable t){
-					synchronized (locker){
-						System.err.printf("%s: (%s, %s) <- (%s, %s) failed for %sx%s image\n", 
-								  gv.getClass().getSimpleName(), x, y, old_x, old_y, 
-								  (int)input.getWidth(), (int)input.getHeight());
-						t.printStackTrace(System.err);
-						System.exit(t.getClass().hashCode());
-					}
-					return null;
-				}
-			});
-		}
-		ForkJoinPool.commonPool().invokeAll(tasks);
-		return output;
+	private Image mercatorUVtoGlobeUV(final Image input, final GlobeViewer gv) throws InterruptedException {
+		return Reprojector.reproject(input, MercatorGlobeViewer.MAP_PROJECTION, gv.getMapProjection(), 
+				(int)input.getWidth(), (int)input.getHeight(), Runtime.getRuntime().availableProcessors());
 	}
 	
 	private void setup(final GlobeViewer gv, Image d, Image a, Image s, Image n) {
@@ -0,0 +1,115 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 .
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cchall.javafx.globeviewer;
+
+import cchall.javafx.globeviewer.raster.ConversionJob;
+import cchall.javafx.globeviewer.raster.Raster;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.scene.image.Image;
+
+/**
+ * JavaFX view of a {@link ConversionJob}: its progress and result are 
+ * properties which are updated on the JavaFX application thread, so that 
+ * they can be bound to controls (e.g. 
+ * <code>progressBar.progressProperty().bind(task.progressProperty())</code>). 
+ * Created by {@link Reprojector#submit(javafx.scene.image.Image[], cchall.javafx.globeviewer.raster.MapProjection, cchall.javafx.globeviewer.raster.MapProjection, int, int, cchall.javafx.globeviewer.raster.RasterReprojector.Filter, int)}.
+ * @author CCHall <a href="mailto:explosivegnome@yahoo.com">
+ * explosivegnome@yahoo.com</a>
+ */
+public final class ConversionTask {
+	
+	private final ConversionJob job;
+	private final Executor fxThread;
+	private final ReadOnlyDoubleWrapper progress = new ReadOnlyDoubleWrapper(this, "progress", 0);
+	private final ReadOnlyObjectWrapper<Image[]> result = new ReadOnlyObjectWrapper<>(this, "result", null);
+	/** whether a progress update is already waiting for the JavaFX application thread */
+	private final AtomicBoolean updatePending = new AtomicBoolean(false);
+	
+	ConversionTask(ConversionJob job, Executor fxThread){
+		this.job = job;
+		this.fxThread = fxThread;
+		job.addProgressListener(() -> {
+			// at most one update per frame, however many tiles finish in between
+			if(updatePending.compareAndSet(false, true)){
+				fxThread.execute(this::updateProgress);
+			}
+		});
+		job.toCompletableFuture().thenAccept((Raster[] rasters) -> {
+			// converted to images on the worker thread
+			final Image[] images = new Image[rasters.length];
+			for(int l = 0; l < rasters.length; l++){
+				images[l] = Reprojector.toImage(rasters[l]);
+			}
+			fxThread.execute(() -> {
+				result.set(images);
+				progress.set(1.0);
+			});
+		});
+	}
+	
+	private void updateProgress(){
+		updatePending.set(false);
+		if(result.get() == null){
+			progress.set(Math.min(0.99, job.getProgress()));
+		}
+	}
+	
+	/**
+	 * @return The progress of the conversion, from 0 to 1 (which is only 
+	 * reached once the result is available)
+	 */
+	public ReadOnlyDoubleProperty progressProperty(){
+		return progress.getReadOnlyProperty();
+	}
+	
+	/**
+	 * @return The converted images, in the same order as the source images 
+	 * (<code>null</code> until the conversion is done, and if it fails or is 
+	 * cancelled)
+	 */
+	public ReadOnlyObjectProperty<Image[]> resultProperty(){
+		return result.getReadOnlyProperty();
+	}
+	
+	/**
+	 * @return The underlying conversion job (e.g. to change its priority or 
+	 * to wait for it)
+	 */
+	public ConversionJob getJob(){
+		return job;
+	}
+	
+	/**
+	 * Cancels the conversion, see {@link ConversionJob#cancel(boolean)}
+	 * @return False if the conversion had already finished
+	 */
+	public boolean cancel(){
+		return job.cancel(false);
+	}
+}
@@ -23,15 +23,16 @@
  */
 package cchall.javafx.globeviewer;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
+import cchall.javafx.globeviewer.raster.CubeFaceRasters;
+import cchall.javafx.globeviewer.raster.MapProjection;
+import cchall.javafx.globeviewer.raster.MapProjections;
+import cchall.javafx.globeviewer.raster.Raster;
+import cchall.javafx.globeviewer.raster.RasterReprojector;
+import cchall.javafx.globeviewer.raster.RasterReprojector.Filter;
 import javafx.beans.NamedArg;
 import javafx.geometry.Point2D;
 import javafx.geometry.Point3D;
 import javafx.scene.image.Image;
-import javafx.scene.image.WritableImage;
 import javafx.scene.shape.DrawMode;
 import javafx.scene.shape.MeshView;
 import javafx.scene.shape.Shape3D;
@@ -47,6 +48,11 @@ import javafx.scene.shape.VertexFormat;
  */
 public class CubicGlobeViewer extends GlobeViewer{
 	
+	/**
+	 * The cubic map projection used by this GlobeViewer class. 
+	 */
+	public static final MapProjection MAP_PROJECTION = MapProjections.CUBIC;
+	
 	private static final int SUBDIVISIONS = 3;
 
 	/**
@@ -198,71 +204,58 @@ distortions. Each face therefore is a fan of
 	 * Converts a mercator projection map (aka UV map) into a cuboid projection texture image
 	 * @param mercatorProjection The input mercator projection, where-in the x-axis 
 	 * of the image represents longitude and the y-axis of the image represents latitude.
-	 * @param numThreads Number of threads to use (parallel processing). 
+	 * @param parallelism Parallel processing hint: 1 converts the image on the 
+	 * calling thread, larger numbers split the conversion into more tiles for the 
+	 * shared thread pool of the {@link Reprojector}.
 	 * @return A cubic projection texture image suitable for use as a texture layer 
 	 * for this GlobeViewer class.
-	 * @throws InterruptedException Thrown if multiple threads are specified and then 
-	 * this task is interrupted while waiting for one or more parallel threads to finish.
+	 * @throws InterruptedException Thrown if this thread is interrupted while 
+	 * waiting for the thread pool to finish the conversion.
 	 */
-	public static Image convertMercatorToCubic(final Image mercatorProjection, final int numThreads) throws InterruptedException{
-		final double width = mercatorProjection.getWidth();
-		final double height = mercatorProjection.getHeight();
-		final int newHeight = (int)height;
+	public static Image convertMercatorToCubic(final Image mercatorProjection, final int parallelism) throws InterruptedException{
+		final int newHeight = (int)mercatorProjection.getHeight();
 		final int newWidth = 2 * newHeight;
-		final double relYConversionFactor = 1.0 / (double)(newHeight - 1);
-		final double relXConversionFactor = 1.0 / (double)(newWidth - 1);
-		
-		final double newLongitudeToOldRelXConversionFactor = 1.0 / (2.0 * Math.PI);
-		final double newLatitudeToOldRelYConversionFactor = 1.0 / (Math.PI);
-		
-		final WritableImage cuboidProjection = new WritableImage(newWidth,newHeight);
-		if(numThreads <= 1){
-			for(int h = 0; h < newHeight; h++){
-				final int y = h;
-				final double relY = y * relYConversionFactor;
-				for(int x = 0; x < newWidth; x++){
-					double relX = x * relXConversionFactor;
-					Point2D lonLat = _convertRelativePixelXYToLonLat(new Point2D(relX, relY));
-					int oldX = (int)(clamp(lonLat.getX() * newLongitudeToOldRelXConversionFactor) 
-							* width);
-					int oldY = (int)(clamp(lonLat.getY() * newLatitudeToOldRelYConversionFactor) 
-							* height);
-					cuboidProjection.getPixelWriter().setArgb(x, y, 
-							mercatorProjection.getPixelReader().getArgb(oldX, oldY));
-				}
-			}
-		} else {
-			final ExecutorService threadPool = java.util.concurrent.Executors.newFixedThreadPool(numThreads);
-			List<Callable<Object>> taskList = new ArrayList<>(newHeight);
-			for(int h = 0; h < newHeight; h++){
-				final int y = h;
-				final double relY = y * relYConversionFactor;
-				taskList.add(()->{
-					for(int x = 0; x < newWidth; x++){
-						double relX = x * relXConversionFactor;
-						Point2D lonLat = _convertRelativePixelXYToLonLat(new Point2D(relX, relY));
-						int oldX = (int)(clamp(lonLat.getX() * newLongitudeToOldRelXConversionFactor) 
-								* width);
-						int oldY = (int)(clamp(lonLat.getY() * newLatitudeToOldRelYConversionFactor) 
-								* height);
-						cuboidProjection.getPixelWriter().setArgb(x, y, 
-								mercatorProjection.getPixelReader().getArgb(oldX, oldY));
-					}
-					return null;
-				});
+		return Reprojector.reproject(mercatorProjection, MercatorGlobeViewer.MAP_PROJECTION, 
+				MAP_PROJECTION, newWidth, newHeight, parallelism);
+	}
+	/**
+	 * Converts a series of 6 cube face images into a single texture image. 
+	 * Faces which are not the same size as the front face are resampled with 
+	 * bilinear filtering, and the faces are copied in parallel on the thread 
+	 * pool of the {@link Reprojector}.
+	 * @param faces A data container holding the face images
+	 * @return A single image created from stitching together the provided faces.
+	 */
+	public static Image convertCubeFacesToCuboid(CubeFaces faces){
+		final int parallelism = RasterReprojector.getThreadPool().getParallelism();
+		try {
+			return convertCubeFacesToCuboid(faces, Filter.BILINEAR, parallelism);
+		} catch (InterruptedException ex) {
+			// finish on this thread (which cannot be interrupted) and keep the interrupt
+			try {
+				return convertCubeFacesToCuboid(faces, Filter.BILINEAR, 1);
+			} catch (InterruptedException impossible) {
+				throw new IllegalStateException(impossible);
+			} finally {
+				Thread.currentThread().interrupt();
 			}
-			threadPool.invokeAll(taskList);
-			threadPool.shutdown();
 		}
-		
-		return cuboidProjection;
 	}
 	/**
 	 * Converts a series of 6 cube face images into a single texture image.
-	 * @param faces A data container holding the face images
+	 * @param faces A data container holding the face images. The size of the 
+	 * front face is the size of every face in the texture.
+	 * @param filter Texture filter used to resample faces which are not the 
+	 * same size as the front face
+	 * @param parallelism Parallel processing hint: 1 copies the faces on the 
+	 * calling thread, larger numbers copy them on the shared thread pool of 
+	 * the {@link Reprojector}.
 	 * @return A single image created from stitching together the provided faces.
+	 * @throws InterruptedException Thrown if this thread is interrupted while 
+	 * waiting for the thread pool to finish.
 	 */
-	public static Image convertCubeFacesToCuboid(CubeFaces faces){
+	public static Image convertCubeFacesToCuboid(CubeFaces faces, Filter filter, int parallelism) 
+			throws InterruptedException {
 		if(faces.back == null || faces.bottom == null || faces.front == null 
 				|| faces.left == null || faces.right == null || faces.top == null){
 			throw new IllegalArgumentException(CubicGlobeViewer.class.getSimpleName() 
@@ -272,27 +265,39 @@ distortions. Each face therefore is a fan of
 					new NullPointerException());
 		}
 		final int size = (int)faces.front.getHeight();
-		WritableImage img = new WritableImage(4*size,2*size);
-		//
-		pasteImage(faces.top, img,         0, 0, size);
-		pasteImage(faces.bottom, img, 3*size, 0, size);
-		pasteImage(faces.front, img,     0, size, size);
-		pasteImage(faces.right, img,  size, size, size);
-		pasteImage(faces.back, img, 2*size, size, size);
-		pasteImage(faces.left, img, 3*size, size, size);
-		return img;
+		final Raster[] rasters = new Raster[CubeFaceRasters.Face.values().length];
+		rasters[CubeFaceRasters.Face.LEFT.ordinal()] = Reprojector.toRaster(faces.left);
+		rasters[CubeFaceRasters.Face.FRONT.ordinal()] = Reprojector.toRaster(faces.front);
+		rasters[CubeFaceRasters.Face.RIGHT.ordinal()] = Reprojector.toRaster(faces.right);
+		rasters[CubeFaceRasters.Face.BACK.ordinal()] = Reprojector.toRaster(faces.back);
+		rasters[CubeFaceRasters.Face.TOP.ordinal()] = Reprojector.toRaster(faces.top);
+		rasters[CubeFaceRasters.Face.BOTTOM.ordinal()] = Reprojector.toRaster(faces.bottom);
+		return Reprojector.toImage(CubeFaceRasters.join(rasters, size, filter, parallelism));
 	}
-	private static void pasteImage(Image src, WritableImage dest, int xOffset, int yOffset, int size){
-		for(int y = 0; y < size; y++){
-			int oldY = (int)((double)y/(double)size*src.getHeight());
-			for(int x = 0; x < size; x++){
-				int oldX = (int)((double)x/(double)size*src.getWidth());
-				dest.getPixelWriter().setArgb(
-						x+xOffset, y+yOffset, 
-						src.getPixelReader().getArgb(oldX, oldY)
-				);
-			}
-		}
+	/**
+	 * Splits a cubic projection texture image (such as one made by 
+	 * {@link #convertCubeFacesToCuboid(cchall.javafx.globeviewer.CubicGlobeViewer.CubeFaces)}) 
+	 * back into its 6 cube face images, e.g. to export them.
+	 * @param cuboid A cubic projection texture image, twice as wide as it is 
+	 * tall
+	 * @param parallelism Parallel processing hint: 1 copies the faces on the 
+	 * calling thread, larger numbers copy them on the shared thread pool of 
+	 * the {@link Reprojector}.
+	 * @return A data container holding 6 new face images, each half as tall as 
+	 * the texture
+	 * @throws InterruptedException Thrown if this thread is interrupted while 
+	 * waiting for the thread pool to finish.
+	 */
+	public static CubeFaces convertCuboidToCubeFaces(Image cuboid, int parallelism) 
+			throws InterruptedException {
+		final Raster[] rasters = CubeFaceRasters.split(Reprojector.toRaster(cuboid), parallelism);
+		return new CubeFaces(
+				Reprojector.toImage(rasters[CubeFaceRasters.Face.LEFT.ordinal()]),
+				Reprojector.toImage(rasters[CubeFaceRasters.Face.FRONT.ordinal()]),
+				Reprojector.toImage(rasters[CubeFaceRasters.Face.RIGHT.ordinal()]),
+				Reprojector.toImage(rasters[CubeFaceRasters.Face.BACK.ordinal()]),
+				Reprojector.toImage(rasters[CubeFaceRasters.Face.TOP.ordinal()]),
+				Reprojector.toImage(rasters[CubeFaceRasters.Face.BOTTOM.ordinal()]));
 	}
 	/**
 	 * This data container class is used for generating a cubic projection from 6 images.
@@ -362,65 +367,10 @@ distortions. Each face therefore is a fan of
 		return _convertLonLatToRelativePixelXY(lonLat);
 	}
 	private static Point2D _convertLonLatToRelativePixelXY(Point2D lonLat){
-		final double piOverFour = 0.25 * Math.PI;
-		final double piOverTwo = 0.5 * Math.PI;
-		final double threePiOverFour = 0.75 * Math.PI;
-		final double minusPiOverFour = -0.25 * Math.PI;
-		final double fourOverPi = 4.0 / Math.PI;
-		final double oneOverTwoPi = 1.0 / (2.0 * Math.PI);
-		final double twoOverPi = 2.0 / Math.PI;
-		final double lon = lonLat.getX();
-		final double lat = lonLat.getY();
-		double x, y;
-		if(minusPiOverFour < lat && lat < piOverFour){
-			// equatorial faces
-			double dy = lat * fourOverPi; // -1 to 1
-			y = 0.75 - (dy * 0.25);
-			
-			double lin = clamp(lon * oneOverTwoPi);
-			double dlon = (clamp(lon * twoOverPi) - 0.5) * piOverTwo;
-			double dx = Math.tan(dlon);
-			double xOffset = (((int)(lin * 4) % 4) + 0.5) * 0.25;
-			x = clamp(dx*0.125 + xOffset);
-		} else {
-			final double yOffset = 0.25;
-			final double latSign, xOffset, angleOffset = threePiOverFour;
-			
-			if(lat > 0){
-				// north pole
-				//  _ _
-				// | . |
-				// |/ _|
-				// 0 longitude (increases counter-clockwise)
-				latSign = 1;
-				xOffset = 0.125;
-			} else {
-				// south pole
-				// 0_longitude (increases clockwise)
-				// |\. |
-				// |_ _|
-				// 
-				latSign = -1;
-				xOffset = 0.875;
-			}
-			double angle = latSign * (lon - angleOffset);
-			double cos = Math.cos(angle);
-			double sin = Math.sin(angle);
-			double sec = Math.abs(1.0 / cos);
-			double csc = Math.abs(1.0 / sin);
-			double hmax = Math.min(sec, csc);
-			double fromPole = (piOverTwo - (latSign * lat)) * fourOverPi; // 0 to 1
-			double h = fromPole * hmax;
-			x = cos * h * 0.125 + xOffset;
-			y = yOffset - sin * h * 0.25;
-		}
-		return new Point2D( x, y);
-	}
-	
-	private static double dist(double dx, double dy){
-		return Math.sqrt(dx*dx + dy*dy);
+		final double[] relXY = new double[2];
+		MAP_PROJECTION.convertLonLatToRelativePixelXY(lonLat.getX(), lonLat.getY(), relXY);
+		return new Point2D(relXY[0], relXY[1]);
 	}
-
 	/**
 	 * This method converts a spherical longitude-latitude coordinate into a 
 	 * texture X-Y pixel coordinate (where X and Y range from 0 to 1).
@@ -432,62 +382,18 @@ distortions. Each face therefore is a fan of
 		return _convertRelativePixelXYToLonLat(relXY);
 	
 	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public MapProjection getMapProjection() {
+		return MAP_PROJECTION;
+	}
 	private static Point2D _convertRelativePixelXYToLonLat(Point2D relXY) {
-		final double twoPi = 2.0 * Math.PI;
-		final double piOverTwo = 0.5 * Math.PI;
-		final double piOverFour = 0.25 * Math.PI;
-		final double threePiOverFour = 0.75 * Math.PI;
-		final double x = relXY.getX();
-		final double y = relXY.getY();
-		double lon, lat;
-		if(y >= 0.5){
-			// equatorial region
-			double dy = (0.75 - y) * 4.0;
-			lat = dy * piOverFour;
-			
-			double xprime = clamp(x);
-			double faceOffset = (((int)(xprime * 4)) + 1.5) * piOverTwo;
-			double dx = (clamp(4*xprime) - 0.5) * 2;
-			lon = Math.atan2(-1, dx) + faceOffset;
-		} else {
-			if(0.25 <= x && x < 0.75) return Point2D.ZERO;
-			final double xOffset, latSign, angleOffset = threePiOverFour;
-			double dx, dy;
-			dy = (0.25 - y) * 4; // range from -1 to 1
-			if (x < 0.5){
-				// north pole
-				//  _ _
-				// | . |
-				// |/ _|
-				// 0 longitude (increases counter-clockwise)
-				xOffset = 0;
-				latSign = 1;
-				
-				dx = (x - xOffset - 0.125) * 8.0; // range from -1 to 1
-			} else {
-				// south pole
-				// 0_longitude (increases clockwise)
-				// |\. |
-				// |_ _|
-				// 
-				xOffset = 0.75;
-				latSign = -1;
-				
-				dx = (x - xOffset - 0.125) * 8.0; // range from -1 to 1
-			}
-			
-			double angle = Math.atan2(dy, dx);
-			lon = angle * latSign + angleOffset;
-			
-			double cos = Math.cos(angle);
-			double sin = Math.sin(angle);
-			double hmaxInverse = Math.max(Math.abs(cos), Math.abs(sin));
-			double h = dist(dx, dy) * hmaxInverse;
-			lat = latSign * (piOverTwo - (piOverFour * h));
-		}
-		if(lon > Math.PI) lon -= twoPi;
-		return new Point2D( lon, lat );
+		final double[] lonLat = new double[2];
+		MAP_PROJECTION.convertRelativePixelXYToLonLat(relXY.getX(), relXY.getY(), lonLat);
+		return new Point2D(lonLat[0], lonLat[1]);
 	}
 	
 }
-
@@ -23,12 +23,13 @@
  */
 package cchall.javafx.globeviewer;
 
+import cchall.javafx.globeviewer.raster.MapProjection;
+import cchall.javafx.globeviewer.raster.MapProjections;
 import java.util.ArrayList;
 import java.util.List;
 import javafx.geometry.Point2D;
 import javafx.geometry.Point3D;
 import javafx.scene.image.Image;
-import javafx.scene.image.WritableImage;
 import javafx.scene.shape.DrawMode;
 import javafx.scene.shape.MeshView;
 import javafx.scene.shape.Shape3D;
@@ -44,9 +45,13 @@ import javafx.scene.shape.TriangleMesh;
  * explosivegnome@yahoo.com</a>
  */
 public class DymaxionGlobeViewer extends GlobeViewer{
+	
+	/**
+	 * The dymaxion (aka icosahedron) map projection used by this GlobeViewer class. 
+	 */
+	public static final MapProjection MAP_PROJECTION = MapProjections.DYMAXION;
 	private final int subdivisions = 3;
 	private static final double icoAngle; // the angle between two vertices on an icosahedron
-	private static final double icoAngleInverse;
 	static{
 		double root5 = Math.sqrt(5.0);
 		double phi = 0.5*(1 + root5);
@@ -57,26 +62,11 @@ public class DymaxionGlobeViewer extends GlobeViewer{
 		double b = ref0.distance(ref2);
 		double c = ref1.distance(ref2);
 		icoAngle = Math.acos(Math.sqrt((c*c + b*b - c*c)/(2*a*b)));
-		icoAngleInverse = 1.0 / icoAngle;
 	}
-	private static final double fiveOverTwoPi = 5d / (2*Math.PI);
-	private static final double oneOverRoot3 = 1.0 / Math.sqrt(3.0);
-	private static final double oneOverTwoPi = 1.0 / (2.0 * Math.PI);
-	private static final double piOverFive = Math.PI / 5;
-	private static final double piOverTwo = 0.5 * Math.PI;
-	private static final double twoPi = 2.0 * Math.PI;
 	private static final double twoPiOverFive = 2 * Math.PI / 5;
 	private static final double triangleHalfWidth = 1.0 / 11.0;
 	private static final double triangleHeight = 1.0 / 3.0;
-	private static final double triangleHeightInverse = 1.0 / triangleHeight;
 	private static final double triangleWidth = triangleHalfWidth * 2;
-	private static final double upperLatitude = piOverTwo - icoAngle;
-	private static final double upperY = triangleHeight;
-	private static final double edgeLat = piOverTwo / 3.0 ;
-	private static final double lowerLatitude = -1 * upperLatitude;
-	private static final double lowerY = 1.0 - triangleHeight;
-	private static final double equatorialYRangeInverse = 1.0 / (upperY - lowerY);
-	private static final double inverseInnerLatitude = 1.0 / (upperLatitude - lowerLatitude);
 
 	private static long numPolygons(long subdivs){
 		return 20L * (1L << (2L * subdivs));
@@ -171,35 +161,59 @@ public class DymaxionGlobeViewer extends GlobeViewer{
 	 * for this GlobeViewer class.
 	 * */
 	public static Image convertMercatorToDymaxion(Image mercatorProjection){
+		try {
+			return convertMercatorToDymaxion(mercatorProjection, 1);
+		} catch (InterruptedException ex) {
+			// single-threaded conversion does not wait on other threads
+			throw new IllegalStateException(ex);
+		}
+	}
+	
+	/**
+	 * Converts a mercator projection map (aka UV map) into a dymaxion projection 
+	 * texture image that is 10% wider than the mercator projection.
+	 * @param mercatorProjection The input mercator projection, where-in the x-axis 
+	 * of the image represents longitude and the y-axis of the image represents latitude.
+	 * @param parallelism Parallel processing hint: 1 converts the image on the 
+	 * calling thread, larger numbers split the conversion into more tiles for the 
+	 * shared thread pool of the {@link Reprojector}.
+	 * @return A dymaxion (aka icosahedron) projection texture image suitable for use as a texture layer 
+	 * for this GlobeViewer class.
+	 * @throws InterruptedException Thrown if this thread is interrupted while 
+	 * waiting for the thread pool to finish the conversion.
+	 */
+	public static Image convertMercatorToDymaxion(final Image mercatorProjection, final int parallelism) 
+			throws InterruptedException {
 		final double rootThreeOverTwo = 0.5*Math.sqrt(3.0);
 		final int triangleWidth = (int)((1.0 / 11d) * (mercatorProjection.getWidth() * 1.1));
 		final int triangleHeight = (int)(triangleWidth * rootThreeOverTwo);
 		final int imgWidth = 11 * triangleWidth;
 		final int imgHeight = 3 * triangleHeight;
-		
-		WritableImage dymaxionProjection = new WritableImage(imgWidth, imgHeight);
-		
-		final double relXConversionFactor = 1.0 / (double)(imgWidth - 1);
-		final double relYConversionFactor = 1.0 / (double)(imgHeight - 1);
-		final double newLongitudeToOldRelXConversionFactor = 1.0 / (2.0 * Math.PI);
-		final double newLatitudeToOldRelYConversionFactor = 1.0 / (Math.PI);
-		
-		for(int h = 0; h < imgHeight; h++){
-			final int y = h;
-			final double relY = y * relYConversionFactor;
-			for(int x = 0; x < imgWidth; x++){
-				double relX = x * relXConversionFactor;
-				Point2D lonLat = _convertRelativePixelXYToLonLat(new Point2D(relX, relY));
-				int oldX = (int)(clamp(lonLat.getX() * newLongitudeToOldRelXConversionFactor) 
-						* mercatorProjection.getWidth());
-				int oldY = (int)(clamp(lonLat.getY() * newLatitudeToOldRelYConversionFactor) 
-						* mercatorProjection.getHeight());
-				dymaxionProjection.getPixelWriter().setArgb(x, y, 
-						mercatorProjection.getPixelReader().getArgb(oldX, oldY));
-			}
-		}
-		
-		return dymaxionProjection;
+		return Reprojector.reproject(mercatorProjection, MercatorGlobeViewer.MAP_PROJECTION, 
+				MAP_PROJECTION, imgWidth, imgHeight, parallelism);
+	}
+	
+	/**
+	 * Converts a mercator projection map (aka UV map) into a dymaxion projection 
+	 * texture image of the given width. The height is chosen to match the 
+	 * dymaxion layout (3 rows of equilateral triangles, 5.5 triangles wide).
+	 * @param mercatorProjection The input mercator projection, where-in the x-axis 
+	 * of the image represents longitude and the y-axis of the image represents latitude.
+	 * @param newWidth Width of the output image (a multiple of 11 keeps the 
+	 * triangle edges aligned with pixel edges)
+	 * @param parallelism Parallel processing hint: 1 converts the image on the 
+	 * calling thread, larger numbers split the conversion into more tiles for the 
+	 * shared thread pool of the {@link Reprojector}.
+	 * @return A dymaxion (aka icosahedron) projection texture image suitable for use as a texture layer 
+	 * for this GlobeViewer class.
+	 * @throws InterruptedException Thrown if this thread is interrupted while 
+	 * waiting for the thread pool to finish the conversion.
+	 */
+	public static Image convertMercatorToDymaxion(final Image mercatorProjection, final int newWidth, 
+			final int parallelism) throws InterruptedException {
+		final int newHeight = Math.max(1, (int)(newWidth / MAP_PROJECTION.getAspectRatio()));
+		return Reprojector.reproject(mercatorProjection, MercatorGlobeViewer.MAP_PROJECTION, 
+				MAP_PROJECTION, newWidth, newHeight, parallelism);
 	}
 	
 	
@@ -224,130 +238,23 @@ public class DymaxionGlobeViewer extends GlobeViewer{
 	public Point2D convertRelativePixelXYToLonLat(Point2D relXY) {
 		return _convertRelativePixelXYToLonLat(relXY);
 	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public MapProjection getMapProjection() {
+		return MAP_PROJECTION;
+	}
 	private static Point2D _convertLonLatToRelativePixelXY(Point2D lonLat) {
-/*
-ASCII Art Time!
-0--------------------2pi
-||                  ||
-\/                  \/
-
-  /\  /\  /\  /\  /\
- /__\/__\/__\/__\/__\
- \  /\  /\  /\  /\  /\
-  \/__\/__\/__\/__\/__\
-   \  /\  /\  /\  /\  /
-    \/  \/  \/  \/  \/
-
-                    /\
-                    ||
-      2pi/0 is in middle of this triangle
-*/
-		
-		final double lon = twoPi*clamp(lonLat.getX() * oneOverTwoPi);
-		final double lat = lonLat.getY();
-		//
-		if(lat >= upperLatitude){
-			// one of the 5 north pole triangles
-			double span = lon * fiveOverTwoPi;
-			int trinum = (int)(span);
-			double y = triangleHeight * (1 - ((lat - upperLatitude) * icoAngleInverse));
-			double lineWidth = y * oneOverRoot3;
-			double dx = (span - trinum) * lineWidth;
-			double xOffset = triangleWidth * trinum + 0.5*(triangleWidth - lineWidth);
-			double x = xOffset + dx;
-			return new Point2D(x,y);
-		} else if(lat <= lowerLatitude){
-			// one of the 5 south pole triangles
-			// note that the peak of the 5th triangle is aligned with the 0-longitude line
-			// (offset by one tenth of a rotation)
-			double span = 5 * clamp(lon * oneOverTwoPi - 0.1);
-			int trinum = (int)(span);
-			double dy = triangleHeight * (1 - ((lowerLatitude - lat) * icoAngleInverse));
-			double lineWidth = dy * oneOverRoot3;
-			double dx = (span - trinum) * lineWidth;
-			double xOffset = triangleHalfWidth + triangleWidth * trinum + 0.5*(triangleWidth - lineWidth);
-			double x = xOffset + dx;
-			double y = 1 - dy;
-			return new Point2D(x,y);
-		} else {
-			// one of the equatorial 10 triangles
-			// conveniently, these are basically a mercator UV mapping
-			double vspan = lat * inverseInnerLatitude; // -0.5 to 0.5
-			double dy = triangleHeight * (vspan);
-			double y = 0.5 - dy;
-			double vspan2 = 0.5 - vspan; // 0 to 1
-			double xcut = vspan2 * 0.1;//vspan2 * oneOverRoot3;
-			double hspan = lon * oneOverTwoPi;
-			double x;
-			if(hspan < xcut){
-				// on left side of left slope, move to right side
-				hspan += 1;
-			}
-			x = 10 * triangleHalfWidth * hspan;
-			return new Point2D(x,y);
-		}
-		
+		final double[] relXY = new double[2];
+		MAP_PROJECTION.convertLonLatToRelativePixelXY(lonLat.getX(), lonLat.getY(), relXY);
+		return new Point2D(relXY[0], relXY[1]);
 	}
 	private static Point2D _convertRelativePixelXYToLonLat(Point2D relXY) {
-		
-		final double x = clamp(relXY.getX()), y = clamp(relXY.getY());
-		double lon,lat;
-		if(y < upperY){
-			// one of the 5 north pole triangles
-			lat = Math.min(
-					piOverTwo,
-					(1 - (y * triangleHeightInverse)) * icoAngle + upperLatitude
-			);
-			double span = x * 5.5; // 11/10 scalar x 5
-			int trinum = Math.min(4, (int)(span));
-			double dx = triangleWidth * Math.min(1.0, span - trinum);
-			double lineWidth = y * oneOverRoot3;
-			double xOffset = 0.5*(triangleWidth - lineWidth);
-			double xLimit = triangleWidth - xOffset;
-			double baseLongitude = trinum * twoPiOverFive;
-			if(dx <= xOffset) {
-				lon = baseLongitude;
-			} else if(dx >= xLimit) {
-				lon = baseLongitude + twoPiOverFive;
-			} else {
-				lon = baseLongitude + ((dx - xOffset) / lineWidth) * twoPiOverFive;
-			}
-		} else if(y > lowerY) {
-			// one of the 5 south pole triangles
-			// note that the peak of the 5th triangle is aligned with the 0-longitude line
-			// (offset by one tenth of a rotation)
-			lat = Math.max(
-					-piOverTwo,
-					lowerLatitude - ((y - lowerY) * triangleHeightInverse) * icoAngle
-			);
-			double span = Math.max(0, (x - triangleHalfWidth) * 5.5); // 11/10 scalar x 5
-			int trinum = Math.min(4, (int)(span));
-			double dx = triangleWidth * Math.min(1.0, span - trinum);
-			double dy = triangleHeight - (y - lowerY);
-			double lineWidth = dy * oneOverRoot3;
-			double xOffset = 0.5*(triangleWidth - lineWidth);
-			double xLimit = triangleWidth - xOffset;
-			double baseLongitude = trinum * twoPiOverFive + piOverFive;
-			if(dx <= xOffset) {
-				lon = baseLongitude;
-			} else if(dx >= xLimit) {
-				lon = baseLongitude + twoPiOverFive;
-			} else {
-				lon = baseLongitude + ((dx - xOffset) / lineWidth) * twoPiOverFive;
-			}
-			
-			
-		} else {
-			// one of the equatorial 10 triangles
-			// conveniently, these are basically a mercator UV mapping
-			double dy = (y - 0.5) * equatorialYRangeInverse; // -0.5 to 0.5
-			lat = dy * 2 * upperLatitude;
-			lon = x * 1.1 * twoPi;
-			
-		}
-		if(lon > twoPi) lon -= twoPi;
-		if(lon > Math.PI) lon -= twoPi;
-		return new Point2D(lon,lat);
+		final double[] lonLat = new double[2];
+		MAP_PROJECTION.convertRelativePixelXYToLonLat(relXY.getX(), relXY.getY(), lonLat);
+		return new Point2D(lonLat[0], lonLat[1]);
 	}
 	
 }
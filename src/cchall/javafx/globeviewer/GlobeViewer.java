@@ -23,8 +23,16 @@
  */
 package cchall.javafx.globeviewer;
 
+import cchall.javafx.globeviewer.raster.IlluminationMaps;
+import cchall.javafx.globeviewer.raster.MapProjection;
+import cchall.javafx.globeviewer.raster.NormalMaps;
+import cchall.javafx.globeviewer.raster.Raster;
+import cchall.javafx.globeviewer.raster.RasterReprojector;
 import javafx.application.ConditionalFeature;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
 import javafx.beans.property.*;
+import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.geometry.Point2D;
 import javafx.geometry.Point3D;
@@ -37,7 +45,9 @@ import javafx.scene.shape.Shape3D;
 import javafx.scene.shape.TriangleMesh;
 import javafx.scene.shape.VertexFormat;
 import javafx.scene.transform.Transform;
+import javafx.stage.Window;
 
+import java.lang.ref.WeakReference;
 import java.util.*;
 import java.util.function.Function;
 
@@ -492,6 +502,33 @@ public abstract class GlobeViewer {
 	private final SimpleObjectProperty<Image> texture_normal_vector_map
 			= new SimpleObjectProperty<>(null);
 	
+	// the texture layers of the material (reduced to the size of the globe on screen)
+	
+	private final SimpleObjectProperty<Image> displayed_ambient_luminosity_color
+			= new SimpleObjectProperty<>(null);
+	
+	private final SimpleObjectProperty<Image> displayed_diffuse_illumination_color
+			= new SimpleObjectProperty<>(null);
+	
+	private final SimpleObjectProperty<Image> displayed_specular_reflection_color
+			= new SimpleObjectProperty<>(null);
+	
+	private final SimpleObjectProperty<Image> displayed_normal_vector_map
+			= new SimpleObjectProperty<>(null);
+	
+	private final BooleanProperty texture_level_of_detail
+			= new SimpleBooleanProperty(false);
+	
+	private final BooleanProperty texture_parking
+			= new SimpleBooleanProperty(false);
+	
+	private TextureLevels[] textureLevels;
+	
+	/** returned by getMapProjection() unless it is overridden, so that its reprojection plans are reused */
+	private final MapProjection mapProjection = new ViewerMapProjection(this);
+	
+	private TextureBudget textureBudget = null;
+	
 	private final SimpleObjectProperty<javafx.geometry.Point3D> illumination_vector
 			= new SimpleObjectProperty<>(new javafx.geometry.Point3D(0, 0, 1));
 	
@@ -512,8 +549,12 @@ public abstract class GlobeViewer {
 			= new javafx.beans.property.SimpleDoubleProperty(-500.0);
 	private final DoubleProperty lightPos_Z 
 			= new javafx.beans.property.SimpleDoubleProperty(-1000.0);
-	private final double radius = 100;
+	private final double radius = GLOBE_RADIUS;
 	
+	private static final double GLOBE_RADIUS = 100;
+	private static final double CAMERA_DISTANCE = 1000;
+	/** vertical field of view of the camera, in degrees */
+	private static final double FIELD_OF_VIEW = 12.5;
 	private static final double RADIANS_TO_DEGREES = 180 / Math.PI;
 	/**
 	 * Default constructor, instantiating without applying any textures
@@ -544,21 +585,18 @@ public abstract class GlobeViewer {
 			throw new UnsupportedOperationException("3D graphics is not supported in this JavaFX environment. Ensure that your graphics drivers are up to date.");
 		}
 		//
+		// placeholders are shared by all GlobeViewers
 		if(diffuseTex == null){
-			diffuseTex = new WritableImage(1,1);
-			((WritableImage)diffuseTex).getPixelWriter().setColor(0, 0, Color.LIGHTGRAY);
+			diffuseTex = TextureRegistry.getSolidColor(Color.LIGHTGRAY);
 		}
 		if(ambientTex == null){
-			ambientTex = new WritableImage(1,1);
-			((WritableImage)ambientTex).getPixelWriter().setColor(0, 0, Color.BLACK);
+			ambientTex = TextureRegistry.getSolidColor(Color.BLACK);
 		}
 		if(specularTex == null){
-			specularTex = new WritableImage(1,1);
-			((WritableImage)specularTex).getPixelWriter().setColor(0, 0, Color.WHITE);
+			specularTex = TextureRegistry.getSolidColor(Color.WHITE);
 		}
 		if(normalVector == null){
-			normalVector = new WritableImage(1,1);
-			((WritableImage)normalVector).getPixelWriter().setColor(0, 0, Color.color(0.5d, 0.5d, 1.0d));
+			normalVector = TextureRegistry.getSolidColor(Color.color(0.5d, 0.5d, 1.0d));
 		}
 		texture_ambient_luminosity_color.set(ambientTex);
 		texture_diffuse_illumination_color.set(diffuseTex);
@@ -592,11 +630,171 @@ public abstract class GlobeViewer {
 		camera.getTransforms().add(new javafx.scene.transform.Rotate(180,new Point3D(1,0,0)));
 		camera.translateXProperty().bind(xPos);
 		camera.translateYProperty().bind(yPos);
-		camera.translateZProperty().set(1000);
+		camera.translateZProperty().set(CAMERA_DISTANCE);
 		camera.setNearClip(0.1);
 		camera.setFarClip(2000);
-		camera.setFieldOfView(12.5);
+		camera.setFieldOfView(FIELD_OF_VIEW);
 		scene.setCamera(camera);
+		
+		textureLevels = new TextureLevels[]{
+			new TextureLevels(texture_diffuse_illumination_color, displayed_diffuse_illumination_color, this::getMapProjection),
+			new TextureLevels(texture_normal_vector_map, displayed_normal_vector_map, this::getMapProjection),
+			new TextureLevels(texture_specular_reflection_color, displayed_specular_reflection_color, this::getMapProjection),
+			new TextureLevels(texture_ambient_luminosity_color, displayed_ambient_luminosity_color, this::getMapProjection)
+		};
+		scene.widthProperty().addListener((Observable observable) -> updateTextureLevels());
+		scene.heightProperty().addListener((Observable observable) -> updateTextureLevels());
+		texture_level_of_detail.addListener((Observable observable) -> updateTextureLevels());
+		updateTextureLevels();
+		
+		// the budget is re-evaluated whenever a texture changes or the globe is shown or hidden
+		for(TextureLevels levels : textureLevels){
+			levels.setListener(this::updateTextureBudget);
+		}
+		final InvalidationListener showingListener = (Observable observable) -> {
+			updateTextureParking();
+			updateTextureBudget();
+		};
+		texture_parking.addListener(showingListener);
+		final ChangeListener<Window> windowListener = (ObservableValue<? extends Window> observable, Window oldValue, Window newValue) -> {
+			if(oldValue != null){
+				oldValue.showingProperty().removeListener(showingListener);
+			}
+			if(newValue != null){
+				newValue.showingProperty().addListener(showingListener);
+			}
+			showingListener.invalidated(observable);
+		};
+		// the SubScene and its parents, collected again whenever one of them is moved
+		final List<Node> ancestors = new ArrayList<>();
+		final InvalidationListener ancestorListener = new InvalidationListener(){
+			@Override
+			public void invalidated(Observable observable){
+				watchAncestors(ancestors, this);
+				showingListener.invalidated(observable);
+			}
+		};
+		watchAncestors(ancestors, ancestorListener);
+		scene.sceneProperty().addListener((ObservableValue<? extends Scene> observable, Scene oldValue, Scene newValue) -> {
+			if(oldValue != null){
+				oldValue.windowProperty().removeListener(windowListener);
+				windowListener.changed(oldValue.windowProperty(), oldValue.getWindow(), null);
+			}
+			if(newValue != null){
+				newValue.windowProperty().addListener(windowListener);
+				windowListener.changed(newValue.windowProperty(), null, newValue.getWindow());
+			}
+		});
+	}
+	
+	/** listens to the visibility and the parent of the SubScene and of each of its parents */
+	private void watchAncestors(List<Node> ancestors, InvalidationListener listener){
+		for(Node n : ancestors){
+			n.visibleProperty().removeListener(listener);
+			n.parentProperty().removeListener(listener);
+		}
+		ancestors.clear();
+		for(Node n = scene; n != null; n = n.getParent()){
+			n.visibleProperty().addListener(listener);
+			n.parentProperty().addListener(listener);
+			ancestors.add(n);
+		}
+	}
+	
+	/** parks the textures while the globe is hidden (if enabled) */
+	private void updateTextureParking(){
+		final boolean park = texture_parking.get() && isShowing() == false;
+		for(TextureLevels levels : textureLevels){
+			levels.setParked(park);
+		}
+	}
+	
+	/** re-evaluates the texture budget (if any) */
+	private void updateTextureBudget(){
+		if(textureBudget != null){
+			textureBudget.update();
+		}
+	}
+	
+	/** @return the texture layers of the material */
+	private TextureLevels[] getTextureLevels(){
+		return textureLevels;
+	}
+	
+	/** 
+	 * @return whether the SubScene and all of its parents are visible in a 
+	 * window that is showing
+	 */
+	private boolean isShowing(){
+		if(scene.getScene() == null || scene.getScene().getWindow() == null 
+				|| scene.getScene().getWindow().isShowing() == false){
+			return false;
+		}
+		for(Node n = scene; n != null; n = n.getParent()){
+			if(n.isVisible() == false){
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/** selects the texture levels for the size of the SubScene */
+	private void updateTextureLevels(){
+		int width = Integer.MAX_VALUE;
+		if(texture_level_of_detail.get()){
+			double outputScale = 1;
+			if(scene.getScene() != null && scene.getScene().getWindow() != null){
+				outputScale = scene.getScene().getWindow().getOutputScaleY();
+			}
+			width = requiredTextureWidth(getMapProjection(), scene.getHeight(), outputScale);
+		}
+		for(TextureLevels levels : textureLevels){
+			levels.setRequiredWidth(width);
+		}
+		updateTextureBudget();
+	}
+	
+	/**
+	 * Computes the texture width needed to show at least one texture pixel 
+	 * per screen pixel at the center of the globe.
+	 * @param projection The map projection of the textures
+	 * @param sceneHeight Height of the SubScene (the field of view of the 
+	 * camera is vertical, so the width does not change the size of the globe)
+	 * @param outputScale Screen pixels per SubScene pixel (e.g. 2 on a high 
+	 * DPI screen)
+	 * @return The required texture width, in pixels
+	 */
+	static int requiredTextureWidth(MapProjection projection, double sceneHeight, double outputScale){
+		// screen pixels per radian of the globe's surface where it is closest to the camera
+		final double pixelsPerRadian = sceneHeight * outputScale * GLOBE_RADIUS 
+				/ (2 * (CAMERA_DISTANCE - GLOBE_RADIUS) * Math.tan(Math.toRadians(0.5 * FIELD_OF_VIEW)));
+		// average texture widths per radian along the equator (leaving out 
+		// the steps that jump across a seam of the layout)
+		final int steps = 360;
+		final double step = 2 * Math.PI / steps;
+		final double widthsPerHeight = 1 / projection.getAspectRatio();
+		final double[] a = new double[2];
+		final double[] b = new double[2];
+		double length = 0;
+		int count = 0;
+		projection.convertLonLatToRelativePixelXY(-Math.PI, 0, a);
+		for(int i = 1; i <= steps; i++){
+			projection.convertLonLatToRelativePixelXY(-Math.PI + i * step, 0, b);
+			final double dx = b[0] - a[0];
+			final double dy = (b[1] - a[1]) * widthsPerHeight;
+			final double d = Math.sqrt(dx * dx + dy * dy);
+			if(d < 0.05){
+				length += d;
+				count++;
+			}
+			a[0] = b[0];
+			a[1] = b[1];
+		}
+		double relXPerRadian = length / (count * step);
+		if(!(relXPerRadian > 0)){
+			relXPerRadian = 0.5 / Math.PI;
+		}
+		return (int)Math.max(1, Math.min(Integer.MAX_VALUE, Math.ceil(pixelsPerRadian / relXPerRadian)));
 	}
 	
 	private Parent buildScene() {
@@ -606,10 +804,10 @@ public abstract class GlobeViewer {
 		globe.setTranslateZ(0);
 
 		PhongMaterial globeMaterial = new PhongMaterial();
-		globeMaterial.diffuseMapProperty().bind(texture_diffuse_illumination_color);
-		globeMaterial.bumpMapProperty().bind(texture_normal_vector_map);
-		globeMaterial.specularMapProperty().bind(texture_specular_reflection_color);
-		globeMaterial.selfIlluminationMapProperty().bind(texture_ambient_luminosity_color);
+		globeMaterial.diffuseMapProperty().bind(displayed_diffuse_illumination_color);
+		globeMaterial.bumpMapProperty().bind(displayed_normal_vector_map);
+		globeMaterial.specularMapProperty().bind(displayed_specular_reflection_color);
+		globeMaterial.selfIlluminationMapProperty().bind(displayed_ambient_luminosity_color);
 		globe.setMaterial(globeMaterial);
 		
 		javafx.scene.transform.Rotate axisRotation_X
@@ -692,6 +890,81 @@ public abstract class GlobeViewer {
 	public final ObjectProperty<Image> normalVectorMapProperty(){
 		return texture_normal_vector_map;
 	}
+	/**
+	 * Gets the binding for whether the texture layers are reduced to the size 
+	 * of the globe on screen (false by default). While it is true, each texture 
+	 * layer is displayed at the smallest mipmap level (see 
+	 * {@link cchall.javafx.globeviewer.raster.TexturePyramid}) that still has 
+	 * at least one texture pixel per screen pixel, based on the height of the 
+	 * SubScene, the field of view of the camera and the radius of the globe, 
+	 * so that small globes do not hold full size textures in video memory. 
+	 * When the SubScene is resized, the matching level is computed in the 
+	 * background and swapped in once it is ready; smaller levels are only 
+	 * used once the globe is noticeably smaller, so that resizing does not 
+	 * recompute the textures over and over. The texture properties always 
+	 * hold the images that were set.
+	 * @return A boolean property
+	 */
+	public final BooleanProperty textureLevelOfDetailProperty(){
+		return texture_level_of_detail;
+	}
+	/**
+	 * Gets the binding for whether the texture layers are parked while this 
+	 * GlobeViewer is not showing (false by default), so that the memory used 
+	 * by displayed textures grows with the number of GlobeViewers on screen 
+	 * rather than the number of GlobeViewers that exist (e.g. in the tabs of 
+	 * a TabPane). When the GlobeViewer is hidden (its SubScene or one of its 
+	 * parents made invisible, e.g. in a tab that is not selected, removed from 
+	 * its window or the window closed), each texture layer is removed from 
+	 * the material, which frees its video memory; a texture layer that is 
+	 * displayed as a reduced copy (see {@link #textureLevelOfDetailProperty()}) 
+	 * is first compressed in the background (see 
+	 * {@link cchall.javafx.globeviewer.raster.CompressedRaster}), which is 
+	 * much smaller and cheaper to restore than computing the copy again. When 
+	 * the GlobeViewer is shown again, the reduced copies are decompressed in 
+	 * the background and displayed again. The texture properties are never 
+	 * changed, so the images that were set stay in memory either way: a 
+	 * texture layer that is displayed at full size (the default) only frees 
+	 * its video memory while it is parked, and the application must clear 
+	 * the texture properties of hidden GlobeViewers to free their images.
+	 * @return A boolean property
+	 */
+	public final BooleanProperty textureParkingProperty(){
+		return texture_parking;
+	}
+	/**
+	 * Gets the memory budget that limits the textures of this GlobeViewer 
+	 * together with those of the other GlobeViewers that share it (none by 
+	 * default).
+	 * @return The texture budget, or <code>null</code> if the textures of 
+	 * this GlobeViewer are not limited
+	 */
+	public final TextureBudget getTextureBudget(){
+		return textureBudget;
+	}
+	/**
+	 * Sets the memory budget that limits the textures of this GlobeViewer 
+	 * together with those of the other GlobeViewers that share it (e.g. 
+	 * {@link TextureBudget#getDefault()}). While the budget is exceeded, the 
+	 * textures of hidden GlobeViewers are removed from their material and 
+	 * those of the showing GlobeViewers are reduced to smaller mipmap levels, 
+	 * even if they would be displayed at full size (see {@link TextureBudget} 
+	 * and {@link #textureLevelOfDetailProperty()}).
+	 * @param budget A texture budget, or <code>null</code> to not limit the 
+	 * textures of this GlobeViewer (restoring them if they were reduced)
+	 */
+	public final void setTextureBudget(TextureBudget budget){
+		if(budget == textureBudget){
+			return;
+		}
+		if(textureBudget != null){
+			textureBudget.unregister(this);
+		}
+		textureBudget = budget;
+		if(budget != null){
+			budget.register(this, GlobeViewer::getTextureLevels, GlobeViewer::isShowing);
+		}
+	}
 	/**
 	 * Gets the binding for the light direction vector. Note that this is the 
 	 * direction towards which the light is shining, and positive x is to the right, 
@@ -744,7 +1017,8 @@ public abstract class GlobeViewer {
 	}
 	
 	/**
-	 * Creates a darkened version of the input image.
+	 * Creates a darkened version of the input image. The pixels are darkened in 
+	 * parallel on the thread pool of the {@link Reprojector}.
 	 * @param colorMap The input image
 	 * @param intensity A number from 0 to 1 specifying how dark the output 
 	 * image should be (0 = black, 1 = identical to input image)
@@ -754,26 +1028,107 @@ public abstract class GlobeViewer {
 			final Image colorMap, 
 			final double intensity
 	){
-		PixelReader pixelReader = colorMap.getPixelReader();
-		WritableImage lumenImg = new WritableImage((int)colorMap.getWidth(),
+		final WritableImage lumenImg = new WritableImage((int)colorMap.getWidth(),
 						(int)colorMap.getHeight());
-		PixelWriter pixelEditor = lumenImg.getPixelWriter();
-		for(int y = 0; y < lumenImg.getHeight(); y++){
-			for(int x = 0; x < lumenImg.getWidth(); x++){
-				final double multiplier = 0.15;
-				Color color = pixelReader.getColor(x, y);
-				Color newColor = new Color(
-						color.getRed() * multiplier, 
-						color.getGreen() * multiplier, 
-						color.getBlue() * multiplier, 
-						1
-				);
-				pixelEditor.setColor(x, y, newColor);
+		createIlluminationMapFromColorMap(Reprojector.toRaster(colorMap), intensity, lumenImg);
+		return lumenImg;
+	}
+	/**
+	 * Darkens a color map into an existing image, e.g. to animate the intensity 
+	 * of the night lights without creating a new image for every frame. The 
+	 * pixels are darkened in parallel on the thread pool of the 
+	 * {@link Reprojector}, a band of rows at a time, so that only a small 
+	 * buffer is allocated. If the image is shown in a scene, call this method 
+	 * on the JavaFX Application Thread.
+	 * @param colorMap The input image, as a raster (see 
+	 * {@link Reprojector#toRaster(javafx.scene.image.Image)}) so that it is 
+	 * only read once
+	 * @param intensity A number from 0 to 1 specifying how dark the output 
+	 * image should be (0 = black, 1 = identical to input image)
+	 * @param illuminationMap The image to write to, of the same size as the 
+	 * color map
+	 */
+	public static void createIlluminationMapFromColorMap(
+			final Raster colorMap, 
+			final double intensity, 
+			final WritableImage illuminationMap
+	){
+		final int width = colorMap.getWidth();
+		final int height = colorMap.getHeight();
+		if((int)illuminationMap.getWidth() != width || (int)illuminationMap.getHeight() != height){
+			throw new IllegalArgumentException(String.format(
+					"Illumination map size %sx%s does not match %s", 
+					(int)illuminationMap.getWidth(), (int)illuminationMap.getHeight(), colorMap));
+		}
+		final int bandHeight = Math.max(1, Math.min(height, ILLUMINATION_BAND_PIXELS / width));
+		int[] band = new int[width * bandHeight];
+		int parallelism = RasterReprojector.getThreadPool().getParallelism();
+		boolean interrupted = false;
+		final PixelWriter pixelWriter = illuminationMap.getPixelWriter();
+		for(int y = 0; y < height; y += bandHeight){
+			final int h = Math.min(bandHeight, height - y);
+			try {
+				IlluminationMaps.darken(colorMap, y, h, intensity, band, parallelism);
+			} catch (InterruptedException ex) {
+				// finish on this thread (with a new buffer, in case abandoned 
+				// tiles are still writing to the old one) and keep the interrupt
+				interrupted = true;
+				parallelism = 1;
+				band = new int[band.length];
+				try {
+					IlluminationMaps.darken(colorMap, y, h, intensity, band, parallelism);
+				} catch (InterruptedException impossible) {
+					throw new IllegalStateException(impossible);
+				}
 			}
+			pixelWriter.setPixels(0, y, width, h, Reprojector.ARGB_FORMAT, band, 0, width);
+		}
+		if(interrupted){
+			Thread.currentThread().interrupt();
 		}
-		return lumenImg;
 	}
-
+	/** Number of pixels darkened at a time by createIlluminationMapFromColorMap(Raster, double, WritableImage) */
+	private static final int ILLUMINATION_BAND_PIXELS = 1 << 18;
+	
+	/**
+	 * Creates a normal map (for {@link #normalVectorMapProperty()}) from a 
+	 * grayscale elevation image, taking the scale and seams of the map 
+	 * projection into account (see {@link NormalMaps}). The normals are 
+	 * computed in parallel on the thread pool of the {@link Reprojector}, with 
+	 * the Sobel operator.
+	 * @param heightMap The elevation image, where the height of each pixel is 
+	 * the average of its red, green and blue channels
+	 * @param projection The map projection of the elevation image, usually 
+	 * <code>globeViewer.getMapProjection()</code>
+	 * @param heightScale The height of one gray level, in globe radii (e.g. 
+	 * <code>30.0 / 6371000</code> if each level is 30 m on Earth; larger 
+	 * values exaggerate the relief)
+	 * @return A new Image whose dimensions are identical to the input image
+	 */
+	public static Image createNormalMapFromHeightMap(
+			final Image heightMap, 
+			final MapProjection projection, 
+			final double heightScale
+	){
+		final Raster heights = Reprojector.toRaster(heightMap);
+		Raster normals;
+		try {
+			normals = NormalMaps.fromHeightMap(heights, projection, heightScale, 
+					NormalMaps.Kernel.SOBEL, RasterReprojector.getThreadPool().getParallelism());
+		} catch (InterruptedException ex) {
+			// finish on this thread (which cannot be interrupted) and keep the interrupt
+			try {
+				normals = NormalMaps.fromHeightMap(heights, projection, heightScale, 
+						NormalMaps.Kernel.SOBEL, 1);
+			} catch (InterruptedException impossible) {
+				throw new IllegalStateException(impossible);
+			} finally {
+				Thread.currentThread().interrupt();
+			}
+		}
+		return Reprojector.toImage(normals);
+	}
+	
 	/**
 	 * This method converts between the spherical longitude-latitude coordinate and the pixel position in the texture map.
 	 * <p>
@@ -794,12 +1149,70 @@ public abstract class GlobeViewer {
 	 */
 	public abstract Point2D convertRelativePixelXYToLonLat(Point2D relXY);
 	
+	/**
+	 * Gets the map projection of this GlobeViewer's texture layers. This is the 
+	 * same mapping as {@link #convertLonLatToRelativePixelXY(javafx.geometry.Point2D) } 
+	 * and {@link #convertRelativePixelXYToLonLat(javafx.geometry.Point2D) }, which 
+	 * can be used with {@link Reprojector} to convert textures between the map 
+	 * projections of different GlobeViewer implementations. Implementations 
+	 * should override this method with an allocation-free map projection.
+	 * @return The map projection used by this GlobeViewer
+	 */
+	public MapProjection getMapProjection(){
+		return mapProjection;
+	}
 	
-	/* package private */
-	static double clamp(double d){
-		return d - Math.floor(d);
+	/**
+	 * The map projection of a GlobeViewer which does not override 
+	 * {@link #getMapProjection()}, calling its Point2D methods. The viewer is 
+	 * held weakly, because map projections are kept in the static cache of 
+	 * reprojection plans. Its geometry is whatever the methods of the viewer 
+	 * compute, which has no stable description, so it is not used by the 
+	 * persistent texture cache.
+	 */
+	private static final class ViewerMapProjection implements MapProjection {
+		private final WeakReference<GlobeViewer> viewer;
+		private final String name;
+		
+		ViewerMapProjection(GlobeViewer viewer){
+			this.viewer = new WeakReference<>(viewer);
+			this.name = viewer.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(viewer));
+		}
+		
+		private GlobeViewer getViewer(){
+			final GlobeViewer gv = viewer.get();
+			if(gv == null){
+				throw new IllegalStateException(name + " has been garbage collected");
+			}
+			return gv;
+		}
+		
+		@Override
+		public void convertLonLatToRelativePixelXY(double lon, double lat, double[] relXYOut) {
+			Point2D relXY = getViewer().convertLonLatToRelativePixelXY(new Point2D(lon, lat));
+			relXYOut[0] = relXY.getX();
+			relXYOut[1] = relXY.getY();
+		}
+		
+		@Override
+		public void convertRelativePixelXYToLonLat(double relX, double relY, double[] lonLatOut) {
+			Point2D lonLat = getViewer().convertRelativePixelXYToLonLat(new Point2D(relX, relY));
+			lonLatOut[0] = lonLat.getX();
+			lonLatOut[1] = lonLat.getY();
+		}
+		
+		@Override
+		public String getCacheDescription(){
+			return null;
+		}
+		
+		@Override
+		public String toString(){
+			return name;
+		}
 	}
 	
+	
 	/** A class for binding the function of a number to another number property */
 	static final class NumericalFunctionProperty extends DoublePropertyBase{
 		
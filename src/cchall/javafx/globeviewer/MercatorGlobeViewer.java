@@ -23,6 +23,8 @@
  */
 package cchall.javafx.globeviewer;
 
+import cchall.javafx.globeviewer.raster.MapProjection;
+import cchall.javafx.globeviewer.raster.MapProjections;
 import java.util.ArrayList;
 import java.util.List;
 import javafx.geometry.Point2D;
@@ -38,6 +40,13 @@ import javafx.scene.shape.TriangleMesh;
  * explosivegnome@yahoo.com</a>
  */
 public class MercatorGlobeViewer extends GlobeViewer {
+	
+	/**
+	 * The mercator map projection (aka UV map) used by this GlobeViewer class. 
+	 * The x-axis of the image represents longitude and the y-axis of the image 
+	 * represents latitude.
+	 */
+	public static final MapProjection MAP_PROJECTION = MapProjections.MERCATOR;
 
 	/**
 	 * Generates the globe model with appropriate normals and texture coordinates 
@@ -121,10 +130,9 @@ public class MercatorGlobeViewer extends GlobeViewer {
 */
 	@Override
 	public Point2D convertLonLatToRelativePixelXY(Point2D lonLat) {
-		final double oneOverTwoPi = 1.0 / (2.0 * Math.PI);
-		final double oneOverPi = 1.0 / Math.PI;
-		final double piOverTwo = 0.5 * Math.PI;
-		return new Point2D( clamp( lonLat.getX() * oneOverTwoPi), clamp(1.0 - ( (lonLat.getY() + piOverTwo) * oneOverPi)) );
+		final double[] relXY = new double[2];
+		MAP_PROJECTION.convertLonLatToRelativePixelXY(lonLat.getX(), lonLat.getY(), relXY);
+		return new Point2D(relXY[0], relXY[1]);
 	}
 
 /**
@@ -132,11 +140,17 @@ public class MercatorGlobeViewer extends GlobeViewer {
 */
 	@Override
 	public Point2D convertRelativePixelXYToLonLat(Point2D relXY) {
-		final double twoPi = 2.0 * Math.PI;
-		return new Point2D( 
-				(clamp( relXY.getX() + 0.5 ) - 0.5) * twoPi, 
-				(0.5 - clamp( relXY.getY() )) * Math.PI 
-		);
+		final double[] lonLat = new double[2];
+		MAP_PROJECTION.convertRelativePixelXYToLonLat(relXY.getX(), relXY.getY(), lonLat);
+		return new Point2D(lonLat[0], lonLat[1]);
+	}
+	
+/**
+* {@inheritDoc}
+*/
+	@Override
+	public MapProjection getMapProjection() {
+		return MAP_PROJECTION;
 	}
 	
 }
@@ -0,0 +1,542 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 .
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cchall.javafx.globeviewer;
+
+import cchall.javafx.globeviewer.raster.ConversionJob;
+import cchall.javafx.globeviewer.raster.ConversionQueue;
+import cchall.javafx.globeviewer.raster.IncrementalReprojector;
+import cchall.javafx.globeviewer.raster.MapProjection;
+import cchall.javafx.globeviewer.raster.Raster;
+import cchall.javafx.globeviewer.raster.RasterReprojector;
+import cchall.javafx.globeviewer.raster.RasterReprojector.Filter;
+import java.awt.Rectangle;
+import java.nio.IntBuffer;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javafx.application.Platform;
+import javafx.beans.property.ObjectProperty;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.image.WritablePixelFormat;
+
+/**
+ * Converts texture images from any map projection into any other map projection 
+ * (e.g. from the dymaxion layout of a {@link DymaxionGlobeViewer} to the mercator 
+ * layout of a {@link MercatorGlobeViewer}), using the {@link MapProjection} of 
+ * each layout.<p>
+ * This class adapts JavaFX images to the toolkit-independent 
+ * {@link RasterReprojector}, which does the actual conversion (and whose 
+ * thread pool, see {@link RasterReprojector#setThreadPool(java.util.concurrent.ForkJoinPool)}, 
+ * is used for parallel conversions): each source image is read once into a 
+ * {@link Raster} and each output raster is written back into a 
+ * <code>WritableImage</code> with a single <code>setPixels</code> call. Use 
+ * {@link RasterReprojector} directly to convert textures without starting the 
+ * JavaFX toolkit (e.g. on a headless server).<p>
+ * Instead of a thread count, each conversion takes a parallelism hint: 1 runs 
+ * the conversion on the calling thread, larger numbers split the work into more 
+ * tiles for the shared thread pool.<p>
+ * Example:<br><pre>
+Image dymaxionTexture = Reprojector.reproject(
+		mercatorTexture, 
+		MercatorGlobeViewer.MAP_PROJECTION, 
+		DymaxionGlobeViewer.MAP_PROJECTION, 
+		1100, 260, 
+		ForkJoinPool.getCommonPoolParallelism());
+</pre>
+ * @author CCHall <a href="mailto:explosivegnome@yahoo.com">
+ * explosivegnome@yahoo.com</a>
+ */
+public final class Reprojector {
+	
+	/** Pixel format of the <code>int[]</code> pixel buffers, same as <code>getArgb(x,y)</code> */
+	static final WritablePixelFormat<IntBuffer> ARGB_FORMAT 
+			= PixelFormat.getIntArgbInstance();
+	
+	/** 
+	 * Daemon threads which drive reprojectProgressively(...) and wait for its 
+	 * passes (so that waiting conversions never take the threads of their own 
+	 * tiles)
+	 */
+	private static final ExecutorService PROGRESSIVE_CONVERSIONS = createProgressiveConversions();
+	
+	/** 
+	 * Runs the passes of reprojectProgressively(...) as cancellable jobs, one 
+	 * at a time, smaller passes first (their tiles run on the thread pool of 
+	 * RasterReprojector)
+	 */
+	private static final ConversionQueue PROGRESSIVE_PASSES = new ConversionQueue(1);
+	
+	private static ExecutorService createProgressiveConversions(){
+		final AtomicInteger threads = new AtomicInteger();
+		return Executors.newCachedThreadPool((Runnable r) -> {
+			final Thread t = new Thread(r, "ProgressiveConversion-" + threads.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+	}
+	
+	private Reprojector(){
+		// static utility class
+	}
+	
+	/**
+	 * Copies the pixels of a JavaFX image into a new raster.
+	 * @param img An image
+	 * @return A new raster of the same size
+	 */
+	public static Raster toRaster(Image img){
+		final int width = (int)img.getWidth();
+		final int height = (int)img.getHeight();
+		final Raster raster = new Raster(width, height);
+		img.getPixelReader().getPixels(0, 0, width, height, ARGB_FORMAT, raster.getPixels(), 0, width);
+		return raster;
+	}
+	
+	/**
+	 * Copies the pixels of a raster into a new JavaFX image.
+	 * @param raster A raster
+	 * @return A new image of the same size
+	 */
+	public static WritableImage toImage(Raster raster){
+		final int width = raster.getWidth();
+		final int height = raster.getHeight();
+		final WritableImage img = new WritableImage(width, height);
+		img.getPixelWriter().setPixels(0, 0, width, height, ARGB_FORMAT, raster.getPixels(), 0, width);
+		return img;
+	}
+	
+	/**
+	 * Converts a texture image from one map projection into another.
+	 * @param source The input texture image
+	 * @param sourceProjection The map projection of the input image (e.g. 
+	 * {@link MercatorGlobeViewer#MAP_PROJECTION})
+	 * @param targetProjection The map projection of the output image (e.g. 
+	 * {@link CubicGlobeViewer#MAP_PROJECTION} or 
+	 * <code>globeViewer.getMapProjection()</code>)
+	 * @param newWidth Width of the output image
+	 * @param newHeight Height of the output image
+	 * @param parallelism Parallel processing hint. 1 converts the image on the 
+	 * calling thread, larger numbers split the conversion into more tiles for the 
+	 * shared thread pool (e.g. <code>ForkJoinPool.getCommonPoolParallelism()</code>).
+	 * @return A new image of size <code>newWidth</code> x <code>newHeight</code>
+	 * @throws InterruptedException Thrown if this thread is interrupted while 
+	 * waiting for the thread pool to finish the conversion.
+	 */
+	public static Image reproject(
+			final Image source, 
+			final MapProjection sourceProjection, 
+			final MapProjection targetProjection, 
+			final int newWidth, 
+			final int newHeight, 
+			final int parallelism
+	) throws InterruptedException {
+		return reproject(source, sourceProjection, targetProjection, newWidth, newHeight, 
+				parallelism, Filter.NEAREST);
+	}
+	
+	/**
+	 * Converts a texture image from one map projection into another, using the 
+	 * given texture filter.
+	 * @param source The input texture image
+	 * @param sourceProjection The map projection of the input image
+	 * @param targetProjection The map projection of the output image
+	 * @param newWidth Width of the output image
+	 * @param newHeight Height of the output image
+	 * @param parallelism Parallel processing hint (1 converts the image on the 
+	 * calling thread).
+	 * @param filter Texture filter (e.g. {@link Filter#BILINEAR} to reduce 
+	 * aliasing)
+	 * @return A new image of size <code>newWidth</code> x <code>newHeight</code>
+	 * @throws InterruptedException Thrown if this thread is interrupted while 
+	 * waiting for the thread pool to finish the conversion.
+	 */
+	public static Image reproject(
+			final Image source, 
+			final MapProjection sourceProjection, 
+			final MapProjection targetProjection, 
+			final int newWidth, 
+			final int newHeight, 
+			final int parallelism, 
+			final Filter filter
+	) throws InterruptedException {
+		return reprojectLayers(new Image[]{source}, sourceProjection, targetProjection, 
+				newWidth, newHeight, parallelism, filter)[0];
+	}
+	
+	/**
+	 * Converts several texture layers of the same size (e.g. the diffuse, 
+	 * ambient, specular and normal maps of a globe) from one map projection into 
+	 * another in a single pass. The map projection math is done once per output 
+	 * pixel (or not at all if a matching one is cached) and 
+	 * every layer is copied in the same loop, so converting four layers costs 
+	 * little more than converting one.
+	 * @param sources The input texture images, which must all be the same size
+	 * @param sourceProjection The map projection of the input images
+	 * @param targetProjection The map projection of the output images
+	 * @param newWidth Width of the output images
+	 * @param newHeight Height of the output images
+	 * @param parallelism Parallel processing hint (1 converts the images on the 
+	 * calling thread).
+	 * @return An array of new images of size <code>newWidth</code> x 
+	 * <code>newHeight</code>, in the same order as <code>sources</code>
+	 * @throws InterruptedException Thrown if this thread is interrupted while 
+	 * waiting for the thread pool to finish the conversion.
+	 * @throws IllegalArgumentException Thrown if the input images are not all 
+	 * the same size
+	 */
+	public static Image[] reprojectLayers(
+			final Image[] sources, 
+			final MapProjection sourceProjection, 
+			final MapProjection targetProjection, 
+			final int newWidth, 
+			final int newHeight, 
+			final int parallelism
+	) throws InterruptedException {
+		return reprojectLayers(sources, sourceProjection, targetProjection, newWidth, newHeight, 
+				parallelism, Filter.NEAREST);
+	}
+	
+	/**
+	 * Converts several texture layers of the same size from one map projection 
+	 * into another in a single pass, using the given texture filter.
+	 * @param sources The input texture images, which must all be the same size
+	 * @param sourceProjection The map projection of the input images
+	 * @param targetProjection The map projection of the output images
+	 * @param newWidth Width of the output images
+	 * @param newHeight Height of the output images
+	 * @param parallelism Parallel processing hint (1 converts the images on the 
+	 * calling thread).
+	 * @param filter Texture filter (e.g. {@link Filter#BILINEAR} to reduce 
+	 * aliasing)
+	 * @return An array of new images of size <code>newWidth</code> x 
+	 * <code>newHeight</code>, in the same order as <code>sources</code>
+	 * @throws InterruptedException Thrown if this thread is interrupted while 
+	 * waiting for the thread pool to finish the conversion.
+	 * @throws IllegalArgumentException Thrown if the input images are not all 
+	 * the same size
+	 */
+	public static Image[] reprojectLayers(
+			final Image[] sources, 
+			final MapProjection sourceProjection, 
+			final MapProjection targetProjection, 
+			final int newWidth, 
+			final int newHeight, 
+			final int parallelism, 
+			final Filter filter
+	) throws InterruptedException {
+		final Raster[] rasters = new Raster[sources.length];
+		for(int l = 0; l < sources.length; l++){
+			rasters[l] = toRaster(sources[l]);
+		}
+		final Raster[] results = RasterReprojector.reprojectLayers(rasters, sourceProjection, targetProjection, 
+				newWidth, newHeight, parallelism, filter);
+		final Image[] outputs = new Image[results.length];
+		for(int l = 0; l < results.length; l++){
+			outputs[l] = toImage(results[l]);
+		}
+		return outputs;
+	}
+	
+	/**
+	 * Submits a conversion of several texture layers of the same size to the 
+	 * default {@link ConversionQueue}, which converts them in the background 
+	 * in order of priority (e.g. the layers of the globe that is on screen 
+	 * first). The returned task has progress and result properties which are 
+	 * updated on the JavaFX application thread, and it can be cancelled (which 
+	 * stops the conversion between tiles, even while it is running).
+	 * @param sources The input texture images, which must all be the same size 
+	 * (they are copied before this method returns)
+	 * @param sourceProjection The map projection of the input images
+	 * @param targetProjection The map projection of the output images
+	 * @param newWidth Width of the output images
+	 * @param newHeight Height of the output images
+	 * @param filter Texture filter
+	 * @param priority Conversions with a larger number run first
+	 * @return The task
+	 * @throws IllegalArgumentException Thrown if the input images are not all 
+	 * the same size
+	 */
+	public static ConversionTask submit(
+			final Image[] sources, 
+			final MapProjection sourceProjection, 
+			final MapProjection targetProjection, 
+			final int newWidth, 
+			final int newHeight, 
+			final Filter filter, 
+			final int priority
+	){
+		return submit(ConversionQueue.getDefault(), sources, sourceProjection, targetProjection, 
+				newWidth, newHeight, filter, priority, Platform::runLater);
+	}
+	
+	/** Implementation of submit(...), with an adjustable queue and publishing thread */
+	static ConversionTask submit(
+			final ConversionQueue queue, 
+			final Image[] sources, 
+			final MapProjection sourceProjection, 
+			final MapProjection targetProjection, 
+			final int newWidth, 
+			final int newHeight, 
+			final Filter filter, 
+			final int priority, 
+			final Executor fxThread
+	){
+		final Raster[] rasters = new Raster[sources.length];
+		for(int l = 0; l < sources.length; l++){
+			rasters[l] = toRaster(sources[l]);
+		}
+		return new ConversionTask(queue.submit(rasters, sourceProjection, targetProjection, 
+				newWidth, newHeight, filter, priority), fxThread);
+	}
+	
+	/**
+	 * Converts a texture image from one map projection into another in the 
+	 * background, coarse to fine, publishing each pass to a property (e.g. 
+	 * <code>globeViewer.diffuseTextureProperty()</code>) on the JavaFX 
+	 * application thread as soon as it is done. The first pass is 1/8 of the 
+	 * final size (1/64 of the work, so the globe is textured almost at once) 
+	 * and each later pass doubles the size, until the final pass converts the 
+	 * full size image with the given filter (the earlier passes use 
+	 * {@link Filter#NEAREST}, since they are replaced soon anyway). In total, 
+	 * this costs about a third more than a single conversion.<p>
+	 * The passes are converted on the thread pool of {@link RasterReprojector} 
+	 * (driven by a separate daemon thread, which waits for them), and the 
+	 * conversion stops between tiles, without publishing anything else, when it 
+	 * is cancelled or when the property is set to another image (e.g. because 
+	 * the user chose a different texture).<br><pre>
+Reprojector.reprojectProgressively(
+		mercatorTexture, 
+		MercatorGlobeViewer.MAP_PROJECTION, 
+		globeViewer.getMapProjection(), 
+		2200, 520, 
+		RasterReprojector.Filter.BILINEAR, 
+		globeViewer.diffuseTextureProperty());
+</pre>
+	 * @param source The input texture image (which must be fully loaded)
+	 * @param sourceProjection The map projection of the input image
+	 * @param targetProjection The map projection of the output image
+	 * @param newWidth Width of the final output image
+	 * @param newHeight Height of the final output image
+	 * @param filter Texture filter of the final pass
+	 * @param target The property which receives each pass
+	 * @return A future which completes with the final image once it has been 
+	 * published (cancelling it stops the conversion)
+	 */
+	public static CompletableFuture<Image> reprojectProgressively(
+			final Image source, 
+			final MapProjection sourceProjection, 
+			final MapProjection targetProjection, 
+			final int newWidth, 
+			final int newHeight, 
+			final Filter filter, 
+			final ObjectProperty<Image> target
+	){
+		return reprojectProgressively(source, sourceProjection, targetProjection, newWidth, newHeight, 
+				filter, target, Platform::runLater);
+	}
+	
+	/** Implementation of reprojectProgressively(...), with an adjustable publishing thread */
+	static CompletableFuture<Image> reprojectProgressively(
+			final Image source, 
+			final MapProjection sourceProjection, 
+			final MapProjection targetProjection, 
+			final int newWidth, 
+			final int newHeight, 
+			final Filter filter, 
+			final ObjectProperty<Image> target, 
+			final Executor fxThread
+	){
+		if(newWidth <= 0 || newHeight <= 0){
+			throw new IllegalArgumentException(String.format("Invalid output size %sx%s", newWidth, newHeight));
+		}
+		final ProgressiveConversion conversion = new ProgressiveConversion(source, sourceProjection, 
+				targetProjection, newWidth, newHeight, filter, target, fxThread);
+		PROGRESSIVE_CONVERSIONS.execute(conversion);
+		return conversion.result;
+	}
+	
+	/** The background task of reprojectProgressively(...) */
+	private static final class ProgressiveConversion implements Runnable {
+		/** size divisor of the first pass */
+		private static final int FIRST_PASS_DIVISOR = 8;
+		private final Image source;
+		private final MapProjection sourceProjection, targetProjection;
+		private final int newWidth, newHeight;
+		private final Filter filter;
+		private final ObjectProperty<Image> target;
+		private final Executor fxThread;
+		final CompletableFuture<Image> result = new CompletableFuture<>();
+		/** the last published image (only used on the publishing thread) */
+		private Image published;
+		/** the running pass, which is cancelled together with the result */
+		private volatile ConversionJob pass = null;
+		
+		ProgressiveConversion(Image source, MapProjection sourceProjection, MapProjection targetProjection, 
+				int newWidth, int newHeight, Filter filter, ObjectProperty<Image> target, Executor fxThread){
+			this.source = source;
+			this.sourceProjection = sourceProjection;
+			this.targetProjection = targetProjection;
+			this.newWidth = newWidth;
+			this.newHeight = newHeight;
+			this.filter = filter;
+			this.target = target;
+			this.fxThread = fxThread;
+			this.published = target.get();
+			result.whenComplete((img, ex) -> {
+				final ConversionJob job = pass;
+				if(job != null){
+					job.cancel(false);
+				}
+			});
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void run(){
+			try {
+				final Raster[] src = {toRaster(source)};
+				for(int divisor = FIRST_PASS_DIVISOR; divisor >= 1; divisor /= 2){
+					if(result.isDone()){
+						return; // cancelled or replaced
+					}
+					final int w = newWidth / divisor;
+					final int h = newHeight / divisor;
+					if(divisor > 1 && (w == 0 || h == 0)){
+						continue; // too small to be useful
+					}
+					final ConversionJob job = PROGRESSIVE_PASSES.submit(src, sourceProjection, targetProjection, 
+							w, h, divisor == 1 ? filter : Filter.NEAREST, divisor);
+					pass = job;
+					if(result.isDone()){
+						job.cancel(false); // cancelled before the pass was visible to cancel(...)
+					}
+					final Image img;
+					try {
+						img = toImage(job.get()[0]);
+					} catch (CancellationException ex) {
+						return; // cancelled or replaced during the pass
+					} catch (ExecutionException ex) {
+						result.completeExceptionally(ex.getCause());
+						return;
+					}
+					final boolean last = divisor == 1;
+					fxThread.execute(() -> publish(img, last));
+				}
+			} catch (InterruptedException | RuntimeException ex) {
+				result.completeExceptionally(ex);
+			}
+		}
+		
+		/** sets the property, unless cancelled or if someone else changed it */
+		private void publish(Image img, boolean last){
+			if(result.isDone()){
+				return;
+			}
+			if(target.get() != published){
+				result.cancel(false);
+				return;
+			}
+			target.set(img);
+			published = img;
+			if(last){
+				result.complete(img);
+			}
+		}
+	}
+	
+	/**
+	 * Updates a converted texture image after a region of its source image 
+	 * changed: the region is copied into the source raster of the 
+	 * IncrementalReprojector, the target pixels that sample from it are 
+	 * converted again, and only the changed parts of the target raster are 
+	 * written into the texture image. Call this on the JavaFX application 
+	 * thread if the texture image is being displayed.
+	 * @param updater The IncrementalReprojector, whose source raster has the 
+	 * size of <code>source</code> and whose target raster has the size of 
+	 * <code>target</code>
+	 * @param source The source image, which changed
+	 * @param x First column of the changed region of the source image
+	 * @param y First row of the changed region of the source image
+	 * @param width Width of the changed region
+	 * @param height Height of the changed region
+	 * @param target The converted texture image, which will be updated
+	 */
+	public static void updateRegion(
+			final IncrementalReprojector updater, 
+			final Image source, 
+			final int x, final int y, final int width, final int height, 
+			final WritableImage target
+	){
+		final Raster src = updater.getSource();
+		final int x0 = Math.max(0, x);
+		final int y0 = Math.max(0, y);
+		final int w = Math.min(src.getWidth(), x + width) - x0;
+		final int h = Math.min(src.getHeight(), y + height) - y0;
+		if(w <= 0 || h <= 0){
+			return;
+		}
+		source.getPixelReader().getPixels(x0, y0, w, h, ARGB_FORMAT, src.getPixels(), 
+				y0 * src.getWidth() + x0, src.getWidth());
+		final Raster dst = updater.getTarget();
+		for(Rectangle r : updater.update(x0, y0, w, h)){
+			target.getPixelWriter().setPixels(r.x, r.y, r.width, r.height, ARGB_FORMAT, dst.getPixels(), 
+					r.y * dst.getWidth() + r.x, dst.getWidth());
+		}
+	}
+	
+	/**
+	 * Converts a texture image from the map projection of one GlobeViewer into 
+	 * the map projection of another GlobeViewer.
+	 * @param source The input texture image
+	 * @param sourceViewer The GlobeViewer whose map projection the input image uses
+	 * @param targetViewer The GlobeViewer whose map projection the output image will use
+	 * @param newWidth Width of the output image
+	 * @param newHeight Height of the output image
+	 * @param parallelism Parallel processing hint. 1 converts the image on the 
+	 * calling thread, larger numbers split the conversion into more tiles for the 
+	 * shared thread pool (e.g. <code>ForkJoinPool.getCommonPoolParallelism()</code>).
+	 * @return A new image of size <code>newWidth</code> x <code>newHeight</code>
+	 * @throws InterruptedException Thrown if this thread is interrupted while 
+	 * waiting for the thread pool to finish the conversion.
+	 */
+	public static Image reproject(
+			final Image source, 
+			final GlobeViewer sourceViewer, 
+			final GlobeViewer targetViewer, 
+			final int newWidth, 
+			final int newHeight, 
+			final int parallelism
+	) throws InterruptedException {
+		return reproject(source, sourceViewer.getMapProjection(), targetViewer.getMapProjection(), 
+				newWidth, newHeight, parallelism);
+	}
+}
@@ -23,17 +23,13 @@
  */
 package cchall.javafx.globeviewer;
 
+import cchall.javafx.globeviewer.raster.MapProjection;
+import cchall.javafx.globeviewer.raster.MapProjections;
 import javafx.geometry.Point2D;
 import javafx.geometry.Point3D;
 import javafx.scene.image.Image;
-import javafx.scene.image.WritableImage;
 import javafx.scene.shape.*;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-
 /**
  * This GlobeViewer implementation creates a globe from a sinusoidal map 
  * projection. Note that a sinusoidal projection will have the highest level of 
@@ -43,6 +39,11 @@ import java.util.concurrent.ExecutorService;
  * explosivegnome@yahoo.com</a>
  */
 public class SinusoidalGlobeViewer extends GlobeViewer {
+	
+	/**
+	 * The sinusoidal map projection used by this GlobeViewer class. 
+	 */
+	public static final MapProjection MAP_PROJECTION = MapProjections.SINUSOIDAL;
 
 	/**
 	 * Generates the globe model with appropriate normals and texture coordinates 
@@ -179,58 +180,23 @@ public class SinusoidalGlobeViewer extends GlobeViewer {
 		return output;
 	}
 	
-	public static Image convertMercatorToSinusoidal(final Image mercatorProjection, final int numThreads) throws InterruptedException{
-		final double width = mercatorProjection.getWidth();
-		final double height = mercatorProjection.getHeight();
-		final int newHeight = (int)height;
+	/**
+	 * Converts a mercator projection map (aka UV map) into a sinusoidal projection texture image
+	 * @param mercatorProjection The input mercator projection, where-in the x-axis 
+	 * of the image represents longitude and the y-axis of the image represents latitude.
+	 * @param parallelism Parallel processing hint: 1 converts the image on the 
+	 * calling thread, larger numbers split the conversion into more tiles for the 
+	 * shared thread pool of the {@link Reprojector}.
+	 * @return A sinusoidal projection texture image suitable for use as a texture layer 
+	 * for this GlobeViewer class.
+	 * @throws InterruptedException Thrown if this thread is interrupted while 
+	 * waiting for the thread pool to finish the conversion.
+	 */
+	public static Image convertMercatorToSinusoidal(final Image mercatorProjection, final int parallelism) throws InterruptedException{
+		final int newHeight = (int)mercatorProjection.getHeight();
 		final int newWidth = 2 * newHeight;
-		final double relYConversionFactor = 1.0 / (double)(newHeight - 1);
-		final double relXConversionFactor = 1.0 / (double)(newWidth - 1);
-		
-		final double newLongitudeToOldRelXConversionFactor = 1.0 / (2.0 * Math.PI);
-		final double newLatitudeToOldRelYConversionFactor = 1.0 / (Math.PI);
-		
-		final WritableImage sinusoidalProjection = new WritableImage(newWidth,newHeight);
-		if(numThreads <= 1){
-			for(int h = 0; h < newHeight; h++){
-				final int y = h;
-				final double relY = y * relYConversionFactor;
-				for(int x = 0; x < newWidth; x++){
-					double relX = x * relXConversionFactor;
-					Point2D lonLat = _convertRelativePixelXYToLonLat(new Point2D(relX, relY));
-					int oldX = (int)(clamp(lonLat.getX() * newLongitudeToOldRelXConversionFactor) 
-							* width);
-					int oldY = (int)(clamp(lonLat.getY() * newLatitudeToOldRelYConversionFactor) 
-							* height);
-					sinusoidalProjection.getPixelWriter().setArgb(x, y, 
-							mercatorProjection.getPixelReader().getArgb(oldX, oldY));
-				}
-			}
-		} else {
-			final ExecutorService threadPool = java.util.concurrent.Executors.newFixedThreadPool(numThreads);
-			List<Callable<Object>> taskList = new ArrayList<>(newHeight);
-			for(int h = 0; h < newHeight; h++){
-				final int y = h;
-				final double relY = y * relYConversionFactor;
-				taskList.add(()->{
-					for(int x = 0; x < newWidth; x++){
-						double relX = x * relXConversionFactor;
-						Point2D lonLat = _convertRelativePixelXYToLonLat(new Point2D(relX, relY));
-						int oldX = (int)(clamp(lonLat.getX() * newLongitudeToOldRelXConversionFactor) 
-								* width);
-						int oldY = (int)(clamp(lonLat.getY() * newLatitudeToOldRelYConversionFactor) 
-								* height);
-						sinusoidalProjection.getPixelWriter().setArgb(x, y, 
-								mercatorProjection.getPixelReader().getArgb(oldX, oldY));
-					}
-					return null;
-				});
-			}
-			threadPool.invokeAll(taskList);
-			threadPool.shutdown();
-		}
-		
-		return sinusoidalProjection;
+		return Reprojector.reproject(mercatorProjection, MercatorGlobeViewer.MAP_PROJECTION, 
+				MAP_PROJECTION, newWidth, newHeight, parallelism);
 	}
 	
 
@@ -261,13 +227,17 @@ public class SinusoidalGlobeViewer extends GlobeViewer {
 	 * @return the texture pixel X and Y coordinates (range: (0,1] for each) stored in a 2D point
 	 */
 	private static final Point2D _convertLonLatToRelativePixelXY(Point2D lonLat) {
-		final double oneOverPi = 1.0 / Math.PI;
-		final double oneOverTwoPi = 0.5 / Math.PI;
-		double y = 0.5 - (oneOverPi * lonLat.getY());
-		double width = Math.cos(lonLat.getY());
-		double offset = 0.5 * (1.0 - width);
-		double x = offset + width * clamp(lonLat.getX() * oneOverTwoPi);
-		return new Point2D(x,y);
+		final double[] relXY = new double[2];
+		MAP_PROJECTION.convertLonLatToRelativePixelXY(lonLat.getX(), lonLat.getY(), relXY);
+		return new Point2D(relXY[0], relXY[1]);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public MapProjection getMapProjection() {
+		return MAP_PROJECTION;
 	}
 
 	/**
@@ -277,17 +247,8 @@ public class SinusoidalGlobeViewer extends GlobeViewer {
 	 * @return longitude and latitude coordinates (in radians) stored in a 2D point
 	 */
 	private static final Point2D _convertRelativePixelXYToLonLat(Point2D relXY) {
-		final double twoPi = 2.0 * Math.PI;
-		double lat = (0.5 - clamp(relXY.getY())) * Math.PI;
-		double width = Math.cos(lat);
-		double offset = 0.5 * (1.0 - width);
-		double limit = 1.0 - offset;
-		double x = clamp(relXY.getX());
-		double lon = 0;
-		if(x > offset && x < limit){
-			lon = twoPi * (x - offset) / width;
-		}
-		if(lon > Math.PI) lon -= twoPi;
-		return new Point2D(lon,lat);
+		final double[] lonLat = new double[2];
+		MAP_PROJECTION.convertRelativePixelXYToLonLat(relXY.getX(), relXY.getY(), lonLat);
+		return new Point2D(lonLat[0], lonLat[1]);
 	}
 }
@@ -0,0 +1,366 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 .
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cchall.javafx.globeviewer;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import javafx.beans.property.ReadOnlyLongProperty;
+import javafx.beans.property.ReadOnlyLongWrapper;
+import javafx.scene.image.Image;
+
+/**
+ * Limits the memory used by the textures of all of the GlobeViewers that
+ * share it. GlobeViewers are not limited unless they are given a budget with
+ * {@link GlobeViewer#setTextureBudget(cchall.javafx.globeviewer.TextureBudget)}
+ * (e.g. {@link #getDefault()}). The budget counts the textures that the
+ * materials of the GlobeViewers display (which JavaFX also holds in video
+ * memory): the source image of a texture displayed at full size, or the
+ * reduced copy of a texture displayed at a smaller mipmap level (see
+ * {@link GlobeViewer#textureLevelOfDetailProperty()}). GlobeViewers that
+ * display the same image (e.g. from a {@link TextureRegistry}) share its
+ * mipmap levels, so each displayed image is counted once. While the total is
+ * more than the maximum size, the budget frees memory in this order:<ol>
+ * <li>the textures of GlobeViewers that are not showing are removed from
+ * their material, those that were hidden the longest first</li>
+ * <li>the textures of the GlobeViewers that are showing are reduced to
+ * smaller mipmap levels (even if they are displayed at full size), one
+ * level of one GlobeViewer at a time, in turn</li></ol>
+ * The textures are restored as soon as a GlobeViewer is shown again, and the
+ * reductions are undone once there is room for them. The texture properties
+ * of the GlobeViewers always hold the images that were set, so the source
+ * images themselves are not counted and are only freed once the application
+ * no longer uses them (reducing a texture that is displayed at full size
+ * frees its video memory, but adds a reduced copy to the heap).<p>
+ * The budget is re-evaluated whenever a displayed texture changes, a
+ * GlobeViewer is shown or hidden (its window or SubScene) or the maximum size
+ * changes. It must only be used on the JavaFX application thread.
+ * @author CCHall <a href="mailto:explosivegnome@yahoo.com">
+ * explosivegnome@yahoo.com</a>
+ */
+public final class TextureBudget {
+
+	private static TextureBudget defaultBudget = null;
+
+	/**
+	 * Gets a budget for the whole application, whose maximum size is a
+	 * quarter of the maximum heap size of the JVM.
+	 * @return The default texture budget
+	 */
+	public static synchronized TextureBudget getDefault(){
+		if(defaultBudget == null){
+			defaultBudget = new TextureBudget(Runtime.getRuntime().maxMemory() / 4);
+		}
+		return defaultBudget;
+	}
+
+	/** a registered GlobeViewer (held weakly, so that it can be garbage collected) */
+	private static final class Entry<T> {
+		final WeakReference<T> owner;
+		final Function<T, TextureLevels[]> levels;
+		final Predicate<T> showing;
+		/** the value of {@link #clock} when the owner was last seen showing */
+		long lastShown;
+		/** the number of levels by which the textures are reduced */
+		int reduction = 0;
+		/** the texture layers, held during an update so that the owner is not garbage collected meanwhile */
+		TextureLevels[] current = null;
+
+		Entry(T owner, Function<T, TextureLevels[]> levels, Predicate<T> showing, long now){
+			this.owner = new WeakReference<>(owner);
+			this.levels = levels;
+			this.showing = showing;
+			this.lastShown = now;
+		}
+
+		/** @return the texture layers, or null if the owner was garbage collected */
+		TextureLevels[] getLevels(){
+			final T o = owner.get();
+			return o == null ? null : levels.apply(o);
+		}
+
+		boolean isShowing(){
+			final T o = owner.get();
+			return o != null && showing.test(o);
+		}
+	}
+
+	private final List<Entry<?>> entries = new ArrayList<>();
+	private final ReadOnlyLongWrapper usedBytes = new ReadOnlyLongWrapper(this, "usedBytes", 0);
+	private long maxBytes;
+	/** incremented by every update, to order the GlobeViewers by when they were last shown */
+	private long clock = 0;
+	private boolean updating = false;
+
+	/**
+	 * Creates a new texture budget, for GlobeViewers that should not share
+	 * the default budget (see {@link GlobeViewer#setTextureBudget(cchall.javafx.globeviewer.TextureBudget)}).
+	 * @param maxBytes The maximum size of the textures, in bytes
+	 */
+	public TextureBudget(long maxBytes){
+		this.maxBytes = checkSize(maxBytes);
+	}
+
+	private static long checkSize(long maxBytes){
+		if(maxBytes <= 0){
+			throw new IllegalArgumentException("Invalid texture budget: " + maxBytes);
+		}
+		return maxBytes;
+	}
+
+	/**
+	 * @return The maximum size of the textures, in bytes
+	 */
+	public long getMaxBytes(){
+		return maxBytes;
+	}
+
+	/**
+	 * Changes the maximum size of the textures, reducing or restoring
+	 * textures as needed.
+	 * @param maxBytes The maximum size of the textures, in bytes
+	 */
+	public void setMaxBytes(long maxBytes){
+		this.maxBytes = checkSize(maxBytes);
+		update();
+	}
+
+	/**
+	 * Gets the memory used by the displayed textures of all registered
+	 * GlobeViewers (each image counted once, at 4 bytes per pixel), e.g. for
+	 * monitoring. This may exceed the maximum size for a short time while
+	 * smaller mipmap levels are being computed, or if even the smallest levels
+	 * of the showing GlobeViewers do not fit.
+	 * @return A read-only property, in bytes
+	 */
+	public ReadOnlyLongProperty usedBytesProperty(){
+		return usedBytes.getReadOnlyProperty();
+	}
+
+	/**
+	 * @return The memory used by the displayed textures of all registered
+	 * GlobeViewers, in bytes
+	 */
+	public long getUsedBytes(){
+		return usedBytes.get();
+	}
+
+	/**
+	 * @return The number of GlobeViewers using this budget
+	 */
+	public int getViewerCount(){
+		expunge();
+		return entries.size();
+	}
+
+	/**
+	 * Adds the textures of a GlobeViewer to this budget. The functions must
+	 * not hold a reference to the owner, so that it can be garbage collected
+	 * while it is registered.
+	 * @param owner The GlobeViewer
+	 * @param levels Gets the texture layers of the owner
+	 * @param showing Tests whether the owner is showing
+	 */
+	<T> void register(T owner, Function<T, TextureLevels[]> levels, Predicate<T> showing){
+		entries.add(new Entry<>(owner, levels, showing, clock));
+		update();
+	}
+
+	/**
+	 * Removes the textures of a GlobeViewer from this budget, restoring them
+	 * if they were reduced or removed
+	 * @param owner The GlobeViewer
+	 */
+	void unregister(Object owner){
+		for(Iterator<Entry<?>> it = entries.iterator(); it.hasNext();){
+			final Entry<?> e = it.next();
+			if(e.owner.get() == owner){
+				it.remove();
+				final TextureLevels[] levels = e.getLevels();
+				if(levels == null){
+					continue;
+				}
+				for(TextureLevels l : levels){
+					l.setMinimumLevel(0);
+					l.setReleased(false);
+				}
+			}
+		}
+		update();
+	}
+
+	/**
+	 * Reduces, removes or restores textures to fit the budget (call on the
+	 * JavaFX application thread whenever a texture or the visibility of a
+	 * GlobeViewer changes)
+	 */
+	void update(){
+		if(updating){
+			return; // called back by the textures that are being changed
+		}
+		updating = true;
+		try {
+			for(Iterator<Entry<?>> it = entries.iterator(); it.hasNext();){
+				final Entry<?> e = it.next();
+				e.current = e.getLevels();
+				if(e.current == null){
+					it.remove();
+				}
+			}
+			clock++;
+			final List<Entry<?>> showing = new ArrayList<>();
+			final List<Entry<?>> hidden = new ArrayList<>();
+			for(Entry<?> e : entries){
+				if(e.isShowing()){
+					e.lastShown = clock;
+					showing.add(e);
+					// restored on demand
+					for(TextureLevels l : e.current){
+						l.setReleased(false);
+					}
+				} else {
+					hidden.add(e);
+				}
+			}
+			// hidden the longest first
+			hidden.sort((Entry<?> a, Entry<?> b) -> Long.compare(a.lastShown, b.lastShown));
+			long total = targetBytes(null, 0);
+			if(total > maxBytes){
+				for(Entry<?> e : hidden){
+					if(total <= maxBytes){
+						break;
+					}
+					if(targetBytes(e, -1) >= total){
+						continue; // nothing to free (shared with a showing viewer)
+					}
+					for(TextureLevels l : e.current){
+						l.setReleased(true);
+					}
+					total = targetBytes(null, 0);
+				}
+				// then one level at a time from each of the showing viewers
+				boolean reduced = true;
+				while(total > maxBytes && reduced){
+					reduced = false;
+					for(Entry<?> e : showing){
+						if(total <= maxBytes){
+							break;
+						}
+						if(e.reduction < maxLevel(e)){
+							e.reduction++;
+							for(TextureLevels l : e.current){
+								l.setMinimumLevel(e.reduction);
+							}
+							total = targetBytes(null, 0);
+							reduced = true;
+						}
+					}
+				}
+			} else {
+				// undo reductions for as long as they fit, one level at a time
+				boolean restored = true;
+				while(restored){
+					restored = false;
+					for(Entry<?> e : showing){
+						if(e.reduction == 0){
+							continue;
+						}
+						final long after = targetBytes(e, e.reduction - 1);
+						if(after <= maxBytes){
+							e.reduction--;
+							for(TextureLevels l : e.current){
+								l.setMinimumLevel(e.reduction);
+							}
+							restored = true;
+						}
+					}
+				}
+			}
+			final Set<Image> counted = Collections.newSetFromMap(new IdentityHashMap<>());
+			long used = 0;
+			for(Entry<?> e : entries){
+				for(TextureLevels l : e.current){
+					if(l.getDisplayedImage() != null && counted.add(l.getDisplayedImage())){
+						used += l.getDisplayedBytes();
+					}
+				}
+			}
+			usedBytes.set(used);
+		} finally {
+			for(Entry<?> e : entries){
+				e.current = null;
+			}
+			updating = false;
+		}
+	}
+
+	/** 
+	 * the memory that the displayed textures will need: each level of a 
+	 * source image that will be displayed (0 being the source image itself), 
+	 * counted once however many viewers use it, optionally with another 
+	 * reduction for one of the viewers (or with its textures released if it 
+	 * is negative)
+	 */
+	private long targetBytes(Entry<?> changed, int reduction){
+		final Map<Image, Set<Integer>> counted = new IdentityHashMap<>();
+		long sum = 0;
+		for(Entry<?> e : entries){
+			for(TextureLevels l : e.current){
+				final Image source = l.getSource();
+				if(source == null){
+					continue;
+				}
+				final Set<Integer> levels = counted.computeIfAbsent(source, (Image k) -> new HashSet<>());
+				final int level = e != changed ? l.getTargetLevel() 
+						: reduction < 0 ? -1 : l.getTargetLevel(reduction);
+				if(level >= 0 && levels.add(level)){
+					sum += l.getBytes(level);
+				}
+			}
+		}
+		return sum;
+	}
+	
+	/** the coarsest level of the largest texture of a viewer */
+	private static int maxLevel(Entry<?> e){
+		int max = 0;
+		for(TextureLevels l : e.current){
+			max = Math.max(max, l.getLevelCount() - 1);
+		}
+		return max;
+	}
+
+	/** removes the viewers that were garbage collected */
+	private void expunge(){
+		entries.removeIf((Entry<?> e) -> e.owner.get() == null);
+	}
+}
@@ -0,0 +1,537 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 .
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cchall.javafx.globeviewer;
+
+import cchall.javafx.globeviewer.raster.CompressedRaster;
+import cchall.javafx.globeviewer.raster.MapProjection;
+import cchall.javafx.globeviewer.raster.RasterReprojector;
+import cchall.javafx.globeviewer.raster.TexturePyramid;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.image.Image;
+
+/**
+ * Shows a texture layer of a GlobeViewer at the mipmap level (see 
+ * {@link TexturePyramid}) that matches the size of the globe on screen: the 
+ * displayed image follows the source image, reduced to the smallest level 
+ * which is at least the required width. Finer levels are swapped in as soon 
+ * as they are needed, but coarser levels only once the globe has shrunk 
+ * enough that the level after them would still be wide enough 
+ * ({@link #HYSTERESIS}), so that resizing back and forth around a level 
+ * boundary does not recompute the texture every time. Levels are computed on 
+ * the thread pool of the {@link RasterReprojector} (which also reads the 
+ * pixels of the source image) and the displayed image is only replaced on the 
+ * JavaFX application thread; a level that is superseded while it is being 
+ * computed is discarded. A source image that is still loading in the 
+ * background is shown as it is until it has loaded. Levels are shared by all TextureLevels 
+ * of the same source image (e.g. from a {@link TextureRegistry}) for as long 
+ * as any of them displays the level. A {@link TextureBudget} can force 
+ * coarser levels ({@link #setMinimumLevel(int)}) or remove the texture from 
+ * the material altogether ({@link #setReleased(boolean)}). A texture layer 
+ * of a hidden GlobeViewer can also be parked ({@link #setParked(boolean)}): 
+ * it is removed from the material, and the reduced level that was displayed 
+ * (if any) is kept compressed until it is displayed again. The source 
+ * property is never changed, so parking a texture that is displayed at full 
+ * size only removes it from the material (the source image stays in 
+ * memory).
+ * @author CCHall <a href="mailto:explosivegnome@yahoo.com">
+ * explosivegnome@yahoo.com</a>
+ */
+final class TextureLevels {
+	
+	/** How much wider than required a coarser level must be before switching to it */
+	static final double HYSTERESIS = 1.25;
+	
+	private final ObjectProperty<Image> source;
+	private final ObjectProperty<Image> displayed;
+	private final Supplier<MapProjection> projection;
+	private final Executor fxThread;
+	private final Executor background;
+	/** 
+	 * the level that is displayed (-1 if none), the level being computed (-1 
+	 * if none), the required width and the coarsest level allowed by the budget
+	 */
+	private int level = 0, pendingLevel = -1, requiredWidth = Integer.MAX_VALUE, minimumLevel = 0;
+	private boolean released = false;
+	/** called whenever the displayed image changes */
+	private Runnable listener = null;
+	/** incremented whenever a computation is started or the source changes, to discard stale results */
+	private long generation = 0;
+	/** the source image while it is loading in the background (null if none) */
+	private Image loading = null;
+	/** reduces the source image once it has loaded */
+	private final InvalidationListener loaded = (Observable observable) -> {
+		if(loading != null && loading.getProgress() >= 1){
+			watchLoading(null);
+			update();
+		}
+	};
+	/** the displayed level while it is parked (null if it is not) */
+	private CompressedRaster parked = null;
+	/** the level that is parked */
+	private int parkedLevel = -1;
+	/** whether the texture should be parked */
+	private boolean parking = false;
+	/** incremented whenever parking is started or stopped or the source changes, to discard stale results */
+	private long parkGeneration = 0;
+	
+	/** the computed levels of a source image, held until no TextureLevels displays them */
+	private static final class SharedLevels {
+		final MapProjection projection;
+		final Map<Integer, WeakReference<Image>> levels = new HashMap<>();
+		SharedLevels(MapProjection projection){
+			this.projection = projection;
+		}
+	}
+	/** computed levels by source image (compared by identity) */
+	private static final Map<Image, SharedLevels> SHARED = new WeakHashMap<>();
+	
+	/** @return a level of a source image computed before, or null */
+	private static synchronized Image getShared(Image source, MapProjection projection, int level){
+		final SharedLevels shared = SHARED.get(source);
+		if(shared == null || shared.projection != projection){
+			return null;
+		}
+		final WeakReference<Image> ref = shared.levels.get(level);
+		return ref == null ? null : ref.get();
+	}
+	
+	/** @return the level of the source image computed first (which may be the given one) */
+	private static synchronized Image share(Image source, MapProjection projection, int level, Image reduced){
+		SharedLevels shared = SHARED.get(source);
+		if(shared == null || shared.projection != projection){
+			shared = new SharedLevels(projection);
+			SHARED.put(source, shared);
+		}
+		final WeakReference<Image> ref = shared.levels.get(level);
+		final Image existing = ref == null ? null : ref.get();
+		if(existing != null){
+			return existing;
+		}
+		shared.levels.put(level, new WeakReference<>(reduced));
+		return reduced;
+	}
+	
+	/**
+	 * @param source The texture layer set by the user
+	 * @param displayed The texture layer of the material
+	 * @param projection The map projection of the texture layers
+	 */
+	TextureLevels(ObjectProperty<Image> source, ObjectProperty<Image> displayed, 
+			Supplier<MapProjection> projection){
+		this(source, displayed, projection, Platform::runLater, null);
+	}
+	
+	/**
+	 * @param fxThread Runs tasks on the JavaFX application thread
+	 * @param background Computes the levels, or <code>null</code> for the 
+	 * thread pool of the {@link RasterReprojector}
+	 */
+	TextureLevels(ObjectProperty<Image> source, ObjectProperty<Image> displayed, 
+			Supplier<MapProjection> projection, Executor fxThread, Executor background){
+		this.source = source;
+		this.displayed = displayed;
+		this.projection = projection;
+		this.fxThread = fxThread;
+		this.background = background;
+		displayed.set(source.get());
+		watchLoading(source.get());
+		source.addListener((ObservableValue<? extends Image> observable, Image oldValue, Image newValue) -> {
+			generation++;
+			pendingLevel = -1;
+			watchLoading(newValue);
+			// anything parked (or being parked or restored) belongs to the old image
+			parked = null;
+			parkGeneration++;
+			if(parking){
+				level = -1;
+				show(null);
+				return;
+			}
+			if(released){
+				return;
+			}
+			// show the new image right away, then reduce it
+			level = 0;
+			show(newValue);
+			update();
+		});
+	}
+	
+	/** waits for the image to load, if it is loading in the background */
+	private void watchLoading(Image img){
+		if(loading != null){
+			loading.progressProperty().removeListener(loaded);
+		}
+		loading = img != null && img.getProgress() < 1 && img.isError() == false ? img : null;
+		if(loading != null){
+			loading.progressProperty().addListener(loaded);
+		}
+	}
+	
+	private void show(Image img){
+		displayed.set(img);
+		if(listener != null){
+			listener.run();
+		}
+	}
+	
+	/**
+	 * @param listener Called (on the JavaFX application thread) whenever the 
+	 * displayed image changes, or <code>null</code>
+	 */
+	void setListener(Runnable listener){
+		this.listener = listener;
+	}
+	
+	/**
+	 * Sets the coarsest level that may be displayed, whatever the required 
+	 * width (e.g. 2 to show at most a quarter of the width and height). This 
+	 * also applies to a texture that would be displayed at full size, which 
+	 * is then displayed as a reduced copy (the source image stays in the 
+	 * source property).
+	 * @param minimumLevel A level (0 for no limit)
+	 */
+	void setMinimumLevel(int minimumLevel){
+		this.minimumLevel = Math.max(0, minimumLevel);
+		update();
+	}
+	
+	/**
+	 * @return The coarsest level that may be displayed
+	 */
+	int getMinimumLevel(){
+		return minimumLevel;
+	}
+	
+	/**
+	 * Removes the texture from the material (<code>true</code>), or shows it 
+	 * again (<code>false</code>), at the level for the required width once it 
+	 * has been computed
+	 * @param released Whether the texture should be removed
+	 */
+	void setReleased(boolean released){
+		if(released == this.released){
+			return;
+		}
+		this.released = released;
+		generation++;
+		pendingLevel = -1;
+		level = -1;
+		if(released){
+			show(null);
+		} else {
+			update();
+		}
+	}
+	
+	/**
+	 * @return Whether the texture is removed from the material
+	 */
+	boolean isReleased(){
+		return released;
+	}
+	
+	/**
+	 * Parks the texture (<code>true</code>): it is removed from the material, 
+	 * and the reduced level that was displayed (if any) is compressed in the 
+	 * background first, so that it does not have to be computed again. A 
+	 * texture displayed at full size is only removed from the material, since 
+	 * the source image is still held by the source property. 
+	 * Un-parking it (<code>false</code>) decompresses that level in the 
+	 * background and displays it again (or the level for the required width, 
+	 * if that changed meanwhile). The source property is not changed.
+	 * @param parked Whether the texture should be parked
+	 */
+	void setParked(boolean parked){
+		if(parked == parking){
+			return;
+		}
+		parking = parked;
+		parkGeneration++;
+		if(parked){
+			park();
+		} else {
+			unpark();
+		}
+	}
+	
+	/**
+	 * @return Whether a reduced level is held in compressed form
+	 */
+	boolean isParked(){
+		return parked != null;
+	}
+	
+	/**
+	 * @return The size of the parked level, in bytes (0 if there is none)
+	 */
+	long getParkedBytes(){
+		return parked == null ? 0 : parked.getCompressedSize();
+	}
+	
+	private void park(){
+		// anything still being computed is no longer needed
+		generation++;
+		pendingLevel = -1;
+		final Image img = displayed.get();
+		if(parked != null || img == null || level <= 0){
+			// still parked (not restored yet), or nothing to compress (the 
+			// full size texture is the source image itself, which the source 
+			// property holds anyway)
+			level = -1;
+			show(null);
+			return;
+		}
+		final long job = parkGeneration;
+		final int reducedLevel = level;
+		CompletableFuture.supplyAsync(() -> {
+			try {
+				return CompressedRaster.compress(Reprojector.toRaster(img), getParallelism());
+			} catch (InterruptedException ex) {
+				throw new CompletionException(ex);
+			}
+		}, getExecutor()).whenComplete((CompressedRaster compressed, Throwable error) -> fxThread.execute(() -> {
+			if(job != parkGeneration){
+				return; // no longer parking, or the source changed
+			}
+			// if the compression failed, the level is simply computed again later
+			parked = compressed;
+			parkedLevel = reducedLevel;
+			level = -1;
+			show(null);
+		}));
+	}
+	
+	private void unpark(){
+		final CompressedRaster compressed = parked;
+		if(compressed == null){
+			// nothing parked, or still being compressed (which is now discarded)
+			update();
+			return;
+		}
+		final long job = parkGeneration;
+		final int reducedLevel = parkedLevel;
+		final Image img = source.get();
+		final MapProjection mapProjection = projection.get();
+		CompletableFuture.supplyAsync(() -> {
+			try {
+				return Reprojector.toImage(compressed.decompress(getParallelism()));
+			} catch (InterruptedException ex) {
+				throw new CompletionException(ex);
+			}
+		}, getExecutor()).whenComplete((Image restored, Throwable error) -> fxThread.execute(() -> {
+			if(job != parkGeneration){
+				return; // parked again (keeping the parked level), or the source changed
+			}
+			parked = null;
+			// kept for other viewers, unless one of them computed it meanwhile
+			final Image image = restored == null ? null : share(img, mapProjection, reducedLevel, restored);
+			if(image != null && released == false && selectLevel(img, minimumLevel) == reducedLevel){
+				generation++;
+				pendingLevel = -1;
+				level = reducedLevel;
+				show(image);
+			} else {
+				update();
+			}
+		}));
+	}
+	
+	private Executor getExecutor(){
+		return background == null ? RasterReprojector.getThreadPool() : background;
+	}
+	
+	/** @return the parallelism hint for the thread pool of the RasterReprojector */
+	private static int getParallelism(){
+		return RasterReprojector.getThreadPool().getParallelism();
+	}
+	
+	/**
+	 * @param level A level of the source image
+	 * @return The memory needed by that level (in bytes, at 4 bytes per 
+	 * pixel), or 0 if there is no source image
+	 */
+	long getBytes(int level){
+		final Image img = source.get();
+		if(img == null || img.getWidth() < 1 || img.getHeight() < 1){
+			return 0;
+		}
+		final int l = Math.min(level, TexturePyramid.levelCount((int)img.getWidth(), (int)img.getHeight()) - 1);
+		return 4L * Math.max(1, (int)img.getWidth() >> l) * Math.max(1, (int)img.getHeight() >> l);
+	}
+	
+	/**
+	 * @return The source image
+	 */
+	Image getSource(){
+		return source.get();
+	}
+	
+	/**
+	 * @return The level that will be displayed once the level being computed 
+	 * (if any) is shown, or -1 if the texture is released or parked or 
+	 * there is no source image
+	 */
+	int getTargetLevel(){
+		final Image img = source.get();
+		if(released || parking || img == null || img.getWidth() < 1 || img.getHeight() < 1){
+			return -1;
+		}
+		return pendingLevel >= 0 ? pendingLevel : Math.max(0, level);
+	}
+	
+	/**
+	 * @param minimumLevel A coarsest level
+	 * @return The level that would be displayed with that coarsest level 
+	 * (without changing anything), or -1 if the texture is released or parked 
+	 * or there is no source image
+	 */
+	int getTargetLevel(int minimumLevel){
+		final Image img = source.get();
+		if(released || parking || img == null || img.getWidth() < 1 || img.getHeight() < 1){
+			return -1;
+		}
+		return selectLevel(img, minimumLevel);
+	}
+	
+	/**
+	 * @return The displayed image
+	 */
+	Image getDisplayedImage(){
+		return displayed.get();
+	}
+	
+	/**
+	 * @return The memory needed by the displayed image (in bytes, at 4 bytes 
+	 * per pixel)
+	 */
+	long getDisplayedBytes(){
+		final Image img = displayed.get();
+		return img == null ? 0 : 4L * (long)img.getWidth() * (long)img.getHeight();
+	}
+	
+	/**
+	 * @return The number of levels of the source image (0 if there is none)
+	 */
+	int getLevelCount(){
+		final Image img = source.get();
+		if(img == null || img.getWidth() < 1 || img.getHeight() < 1){
+			return 0;
+		}
+		return TexturePyramid.levelCount((int)img.getWidth(), (int)img.getHeight());
+	}
+	
+	/**
+	 * Sets the texture width needed by the size of the globe on screen (call 
+	 * on the JavaFX application thread)
+	 * @param width The required width, or <code>Integer.MAX_VALUE</code> to 
+	 * always show the full size texture
+	 */
+	void setRequiredWidth(int width){
+		requiredWidth = Math.max(1, width);
+		update();
+	}
+	
+	/**
+	 * @return The mipmap level that is displayed (0 is the full size texture, 
+	 * -1 if none is)
+	 */
+	int getLevel(){
+		return level;
+	}
+	
+	/** the level to display for the required width and the given coarsest level */
+	private int selectLevel(Image img, int minimumLevel){
+		final int width = (int)img.getWidth();
+		final int height = (int)img.getHeight();
+		int target = TexturePyramid.selectLevel(width, height, requiredWidth);
+		if(target > level){
+			// coarser, but only with some room to spare
+			target = Math.max(level, TexturePyramid.selectLevel(width, height, 
+					(int)Math.min(Integer.MAX_VALUE, Math.ceil(requiredWidth * HYSTERESIS))));
+		}
+		return Math.max(target, Math.min(minimumLevel, TexturePyramid.levelCount(width, height) - 1));
+	}
+	
+	private void update(){
+		final Image img = source.get();
+		if(released || parking || img == null || img.getProgress() < 1 || img.getWidth() < 1 || img.getHeight() < 1){
+			return; // nothing to reduce (yet)
+		}
+		final int target = selectLevel(img, minimumLevel);
+		if(target == (pendingLevel >= 0 ? pendingLevel : level)){
+			return;
+		}
+		// anything still being computed is no longer needed
+		final long job = ++generation;
+		pendingLevel = -1;
+		if(target == level){
+			return;
+		} else if(target == 0){
+			level = 0;
+			show(img);
+			return;
+		}
+		final MapProjection mapProjection = projection.get();
+		final Image shared = getShared(img, mapProjection, target);
+		if(shared != null){
+			level = target;
+			show(shared);
+			return;
+		}
+		pendingLevel = target;
+		final int targetLevel = target;
+		CompletableFuture.supplyAsync(() -> {
+			try {
+				return Reprojector.toImage(TexturePyramid.buildLevel(Reprojector.toRaster(img), mapProjection, 
+						targetLevel, getParallelism()));
+			} catch (InterruptedException ex) {
+				throw new CompletionException(ex);
+			}
+		}, getExecutor()).whenComplete((Image reduced, Throwable error) -> fxThread.execute(() -> {
+			// kept for other viewers even if superseded here
+			final Image image = reduced == null ? null : share(img, mapProjection, targetLevel, reduced);
+			if(job != generation){
+				return; // superseded
+			}
+			pendingLevel = -1;
+			if(image != null){
+				level = targetLevel;
+				show(image);
+			}
+		}));
+	}
+}
@@ -0,0 +1,301 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 .
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cchall.javafx.globeviewer;
+
+import cchall.javafx.globeviewer.raster.Raster;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+/**
+ * Shares texture images between GlobeViewers, so that any number of
+ * GlobeViewers showing the same planet only need the memory of one set of
+ * textures (including the smaller mipmap levels that each GlobeViewer
+ * displays, see {@link GlobeViewer#textureLevelOfDetailProperty()}). Images
+ * are identified by their URL and by their content (a SHA-256 hash of their
+ * size and pixels), so the same texture is only held once even if it is
+ * loaded from different URLs or created by the application:<br><pre>
+TextureRegistry textures = TextureRegistry.getDefault();
+globeView1.diffuseTextureProperty().set(textures.acquire(url)); // loaded
+globeView2.diffuseTextureProperty().set(textures.acquire(url)); // the same Image instance
+...
+textures.release(globeView1.diffuseTextureProperty().get()); // still held for globeView2
+</pre>
+ * Each call to <code>acquire(...)</code> must be matched by a call to
+ * {@link #release(javafx.scene.image.Image)} once the image is no longer
+ * used; the registry forgets an image once it has been released as often as
+ * it was acquired. Shared images must not be modified (even if they are
+ * WritableImages), since every user of the registry would see the change.<p>
+ * The registry may be used from any thread. Images are loaded and hashed on
+ * the calling thread, without blocking the other users of the registry. The
+ * hash of an image that is not a WritableImage is only computed once; a
+ * WritableImage is hashed again each time it is acquired while the registry
+ * does not hold it, since it may have been modified in the meantime.
+ * @author CCHall <a href="mailto:explosivegnome@yahoo.com">
+ * explosivegnome@yahoo.com</a>
+ */
+public final class TextureRegistry {
+
+	private static TextureRegistry defaultRegistry = null;
+	/** 1x1 images of a single color, by color */
+	private static final Map<Color, Image> SOLID_COLORS = new HashMap<>();
+	/** the hashes of the images that cannot be modified, by image (images do not override equals) */
+	private static final Map<Image, String> HASHES = new WeakHashMap<>();
+
+	/**
+	 * @return The registry shared by the whole application
+	 */
+	public static synchronized TextureRegistry getDefault(){
+		if(defaultRegistry == null){
+			defaultRegistry = new TextureRegistry();
+		}
+		return defaultRegistry;
+	}
+
+	/**
+	 * Gets a shared 1x1 image of a single color (e.g. the placeholder
+	 * textures of a GlobeViewer without textures). The same color always
+	 * returns the same instance, which must not be modified. These images
+	 * are not reference counted.
+	 * @param color A color
+	 * @return A 1x1 image of that color
+	 */
+	public static Image getSolidColor(Color color){
+		synchronized(SOLID_COLORS){
+			Image img = SOLID_COLORS.get(color);
+			if(img == null){
+				final WritableImage solid = new WritableImage(1, 1);
+				solid.getPixelWriter().setColor(0, 0, color);
+				img = solid;
+				SOLID_COLORS.put(color, img);
+			}
+			return img;
+		}
+	}
+
+	/** a shared image */
+	private static final class Entry {
+		final Image image;
+		final String hash;
+		final List<String> urls = new ArrayList<>(1);
+		int references = 0;
+
+		Entry(Image image, String hash){
+			this.image = image;
+			this.hash = hash;
+		}
+	}
+
+	private final Map<String, Entry> byUrl = new HashMap<>();
+	private final Map<String, Entry> byHash = new HashMap<>();
+	private final Map<Image, Entry> byImage = new IdentityHashMap<>();
+
+	/**
+	 * Creates an empty registry (use {@link #getDefault()} to share images
+	 * with the rest of the application).
+	 */
+	public TextureRegistry(){
+		// empty
+	}
+
+	/**
+	 * Gets the image at a URL, loading it only if it is not already held by
+	 * this registry, and adds a reference to it.
+	 * @param url The URL of the image (as for <code>new Image(url)</code>)
+	 * @return The shared image
+	 * @throws IllegalArgumentException Thrown if the image could not be
+	 * loaded
+	 */
+	public Image acquire(String url){
+		synchronized(this){
+			final Entry e = byUrl.get(url);
+			if(e != null){
+				e.references++;
+				return e.image;
+			}
+		}
+		final Image img = new Image(url);
+		if(img.isError()){
+			throw new IllegalArgumentException("Failed to load image " + url, img.getException());
+		}
+		final String hash = hash(img);
+		synchronized(this){
+			// another thread may have loaded the same URL meanwhile
+			Entry e = byUrl.get(url);
+			if(e == null){
+				e = register(img, hash);
+				e.urls.add(url);
+				byUrl.put(url, e);
+			}
+			e.references++;
+			return e.image;
+		}
+	}
+
+	/**
+	 * Gets the shared image with the same size and pixels as the given
+	 * image, which becomes the shared image if there is none, and adds a
+	 * reference to it.
+	 * @param image A fully loaded image
+	 * @return The shared image (which is <code>image</code> itself if there
+	 * was no image with the same pixels)
+	 * @throws IllegalArgumentException Thrown if the image is still loading
+	 * in the background or failed to load
+	 */
+	public Image acquire(Image image){
+		if(image.isError() || image.getProgress() < 1){
+			throw new IllegalArgumentException("Image is not loaded: " + image);
+		}
+		synchronized(this){
+			final Entry e = byImage.get(image);
+			if(e != null){
+				e.references++;
+				return e.image;
+			}
+		}
+		final String hash = hash(image);
+		synchronized(this){
+			final Entry e = register(image, hash);
+			e.references++;
+			return e.image;
+		}
+	}
+
+	/** @return the entry of the image, or of an image with the same content (call while synchronized) */
+	private Entry register(Image image, String hash){
+		Entry e = byImage.get(image);
+		if(e != null){
+			return e;
+		}
+		e = byHash.get(hash);
+		if(e == null){
+			e = new Entry(image, hash);
+			byHash.put(hash, e);
+			byImage.put(image, e);
+		}
+		return e;
+	}
+
+	/**
+	 * Removes a reference to a shared image. The registry forgets the image
+	 * once it has no references left.
+	 * @param image An image returned by <code>acquire(...)</code>
+	 * @throws IllegalArgumentException Thrown if the image is not held by
+	 * this registry
+	 */
+	public synchronized void release(Image image){
+		final Entry e = byImage.get(image);
+		if(e == null){
+			throw new IllegalArgumentException("Image is not held by this registry: " + image);
+		}
+		e.references--;
+		if(e.references == 0){
+			byImage.remove(e.image);
+			byHash.remove(e.hash);
+			for(String url : e.urls){
+				byUrl.remove(url);
+			}
+		}
+	}
+
+	/**
+	 * @param image An image
+	 * @return The number of references to the image (0 if it is not held by
+	 * this registry)
+	 */
+	public synchronized int getReferenceCount(Image image){
+		final Entry e = byImage.get(image);
+		return e == null ? 0 : e.references;
+	}
+
+	/**
+	 * @return The number of distinct images held by this registry
+	 */
+	public synchronized int size(){
+		return byImage.size();
+	}
+
+	/**
+	 * @return the hash of the size and pixels of an image, computed once per
+	 * image unless it is a WritableImage (whose pixels may change)
+	 */
+	static String hash(Image image){
+		if(image instanceof WritableImage){
+			return hash(Reprojector.toRaster(image));
+		}
+		synchronized(HASHES){
+			final String hash = HASHES.get(image);
+			if(hash != null){
+				return hash;
+			}
+		}
+		// computed without holding the lock (two threads may both compute it, with the same result)
+		final String hash = hash(Reprojector.toRaster(image));
+		synchronized(HASHES){
+			HASHES.putIfAbsent(image, hash);
+			return HASHES.get(image);
+		}
+	}
+
+	/** hexadecimal SHA-256 hash of the size and pixels of a raster */
+	static String hash(Raster raster){
+		final MessageDigest sha;
+		try {
+			sha = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			// every Java platform must support SHA-256
+			throw new IllegalStateException(ex);
+		}
+		final ByteBuffer chunk = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+		chunk.putInt(raster.getWidth()).putInt(raster.getHeight()).flip();
+		sha.update(chunk);
+		chunk.clear();
+		final IntBuffer ints = chunk.asIntBuffer();
+		final int[] pixels = raster.getPixels();
+		for(int i = 0; i < pixels.length; i += ints.capacity()){
+			final int n = Math.min(ints.capacity(), pixels.length - i);
+			ints.clear();
+			ints.put(pixels, i, n);
+			chunk.clear();
+			chunk.limit(n * 4);
+			sha.update(chunk);
+		}
+		final StringBuilder sb = new StringBuilder(64);
+		for(byte b : sha.digest()){
+			sb.append(String.format("%02x", b & 0xFF));
+		}
+		return sb.toString();
+	}
+}
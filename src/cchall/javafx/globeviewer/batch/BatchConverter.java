@@ -0,0 +1,541 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 .
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cchall.javafx.globeviewer.batch;
+
+import cchall.javafx.globeviewer.raster.BufferedImageRasters;
+import cchall.javafx.globeviewer.raster.MapProjection;
+import cchall.javafx.globeviewer.raster.MapProjections;
+import cchall.javafx.globeviewer.raster.Raster;
+import cchall.javafx.globeviewer.raster.RasterReprojector;
+import cchall.javafx.globeviewer.raster.RasterReprojector.Filter;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Command-line tool which converts every texture image in a directory (and its
+ * sub-directories) from one map projection into one or more others, e.g. to
+ * prepare the textures of a whole planet catalog for the GlobeViewer classes.
+ * It uses the {@link RasterReprojector} and <code>javax.imageio</code>, so it
+ * does not start the JavaFX toolkit and runs on headless machines.<p>
+ * Usage:<br><pre>
+java -cp GlobeViewer.jar cchall.javafx.globeviewer.batch.BatchConverter [options] input-dir output-dir
+
+Options:
+  -source name       map projection of the input images (default: mercator)
+  -targets a,b,...   map projections to convert to (default: cubic,sinusoidal,dymaxion)
+  -filter name       nearest, bilinear or bicubic (default: nearest)
+  -width pixels      width of the output images (default: same equator length as the input)
+  -jobs n            number of images converted at the same time (default: number of CPUs)
+  -memory MB         memory budget for the images being converted (default: half of the heap)
+  -approximate       use approximate trigonometry (faster, within a millionth of a texel)
+</pre>
+ * Each output image is written to <code>output-dir/projection-name/</code>,
+ * at the same relative path and in the same format as the input image (or
+ * PNG if there is no image writer for that format). The four texture layers of
+ * a globe are recognized by their file names (e.g.
+ * <code>mars_diffuse.png</code>, <code>mars_ambient.png</code>,
+ * <code>mars_specular.png</code> and <code>mars_normal.png</code>) and the
+ * layers of the same size are converted together in a single pass (see
+ * <code>RasterReprojector.reprojectLayers(...)</code>).<p>
+ * Several images are converted at the same time, so that reading and writing
+ * image files (which is single-threaded) overlaps with the conversions (which
+ * use the shared thread pool of the {@link RasterReprojector}). Before
+ * reading its images, each job reserves the memory it needs from the memory
+ * budget and waits until enough memory is free, so that large images do not
+ * exceed the heap. When all images are converted, the time and throughput of
+ * each job and the overall throughput are printed.
+ * @author CCHall <a href="mailto:explosivegnome@yahoo.com">
+ * explosivegnome@yahoo.com</a>
+ */
+public final class BatchConverter {
+
+	/**
+	 * The map projections that textures can be converted from and to
+	 */
+	enum Projection {
+		MERCATOR(MapProjections.MERCATOR, 1.0),
+		SINUSOIDAL(MapProjections.SINUSOIDAL, 1.0),
+		CUBIC(MapProjections.CUBIC, 1.0),
+		DYMAXION(MapProjections.DYMAXION, 10.0 / 11.0);
+
+		final MapProjection mapProjection;
+		/** Fraction of the image width spanned by the equator */
+		final double equatorWidth;
+
+		private Projection(MapProjection mapProjection, double equatorWidth){
+			this.mapProjection = mapProjection;
+			this.equatorWidth = equatorWidth;
+		}
+
+		/** Name used on the command line and for the output folders */
+		String getName(){
+			return name().toLowerCase(Locale.ROOT);
+		}
+
+		static Projection parse(String name){
+			for(Projection p : values()){
+				if(p.getName().equals(name.trim().toLowerCase(Locale.ROOT))){
+					return p;
+				}
+			}
+			throw new IllegalArgumentException("Unknown map projection: " + name);
+		}
+	}
+
+	/**
+	 * The texture layers of a globe, recognized by the end of the file name
+	 * (e.g. <code>earth_normal.png</code>)
+	 */
+	enum MapType {
+		DIFFUSE, AMBIENT, SPECULAR, NORMAL;
+
+		final String suffix = "_" + name().toLowerCase(Locale.ROOT);
+
+		/**
+		 * @param baseName A file name without its extension
+		 * @return The map type of the file, or <code>null</code> if the name does
+		 * not end with any of the map type suffixes
+		 */
+		static MapType of(String baseName){
+			final String lowerCase = baseName.toLowerCase(Locale.ROOT);
+			for(MapType t : values()){
+				if(lowerCase.endsWith(t.suffix)){
+					return t;
+				}
+			}
+			return null;
+		}
+	}
+
+	private static final int BYTES_PER_PERMIT = 1024;
+
+	private final Path inputDir;
+	private final Path outputDir;
+	private final Projection source;
+	private final List<Projection> targets;
+	private final Filter filter;
+	private final int width;
+	private final int jobs;
+	private final long memoryBudget;
+	private final boolean approximate;
+
+	/* package private */
+	BatchConverter(Path inputDir, Path outputDir, Projection source, List<Projection> targets,
+			Filter filter, int width, int jobs, long memoryBudget, boolean approximate){
+		this.inputDir = inputDir;
+		this.outputDir = outputDir;
+		this.source = source;
+		this.targets = new ArrayList<>(targets);
+		this.filter = filter;
+		this.width = width;
+		this.jobs = jobs;
+		this.memoryBudget = memoryBudget;
+		this.approximate = approximate;
+	}
+
+	/**
+	 * Command-line entry point, see the class documentation for the arguments.
+	 * Exits with status 0 if all images were converted, 1 if any of them
+	 * failed and 2 if the arguments are invalid.
+	 * @param args command-line arguments
+	 * @throws InterruptedException Thrown if the main thread is interrupted
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		final BatchConverter converter;
+		try {
+			converter = parse(args);
+		} catch (IllegalArgumentException ex) {
+			System.err.println(ex.getMessage());
+			System.err.println(usage());
+			System.exit(2);
+			return;
+		}
+		// images are decoded and encoded in memory, not in temporary files
+		ImageIO.setUseCache(false);
+		try {
+			System.exit(converter.run(System.out) ? 0 : 1);
+		} catch (IOException ex) {
+			System.err.println(ex);
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @return the command-line help text
+	 */
+	static String usage(){
+		return String.join(System.lineSeparator(),
+				"Usage: java " + BatchConverter.class.getName() + " [options] input-dir output-dir",
+				"Options:",
+				"  -source name       map projection of the input images (default: mercator)",
+				"  -targets a,b,...   map projections to convert to (default: cubic,sinusoidal,dymaxion)",
+				"  -filter name       nearest, bilinear or bicubic (default: nearest)",
+				"  -width pixels      width of the output images (default: same equator length as the input)",
+				"  -jobs n            number of images converted at the same time (default: number of CPUs)",
+				"  -memory MB         memory budget for the images being converted (default: half of the heap)",
+				"  -approximate       use approximate trigonometry (faster, within a millionth of a texel)",
+				"Map projections: mercator, sinusoidal, cubic, dymaxion");
+	}
+
+	/**
+	 * Parses the command-line arguments
+	 * @param args command-line arguments
+	 * @return A converter configured by the arguments
+	 * @throws IllegalArgumentException Thrown if the arguments are invalid
+	 */
+	static BatchConverter parse(String[] args){
+		Projection source = Projection.MERCATOR;
+		List<Projection> targets = List.of(Projection.CUBIC, Projection.SINUSOIDAL, Projection.DYMAXION);
+		Filter filter = Filter.NEAREST;
+		int width = 0;
+		int jobs = Runtime.getRuntime().availableProcessors();
+		long memoryBudget = Runtime.getRuntime().maxMemory() / 2;
+		boolean approximate = false;
+		final List<String> dirs = new ArrayList<>(2);
+		for(int i = 0; i < args.length; i++){
+			final String arg = args[i];
+			if(!arg.startsWith("-")){
+				dirs.add(arg);
+				continue;
+			}
+			if(arg.equals("-approximate")){
+				approximate = true;
+				continue;
+			}
+			if(i + 1 >= args.length){
+				throw new IllegalArgumentException("Missing value for option " + arg);
+			}
+			final String value = args[++i];
+			switch(arg){
+				case "-source":
+					source = Projection.parse(value);
+					break;
+				case "-targets":
+					targets = Stream.of(value.split(",")).map(Projection::parse).distinct().collect(Collectors.toList());
+					break;
+				case "-filter":
+					try {
+						filter = Filter.valueOf(value.trim().toUpperCase(Locale.ROOT));
+					} catch (IllegalArgumentException ex) {
+						throw new IllegalArgumentException("Unknown filter: " + value);
+					}
+					break;
+				case "-width":
+					width = parsePositive(arg, value);
+					break;
+				case "-jobs":
+					jobs = parsePositive(arg, value);
+					break;
+				case "-memory":
+					memoryBudget = parsePositive(arg, value) * 1024L * 1024L;
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown option: " + arg);
+			}
+		}
+		if(dirs.size() != 2){
+			throw new IllegalArgumentException("Expected an input directory and an output directory");
+		}
+		return new BatchConverter(Paths.get(dirs.get(0)), Paths.get(dirs.get(1)), source, targets,
+				filter, width, jobs, memoryBudget, approximate);
+	}
+
+	private static int parsePositive(String option, String value){
+		try {
+			final int n = Integer.parseInt(value.trim());
+			if(n > 0){
+				return n;
+			}
+		} catch (NumberFormatException ex) {
+			// reported below
+		}
+		throw new IllegalArgumentException("Option " + option + " requires a positive integer, not " + value);
+	}
+
+	/**
+	 * Converts all images in the input directory, printing the result of each
+	 * job as it finishes and a summary at the end.
+	 * @param out Where to print the progress and summary
+	 * @return true if all images were converted, false if any failed
+	 * @throws IOException Thrown if the input directory could not be read
+	 * @throws InterruptedException Thrown if this thread is interrupted while
+	 * waiting for the conversions
+	 */
+	public boolean run(PrintStream out) throws IOException, InterruptedException {
+		final Map<String, List<Path>> groups = findImages();
+		out.printf("Converting %s images (%s globes) from %s to %s%n",
+				groups.values().stream().mapToInt(List::size).sum(), groups.size(), source.getName(),
+				targets.stream().map(Projection::getName).collect(Collectors.joining(", ")));
+		final Semaphore memory = new Semaphore(permits(memoryBudget));
+		final ExecutorService pool = Executors.newFixedThreadPool(jobs);
+		final CompletionService<Result> results = new ExecutorCompletionService<>(pool);
+		final long start = System.nanoTime();
+		try {
+			for(Map.Entry<String, List<Path>> group : groups.entrySet()){
+				results.submit(() -> convert(group.getKey(), group.getValue(), memory));
+			}
+			long totalPixels = 0;
+			int failures = 0;
+			for(int n = 0; n < groups.size(); n++){
+				final Result r;
+				try {
+					r = results.take().get();
+				} catch (ExecutionException ex) {
+					// convert(...) reports its own failures, so this is a bug
+					throw new IllegalStateException(ex.getCause());
+				}
+				if(r.error != null){
+					failures++;
+					out.printf("FAILED %s: %s%n", r.name, r.error);
+					continue;
+				}
+				totalPixels += r.outputPixels;
+				out.printf("%-40s %3d layer(s) %7.1f Mpixels in %8.1f ms: %7.2f Mpixels/s (%.1f ms waiting for memory)%n",
+						r.name, r.layers, r.outputPixels * 1e-6, r.nanos * 1e-6,
+						r.outputPixels * 1e3 / Math.max(1, r.nanos), r.waitNanos * 1e-6);
+			}
+			final long nanos = System.nanoTime() - start;
+			out.printf("Converted %s of %s globes, %.1f Mpixels in %.1f s: %.2f Mpixels/s overall%n",
+					groups.size() - failures, groups.size(), totalPixels * 1e-6, nanos * 1e-9,
+					totalPixels * 1e3 / Math.max(1, nanos));
+			return failures == 0;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Finds all readable images in the input directory and groups the layers of
+	 * each globe together
+	 * @return The image files by globe name (relative path without map type and
+	 * file extension), sorted by name
+	 */
+	Map<String, List<Path>> findImages() throws IOException {
+		final Map<String, List<Path>> groups = new TreeMap<>();
+		final Path outputs = outputDir.toAbsolutePath().normalize();
+		try(Stream<Path> files = Files.walk(inputDir)){
+			for(Path file : (Iterable<Path>)files.sorted()::iterator){
+				final String ext = extension(file);
+				if(!Files.isRegularFile(file) || !ImageIO.getImageReadersBySuffix(ext).hasNext() 
+						|| file.toAbsolutePath().normalize().startsWith(outputs)){
+					// not an image, or the output of a previous run
+					continue;
+				}
+				String name = inputDir.relativize(file).toString();
+				name = name.substring(0, name.length() - ext.length() - 1);
+				final MapType type = MapType.of(name);
+				if(type != null){
+					name = name.substring(0, name.length() - type.suffix.length());
+				}
+				groups.computeIfAbsent(name, (String k) -> new ArrayList<>()).add(file);
+			}
+		}
+		return groups;
+	}
+
+	/**
+	 * Converts the layers of one globe into all of the target projections
+	 * (never throws, errors are reported in the result)
+	 */
+	private Result convert(String name, List<Path> layers, Semaphore memory) throws InterruptedException {
+		final Result result = new Result(name, layers.size());
+		final long start = System.nanoTime();
+		try {
+			final int[][] sizes = new int[layers.size()][];
+			for(int l = 0; l < sizes.length; l++){
+				sizes[l] = readSize(layers.get(l));
+			}
+			final int permits = Math.min(permits(memoryBudget), permits(estimateMemory(sizes)));
+			final long queued = System.nanoTime();
+			memory.acquire(permits);
+			result.waitNanos = System.nanoTime() - queued;
+			try {
+				convert(layers, sizes, result);
+			} finally {
+				memory.release(permits);
+			}
+		} catch (IOException | RuntimeException ex) {
+			result.error = ex.toString();
+		}
+		// the time spent waiting for memory is not part of the conversion
+		result.nanos = System.nanoTime() - start - result.waitNanos;
+		return result;
+	}
+
+	private void convert(List<Path> layers, int[][] sizes, Result result) throws IOException, InterruptedException {
+		final Raster[] rasters = new Raster[layers.size()];
+		for(int l = 0; l < rasters.length; l++){
+			final BufferedImage img = ImageIO.read(layers.get(l).toFile());
+			if(img == null){
+				throw new IOException("Unsupported image format: " + layers.get(l));
+			}
+			rasters[l] = BufferedImageRasters.toRaster(img);
+		}
+		final MapProjection sourceProjection = approximate ? source.mapProjection.approximate() : source.mapProjection;
+		for(Projection target : targets){
+			final MapProjection targetProjection = approximate ? target.mapProjection.approximate() : target.mapProjection;
+			// layers of the same size are converted together, in a single pass
+			final Map<String, List<Integer>> bySize = new LinkedHashMap<>();
+			for(int l = 0; l < rasters.length; l++){
+				bySize.computeIfAbsent(sizes[l][0] + "x" + sizes[l][1], (String k) -> new ArrayList<>()).add(l);
+			}
+			for(List<Integer> indices : bySize.values()){
+				final Raster[] sources = new Raster[indices.size()];
+				for(int i = 0; i < sources.length; i++){
+					sources[i] = rasters[indices.get(i)];
+				}
+				final int[] size = outputSize(sources[0].getWidth(), target);
+				final Raster[] outputs = RasterReprojector.reprojectLayers(sources, sourceProjection, targetProjection,
+						size[0], size[1], Runtime.getRuntime().availableProcessors(), filter);
+				for(int i = 0; i < outputs.length; i++){
+					final Path file = layers.get(indices.get(i));
+					write(outputs[i], outputDir.resolve(target.getName()).resolve(inputDir.relativize(file)));
+					result.outputPixels += (long)size[0] * (long)size[1];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes the size of an output image
+	 * @param srcWidth Width of the input image
+	 * @param target The target projection
+	 * @return {width, height}
+	 */
+	int[] outputSize(int srcWidth, Projection target){
+		// by default, keep the same number of pixels along the equator
+		final int w = width > 0 ? width : Math.max(1, (int)(srcWidth * source.equatorWidth / target.equatorWidth));
+		final int h = Math.max(1, (int)(w / target.mapProjection.getAspectRatio()));
+		return new int[]{w, h};
+	}
+
+	/**
+	 * Estimates the peak memory used to convert one globe: the decoded input
+	 * images (at most 4 bytes per pixel while decoding, plus the raster), and
+	 * for the largest target the output rasters, the reprojection plan and one
+	 * encoded image at a time.
+	 */
+	long estimateMemory(int[][] sizes){
+		long srcPixels = 0;
+		long dstPixels = 0;
+		for(int[] size : sizes){
+			srcPixels += (long)size[0] * (long)size[1];
+			for(Projection target : targets){
+				final int[] dst = outputSize(size[0], target);
+				dstPixels = Math.max(dstPixels, (long)dst[0] * (long)dst[1]);
+			}
+		}
+		final long planBytes = filter == Filter.NEAREST ? 4 : 8;
+		return 8 * srcPixels + dstPixels * (4L * sizes.length + 4 + planBytes);
+	}
+
+	private static int permits(long bytes){
+		return (int)Math.max(1, Math.min(Integer.MAX_VALUE, bytes / BYTES_PER_PERMIT));
+	}
+
+	/** Reads the width and height of an image without decoding it */
+	private static int[] readSize(Path file) throws IOException {
+		try(ImageInputStream in = ImageIO.createImageInputStream(file.toFile())){
+			final Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+			if(readers == null || !readers.hasNext()){
+				throw new IOException("Unsupported image format: " + file);
+			}
+			final ImageReader reader = readers.next();
+			try {
+				reader.setInput(in);
+				return new int[]{reader.getWidth(0), reader.getHeight(0)};
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+
+	/**
+	 * Writes an image in the format given by its file extension (formats which
+	 * do not support transparency are written without the alpha channel)
+	 */
+	private static void write(Raster raster, Path file) throws IOException {
+		String format = extension(file).toLowerCase(Locale.ROOT);
+		if(!ImageIO.getImageWritersBySuffix(format).hasNext()){
+			format = "png";
+			file = file.resolveSibling(file.getFileName() + ".png");
+		}
+		final BufferedImage img;
+		if(format.equals("png") || format.equals("gif") || format.startsWith("tif")){
+			img = BufferedImageRasters.toBufferedImage(raster);
+		} else {
+			img = new BufferedImage(raster.getWidth(), raster.getHeight(), BufferedImage.TYPE_INT_RGB);
+			img.setRGB(0, 0, raster.getWidth(), raster.getHeight(), raster.getPixels(), 0, raster.getWidth());
+		}
+		Files.createDirectories(file.toAbsolutePath().getParent());
+		if(!ImageIO.write(img, format, file.toFile())){
+			throw new IOException("No image writer for " + file);
+		}
+	}
+
+	private static String extension(Path file){
+		final String name = file.getFileName().toString();
+		final int dot = name.lastIndexOf('.');
+		return dot < 0 ? "" : name.substring(dot + 1);
+	}
+
+	/** Statistics of one conversion job */
+	static final class Result {
+		final String name;
+		final int layers;
+		long outputPixels = 0;
+		/** time spent converting (not counting the wait for memory) */
+		long nanos = 0;
+		/** time spent waiting for memory before converting */
+		long waitNanos = 0;
+		String error = null;
+
+		Result(String name, int layers){
+			this.name = name;
+			this.layers = layers;
+		}
+	}
+}
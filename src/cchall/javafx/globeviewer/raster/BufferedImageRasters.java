@@ -0,0 +1,70 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 .
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cchall.javafx.globeviewer.raster;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Converts between {@link Raster}s and AWT <code>BufferedImage</code>s (e.g.
+ * for reading and writing textures with <code>javax.imageio.ImageIO</code>
+ * without starting the JavaFX toolkit). Note that AWT does not need a display
+ * to work with BufferedImages, so this works in headless mode
+ * (<code>-Djava.awt.headless=true</code>).
+ * @author CCHall <a href="mailto:explosivegnome@yahoo.com">
+ * explosivegnome@yahoo.com</a>
+ */
+public final class BufferedImageRasters {
+
+	private BufferedImageRasters(){
+		// static utility class
+	}
+
+	/**
+	 * Copies the pixels of a BufferedImage (of any type) into a new raster.
+	 * @param image A BufferedImage
+	 * @return A new raster of the same size, with the colors of the image
+	 * converted to ARGB in the default (sRGB) color space
+	 */
+	public static Raster toRaster(BufferedImage image){
+		final int width = image.getWidth();
+		final int height = image.getHeight();
+		final Raster raster = new Raster(width, height);
+		image.getRGB(0, 0, width, height, raster.getPixels(), 0, width);
+		return raster;
+	}
+
+	/**
+	 * Copies the pixels of a raster into a new BufferedImage.
+	 * @param raster A raster
+	 * @return A new <code>BufferedImage.TYPE_INT_ARGB</code> image of the same
+	 * size
+	 */
+	public static BufferedImage toBufferedImage(Raster raster){
+		final int width = raster.getWidth();
+		final int height = raster.getHeight();
+		final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		image.setRGB(0, 0, width, height, raster.getPixels(), 0, width);
+		return image;
+	}
+}
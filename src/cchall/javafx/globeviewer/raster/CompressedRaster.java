@@ -0,0 +1,207 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 .
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cchall.javafx.globeviewer.raster;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A raster held in compressed form, e.g. to keep a texture that is not
+ * displayed without holding 4 bytes per pixel. Each pixel is stored as the
+ * difference from the pixel to its left (per channel, so smooth gradients
+ * and flat areas become runs of small values), and the rows are compressed
+ * in bands with the fastest setting of <code>java.util.zip.Deflater</code>.
+ * The bands are independent, so they are compressed and decompressed in
+ * parallel on the thread pool of {@link RasterReprojector}. Compression is
+ * lossless.
+ * @author CCHall <a href="mailto:explosivegnome@yahoo.com">
+ * explosivegnome@yahoo.com</a>
+ */
+public final class CompressedRaster {
+
+	/** Number of pixels per compressed band (1 MB of pixels) */
+	static final int BAND_PIXELS = 1 << 18;
+	/** the high bit of each byte */
+	private static final int HIGH_BITS = 0x80808080;
+
+	private final int width;
+	private final int height;
+	private final int bandHeight;
+	private final byte[][] bands;
+
+	private CompressedRaster(int width, int height, int bandHeight, byte[][] bands){
+		this.width = width;
+		this.height = height;
+		this.bandHeight = bandHeight;
+		this.bands = bands;
+	}
+
+	/**
+	 * Compresses a raster
+	 * @param raster A raster (not changed)
+	 * @param parallelism Parallel processing hint (see {@link RasterReprojector})
+	 * @return The compressed raster
+	 * @throws InterruptedException Thrown if this thread is interrupted while
+	 * waiting for the thread pool to finish.
+	 */
+	public static CompressedRaster compress(final Raster raster, final int parallelism) throws InterruptedException {
+		final int width = raster.getWidth();
+		final int height = raster.getHeight();
+		final int bandHeight = Math.max(1, BAND_PIXELS / width);
+		final byte[][] bands = new byte[(height + bandHeight - 1) / bandHeight][];
+		final int[] pixels = raster.getPixels();
+		RasterReprojector.forEachTask(bands.length, parallelism, (int b)->{
+			final int y0 = b * bandHeight;
+			final int rows = Math.min(bandHeight, height - y0);
+			final byte[] filtered = new byte[4 * width * rows];
+			int i = 0;
+			for(int y = y0; y < y0 + rows; y++){
+				int left = 0;
+				for(int p = y * width, end = p + width; p < end; p++){
+					final int argb = pixels[p];
+					final int delta = subtractBytes(argb, left);
+					left = argb;
+					filtered[i++] = (byte)delta;
+					filtered[i++] = (byte)(delta >>> 8);
+					filtered[i++] = (byte)(delta >>> 16);
+					filtered[i++] = (byte)(delta >>> 24);
+				}
+			}
+			bands[b] = deflate(filtered);
+		});
+		return new CompressedRaster(width, height, bandHeight, bands);
+	}
+
+	/**
+	 * Decompresses this raster
+	 * @param parallelism Parallel processing hint (see {@link RasterReprojector})
+	 * @return A new raster with the same pixels as the raster that was
+	 * compressed
+	 * @throws InterruptedException Thrown if this thread is interrupted while
+	 * waiting for the thread pool to finish.
+	 */
+	public Raster decompress(final int parallelism) throws InterruptedException {
+		final Raster raster = new Raster(width, height);
+		final int[] pixels = raster.getPixels();
+		RasterReprojector.forEachTask(bands.length, parallelism, (int b)->{
+			final int y0 = b * bandHeight;
+			final int rows = Math.min(bandHeight, height - y0);
+			final byte[] filtered = inflate(bands[b], 4 * width * rows);
+			int i = 0;
+			for(int y = y0; y < y0 + rows; y++){
+				int left = 0;
+				for(int p = y * width, end = p + width; p < end; p++){
+					final int delta = (filtered[i] & 0xFF) | (filtered[i + 1] & 0xFF) << 8
+							| (filtered[i + 2] & 0xFF) << 16 | (filtered[i + 3] & 0xFF) << 24;
+					i += 4;
+					left = addBytes(left, delta);
+					pixels[p] = left;
+				}
+			}
+		});
+		return raster;
+	}
+
+	/**
+	 * @return Width of the raster (in pixels)
+	 */
+	public int getWidth(){
+		return width;
+	}
+
+	/**
+	 * @return Height of the raster (in pixels)
+	 */
+	public int getHeight(){
+		return height;
+	}
+
+	/**
+	 * @return The size of the compressed pixels, in bytes
+	 */
+	public long getCompressedSize(){
+		long size = 0;
+		for(byte[] band : bands){
+			size += band.length;
+		}
+		return size;
+	}
+
+	@Override
+	public String toString(){
+		return this.getClass().getSimpleName() + "[" + width + "x" + height + ", " + getCompressedSize() + " bytes]";
+	}
+
+	/** subtracts each byte of b from the same byte of a, without carries between bytes */
+	static int subtractBytes(int a, int b){
+		return ((a | HIGH_BITS) - (b & ~HIGH_BITS)) ^ ((a ^ ~b) & HIGH_BITS);
+	}
+
+	/** adds each byte of b to the same byte of a, without carries between bytes */
+	static int addBytes(int a, int b){
+		return ((a & ~HIGH_BITS) + (b & ~HIGH_BITS)) ^ ((a ^ b) & HIGH_BITS);
+	}
+
+	private static byte[] deflate(byte[] data){
+		final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+		try {
+			deflater.setInput(data);
+			deflater.finish();
+			final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4);
+			final byte[] buffer = new byte[64 * 1024];
+			while(!deflater.finished()){
+				out.write(buffer, 0, deflater.deflate(buffer));
+			}
+			return out.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static byte[] inflate(byte[] data, int length){
+		final Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(data);
+			final byte[] out = new byte[length];
+			int n = 0;
+			while(n < length && !inflater.finished()){
+				final int read = inflater.inflate(out, n, length - n);
+				if(read == 0 && (inflater.needsInput() || inflater.needsDictionary())){
+					break;
+				}
+				n += read;
+			}
+			if(n != length){
+				throw new IllegalStateException("Compressed band is truncated");
+			}
+			return out;
+		} catch (DataFormatException ex) {
+			throw new IllegalStateException("Compressed band is corrupt", ex);
+		} finally {
+			inflater.end();
+		}
+	}
+}
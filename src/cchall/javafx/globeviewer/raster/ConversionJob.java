@@ -0,0 +1,240 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 .
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cchall.javafx.globeviewer.raster;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A texture conversion (see {@link RasterReprojector#reprojectLayers(cchall.javafx.globeviewer.raster.Raster[], cchall.javafx.globeviewer.raster.MapProjection, cchall.javafx.globeviewer.raster.MapProjection, int, int, int, cchall.javafx.globeviewer.raster.RasterReprojector.Filter)}) 
+ * which was submitted to a {@link ConversionQueue}. It is a <code>Future</code> 
+ * of the converted layers, and it can also:<ul>
+ * <li>be cancelled while it is running: the conversion stops after the tiles 
+ * that are already being processed (instead of running to the end)</li>
+ * <li>report its progress (see {@link #getProgress()} and 
+ * {@link #addProgressListener(java.lang.Runnable)})</li>
+ * <li>change its priority while it is waiting in the queue (see 
+ * {@link #setPriority(int)})</li>
+ * </ul>
+ * @author CCHall <a href="mailto:explosivegnome@yahoo.com">
+ * explosivegnome@yahoo.com</a>
+ */
+public final class ConversionJob implements Future<Raster[]>, Runnable, Comparable<ConversionJob> {
+	
+	private static final AtomicLong submissions = new AtomicLong();
+	
+	private final ConversionQueue queue;
+	/** submission order, for first-in first-out order among jobs of the same priority */
+	private final long order = submissions.getAndIncrement();
+	private final Raster[] sources;
+	private final MapProjection sourceProjection, targetProjection;
+	private final int newWidth, newHeight;
+	private final RasterReprojector.Filter filter;
+	private volatile int priority;
+	private final CompletableFuture<Raster[]> result = new CompletableFuture<>();
+	private final AtomicLong pixelsDone = new AtomicLong();
+	private volatile long totalPixels = 1;
+	private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+	
+	ConversionJob(ConversionQueue queue, Raster[] sources, MapProjection sourceProjection, 
+			MapProjection targetProjection, int newWidth, int newHeight, RasterReprojector.Filter filter, int priority){
+		this.queue = queue;
+		this.sources = sources.clone();
+		this.sourceProjection = sourceProjection;
+		this.targetProjection = targetProjection;
+		this.newWidth = newWidth;
+		this.newHeight = newHeight;
+		this.filter = filter;
+		this.priority = priority;
+		result.whenComplete((layers, ex) -> fireProgress());
+	}
+	
+	/**
+	 * Runs the conversion (called by the queue).
+	 */
+	@Override
+	public void run(){
+		if(result.isDone()){
+			return; // cancelled while waiting
+		}
+		final int srcWidth = sources[0].getWidth();
+		final int srcHeight = sources[0].getHeight();
+		// computing the plan takes about as long as converting the layers
+		final long pixels = (long)newWidth * (long)newHeight;
+		totalPixels = ReprojectionPlan.isCached(sourceProjection, targetProjection, 
+				srcWidth, srcHeight, newWidth, newHeight, filter) ? pixels : 2 * pixels;
+		RasterReprojector.setTileMonitor(new RasterReprojector.TileMonitor(){
+			@Override
+			public boolean isCancelled(){
+				return result.isDone();
+			}
+			
+			@Override
+			public void tileDone(int pixels){
+				pixelsDone.addAndGet(pixels);
+				fireProgress();
+			}
+		});
+		try {
+			result.complete(RasterReprojector.reprojectLayers(sources, sourceProjection, targetProjection, 
+					newWidth, newHeight, RasterReprojector.getThreadPool().getParallelism(), filter));
+		} catch (CancellationException ex) {
+			// cancelled while running
+		} catch (InterruptedException | RuntimeException | Error ex) {
+			result.completeExceptionally(ex);
+		} finally {
+			RasterReprojector.setTileMonitor(null);
+		}
+	}
+	
+	private void fireProgress(){
+		for(Runnable listener : listeners){
+			listener.run();
+		}
+	}
+	
+	/**
+	 * Adds a listener which is called whenever the progress changes (after 
+	 * each tile) and once when the job is finished (completed, failed or 
+	 * cancelled). The listener is called on the thread that processed the tile 
+	 * (or finished the job), so it must be thread-safe and quick.
+	 * @param listener A listener, which can check {@link #getProgress()} and 
+	 * {@link #isDone()}
+	 */
+	public void addProgressListener(Runnable listener){
+		listeners.add(listener);
+		if(result.isDone()){
+			listener.run();
+		}
+	}
+	
+	/**
+	 * Removes a listener
+	 * @param listener A listener added with {@link #addProgressListener(java.lang.Runnable)}
+	 */
+	public void removeProgressListener(Runnable listener){
+		listeners.remove(listener);
+	}
+	
+	/**
+	 * @return The progress of the conversion, from 0 (waiting) to 1 (done)
+	 */
+	public double getProgress(){
+		if(result.isDone() && !result.isCompletedExceptionally()){
+			return 1.0;
+		}
+		return Math.min(0.99, (double)pixelsDone.get() / (double)totalPixels);
+	}
+	
+	/**
+	 * @return The priority of this job (jobs with a larger number run first)
+	 */
+	public int getPriority(){
+		return priority;
+	}
+	
+	/**
+	 * Changes the priority of this job. This only matters while the job is 
+	 * waiting in the queue (a job that is running is not interrupted by jobs 
+	 * of a higher priority).
+	 * @param newPriority The new priority (jobs with a larger number run first)
+	 */
+	public void setPriority(int newPriority){
+		queue.reorder(this, newPriority);
+	}
+	
+	/** sets the priority, which must only change while the job is not in the queue */
+	void updatePriority(int newPriority){
+		priority = newPriority;
+	}
+	
+	/**
+	 * Gets a CompletableFuture of the result, e.g. to chain more work after 
+	 * the conversion. Cancelling it does not cancel the job.
+	 * @return A new CompletableFuture which completes when this job completes
+	 */
+	public CompletableFuture<Raster[]> toCompletableFuture(){
+		return result.copy();
+	}
+	
+	/**
+	 * Cancels the job. If it is waiting, it will not run, and if it is 
+	 * running, it stops after the tiles that are already being processed.
+	 * @param mayInterruptIfRunning Ignored, because running jobs are always 
+	 * cancelled between tiles
+	 * @return False if the job had already finished
+	 */
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning){
+		final boolean cancelled = result.cancel(false);
+		if(cancelled){
+			queue.remove(this);
+		}
+		return cancelled;
+	}
+	
+	@Override
+	public boolean isCancelled(){
+		return result.isCancelled();
+	}
+	
+	@Override
+	public boolean isDone(){
+		return result.isDone();
+	}
+	
+	@Override
+	public Raster[] get() throws InterruptedException, ExecutionException {
+		return result.get();
+	}
+	
+	@Override
+	public Raster[] get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		return result.get(timeout, unit);
+	}
+	
+	/**
+	 * Orders jobs by priority (highest first), then by submission (oldest first)
+	 */
+	@Override
+	public int compareTo(ConversionJob other){
+		if(this.priority != other.priority){
+			return this.priority > other.priority ? -1 : 1;
+		}
+		return Long.compare(this.order, other.order);
+	}
+	
+	@Override
+	public String toString(){
+		return String.format("%s[%s -> %s %sx%s, priority %s, %.0f%%]", this.getClass().getSimpleName(), 
+				sourceProjection, targetProjection, newWidth, newHeight, priority, 100 * getProgress());
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 .
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cchall.javafx.globeviewer.raster;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs texture conversions as {@link ConversionJob}s, in order of priority, 
+ * e.g. so that the layers of the globe that is on screen are converted before 
+ * those of the globes that are not. Each job runs on one of the threads of 
+ * the queue and splits its work into tiles for the thread pool of 
+ * {@link RasterReprojector}, so a queue which runs one job at a time (like 
+ * the default queue) still uses every processor, and the job with the 
+ * highest priority gets all of them.<br><pre>
+ConversionJob job = ConversionQueue.getDefault().submit(
+		new Raster[]{diffuse, specular}, 
+		MapProjections.MERCATOR, 
+		MapProjections.DYMAXION, 
+		2200, 520, 
+		RasterReprojector.Filter.BILINEAR, 
+		visible ? 10 : 0);
+// later, if the user chooses another planet
+job.cancel(false);
+</pre>
+ * @author CCHall <a href="mailto:explosivegnome@yahoo.com">
+ * explosivegnome@yahoo.com</a>
+ */
+public final class ConversionQueue {
+	
+	private static ConversionQueue defaultQueue = null;
+	
+	private final ThreadPoolExecutor executor;
+	
+	/**
+	 * Creates a new conversion queue with its own (daemon) threads.
+	 * @param concurrentJobs The number of jobs which may run at the same time
+	 */
+	public ConversionQueue(int concurrentJobs){
+		if(concurrentJobs <= 0){
+			throw new IllegalArgumentException("Invalid number of concurrent jobs: " + concurrentJobs);
+		}
+		final AtomicInteger threads = new AtomicInteger();
+		final ThreadFactory factory = (Runnable r) -> {
+			final Thread t = new Thread(r, "ConversionQueue-" + threads.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+		executor = new ThreadPoolExecutor(concurrentJobs, concurrentJobs, 0L, TimeUnit.MILLISECONDS, 
+				new PriorityBlockingQueue<>(), factory);
+	}
+	
+	/**
+	 * @return The shared queue, which runs one job at a time
+	 */
+	public static synchronized ConversionQueue getDefault(){
+		if(defaultQueue == null){
+			defaultQueue = new ConversionQueue(1);
+		}
+		return defaultQueue;
+	}
+	
+	/**
+	 * Submits a conversion of several texture layers of the same size from one 
+	 * map projection into another.
+	 * @param sources The input texture rasters, which must all be the same size 
+	 * (and must not change until the job is done)
+	 * @param sourceProjection The map projection of the input rasters
+	 * @param targetProjection The map projection of the output rasters
+	 * @param newWidth Width of the output rasters
+	 * @param newHeight Height of the output rasters
+	 * @param filter Texture filter
+	 * @param priority Jobs with a larger number run first (jobs of the same 
+	 * priority run in the order that they were submitted)
+	 * @return The job, whose result is an array of new rasters in the same 
+	 * order as <code>sources</code>
+	 * @throws IllegalArgumentException Thrown if there are no input rasters, 
+	 * if they are not all the same size or if the output size is invalid
+	 */
+	public ConversionJob submit(
+			final Raster[] sources, 
+			final MapProjection sourceProjection, 
+			final MapProjection targetProjection, 
+			final int newWidth, 
+			final int newHeight, 
+			final RasterReprojector.Filter filter, 
+			final int priority
+	){
+		if(sources.length == 0){
+			throw new IllegalArgumentException("No layers to convert");
+		}
+		if(newWidth <= 0 || newHeight <= 0){
+			throw new IllegalArgumentException(String.format("Invalid output size %sx%s", newWidth, newHeight));
+		}
+		for(int l = 1; l < sources.length; l++){
+			if(sources[l].getWidth() != sources[0].getWidth() || sources[l].getHeight() != sources[0].getHeight()){
+				throw new IllegalArgumentException(String.format(
+						"Layer %s is %sx%s, but layer 0 is %sx%s", l, 
+						sources[l].getWidth(), sources[l].getHeight(), sources[0].getWidth(), sources[0].getHeight()));
+			}
+		}
+		final ConversionJob job = new ConversionJob(this, sources, sourceProjection, targetProjection, 
+				newWidth, newHeight, filter, priority);
+		executor.execute(job);
+		return job;
+	}
+	
+	/**
+	 * @return The number of jobs waiting to run
+	 */
+	public int getQueueLength(){
+		return executor.getQueue().size();
+	}
+	
+	/**
+	 * Cancels the waiting jobs, interrupts the running jobs (which then fail 
+	 * with an InterruptedException) and stops the threads of this queue. Jobs 
+	 * submitted afterwards are rejected.
+	 */
+	public void shutdown(){
+		for(Runnable job : executor.shutdownNow()){
+			((ConversionJob)job).cancel(false);
+		}
+	}
+	
+	/** removes a waiting job (when it is cancelled) */
+	void remove(ConversionJob job){
+		executor.remove(job);
+	}
+	
+	/** changes the priority of a job (moving it in the queue if it is waiting) */
+	synchronized void reorder(ConversionJob job, int newPriority){
+		if(executor.remove(job)){
+			job.updatePriority(newPriority);
+			executor.execute(job);
+		} else {
+			job.updatePriority(newPriority);
+		}
+	}
+}
@@ -0,0 +1,293 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 .
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cchall.javafx.globeviewer.raster;
+
+/**
+ * Joins six cube face images into a single cubic projection texture (see
+ * {@link MapProjections#CUBIC}) and splits such a texture back into its
+ * faces. The texture is 4 faces wide and 2 faces tall: the four faces around
+ * the equator (front, right, back, left) fill the bottom row, the top face is
+ * above the front face and the bottom face is above the left face (the rest
+ * of the top row is left transparent).<p>
+ * Faces are copied one row at a time with <code>System.arraycopy</code>, on
+ * the thread pool of {@link RasterReprojector}. Faces that are not the size of
+ * the texture's faces are resampled with the given texture filter (and
+ * reduced with a 2x2 box filter first when they are at least twice as large,
+ * so that filtered faces do not alias).
+ * @author CCHall <a href="mailto:explosivegnome@yahoo.com">
+ * explosivegnome@yahoo.com</a>
+ */
+public final class CubeFaceRasters {
+
+	/**
+	 * The faces of the cube, in the order used by the arrays of
+	 * {@link CubeFaceRasters#join(cchall.javafx.globeviewer.raster.Raster[], int, cchall.javafx.globeviewer.raster.RasterReprojector.Filter, int)}
+	 * and {@link CubeFaceRasters#split(cchall.javafx.globeviewer.raster.Raster, int)}
+	 */
+	public static enum Face {
+		/** The left side of the cube (from the perspective of someone looking at the front of the cube) */
+		LEFT(3, 1),
+		/** The front of the cube */
+		FRONT(0, 1),
+		/** The right side of the cube (from the perspective of someone looking at the front of the cube) */
+		RIGHT(1, 1),
+		/** The back of the cube */
+		BACK(2, 1),
+		/** The top of the cube, such that its bottom edge aligns with the top of the front */
+		TOP(0, 0),
+		/** The bottom of the cube, such that its top edge aligns with the bottom of the front */
+		BOTTOM(3, 0);
+
+		private final int column;
+		private final int row;
+
+		private Face(int column, int row){
+			this.column = column;
+			this.row = row;
+		}
+
+		/**
+		 * @return The column of the texture which holds this face (0 to 3)
+		 */
+		public int getColumn(){
+			return column;
+		}
+
+		/**
+		 * @return The row of the texture which holds this face (0 or 1)
+		 */
+		public int getRow(){
+			return row;
+		}
+	}
+
+	private static final Face[] FACES = Face.values();
+
+	private CubeFaceRasters(){
+		// static utility class
+	}
+
+	/**
+	 * Stitches six cube faces together into a single texture.
+	 * @param faces The face rasters, indexed by {@link Face#ordinal()} (e.g.
+	 * <code>faces[Face.TOP.ordinal()]</code>)
+	 * @param size Width and height of each face in the texture, so that the
+	 * texture is <code>4 * size</code> x <code>2 * size</code>
+	 * @param filter Texture filter used for faces of a different size
+	 * ({@link RasterReprojector.Filter#NEAREST} for the fastest resampling)
+	 * @param parallelism Parallel processing hint (1 copies the faces on the
+	 * calling thread)
+	 * @return A new raster of size <code>4 * size</code> x <code>2 * size</code>
+	 * @throws InterruptedException Thrown if this thread is interrupted while
+	 * waiting for the thread pool to finish.
+	 */
+	public static Raster join(final Raster[] faces, final int size, 
+			final RasterReprojector.Filter filter, final int parallelism) throws InterruptedException {
+		if(faces.length != FACES.length){
+			throw new IllegalArgumentException("Expected " + FACES.length + " faces, but got " + faces.length);
+		}
+		for(Face face : FACES){
+			if(faces[face.ordinal()] == null){
+				throw new NullPointerException("The " + face + " face is null");
+			}
+		}
+		final Raster out = new Raster(4 * size, 2 * size);
+		final int[] dst = out.getPixels();
+		final int stride = out.getWidth();
+		final FaceSampler[] samplers = new FaceSampler[FACES.length];
+		for(int f = 0; f < FACES.length; f++){
+			samplers[f] = new FaceSampler(faces[f], size, filter);
+		}
+		// the faces are stacked into one column of 6 * size rows, so that the
+		// tiles can be spread over all of the faces at once
+		RasterReprojector.forEachTile(size, FACES.length * size, parallelism, (int x0, int y0, int w, int h)->{
+			for(int r = y0; r < y0 + h; r++){
+				final Face face = FACES[r / size];
+				final int y = r % size;
+				final int offset = (face.getRow() * size + y) * stride + face.getColumn() * size;
+				samplers[face.ordinal()].sampleRow(y, x0, w, dst, offset + x0);
+			}
+		});
+		return out;
+	}
+
+	/**
+	 * Splits a cubic projection texture into its six cube faces.
+	 * @param cuboid A texture made by
+	 * {@link #join(cchall.javafx.globeviewer.raster.Raster[], int, cchall.javafx.globeviewer.raster.RasterReprojector.Filter, int)}
+	 * (or any cubic projection texture which is twice as wide as it is tall
+	 * and whose height is even)
+	 * @param parallelism Parallel processing hint (1 copies the faces on the
+	 * calling thread)
+	 * @return Six new rasters of size <code>height / 2</code> x
+	 * <code>height / 2</code>, indexed by {@link Face#ordinal()}
+	 * @throws InterruptedException Thrown if this thread is interrupted while
+	 * waiting for the thread pool to finish.
+	 */
+	public static Raster[] split(final Raster cuboid, final int parallelism) throws InterruptedException {
+		final int size = cuboid.getHeight() / 2;
+		if(cuboid.getWidth() != 4 * size || cuboid.getHeight() != 2 * size){
+			throw new IllegalArgumentException(String.format(
+					"%s is not a cubic projection texture (expected a size of 4n x 2n)", cuboid));
+		}
+		final int[] src = cuboid.getPixels();
+		final int stride = cuboid.getWidth();
+		final Raster[] faces = new Raster[FACES.length];
+		for(int f = 0; f < FACES.length; f++){
+			faces[f] = new Raster(size, size);
+		}
+		RasterReprojector.forEachTile(size, FACES.length * size, parallelism, (int x0, int y0, int w, int h)->{
+			for(int r = y0; r < y0 + h; r++){
+				final Face face = FACES[r / size];
+				final int y = r % size;
+				final int offset = (face.getRow() * size + y) * stride + face.getColumn() * size;
+				System.arraycopy(src, offset + x0, faces[face.ordinal()].getPixels(), y * size + x0, w);
+			}
+		});
+		return faces;
+	}
+
+	/**
+	 * Reduces a raster to half its size (rounded up) with a 2x2 box filter
+	 * (the last column or row is repeated if the size is odd)
+	 */
+	static Raster halve(final Raster src){
+		final int width = src.getWidth();
+		final int height = src.getHeight();
+		final int newWidth = (width + 1) / 2;
+		final int newHeight = (height + 1) / 2;
+		final int[] in = src.getPixels();
+		final Raster out = new Raster(newWidth, newHeight);
+		final int[] dst = out.getPixels();
+		for(int y = 0; y < newHeight; y++){
+			final int row0 = 2 * y * width;
+			final int row1 = Math.min(2 * y + 1, height - 1) * width;
+			for(int x = 0; x < newWidth; x++){
+				final int x0 = 2 * x;
+				final int x1 = Math.min(x0 + 1, width - 1);
+				final int c00 = in[row0 + x0], c01 = in[row0 + x1];
+				final int c10 = in[row1 + x0], c11 = in[row1 + x1];
+				final int a = (c00 >>> 24) + (c01 >>> 24) + (c10 >>> 24) + (c11 >>> 24);
+				final int r = ((c00 >> 16) & 0xFF) + ((c01 >> 16) & 0xFF) + ((c10 >> 16) & 0xFF) + ((c11 >> 16) & 0xFF);
+				final int g = ((c00 >> 8) & 0xFF) + ((c01 >> 8) & 0xFF) + ((c10 >> 8) & 0xFF) + ((c11 >> 8) & 0xFF);
+				final int b = (c00 & 0xFF) + (c01 & 0xFF) + (c10 & 0xFF) + (c11 & 0xFF);
+				dst[y * newWidth + x] = (((a + 2) >> 2) << 24) | (((r + 2) >> 2) << 16) 
+						| (((g + 2) >> 2) << 8) | ((b + 2) >> 2);
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * Resamples one face into rows of the texture. The source column and row
+	 * of each output pixel (and the filter weights) are computed once, when
+	 * the sampler is created.
+	 */
+	private static final class FaceSampler {
+		private final int[] src;
+		private final int srcWidth;
+		private final RasterReprojector.Filter filter;
+		/** true if the face is already the right size, so rows are copied as they are */
+		private final boolean copy;
+		/** NEAREST: source columns and rows; otherwise: fixed-point (8 bit fraction) coordinates */
+		private final int[] columns, rows;
+		private final int maxX, maxY;
+
+		FaceSampler(Raster face, final int size, final RasterReprojector.Filter filter){
+			if(filter != RasterReprojector.Filter.NEAREST){
+				while(face.getWidth() >= 2 * size && face.getHeight() >= 2 * size){
+					face = halve(face);
+				}
+			}
+			this.src = face.getPixels();
+			this.srcWidth = face.getWidth();
+			this.filter = filter;
+			this.maxX = face.getWidth() - 1;
+			this.maxY = face.getHeight() - 1;
+			this.copy = face.getWidth() == size && face.getHeight() == size;
+			this.columns = copy ? null : coordinates(face.getWidth(), size, filter);
+			this.rows = copy ? null : coordinates(face.getHeight(), size, filter);
+		}
+
+		private static int[] coordinates(final int srcSize, final int size, final RasterReprojector.Filter filter){
+			final int[] c = new int[size];
+			for(int i = 0; i < size; i++){
+				final double rel = (i + 0.5) / size;
+				if(filter == RasterReprojector.Filter.NEAREST){
+					c[i] = ReprojectionPlan.toPixel(rel, srcSize);
+				} else {
+					c[i] = ReprojectionPlan.toFixedPoint(rel, srcSize);
+				}
+			}
+			return c;
+		}
+
+		/**
+		 * Writes part of a row of the resampled face
+		 * @param y Row of the resampled face
+		 * @param x0 First column of the resampled face
+		 * @param width Number of columns
+		 * @param dst Output pixels
+		 * @param offset Index in the output of column <code>x0</code>
+		 */
+		void sampleRow(final int y, final int x0, final int width, final int[] dst, final int offset){
+			if(copy){
+				System.arraycopy(src, y * srcWidth + x0, dst, offset, width);
+			} else if(filter == RasterReprojector.Filter.NEAREST){
+				final int row = rows[y] * srcWidth;
+				for(int x = 0; x < width; x++){
+					dst[offset + x] = src[row + columns[x0 + x]];
+				}
+			} else if(filter == RasterReprojector.Filter.BILINEAR){
+				final int sy = rows[y] >> 8;
+				final int fy = rows[y] & 0xFF;
+				final int row0 = sy * srcWidth;
+				final int row1 = Math.min(sy + 1, maxY) * srcWidth;
+				for(int x = 0; x < width; x++){
+					final int sx = columns[x0 + x] >> 8;
+					final int fx = columns[x0 + x] & 0xFF;
+					final int sx1 = Math.min(sx + 1, maxX);
+					dst[offset + x] = ReprojectionPlan.bilinear(src[row0 + sx], src[row0 + sx1], 
+							src[row1 + sx], src[row1 + sx1], fx, fy);
+				}
+			} else {
+				final int sy = rows[y] >> 8;
+				final int fy = rows[y] & 0xFF;
+				final int[] blockColumns = new int[4];
+				final int[] blockRows = new int[4];
+				for(int k = 0; k < 4; k++){
+					blockRows[k] = Math.max(0, Math.min(maxY, sy + k - 1)) * srcWidth;
+				}
+				for(int x = 0; x < width; x++){
+					final int sx = columns[x0 + x] >> 8;
+					final int fx = columns[x0 + x] & 0xFF;
+					for(int k = 0; k < 4; k++){
+						blockColumns[k] = Math.max(0, Math.min(maxX, sx + k - 1));
+					}
+					dst[offset + x] = ReprojectionPlan.bicubic(src, blockColumns, blockRows, fx, fy);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,221 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 .
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cchall.javafx.globeviewer.raster;
+
+import static cchall.javafx.globeviewer.raster.MercatorProjection.clamp;
+
+/**
+ * The cubic map projection, where two of the cube's faces represent the poles
+ * and the other four wrap around the equator.
+ * @author CCHall <a href="mailto:explosivegnome@yahoo.com">
+ * explosivegnome@yahoo.com</a>
+ */
+final class CubicProjection implements MapProjection {
+
+	/* package private */
+	static final CubicProjection INSTANCE = new CubicProjection(false);
+	/** {@link #INSTANCE} with approximate trigonometry (see {@link FastTrig}) */
+	private static final CubicProjection APPROXIMATE = new CubicProjection(true);
+
+	private final boolean approximate;
+
+	private CubicProjection(boolean approximate){
+		this.approximate = approximate;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void convertLonLatToRelativePixelXY(final double lon, final double lat, final double[] relXY){
+		final double piOverFour = 0.25 * Math.PI;
+		final double piOverTwo = 0.5 * Math.PI;
+		final double threePiOverFour = 0.75 * Math.PI;
+		final double minusPiOverFour = -0.25 * Math.PI;
+		final double fourOverPi = 4.0 / Math.PI;
+		final double oneOverTwoPi = 1.0 / (2.0 * Math.PI);
+		final double twoOverPi = 2.0 / Math.PI;
+		double x, y;
+		if(minusPiOverFour < lat && lat < piOverFour){
+			// equatorial faces
+			double dy = lat * fourOverPi; // -1 to 1
+			y = 0.75 - (dy * 0.25);
+
+			double lin = clamp(lon * oneOverTwoPi);
+			double dlon = (clamp(lon * twoOverPi) - 0.5) * piOverTwo;
+			double dx = approximate ? FastTrig.tan(dlon) : Math.tan(dlon);
+			double xOffset = (((int)(lin * 4) % 4) + 0.5) * 0.25;
+			x = clamp(dx*0.125 + xOffset);
+		} else {
+			final double yOffset = 0.25;
+			final double latSign, xOffset, angleOffset = threePiOverFour;
+
+			if(lat > 0){
+				// north pole
+				//  _ _
+				// | . |
+				// |/ _|
+				// 0 longitude (increases counter-clockwise)
+				latSign = 1;
+				xOffset = 0.125;
+			} else {
+				// south pole
+				// 0_longitude (increases clockwise)
+				// |\. |
+				// |_ _|
+				//
+				latSign = -1;
+				xOffset = 0.875;
+			}
+			double angle = latSign * (lon - angleOffset);
+			double cos = approximate ? FastTrig.cos(angle) : Math.cos(angle);
+			double sin = approximate ? FastTrig.sin(angle) : Math.sin(angle);
+			double sec = Math.abs(1.0 / cos);
+			double csc = Math.abs(1.0 / sin);
+			double hmax = Math.min(sec, csc);
+			double fromPole = (piOverTwo - (latSign * lat)) * fourOverPi; // 0 to 1
+			double h = fromPole * hmax;
+			x = cos * h * 0.125 + xOffset;
+			y = yOffset - sin * h * 0.25;
+		}
+		relXY[0] = x;
+		relXY[1] = y;
+	}
+
+	private static double dist(double dx, double dy){
+		return Math.sqrt(dx*dx + dy*dy);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void convertRelativePixelXYToLonLat(final double x, final double y, final double[] lonLat) {
+		final double twoPi = 2.0 * Math.PI;
+		final double piOverTwo = 0.5 * Math.PI;
+		final double piOverFour = 0.25 * Math.PI;
+		final double threePiOverFour = 0.75 * Math.PI;
+		double lon, lat;
+		if(y >= 0.5){
+			// equatorial region
+			double dy = (0.75 - y) * 4.0;
+			lat = dy * piOverFour;
+
+			double xprime = clamp(x);
+			double faceOffset = (((int)(xprime * 4)) + 1.5) * piOverTwo;
+			double dx = (clamp(4*xprime) - 0.5) * 2;
+			lon = (approximate ? FastTrig.atan2(-1, dx) : Math.atan2(-1, dx)) + faceOffset;
+		} else {
+			if(0.25 <= x && x < 0.75){
+				lonLat[0] = 0;
+				lonLat[1] = 0;
+				return;
+			}
+			final double xOffset, latSign, angleOffset = threePiOverFour;
+			double dx, dy;
+			dy = (0.25 - y) * 4; // range from -1 to 1
+			if (x < 0.5){
+				// north pole
+				//  _ _
+				// | . |
+				// |/ _|
+				// 0 longitude (increases counter-clockwise)
+				xOffset = 0;
+				latSign = 1;
+
+				dx = (x - xOffset - 0.125) * 8.0; // range from -1 to 1
+			} else {
+				// south pole
+				// 0_longitude (increases clockwise)
+				// |\. |
+				// |_ _|
+				//
+				xOffset = 0.75;
+				latSign = -1;
+
+				dx = (x - xOffset - 0.125) * 8.0; // range from -1 to 1
+			}
+
+			double angle = approximate ? FastTrig.atan2(dy, dx) : Math.atan2(dy, dx);
+			lon = angle * latSign + angleOffset;
+
+			double cos = approximate ? FastTrig.cos(angle) : Math.cos(angle);
+			double sin = approximate ? FastTrig.sin(angle) : Math.sin(angle);
+			double hmaxInverse = Math.max(Math.abs(cos), Math.abs(sin));
+			double h = dist(dx, dy) * hmaxInverse;
+			lat = latSign * (piOverTwo - (piOverFour * h));
+		}
+		if(lon > Math.PI) lon -= twoPi;
+		lonLat[0] = lon;
+		lonLat[1] = lat;
+	}
+
+	/* row version of the above, for bulk conversions (same results, but with
+	 * the latitude of the equatorial faces computed once per row) */
+	@Override
+	public void convertRelativePixelRowToLonLat(final double[] relX, final double y, final int count,
+			final double[] lon, final double[] lat) {
+		if(y < 0.5){
+			// polar faces: both coordinates depend on X
+			final double[] lonLat = new double[2];
+			for(int i = 0; i < count; i++){
+				convertRelativePixelXYToLonLat(relX[i], y, lonLat);
+				lon[i] = lonLat[0];
+				lat[i] = lonLat[1];
+			}
+			return;
+		}
+		final double twoPi = 2.0 * Math.PI;
+		final double piOverTwo = 0.5 * Math.PI;
+		final double piOverFour = 0.25 * Math.PI;
+		double dy = (0.75 - y) * 4.0;
+		final double rowLat = dy * piOverFour;
+		for(int i = 0; i < count; i++){
+			double xprime = clamp(relX[i]);
+			double faceOffset = (((int)(xprime * 4)) + 1.5) * piOverTwo;
+			double dx = (clamp(4*xprime) - 0.5) * 2;
+			double rowLon = (approximate ? FastTrig.atan2(-1, dx) : Math.atan2(-1, dx)) + faceOffset;
+			if(rowLon > Math.PI) rowLon -= twoPi;
+			lon[i] = rowLon;
+			lat[i] = rowLat;
+		}
+	}
+
+	/**
+	 * Gets the approximate version of this map projection, whose relative
+	 * pixel coordinates are within 10<sup>-6</sup> and whose
+	 * longitude-latitude coordinates are within 10<sup>-6</sup> radians of
+	 * the exact version.
+	 * @return the approximate cubic map projection
+	 */
+	@Override
+	public MapProjection approximate(){
+		return APPROXIMATE;
+	}
+
+	@Override
+	public String toString(){
+		return approximate ? "Cubic (approximate)" : "Cubic";
+	}
+}
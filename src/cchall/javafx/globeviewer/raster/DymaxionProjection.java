@@ -0,0 +1,260 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 .
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cchall.javafx.globeviewer.raster;
+
+import static cchall.javafx.globeviewer.raster.MercatorProjection.clamp;
+
+/**
+ * The dymaxion (aka icosahedron) map projection, which unfolds the globe onto
+ * the 20 triangles of an icosahedron: 5 around each pole and 10 along the
+ * equator.
+ * @author CCHall <a href="mailto:explosivegnome@yahoo.com">
+ * explosivegnome@yahoo.com</a>
+ */
+final class DymaxionProjection implements MapProjection {
+
+	/* package private */
+	static final DymaxionProjection INSTANCE = new DymaxionProjection();
+
+	private static final double icoAngle; // the angle between two vertices on an icosahedron
+	private static final double icoAngleInverse;
+	static{
+		double root5 = Math.sqrt(5.0);
+		double phi = 0.5*(1 + root5);
+		double a = distance(0, 0, 0, 0, 1, phi);
+		double b = distance(0, 0, 0, 0, 1, -phi);
+		double c = distance(0, 1, phi, 0, 1, -phi);
+		icoAngle = Math.acos(Math.sqrt((c*c + b*b - c*c)/(2*a*b)));
+		icoAngleInverse = 1.0 / icoAngle;
+	}
+	private static final double fiveOverTwoPi = 5d / (2*Math.PI);
+	private static final double oneOverRoot3 = 1.0 / Math.sqrt(3.0);
+	private static final double oneOverTwoPi = 1.0 / (2.0 * Math.PI);
+	private static final double piOverFive = Math.PI / 5;
+	private static final double piOverTwo = 0.5 * Math.PI;
+	private static final double twoPi = 2.0 * Math.PI;
+	private static final double twoPiOverFive = 2 * Math.PI / 5;
+	private static final double triangleHalfWidth = 1.0 / 11.0;
+	private static final double triangleHeight = 1.0 / 3.0;
+	private static final double triangleHeightInverse = 1.0 / triangleHeight;
+	private static final double triangleWidth = triangleHalfWidth * 2;
+	private static final double upperLatitude = piOverTwo - icoAngle;
+	private static final double upperY = triangleHeight;
+	private static final double lowerLatitude = -1 * upperLatitude;
+	private static final double lowerY = 1.0 - triangleHeight;
+	private static final double equatorialYRangeInverse = 1.0 / (upperY - lowerY);
+	private static final double inverseInnerLatitude = 1.0 / (upperLatitude - lowerLatitude);
+
+	private DymaxionProjection(){
+		// singleton
+	}
+
+	/** distance between two points in 3D space */
+	private static double distance(double x0, double y0, double z0, double x1, double y1, double z1){
+		double a = x0 - x1;
+		double b = y0 - y1;
+		double c = z0 - z1;
+		return Math.sqrt(a * a + b * b + c * c);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void convertLonLatToRelativePixelXY(final double longitude, final double lat, final double[] relXY) {
+/*
+ASCII Art Time!
+0--------------------2pi
+||                  ||
+\/                  \/
+
+  /\  /\  /\  /\  /\
+ /__\/__\/__\/__\/__\
+ \  /\  /\  /\  /\  /\
+  \/__\/__\/__\/__\/__\
+   \  /\  /\  /\  /\  /
+    \/  \/  \/  \/  \/
+
+                    /\
+                    ||
+      2pi/0 is in middle of this triangle
+*/
+
+		final double lon = twoPi*clamp(longitude * oneOverTwoPi);
+		//
+		if(lat >= upperLatitude){
+			// one of the 5 north pole triangles
+			double span = lon * fiveOverTwoPi;
+			int trinum = (int)(span);
+			double y = triangleHeight * (1 - ((lat - upperLatitude) * icoAngleInverse));
+			double lineWidth = y * oneOverRoot3;
+			double dx = (span - trinum) * lineWidth;
+			double xOffset = triangleWidth * trinum + 0.5*(triangleWidth - lineWidth);
+			double x = xOffset + dx;
+			relXY[0] = x;
+			relXY[1] = y;
+			return;
+		} else if(lat <= lowerLatitude){
+			// one of the 5 south pole triangles
+			// note that the peak of the 5th triangle is aligned with the 0-longitude line
+			// (offset by one tenth of a rotation)
+			double span = 5 * clamp(lon * oneOverTwoPi - 0.1);
+			int trinum = (int)(span);
+			double dy = triangleHeight * (1 - ((lowerLatitude - lat) * icoAngleInverse));
+			double lineWidth = dy * oneOverRoot3;
+			double dx = (span - trinum) * lineWidth;
+			double xOffset = triangleHalfWidth + triangleWidth * trinum + 0.5*(triangleWidth - lineWidth);
+			double x = xOffset + dx;
+			double y = 1 - dy;
+			relXY[0] = x;
+			relXY[1] = y;
+			return;
+		} else {
+			// one of the equatorial 10 triangles
+			// conveniently, these are basically a mercator UV mapping
+			double vspan = lat * inverseInnerLatitude; // -0.5 to 0.5
+			double dy = triangleHeight * (vspan);
+			double y = 0.5 - dy;
+			double vspan2 = 0.5 - vspan; // 0 to 1
+			double xcut = vspan2 * 0.1;//vspan2 * oneOverRoot3;
+			double hspan = lon * oneOverTwoPi;
+			double x;
+			if(hspan < xcut){
+				// on left side of left slope, move to right side
+				hspan += 1;
+			}
+			x = 10 * triangleHalfWidth * hspan;
+			relXY[0] = x;
+			relXY[1] = y;
+			return;
+		}
+
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void convertRelativePixelXYToLonLat(final double relX, final double relY, final double[] lonLat) {
+
+		final double x = clamp(relX), y = clamp(relY);
+		double lon,lat;
+		if(y < upperY){
+			// one of the 5 north pole triangles
+			lat = Math.min(
+					piOverTwo,
+					(1 - (y * triangleHeightInverse)) * icoAngle + upperLatitude
+			);
+			double span = x * 5.5; // 11/10 scalar x 5
+			int trinum = Math.min(4, (int)(span));
+			double dx = triangleWidth * Math.min(1.0, span - trinum);
+			double lineWidth = y * oneOverRoot3;
+			double xOffset = 0.5*(triangleWidth - lineWidth);
+			double xLimit = triangleWidth - xOffset;
+			double baseLongitude = trinum * twoPiOverFive;
+			if(dx <= xOffset) {
+				lon = baseLongitude;
+			} else if(dx >= xLimit) {
+				lon = baseLongitude + twoPiOverFive;
+			} else {
+				lon = baseLongitude + ((dx - xOffset) / lineWidth) * twoPiOverFive;
+			}
+		} else if(y > lowerY) {
+			// one of the 5 south pole triangles
+			// note that the peak of the 5th triangle is aligned with the 0-longitude line
+			// (offset by one tenth of a rotation)
+			lat = Math.max(
+					-piOverTwo,
+					lowerLatitude - ((y - lowerY) * triangleHeightInverse) * icoAngle
+			);
+			double span = Math.max(0, (x - triangleHalfWidth) * 5.5); // 11/10 scalar x 5
+			int trinum = Math.min(4, (int)(span));
+			double dx = triangleWidth * Math.min(1.0, span - trinum);
+			double dy = triangleHeight - (y - lowerY);
+			double lineWidth = dy * oneOverRoot3;
+			double xOffset = 0.5*(triangleWidth - lineWidth);
+			double xLimit = triangleWidth - xOffset;
+			double baseLongitude = trinum * twoPiOverFive + piOverFive;
+			if(dx <= xOffset) {
+				lon = baseLongitude;
+			} else if(dx >= xLimit) {
+				lon = baseLongitude + twoPiOverFive;
+			} else {
+				lon = baseLongitude + ((dx - xOffset) / lineWidth) * twoPiOverFive;
+			}
+
+
+		} else {
+			// one of the equatorial 10 triangles
+			// conveniently, these are basically a mercator UV mapping
+			double dy = (y - 0.5) * equatorialYRangeInverse; // -0.5 to 0.5
+			lat = dy * 2 * upperLatitude;
+			lon = x * 1.1 * twoPi;
+
+		}
+		if(lon > twoPi) lon -= twoPi;
+		if(lon > Math.PI) lon -= twoPi;
+		lonLat[0] = lon;
+		lonLat[1] = lat;
+	}
+
+	/* row version of the above, for bulk conversions (same results, but in the
+	 * equatorial triangles the latitude is computed once per row and longitude
+	 * is linear) */
+	@Override
+	public void convertRelativePixelRowToLonLat(final double[] relX, final double relY, final int count,
+			final double[] lon, final double[] lat) {
+		final double y = clamp(relY);
+		if(y < upperY || y > lowerY){
+			// polar triangles: both coordinates depend on X
+			final double[] lonLat = new double[2];
+			for(int i = 0; i < count; i++){
+				convertRelativePixelXYToLonLat(relX[i], relY, lonLat);
+				lon[i] = lonLat[0];
+				lat[i] = lonLat[1];
+			}
+			return;
+		}
+		double dy = (y - 0.5) * equatorialYRangeInverse; // -0.5 to 0.5
+		final double rowLat = dy * 2 * upperLatitude;
+		for(int i = 0; i < count; i++){
+			double rowLon = clamp(relX[i]) * 1.1 * twoPi;
+			if(rowLon > twoPi) rowLon -= twoPi;
+			if(rowLon > Math.PI) rowLon -= twoPi;
+			lon[i] = rowLon;
+			lat[i] = rowLat;
+		}
+	}
+
+	@Override
+	public double getAspectRatio(){
+		// 11 triangle half-widths by 3 triangle heights
+		return 22.0 / (3.0 * Math.sqrt(3.0));
+	}
+
+	@Override
+	public String toString(){
+		return "Dymaxion";
+	}
+}
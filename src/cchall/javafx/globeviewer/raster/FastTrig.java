@@ -0,0 +1,135 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 .
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cchall.javafx.globeviewer.raster;
+
+/**
+ * Fast, approximate trigonometry for the bulk map projection math of the 
+ * approximate map projections (see {@link MapProjection#approximate()}).<p>
+ * <code>sin</code> and <code>cos</code> interpolate linearly in a table of 
+ * 4096 samples per turn, so their error is at most 
+ * <code>(2&pi;/4096)<sup>2</sup>/8</code>, about 3&times;10<sup>-7</sup>. 
+ * <code>tan</code> divides the two, which keeps the same bound for angles 
+ * between -&pi;/4 and &pi;/4 (the error grows towards &plusmn;&pi;/2). 
+ * <code>atan2</code> uses a degree-16 polynomial (Abramowitz and Stegun 
+ * 4.4.49) with an error of at most about 10<sup>-8</sup> radians. All of these 
+ * are far smaller than the angular size of one texel of any texture that fits 
+ * in memory (a 65536 pixel wide map has 10<sup>-4</sup> radian texels).
+ * @author CCHall <a href="mailto:explosivegnome@yahoo.com">
+ * explosivegnome@yahoo.com</a>
+ */
+final class FastTrig {
+	
+	/** Documented maximum absolute error of sin, cos and tan (for |x| &lt;= &pi;/4) */
+	static final double MAX_SIN_ERROR = 3e-7;
+	/** Documented maximum absolute error of atan2, in radians */
+	static final double MAX_ATAN_ERROR = 2e-8;
+	
+	private static final int TABLE_BITS = 12;
+	private static final int TABLE_SIZE = 1 << TABLE_BITS;
+	private static final int TABLE_MASK = TABLE_SIZE - 1;
+	private static final int QUARTER_TURN = TABLE_SIZE / 4;
+	private static final double RADIANS_TO_INDEX = TABLE_SIZE / (2 * Math.PI);
+	/** sin of each table index (one extra entry so that i + 1 never wraps) */
+	private static final double[] SIN_TABLE = new double[TABLE_SIZE + 1];
+	static {
+		for(int i = 0; i <= TABLE_SIZE; i++){
+			SIN_TABLE[i] = Math.sin(i / RADIANS_TO_INDEX);
+		}
+	}
+	
+	private FastTrig(){
+		// static utility class
+	}
+	
+	/**
+	 * Approximate sine.
+	 * @param x angle in radians
+	 * @return sin(x), with an error of at most {@link #MAX_SIN_ERROR}
+	 */
+	static double sin(double x){
+		return lookup(x * RADIANS_TO_INDEX, 0);
+	}
+	
+	/**
+	 * Approximate cosine.
+	 * @param x angle in radians
+	 * @return cos(x), with an error of at most {@link #MAX_SIN_ERROR}
+	 */
+	static double cos(double x){
+		return lookup(x * RADIANS_TO_INDEX, QUARTER_TURN);
+	}
+	
+	/**
+	 * Approximate tangent.
+	 * @param x angle in radians
+	 * @return tan(x), with an error of at most {@link #MAX_SIN_ERROR} for 
+	 * angles between -&pi;/4 and &pi;/4
+	 */
+	static double tan(double x){
+		final double t = x * RADIANS_TO_INDEX;
+		return lookup(t, 0) / lookup(t, QUARTER_TURN);
+	}
+	
+	/** linear interpolation in the sine table, at a fractional index plus an offset */
+	private static double lookup(double t, int offset){
+		final double floor = Math.floor(t);
+		final double f = t - floor;
+		final int i = ((int)(long)floor + offset) & TABLE_MASK;
+		return SIN_TABLE[i] + f * (SIN_TABLE[i + 1] - SIN_TABLE[i]);
+	}
+	
+	/**
+	 * Approximate arc-tangent of y/x, for the same quadrants (and signed zeros) 
+	 * as <code>Math.atan2(y, x)</code>. Infinite arguments are not supported.
+	 * @param y Y coordinate
+	 * @param x X coordinate
+	 * @return angle in radians, from -&pi; to &pi;, with an error of at most 
+	 * {@link #MAX_ATAN_ERROR}
+	 */
+	static double atan2(double y, double x){
+		final double ax = Math.abs(x);
+		final double ay = Math.abs(y);
+		if(ax == 0 && ay == 0){
+			return x < 0 || 1 / x < 0 ? Math.copySign(Math.PI, y) : Math.copySign(0.0, y);
+		}
+		double a;
+		if(ay <= ax){
+			a = atan(ay / ax);
+		} else {
+			a = 0.5 * Math.PI - atan(ax / ay);
+		}
+		if(x < 0){
+			a = Math.PI - a;
+		}
+		return Math.copySign(a, y);
+	}
+	
+	/** polynomial arc-tangent for 0 &lt;= x &lt;= 1 (Abramowitz and Stegun 4.4.49) */
+	private static double atan(double x){
+		final double x2 = x * x;
+		return x * (1 + x2 * (-0.3333314528 + x2 * (0.1999355085 + x2 * (-0.1420889944 
+				+ x2 * (0.1065626393 + x2 * (-0.0752896400 + x2 * (0.0429096138 
+				+ x2 * (-0.0161657367 + x2 * 0.0028662257))))))));
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 .
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cchall.javafx.globeviewer.raster;
+
+/**
+ * Creates illumination maps (e.g. city lights on the night side of a planet)
+ * by darkening color maps. The colors are scaled with integer arithmetic, two
+ * channels per multiply, on the thread pool of {@link RasterReprojector}, so
+ * an illumination map can be recomputed every frame to animate its intensity.
+ * @author CCHall <a href="mailto:explosivegnome@yahoo.com">
+ * explosivegnome@yahoo.com</a>
+ */
+public final class IlluminationMaps {
+
+	private IlluminationMaps(){
+		// static utility class
+	}
+
+	/**
+	 * Converts an intensity into the multiplier used by
+	 * {@link #darken(int, int)}
+	 * @param intensity A number from 0 to 1 (0 = black, 1 = unchanged)
+	 * @return The multiplier, in 256ths (0 to 256)
+	 */
+	public static int toMultiplier(double intensity){
+		if(intensity >= 1) return 256;
+		if(intensity > 0) return (int)Math.round(intensity * 256);
+		return 0; // also catches NaN
+	}
+
+	/**
+	 * Darkens a color (the result is always opaque)
+	 * @param argb An ARGB color
+	 * @param multiplier Multiplier of the red, green and blue channels, in
+	 * 256ths (0 to 256, see {@link #toMultiplier(double)})
+	 * @return The darkened, opaque ARGB color
+	 */
+	public static int darken(int argb, int multiplier){
+		// rounded; 255 * 256 + 128 still fits in 16 bits, so red never carries into alpha
+		final int rb = (((argb & 0x00FF00FF) * multiplier + 0x00800080) >>> 8) & 0x00FF00FF;
+		final int g = (((argb & 0x0000FF00) * multiplier + 0x00008000) >>> 8) & 0x0000FF00;
+		return 0xFF000000 | rb | g;
+	}
+
+	/**
+	 * Darkens a range of pixels
+	 * @param src Input ARGB pixels
+	 * @param srcOffset Index of the first input pixel
+	 * @param dst Output ARGB pixels (may be the same array as the input)
+	 * @param dstOffset Index of the first output pixel
+	 * @param length Number of pixels
+	 * @param multiplier Multiplier of the red, green and blue channels, in
+	 * 256ths (0 to 256, see {@link #toMultiplier(double)})
+	 */
+	public static void darken(final int[] src, final int srcOffset, final int[] dst, final int dstOffset, 
+			final int length, final int multiplier){
+		for(int i = 0; i < length; i++){
+			dst[dstOffset + i] = darken(src[srcOffset + i], multiplier);
+		}
+	}
+
+	/**
+	 * Darkens some rows of a color map
+	 * @param colorMap The input color map
+	 * @param y0 First row
+	 * @param height Number of rows
+	 * @param intensity A number from 0 to 1 specifying how dark the output
+	 * should be (0 = black, 1 = identical to the input)
+	 * @param dst Output ARGB pixels, of at least <code>width * height</code>
+	 * (row <code>y0</code> is written at index 0). May be the pixel array of
+	 * the color map if <code>y0</code> is 0.
+	 * @param parallelism Parallel processing hint (1 processes the pixels on
+	 * the calling thread)
+	 * @throws InterruptedException Thrown if this thread is interrupted while
+	 * waiting for the thread pool to finish.
+	 */
+	public static void darken(final Raster colorMap, final int y0, final int height, final double intensity, 
+			final int[] dst, final int parallelism) throws InterruptedException {
+		final int width = colorMap.getWidth();
+		if(y0 < 0 || height < 0 || y0 + height > colorMap.getHeight()){
+			throw new IllegalArgumentException(String.format("Rows %s to %s are outside of %s", 
+					y0, y0 + height - 1, colorMap));
+		}
+		if(dst.length < width * height){
+			throw new IllegalArgumentException(String.format(
+					"%s rows of %s requires %s pixels, but the array has %s", 
+					height, colorMap, width * height, dst.length));
+		}
+		final int[] src = colorMap.getPixels();
+		final int multiplier = toMultiplier(intensity);
+		RasterReprojector.forEachTile(width, height, parallelism, (int x0, int ty0, int w, int h)->{
+			for(int y = ty0; y < ty0 + h; y++){
+				darken(src, (y0 + y) * width + x0, dst, y * width + x0, w, multiplier);
+			}
+		});
+	}
+
+	/**
+	 * Creates a darkened copy of a color map
+	 * @param colorMap The input color map
+	 * @param intensity A number from 0 to 1 specifying how dark the output
+	 * should be (0 = black, 1 = identical to the input)
+	 * @param parallelism Parallel processing hint (1 processes the pixels on
+	 * the calling thread)
+	 * @return A new, opaque raster of the same size as the color map
+	 * @throws InterruptedException Thrown if this thread is interrupted while
+	 * waiting for the thread pool to finish.
+	 */
+	public static Raster create(final Raster colorMap, final double intensity, final int parallelism) 
+			throws InterruptedException {
+		final Raster out = new Raster(colorMap.getWidth(), colorMap.getHeight());
+		darken(colorMap, 0, colorMap.getHeight(), intensity, out.getPixels(), parallelism);
+		return out;
+	}
+}
@@ -0,0 +1,299 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 .
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cchall.javafx.globeviewer.raster;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps a converted texture up to date with a source texture that changes a 
+ * little at a time (e.g. live data composited into a mercator texture), by 
+ * converting only the target pixels that sample from the changed source 
+ * pixels. When a source region changes, call {@link #update(int, int, int, int)} 
+ * and the affected target pixels (and only those) are converted again. The 
+ * cost of an update is proportional to the number of affected target pixels, 
+ * not to the size of the textures.<p>
+ * The affected target pixels are found with a reverse index of the 
+ * {@link ReprojectionPlan}: the source image is split into 
+ * {@value #TILE_SIZE} x {@value #TILE_SIZE} tiles, and for each tile the 
+ * index lists the target pixels whose filter footprint overlaps it. This is 
+ * exact even where the target layout is discontinuous (e.g. across the seams 
+ * of the {@link MapProjections#CUBIC} and {@link MapProjections#DYMAXION} 
+ * layouts, or near the poles, where many target pixels sample the same source 
+ * row). Building the index costs about as much as one conversion and it takes 
+ * one <code>int</code> per target pixel.<p>
+ * An IncrementalReprojector is not thread-safe.<br><pre>
+IncrementalReprojector live = new IncrementalReprojector(mercator, MapProjections.MERCATOR, 
+		dymaxion, MapProjections.DYMAXION, 1, RasterReprojector.Filter.BILINEAR);
+// ... draw into the mercator raster ...
+for(Rectangle changed : live.update(x, y, width, height)){
+	// upload the changed part of the dymaxion raster
+}
+</pre>
+ * @author CCHall <a href="mailto:explosivegnome@yahoo.com">
+ * explosivegnome@yahoo.com</a>
+ */
+public final class IncrementalReprojector {
+	
+	/** Width and height of the source tiles of the reverse index, and of the changed target regions */
+	public static final int TILE_SIZE = 32;
+	
+	private final Raster source;
+	private final Raster target;
+	private final MapProjection sourceProjection;
+	private final ReprojectionPlan plan;
+	private final int tilesX;
+	/** for each source tile, the start of its target pixels in {@link #tilePixels} (CSR layout) */
+	private final int[] tileStart;
+	/** target pixel indices, grouped by source tile */
+	private final int[] tilePixels;
+	
+	/**
+	 * Prepares incremental updates of a converted texture. This does not 
+	 * convert anything, so the target should already hold the conversion of 
+	 * the source (e.g. from {@link RasterReprojector#reproject(cchall.javafx.globeviewer.raster.Raster, cchall.javafx.globeviewer.raster.MapProjection, cchall.javafx.globeviewer.raster.MapProjection, int, int, int, cchall.javafx.globeviewer.raster.RasterReprojector.Filter)}).
+	 * @param source The source texture raster
+	 * @param sourceProjection The map projection of the source
+	 * @param target The converted texture raster, which will be updated
+	 * @param targetProjection The map projection of the target
+	 * @param parallelism Parallel processing hint (see {@link RasterReprojector}) 
+	 * used if the reprojection plan needs to be computed
+	 * @param filter Texture filter
+	 * @throws InterruptedException Thrown if this thread is interrupted while 
+	 * waiting for the thread pool to compute the reprojection plan.
+	 */
+	public IncrementalReprojector(
+			final Raster source, 
+			final MapProjection sourceProjection, 
+			final Raster target, 
+			final MapProjection targetProjection, 
+			final int parallelism, 
+			final RasterReprojector.Filter filter
+	) throws InterruptedException {
+		this.source = source;
+		this.target = target;
+		this.sourceProjection = sourceProjection;
+		this.plan = ReprojectionPlan.get(sourceProjection, targetProjection, 
+				source.getWidth(), source.getHeight(), target.getWidth(), target.getHeight(), parallelism, filter);
+		this.tilesX = (source.getWidth() + TILE_SIZE - 1) / TILE_SIZE;
+		final int tilesY = (source.getHeight() + TILE_SIZE - 1) / TILE_SIZE;
+		// first count the target pixels of each tile, then fill them in
+		this.tileStart = new int[tilesX * tilesY + 1];
+		indexFootprints(null, null);
+		for(int t = 1; t < tileStart.length; t++){
+			tileStart[t] += tileStart[t - 1];
+		}
+		this.tilePixels = new int[tileStart[tileStart.length - 1]];
+		indexFootprints(Arrays.copyOf(tileStart, tileStart.length - 1), tilePixels);
+	}
+	
+	/** 
+	 * counts the target pixels of each source tile into tileStart (if next is 
+	 * null), or adds them to the index
+	 */
+	private void indexFootprints(final int[] next, final int[] pixels){
+		final int srcWidth = source.getWidth();
+		final int srcHeight = source.getHeight();
+		final int dstWidth = target.getWidth();
+		final int dstHeight = target.getHeight();
+		final int before = plan.footprintBefore();
+		final int after = plan.footprintAfter();
+		for(int y = 0; y < dstHeight; y++){
+			for(int x = 0; x < dstWidth; x++){
+				final int index = plan.sourceIndex(x, y);
+				final int sy = index / srcWidth;
+				final int sx = index - sy * srcWidth;
+				final int tx1 = Math.min(srcWidth - 1, sx + after) / TILE_SIZE;
+				final int ty1 = Math.min(srcHeight - 1, sy + after) / TILE_SIZE;
+				for(int ty = Math.max(0, sy - before) / TILE_SIZE; ty <= ty1; ty++){
+					for(int tx = Math.max(0, sx - before) / TILE_SIZE; tx <= tx1; tx++){
+						if(next == null){
+							tileStart[ty * tilesX + tx + 1]++;
+						} else {
+							pixels[next[ty * tilesX + tx]++] = y * dstWidth + x;
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return The source texture raster
+	 */
+	public Raster getSource(){
+		return source;
+	}
+	
+	/**
+	 * @return The converted texture raster, which is updated by 
+	 * {@link #update(int, int, int, int)}
+	 */
+	public Raster getTarget(){
+		return target;
+	}
+	
+	/**
+	 * Converts a region of the source again, updating only the target pixels 
+	 * that sample from it.
+	 * @param x First column of the changed source region
+	 * @param y First row of the changed source region
+	 * @param width Width of the changed source region
+	 * @param height Height of the changed source region
+	 * @return The regions of the target that changed (each within one 
+	 * {@value #TILE_SIZE} pixel row of tiles, from top to bottom), e.g. for 
+	 * copying them into a texture image
+	 */
+	public List<Rectangle> update(final int x, final int y, final int width, final int height){
+		final int srcWidth = source.getWidth();
+		final int dstWidth = target.getWidth();
+		final int x0 = Math.max(0, x);
+		final int y0 = Math.max(0, y);
+		final int x1 = Math.min(srcWidth, x + width) - 1;
+		final int y1 = Math.min(source.getHeight(), y + height) - 1;
+		if(x1 < x0 || y1 < y0){
+			return Collections.emptyList();
+		}
+		final int before = plan.footprintBefore();
+		final int after = plan.footprintAfter();
+		// find the target pixels whose footprints overlap the region
+		int[] hits = new int[256];
+		int count = 0;
+		for(int ty = y0 / TILE_SIZE; ty <= y1 / TILE_SIZE; ty++){
+			for(int tx = x0 / TILE_SIZE; tx <= x1 / TILE_SIZE; tx++){
+				final int tile = ty * tilesX + tx;
+				for(int i = tileStart[tile]; i < tileStart[tile + 1]; i++){
+					final int dst = tilePixels[i];
+					final int dy = dst / dstWidth;
+					final int index = plan.sourceIndex(dst - dy * dstWidth, dy);
+					final int sy = index / srcWidth;
+					final int sx = index - sy * srcWidth;
+					if(sx - before <= x1 && sx + after >= x0 && sy - before <= y1 && sy + after >= y0){
+						if(count == hits.length){
+							hits = Arrays.copyOf(hits, 2 * count);
+						}
+						hits[count++] = dst;
+					}
+				}
+			}
+		}
+		if(count == 0){
+			return Collections.emptyList();
+		}
+		// footprints spanning several tiles are found more than once
+		Arrays.sort(hits, 0, count);
+		final int[][] srcs = {source.getPixels()};
+		final int[][] run = {new int[dstWidth]};
+		final int[] dsts = target.getPixels();
+		final int dstTilesX = (dstWidth + TILE_SIZE - 1) / TILE_SIZE;
+		final BitSet changedTiles = new BitSet();
+		int i = 0;
+		while(i < count){
+			// a run of consecutive target pixels in the same row
+			final int first = hits[i];
+			final int row = first / dstWidth;
+			int last = first;
+			while(i < count && hits[i] <= last + 1 && hits[i] / dstWidth == row){
+				last = hits[i++];
+			}
+			final int col = first - row * dstWidth;
+			final int length = last - first + 1;
+			plan.gather(srcs, run, col, row, length, 1);
+			System.arraycopy(run[0], 0, dsts, first, length);
+			final int tileRow = (row / TILE_SIZE) * dstTilesX;
+			changedTiles.set(tileRow + col / TILE_SIZE, tileRow + (col + length - 1) / TILE_SIZE + 1);
+		}
+		return toRectangles(changedTiles, dstTilesX);
+	}
+	
+	/** merges horizontally adjacent changed tiles into rectangles */
+	private List<Rectangle> toRectangles(final BitSet changedTiles, final int dstTilesX){
+		final List<Rectangle> regions = new ArrayList<>();
+		int tile = changedTiles.nextSetBit(0);
+		while(tile >= 0){
+			final int tileY = tile / dstTilesX;
+			final int tileX = tile - tileY * dstTilesX;
+			int end = changedTiles.nextClearBit(tile);
+			end = Math.min(end, (tileY + 1) * dstTilesX); // one row of tiles at a time
+			final int rx = tileX * TILE_SIZE;
+			final int ry = tileY * TILE_SIZE;
+			regions.add(new Rectangle(rx, ry, 
+					Math.min(target.getWidth(), (end - tileY * dstTilesX) * TILE_SIZE) - rx, 
+					Math.min(target.getHeight(), ry + TILE_SIZE) - ry));
+			tile = changedTiles.nextSetBit(end);
+		}
+		return regions;
+	}
+	
+	/**
+	 * Finds the region of the source texture that covers a longitude-latitude 
+	 * rectangle (plus a one pixel margin), for use with 
+	 * {@link #update(int, int, int, int)}. The rectangle is sampled about twice 
+	 * per source pixel, so the result is conservative for any map projection 
+	 * (if the rectangle is split across several parts of the source layout, 
+	 * the region covers all of them).
+	 * @param lonMin Western edge of the rectangle (in radians)
+	 * @param latMin Southern edge of the rectangle (in radians)
+	 * @param lonMax Eastern edge of the rectangle (in radians), which may be 
+	 * less than <code>lonMin</code> if the rectangle crosses the 180th meridian
+	 * @param latMax Northern edge of the rectangle (in radians)
+	 * @return The changed region of the source texture
+	 */
+	public Rectangle toSourceRegion(double lonMin, double latMin, double lonMax, double latMax){
+		if(lonMax < lonMin){
+			lonMax += 2 * Math.PI;
+		}
+		final int srcWidth = source.getWidth();
+		final int srcHeight = source.getHeight();
+		final int lonSamples = (int)Math.ceil((lonMax - lonMin) / (2 * Math.PI) * srcWidth * 2) + 2;
+		final int latSamples = (int)Math.ceil((latMax - latMin) / Math.PI * srcHeight * 2) + 2;
+		final double[] relXY = new double[2];
+		int minX = srcWidth, minY = srcHeight, maxX = -1, maxY = -1;
+		for(int j = 0; j < latSamples; j++){
+			final double lat = latMin + (latMax - latMin) * j / (latSamples - 1);
+			for(int i = 0; i < lonSamples; i++){
+				double lon = lonMin + (lonMax - lonMin) * i / (lonSamples - 1);
+				if(lon > Math.PI){
+					lon -= 2 * Math.PI;
+				}
+				sourceProjection.convertLonLatToRelativePixelXY(lon, lat, relXY);
+				final int px = ReprojectionPlan.toPixel(relXY[0], srcWidth);
+				final int py = ReprojectionPlan.toPixel(relXY[1], srcHeight);
+				minX = Math.min(minX, px);
+				maxX = Math.max(maxX, px);
+				minY = Math.min(minY, py);
+				maxY = Math.max(maxY, py);
+			}
+		}
+		minX = Math.max(0, minX - 1);
+		minY = Math.max(0, minY - 1);
+		maxX = Math.min(srcWidth - 1, maxX + 1);
+		maxY = Math.min(srcHeight - 1, maxY + 1);
+		return new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 .
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cchall.javafx.globeviewer.raster;
+
+/**
+ * A map projection describes how a texture image wraps around the globe, i.e. 
+ * how longitude-latitude coordinates relate to relative pixel X-Y coordinates 
+ * on the texture. This is the same pair of conversions as 
+ * <code>GlobeViewer.convertLonLatToRelativePixelXY(Point2D)</code> and 
+ * <code>GlobeViewer.convertRelativePixelXYToLonLat(Point2D)</code>, but with 
+ * primitive arguments so that bulk texture conversions (see 
+ * {@link RasterReprojector}) do not need to allocate an object per pixel, and 
+ * without any dependency on the JavaFX toolkit.<p>
+ * The built-in map projections are provided as constants by {@link MapProjections} 
+ * (and by the <code>MAP_PROJECTION</code> constant of the matching GlobeViewer 
+ * class), and each GlobeViewer provides its map projection via 
+ * <code>GlobeViewer.getMapProjection()</code>. Implementations must be thread-safe.
+ * @author CCHall <a href="mailto:explosivegnome@yahoo.com">
+ * explosivegnome@yahoo.com</a>
+ */
+public interface MapProjection {
+	/**
+	 * This method converts a spherical longitude-latitude coordinate into a 
+	 * texture X-Y pixel coordinate (where X and Y range from 0 to 1).
+	 * @param lon longitude (in radians)
+	 * @param lat latitude (in radians)
+	 * @param relXYOut array of length 2 (or more) into which the relative pixel 
+	 * X and Y coordinates are stored, in that order.
+	 */
+	public abstract void convertLonLatToRelativePixelXY(double lon, double lat, double[] relXYOut);
+	
+	/**
+	 * This method converts a texture X-Y pixel coordinate (where X and Y range 
+	 * from 0 to 1) into a spherical longitude-latitude coordinate.
+	 * @param relX relative pixel X coordinate [0-1]
+	 * @param relY relative pixel Y coordinate [0-1]
+	 * @param lonLatOut array of length 2 (or more) into which the longitude and 
+	 * latitude (in radians) are stored, in that order.
+	 */
+	public abstract void convertRelativePixelXYToLonLat(double relX, double relY, double[] lonLatOut);
+	
+	/**
+	 * Converts a row of texture X-Y pixel coordinates which all have the same 
+	 * Y coordinate into longitude-latitude coordinates. This is what bulk 
+	 * texture conversions call, so implementations can override it to compute 
+	 * whatever depends only on the row once per row instead of once per pixel 
+	 * (the default implementation simply calls 
+	 * {@link #convertRelativePixelXYToLonLat(double, double, double[])} for 
+	 * each pixel). The result for each pixel must not depend on the other 
+	 * pixels in the row.
+	 * @param relX relative pixel X coordinates [0-1]
+	 * @param relY relative pixel Y coordinate [0-1] of the whole row
+	 * @param count number of coordinates to convert
+	 * @param lonOut array into which the longitudes (in radians) are stored
+	 * @param latOut array into which the latitudes (in radians) are stored
+	 */
+	public default void convertRelativePixelRowToLonLat(double[] relX, double relY, int count, 
+			double[] lonOut, double[] latOut){
+		final double[] lonLat = new double[2];
+		for(int i = 0; i < count; i++){
+			convertRelativePixelXYToLonLat(relX[i], relY, lonLat);
+			lonOut[i] = lonLat[0];
+			latOut[i] = lonLat[1];
+		}
+	}
+	
+	/**
+	 * Converts a row of longitude-latitude coordinates into texture X-Y pixel 
+	 * coordinates. This is what bulk texture conversions call, so 
+	 * implementations can override it to avoid repeating work for consecutive 
+	 * coordinates (the default implementation simply calls 
+	 * {@link #convertLonLatToRelativePixelXY(double, double, double[])} for 
+	 * each coordinate). The result for each coordinate must not depend on the 
+	 * other coordinates.
+	 * @param lon longitudes (in radians)
+	 * @param lat latitudes (in radians)
+	 * @param count number of coordinates to convert
+	 * @param relXOut array into which the relative pixel X coordinates are stored
+	 * @param relYOut array into which the relative pixel Y coordinates are stored
+	 */
+	public default void convertLonLatRowToRelativePixelXY(double[] lon, double[] lat, int count, 
+			double[] relXOut, double[] relYOut){
+		final double[] relXY = new double[2];
+		for(int i = 0; i < count; i++){
+			convertLonLatToRelativePixelXY(lon[i], lat[i], relXY);
+			relXOut[i] = relXY[0];
+			relYOut[i] = relXY[1];
+		}
+	}
+	
+	/**
+	 * Gets the preferred width-to-height ratio of texture images in this map 
+	 * projection.
+	 * @return width divided by height (2 by default)
+	 */
+	public default double getAspectRatio(){
+		return 2.0;
+	}
+	
+	/**
+	 * Gets a faster version of this map projection which uses approximate 
+	 * trigonometry, for bulk texture conversions where speed matters more than 
+	 * the last few digits of precision. The approximations are accurate to a 
+	 * few millionths of a radian (far less than one texel), see the 
+	 * documentation of each implementation for its error bound.
+	 * @return An approximate version of this map projection, or this map 
+	 * projection if it does not have one (the default)
+	 */
+	public default MapProjection approximate(){
+		return this;
+	}
+	
+	/**
+	 * Describes the geometry of this map projection for the persistent cache 
+	 * of converted textures (see {@link TextureCache}): map projections with 
+	 * the same description must convert every coordinate identically, also in 
+	 * later runs of the application. The default is the class name and 
+	 * <code>toString()</code>, which suits map projections whose parameters 
+	 * (if any) are part of their <code>toString()</code>.
+	 * @return A description, or <code>null</code> if this map projection has 
+	 * no stable description (conversions from or to it are then never cached)
+	 */
+	public default String getCacheDescription(){
+		return getClass().getName() + ":" + this;
+	}
+}
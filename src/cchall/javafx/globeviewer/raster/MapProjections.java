@@ -0,0 +1,66 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 .
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cchall.javafx.globeviewer.raster;
+
+/**
+ * The built-in map projections, one for each GlobeViewer implementation (e.g.
+ * {@link #CUBIC} is the same map projection as
+ * <code>CubicGlobeViewer.MAP_PROJECTION</code>). Unlike the GlobeViewer
+ * classes, these do not depend on the JavaFX toolkit, so they can be used to
+ * convert textures on headless servers (see {@link RasterReprojector}).
+ * @author CCHall <a href="mailto:explosivegnome@yahoo.com">
+ * explosivegnome@yahoo.com</a>
+ */
+public final class MapProjections {
+
+	/**
+	 * The mercator map projection (aka UV map). The x-axis of the image
+	 * represents longitude and the y-axis of the image represents latitude.
+	 */
+	public static final MapProjection MERCATOR = MercatorProjection.INSTANCE;
+
+	/**
+	 * The sinusoidal map projection. Its {@link MapProjection#approximate()}
+	 * version has relative pixel coordinates within 10<sup>-6</sup> of the
+	 * exact version.
+	 */
+	public static final MapProjection SINUSOIDAL = SinusoidalProjection.INSTANCE;
+
+	/**
+	 * The cubic map projection. Its {@link MapProjection#approximate()}
+	 * version has relative pixel coordinates within 10<sup>-6</sup> and
+	 * longitude-latitude coordinates within 10<sup>-6</sup> radians of the
+	 * exact version.
+	 */
+	public static final MapProjection CUBIC = CubicProjection.INSTANCE;
+
+	/**
+	 * The dymaxion (aka icosahedron) map projection.
+	 */
+	public static final MapProjection DYMAXION = DymaxionProjection.INSTANCE;
+
+	private MapProjections(){
+		// constants class
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 .
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cchall.javafx.globeviewer.raster;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only image stored in a file as raw, uncompressed RGBA pixels (4 bytes 
+ * per pixel in the order red, green, blue, alpha; rows top to bottom with no 
+ * padding and no header), which is memory-mapped rather than loaded. Only the 
+ * parts of the file that are actually read are paged into memory (and the 
+ * operating system can page them out again at any time), so the image can be 
+ * far larger than the Java heap. Because a single mapping is limited to 2 GB, 
+ * the file is mapped as several segments of whole rows.<p>
+ * Pixels are returned in the same ARGB format as 
+ * <code>PixelReader.getArgb(x,y)</code>. Instances are safe to read from 
+ * multiple threads.
+ * @author CCHall <a href="mailto:explosivegnome@yahoo.com">
+ * explosivegnome@yahoo.com</a>
+ */
+final class MappedRaster implements AutoCloseable {
+	
+	/** Maximum size of each mapped segment */
+	private static final long MAX_SEGMENT_BYTES = 1L << 30;
+	
+	/** Width of the image */
+	final int width;
+	/** Height of the image */
+	final int height;
+	private final FileChannel channel;
+	private final MappedByteBuffer[] segments;
+	private final int rowsPerSegment;
+	
+	/**
+	 * Maps a raw RGBA image file.
+	 * @param file The image file
+	 * @param width Width of the image
+	 * @param height Height of the image
+	 * @throws IOException Thrown if the file cannot be opened or mapped
+	 * @throws IllegalArgumentException Thrown if the file is smaller than 
+	 * <code>width * height * 4</code> bytes
+	 */
+	MappedRaster(Path file, int width, int height) throws IOException {
+		if(width <= 0 || height <= 0){
+			throw new IllegalArgumentException(String.format("Invalid image size %sx%s", width, height));
+		}
+		this.width = width;
+		this.height = height;
+		final long rowBytes = 4L * width;
+		this.rowsPerSegment = (int)Math.max(1, Math.min(height, MAX_SEGMENT_BYTES / rowBytes));
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			if(channel.size() < rowBytes * height){
+				throw new IllegalArgumentException(String.format(
+						"File %s is %s bytes, but a %sx%s RGBA image needs %s bytes", 
+						file, channel.size(), width, height, rowBytes * height));
+			}
+			this.segments = new MappedByteBuffer[(height + rowsPerSegment - 1) / rowsPerSegment];
+			for(int i = 0; i < segments.length; i++){
+				final int rows = Math.min(rowsPerSegment, height - i * rowsPerSegment);
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, 
+						rowBytes * i * rowsPerSegment, rowBytes * rows);
+				segments[i].order(ByteOrder.BIG_ENDIAN);
+			}
+		} catch(IOException | RuntimeException ex){
+			channel.close();
+			throw ex;
+		}
+	}
+	
+	/**
+	 * Gets a pixel.
+	 * @param x X coordinate, from 0 to <code>width - 1</code>
+	 * @param y Y coordinate, from 0 to <code>height - 1</code>
+	 * @return The pixel as an ARGB value
+	 */
+	int getArgb(int x, int y){
+		final int rgba = segments[y / rowsPerSegment].getInt(((y % rowsPerSegment) * width + x) << 2);
+		return (rgba >>> 8) | (rgba << 24);
+	}
+	
+	/**
+	 * Closes the file. The mapped memory is released once it is garbage collected.
+	 * @throws IOException Thrown if there was a problem closing the file
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
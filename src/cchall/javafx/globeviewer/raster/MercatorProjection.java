@@ -0,0 +1,99 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 .
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cchall.javafx.globeviewer.raster;
+
+/**
+ * The mercator map projection (aka UV map), where the x-axis of the image
+ * represents longitude and the y-axis of the image represents latitude.
+ * @author CCHall <a href="mailto:explosivegnome@yahoo.com">
+ * explosivegnome@yahoo.com</a>
+ */
+final class MercatorProjection implements MapProjection {
+
+	/* package private */
+	static final MercatorProjection INSTANCE = new MercatorProjection();
+
+	private MercatorProjection(){
+		// singleton
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void convertLonLatToRelativePixelXY(final double lon, final double lat, final double[] relXY) {
+		final double oneOverTwoPi = 1.0 / (2.0 * Math.PI);
+		final double oneOverPi = 1.0 / Math.PI;
+		final double piOverTwo = 0.5 * Math.PI;
+		relXY[0] = clamp( lon * oneOverTwoPi);
+		// the poles are limited to the edges of the image instead of wrapping
+		// around (otherwise the south pole would wrap to the top of the image)
+		relXY[1] = Math.max(0, Math.min(1, 1.0 - ( (lat + piOverTwo) * oneOverPi)));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void convertRelativePixelXYToLonLat(final double relX, final double relY, final double[] lonLat) {
+		final double twoPi = 2.0 * Math.PI;
+		lonLat[0] = (clamp( relX + 0.5 ) - 0.5) * twoPi;
+		lonLat[1] = (0.5 - clamp( relY )) * Math.PI;
+	}
+
+	/* row versions of the above, for bulk conversions (same results, but
+	 * without the array indirection and with the latitude computed once per row) */
+	@Override
+	public void convertLonLatRowToRelativePixelXY(final double[] lon, final double[] lat, final int count,
+			final double[] relX, final double[] relY) {
+		final double oneOverTwoPi = 1.0 / (2.0 * Math.PI);
+		final double oneOverPi = 1.0 / Math.PI;
+		final double piOverTwo = 0.5 * Math.PI;
+		for(int i = 0; i < count; i++){
+			relX[i] = clamp( lon[i] * oneOverTwoPi);
+			relY[i] = Math.max(0, Math.min(1, 1.0 - ( (lat[i] + piOverTwo) * oneOverPi)));
+		}
+	}
+
+	@Override
+	public void convertRelativePixelRowToLonLat(final double[] relX, final double relY, final int count,
+			final double[] lon, final double[] lat) {
+		final double twoPi = 2.0 * Math.PI;
+		final double rowLat = (0.5 - clamp( relY )) * Math.PI;
+		for(int i = 0; i < count; i++){
+			lon[i] = (clamp( relX[i] + 0.5 ) - 0.5) * twoPi;
+			lat[i] = rowLat;
+		}
+	}
+
+	@Override
+	public String toString(){
+		return "Mercator";
+	}
+
+	/* package private */
+	static double clamp(double d){
+		return d - Math.floor(d);
+	}
+}
@@ -0,0 +1,424 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 .
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cchall.javafx.globeviewer.raster;
+
+/**
+ * Generates tangent-space normal maps (for
+ * <code>GlobeViewer.normalVectorMapProperty()</code>) from elevation maps
+ * (digital elevation models) in any map projection. The slope of each pixel
+ * is the difference between the heights of its neighbors divided by their
+ * distance on the globe, so the local scale of the map projection is taken
+ * into account (e.g. the narrow pixels near the poles of a mercator texture).
+ * Neighbors which are outside of the layout of the map projection or on the
+ * other side of a seam (see {@link TexturePyramid}) are replaced by the point
+ * of the globe where the neighbor would be, so the normals continue across
+ * the seams and the wrap-around edges of the texture.<p>
+ * Each pixel of the normal map holds the unit surface normal relative to the
+ * texture: red is the component towards the right of the texture, green the
+ * component towards the top of the texture and blue the component out of the
+ * surface, each mapped from -1..1 to 0..255 (so flat terrain is
+ * <code>0xFF8080FF</code>). Where the right and top directions of the texture
+ * are not perpendicular on the globe (e.g. the polar faces of the
+ * {@link MapProjections#CUBIC} layout), the slope is split along those two
+ * directions, the same way a renderer combines them. Pixels outside of the
+ * layout are flat.<p>
+ * The normals are computed tile by tile on the thread pool of
+ * {@link RasterReprojector}.
+ * @author CCHall <a href="mailto:explosivegnome@yahoo.com">
+ * explosivegnome@yahoo.com</a>
+ */
+public final class NormalMaps {
+
+	/**
+	 * The filter used to compute the slope of the terrain
+	 */
+	public static enum Kernel {
+		/** The difference between the two direct neighbors (sharpest, but sensitive to noise) */
+		CENTRAL_DIFFERENCE,
+		/** The Sobel operator: central differences of the pixel and the pixels beside it, weighted 1-2-1 (smoother) */
+		SOBEL
+	}
+
+	/** Normal map color of flat terrain */
+	public static final int FLAT = 0xFF8080FF;
+	/**
+	 * Maximum distance between the centers of neighboring pixels (as a
+	 * multiple of the pixel size) for them to be on the same side of a seam
+	 */
+	private static final double SEAM_DISTANCE = 3.0;
+	/**
+	 * Maximum distance (in pixels) between a pixel center and the same point
+	 * converted to longitude-latitude and back for the pixel to be part of the
+	 * layout
+	 */
+	private static final double ROUND_TRIP_TOLERANCE = 0.25;
+	/** 
+	 * Largest cosine between the right and down directions of the texture 
+	 * (beyond it, at the folds of a layout, the slope would be amplified 
+	 * without bound)
+	 */
+	private static final double MAX_SKEW = 0.9;
+	/** 
+	 * Minimum cosine of the angle between the direction to a neighboring 
+	 * pixel and the direction of the texture for it to be on the same side 
+	 * of a fold of the layout
+	 */
+	private static final double MIN_ALIGNMENT = 0.9;
+	/** Distance (in pixels) of the points used to find the directions of the texture */
+	private static final double AXIS_STEP = 0.25;
+	/** pixels around each tile that are needed for its normals */
+	private static final int MARGIN = 2;
+
+	private NormalMaps(){
+		// static utility class
+	}
+
+	/**
+	 * Generates a normal map from a grayscale elevation image, where the
+	 * height of each pixel is the average of its red, green and blue channels.
+	 * @param heightMap The elevation image
+	 * @param projection The map projection of the elevation image (and of the
+	 * normal map)
+	 * @param heightScale The height of one gray level, in globe radii (e.g.
+	 * <code>30.0 / 6371000</code> if each level is 30 m on Earth; larger
+	 * values exaggerate the relief)
+	 * @param kernel The filter used to compute the slope
+	 * @param parallelism Parallel processing hint (1 generates the normal map
+	 * on the calling thread)
+	 * @return A new normal map of the same size as the elevation image
+	 * @throws InterruptedException Thrown if this thread is interrupted while
+	 * waiting for the thread pool to finish.
+	 */
+	public static Raster fromHeightMap(final Raster heightMap, final MapProjection projection, 
+			final double heightScale, final Kernel kernel, final int parallelism) throws InterruptedException {
+		final int[] argb = heightMap.getPixels();
+		final float[] heights = new float[argb.length];
+		for(int i = 0; i < argb.length; i++){
+			final int c = argb[i];
+			heights[i] = (((c >> 16) & 0xFF) + ((c >> 8) & 0xFF) + (c & 0xFF)) / 3f;
+		}
+		return fromHeights(heights, heightMap.getWidth(), heightMap.getHeight(), 
+				projection, heightScale, kernel, parallelism);
+	}
+
+	/**
+	 * Generates a normal map from elevation samples.
+	 * @param heights The height of each pixel, in row-major order
+	 * @param width Width of the elevation map (in pixels)
+	 * @param height Height of the elevation map (in pixels)
+	 * @param projection The map projection of the elevation map (and of the
+	 * normal map)
+	 * @param heightScale Multiplier which converts the heights to globe radii
+	 * (e.g. <code>1.0 / 6371000</code> for heights in meters on Earth; larger
+	 * values exaggerate the relief)
+	 * @param kernel The filter used to compute the slope
+	 * @param parallelism Parallel processing hint (1 generates the normal map
+	 * on the calling thread)
+	 * @return A new normal map of size <code>width</code> x <code>height</code>
+	 * @throws InterruptedException Thrown if this thread is interrupted while
+	 * waiting for the thread pool to finish.
+	 */
+	public static Raster fromHeights(final float[] heights, final int width, final int height, 
+			final MapProjection projection, final double heightScale, final Kernel kernel, 
+			final int parallelism) throws InterruptedException {
+		final Raster out = new Raster(width, height);
+		if(heights.length != out.getPixels().length){
+			throw new IllegalArgumentException(String.format(
+					"%sx%s elevation map requires %s heights, but the array has %s", 
+					width, height, out.getPixels().length, heights.length));
+		}
+		final int[] dst = out.getPixels();
+		// roughly the distance between neighboring pixel centers on the unit sphere, times SEAM_DISTANCE
+		final double seamDistance = SEAM_DISTANCE * Math.max(2 * Math.PI / width, Math.PI / height);
+		final double maxDistanceSquared = seamDistance * seamDistance;
+		RasterReprojector.forEachTile(width, height, parallelism, (int x0, int y0, int w, int h)->{
+			final Tile tile = new Tile(heights, width, height, projection, x0, y0, w, h);
+			tile.computeGradients(maxDistanceSquared, heightScale);
+			for(int y = y0; y < y0 + h; y++){
+				for(int x = x0; x < x0 + w; x++){
+					dst[y * width + x] = tile.normal(x, y, kernel);
+				}
+			}
+		});
+		return out;
+	}
+
+	/**
+	 * Encodes a surface normal as a normal map color
+	 * @param nx Component towards the right of the texture
+	 * @param ny Component towards the top of the texture
+	 * @param nz Component out of the surface
+	 * @return An opaque ARGB color
+	 */
+	public static int encode(double nx, double ny, double nz){
+		final double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+		if(!(length > 0)){
+			return FLAT;
+		}
+		return 0xFF000000 | (channel(nx / length) << 16) | (channel(ny / length) << 8) | channel(nz / length);
+	}
+
+	private static int channel(double n){
+		return Math.max(0, Math.min(255, (int)Math.round((n + 1) * 127.5)));
+	}
+
+	/**
+	 * The pixel centers (on the unit sphere) and height gradients of a tile 
+	 * and the pixels around it. Each thread needs its own.
+	 */
+	private static final class Tile {
+		private final float[] heights;
+		private final int width, height;
+		private final MapProjection projection;
+		/** first column and row held by this tile, and the number of them */
+		private final int c0, r0, columns, rows;
+		/** X, Y and Z coordinates of the pixel centers on the unit sphere */
+		private final double[] px, py, pz;
+		/** whether each pixel center converts back to the same pixel */
+		private final boolean[] valid;
+		/** slope of the terrain towards the right and downwards (height difference over distance) */
+		private final double[] gx, gy;
+		/** unit vectors (3 per pixel) of the right and down directions of the texture on the globe */
+		private final double[] rightAxis, downAxis;
+		/** whether the left, right, upper and lower neighbors are on the same side of a seam */
+		private final boolean[] left, right, up, down;
+		private final double[] lonLat = new double[2];
+		private final double[] relXY = new double[2];
+
+		Tile(float[] heights, int width, int height, MapProjection projection, int x0, int y0, int w, int h){
+			this.heights = heights;
+			this.width = width;
+			this.height = height;
+			this.projection = projection;
+			this.c0 = x0 - MARGIN;
+			this.r0 = y0 - MARGIN;
+			this.columns = w + 2 * MARGIN;
+			this.rows = h + 2 * MARGIN;
+			final int n = columns * rows;
+			px = new double[n];
+			py = new double[n];
+			pz = new double[n];
+			valid = new boolean[n];
+			gx = new double[n];
+			gy = new double[n];
+			rightAxis = new double[3 * n];
+			downAxis = new double[3 * n];
+			left = new boolean[n];
+			right = new boolean[n];
+			up = new boolean[n];
+			down = new boolean[n];
+			final double[] relX = new double[columns];
+			final double[] lon = new double[columns];
+			final double[] lat = new double[columns];
+			final double[] roundTripX = new double[columns];
+			final double[] roundTripY = new double[columns];
+			final double[] relXLeft = new double[columns];
+			final double[] relXRight = new double[columns];
+			final double[] lon1 = new double[columns];
+			final double[] lat1 = new double[columns];
+			final double[] lon2 = new double[columns];
+			final double[] lat2 = new double[columns];
+			for(int j = 0; j < columns; j++){
+				// columns beyond the edges wrap around (rejected later if that is not where they are on the globe)
+				final int column = Math.floorMod(c0 + j, width);
+				relX[j] = (column + 0.5) / width;
+				relXLeft[j] = (column + 0.5 - AXIS_STEP) / width;
+				relXRight[j] = (column + 0.5 + AXIS_STEP) / width;
+			}
+			for(int i = 0; i < rows; i++){
+				final int row = r0 + i;
+				if(row < 0 || row >= height){
+					continue; // not valid
+				}
+				final double relY = (row + 0.5) / height;
+				projection.convertRelativePixelRowToLonLat(relX, relY, columns, lon, lat);
+				projection.convertLonLatRowToRelativePixelXY(lon, lat, columns, roundTripX, roundTripY);
+				for(int j = 0; j < columns; j++){
+					final int k = i * columns + j;
+					valid[k] = Math.abs(roundTripX[j] - relX[j]) * width < ROUND_TRIP_TOLERANCE 
+							&& Math.abs(roundTripY[j] - relY) * height < ROUND_TRIP_TOLERANCE;
+					final double cosLat = Math.cos(lat[j]);
+					px[k] = cosLat * Math.cos(lon[j]);
+					py[k] = cosLat * Math.sin(lon[j]);
+					pz[k] = Math.sin(lat[j]);
+				}
+				// the axes of the texture, from points on either side of the pixel centers
+				projection.convertRelativePixelRowToLonLat(relXLeft, relY, columns, lon1, lat1);
+				projection.convertRelativePixelRowToLonLat(relXRight, relY, columns, lon2, lat2);
+				directions(lon1, lat1, lon2, lat2, i * columns, columns, rightAxis);
+				projection.convertRelativePixelRowToLonLat(relX, relY - AXIS_STEP / height, columns, lon1, lat1);
+				projection.convertRelativePixelRowToLonLat(relX, relY + AXIS_STEP / height, columns, lon2, lat2);
+				directions(lon1, lat1, lon2, lat2, i * columns, columns, downAxis);
+			}
+		}
+
+		/** stores the unit vectors from the first to the second points */
+		private static void directions(double[] lon1, double[] lat1, double[] lon2, double[] lat2, 
+				int k0, int count, double[] axes){
+			for(int j = 0; j < count; j++){
+				final double cosLat1 = Math.cos(lat1[j]);
+				final double cosLat2 = Math.cos(lat2[j]);
+				final double dx = cosLat2 * Math.cos(lon2[j]) - cosLat1 * Math.cos(lon1[j]);
+				final double dy = cosLat2 * Math.sin(lon2[j]) - cosLat1 * Math.sin(lon1[j]);
+				final double dz = Math.sin(lat2[j]) - Math.sin(lat1[j]);
+				final double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+				final int a = 3 * (k0 + j);
+				if(length > 0){
+					axes[a] = dx / length;
+					axes[a + 1] = dy / length;
+					axes[a + 2] = dz / length;
+				}
+			}
+		}
+
+		private float heightAt(int i, int j){
+			return heights[(r0 + i) * width + Math.floorMod(c0 + j, width)];
+		}
+
+		/** 
+		 * checks whether pixel q is on the same side of a seam as pixel k: it 
+		 * must be near pixel k, in the given direction of the texture (and not 
+		 * across a fold of the layout, where the texture changes direction)
+		 */
+		private boolean isNeighbor(int k, int q, double[] axis, double sign, double maxDistanceSquared){
+			if(!valid[q]){
+				return false;
+			}
+			final double dx = px[q] - px[k], dy = py[q] - py[k], dz = pz[q] - pz[k];
+			final double distanceSquared = dx * dx + dy * dy + dz * dz;
+			final double along = sign * (dx * axis[3 * k] + dy * axis[3 * k + 1] + dz * axis[3 * k + 2]);
+			return distanceSquared <= maxDistanceSquared 
+					&& along > 0 && along * along >= MIN_ALIGNMENT * MIN_ALIGNMENT * distanceSquared;
+		}
+
+		/** 
+		 * computes the gradients of every pixel of the tile and the pixel 
+		 * around it (the pixels needed by the Sobel operator)
+		 */
+		void computeGradients(double maxDistanceSquared, double heightScale){
+			final double[] a = new double[4];
+			final double[] b = new double[4];
+			for(int i = 1; i < rows - 1; i++){
+				for(int j = 1; j < columns - 1; j++){
+					final int k = i * columns + j;
+					if(!valid[k]){
+						continue;
+					}
+					left[k] = isNeighbor(k, k - 1, rightAxis, -1, maxDistanceSquared);
+					right[k] = isNeighbor(k, k + 1, rightAxis, 1, maxDistanceSquared);
+					up[k] = isNeighbor(k, k - columns, downAxis, -1, maxDistanceSquared);
+					down[k] = isNeighbor(k, k + columns, downAxis, 1, maxDistanceSquared);
+					gx[k] = gradient(k, i, j, k - 1, i, j - 1, left[k], k + 1, i, j + 1, right[k], a, b) * heightScale;
+					gy[k] = gradient(k, i, j, k - columns, i - 1, j, up[k], k + columns, i + 1, j, down[k], a, b) * heightScale;
+				}
+			}
+		}
+
+		/**
+		 * The height difference between two opposite neighbors divided by 
+		 * their distance. A neighbor across a seam is replaced by the point 
+		 * of the globe opposite the other neighbor.
+		 */
+		private double gradient(int k, int i, int j, int k1, int i1, int j1, boolean ok1, 
+				int k2, int i2, int j2, boolean ok2, double[] a, double[] b){
+			if(!ok1 && !ok2){
+				return 0;
+			}
+			if(ok1){
+				a[0] = px[k1]; a[1] = py[k1]; a[2] = pz[k1]; a[3] = heightAt(i1, j1);
+			} else {
+				mirror(k, k2, a);
+			}
+			if(ok2){
+				b[0] = px[k2]; b[1] = py[k2]; b[2] = pz[k2]; b[3] = heightAt(i2, j2);
+			} else {
+				mirror(k, k1, b);
+			}
+			final double dx = b[0] - a[0], dy = b[1] - a[1], dz = b[2] - a[2];
+			final double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+			return distance > 0 ? (b[3] - a[3]) / distance : 0;
+		}
+
+		/** 
+		 * finds the point of the globe on the opposite side of pixel k from 
+		 * pixel q, and the height there
+		 */
+		private void mirror(int k, int q, double[] out){
+			double x = 2 * px[k] - px[q], y = 2 * py[k] - py[q], z = 2 * pz[k] - pz[q];
+			final double length = Math.sqrt(x * x + y * y + z * z);
+			x /= length;
+			y /= length;
+			z /= length;
+			projection.convertLonLatToRelativePixelXY(Math.atan2(y, x), Math.asin(Math.max(-1, Math.min(1, z))), relXY);
+			final int sx = ReprojectionPlan.toPixel(relXY[0], width);
+			final int sy = ReprojectionPlan.toPixel(relXY[1], height);
+			out[0] = x;
+			out[1] = y;
+			out[2] = z;
+			out[3] = heights[sy * width + sx];
+		}
+
+		/** the normal map color of pixel (x, y) */
+		int normal(int x, int y, Kernel kernel){
+			final int k = (y - r0) * columns + (x - c0);
+			if(!valid[k]){
+				return FLAT;
+			}
+			double sx = gx[k], sy = gy[k];
+			if(kernel == Kernel.SOBEL){
+				// 1-2-1 weights across the gradient, leaving out pixels across a seam
+				double wx = 2, wy = 2;
+				sx *= 2;
+				sy *= 2;
+				if(up[k]){
+					sx += gx[k - columns];
+					wx++;
+				}
+				if(down[k]){
+					sx += gx[k + columns];
+					wx++;
+				}
+				if(left[k]){
+					sy += gy[k - 1];
+					wy++;
+				}
+				if(right[k]){
+					sy += gy[k + 1];
+					wy++;
+				}
+				sx /= wx;
+				sy /= wy;
+			}
+			// split the slope along the (possibly skewed) right and down directions
+			final int a = 3 * k;
+			final double skew = rightAxis[a] * downAxis[a] + rightAxis[a + 1] * downAxis[a + 1] 
+					+ rightAxis[a + 2] * downAxis[a + 2];
+			final double c = Math.max(-MAX_SKEW, Math.min(MAX_SKEW, skew));
+			final double alongX = (sx - c * sy) / (1 - c * c);
+			final double alongY = (sy - c * sx) / (1 - c * c);
+			// the surface tilts away from uphill; image Y points down but normal map Y points up
+			return encode(-alongX, alongY, 1);
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 .
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cchall.javafx.globeviewer.raster;
+
+import java.nio.IntBuffer;
+
+/**
+ * A texture image held in memory as an <code>int[]</code> of ARGB values (the
+ * same format as <code>PixelReader.getArgb(x,y)</code> and
+ * <code>BufferedImage.TYPE_INT_ARGB</code>), in row-major order. Unlike a
+ * JavaFX <code>Image</code>, a Raster does not need the JavaFX toolkit, so it
+ * can be used to convert textures on headless servers (see
+ * {@link RasterReprojector}). The pixel array is exposed directly (see
+ * {@link #getPixels()}) so that it can be passed to other image libraries
+ * without copying. Use {@link BufferedImageRasters} to convert to and from
+ * <code>java.awt.image.BufferedImage</code>, and
+ * <code>cchall.javafx.globeviewer.Reprojector</code> to convert to and from
+ * JavaFX images.<p>
+ * Like <code>WritableImage</code>, Rasters are not thread-safe, but different
+ * threads may write different pixels at the same time.
+ * @author CCHall <a href="mailto:explosivegnome@yahoo.com">
+ * explosivegnome@yahoo.com</a>
+ */
+public final class Raster {
+	private final int width;
+	private final int height;
+	private final int[] pixels;
+
+	/**
+	 * Creates a new, fully transparent raster.
+	 * @param width Width of the raster (in pixels)
+	 * @param height Height of the raster (in pixels)
+	 * @throws IllegalArgumentException Thrown if the width or height is not
+	 * positive, or if the raster would have more than
+	 * <code>Integer.MAX_VALUE</code> pixels
+	 */
+	public Raster(int width, int height){
+		this(width, height, new int[checkSize(width, height)]);
+	}
+
+	/**
+	 * Creates a raster which wraps an existing array of ARGB pixels (changes to
+	 * the array change the raster and vice versa).
+	 * @param width Width of the raster (in pixels)
+	 * @param height Height of the raster (in pixels)
+	 * @param argbPixels ARGB pixel values in row-major order, of length
+	 * <code>width * height</code>
+	 * @throws IllegalArgumentException Thrown if the width or height is not
+	 * positive or the array is the wrong length
+	 */
+	public Raster(int width, int height, int[] argbPixels){
+		if(argbPixels.length != checkSize(width, height)){
+			throw new IllegalArgumentException(String.format(
+					"%sx%s raster requires %s pixels, but the array has %s",
+					width, height, (long)width * (long)height, argbPixels.length));
+		}
+		this.width = width;
+		this.height = height;
+		this.pixels = argbPixels;
+	}
+
+	private static int checkSize(int width, int height){
+		final long size = (long)width * (long)height;
+		if(width <= 0 || height <= 0 || size > Integer.MAX_VALUE){
+			throw new IllegalArgumentException(String.format("Invalid raster size %sx%s", width, height));
+		}
+		return (int)size;
+	}
+
+	/**
+	 * @return Width of the raster (in pixels)
+	 */
+	public int getWidth(){
+		return width;
+	}
+
+	/**
+	 * @return Height of the raster (in pixels)
+	 */
+	public int getHeight(){
+		return height;
+	}
+
+	/**
+	 * Gets the color of a pixel
+	 * @param x Pixel X coordinate (0 to width - 1)
+	 * @param y Pixel Y coordinate (0 to height - 1)
+	 * @return The color as an ARGB value (alpha in the highest 8 bits)
+	 */
+	public int getArgb(int x, int y){
+		return pixels[y * width + x];
+	}
+
+	/**
+	 * Sets the color of a pixel
+	 * @param x Pixel X coordinate (0 to width - 1)
+	 * @param y Pixel Y coordinate (0 to height - 1)
+	 * @param argb The color as an ARGB value (alpha in the highest 8 bits)
+	 */
+	public void setArgb(int x, int y, int argb){
+		pixels[y * width + x] = argb;
+	}
+
+	/**
+	 * Gets the pixel array backing this raster (not a copy), so that pixels
+	 * can be read and written in bulk. Pixel (x, y) is at index
+	 * <code>y * width + x</code>.
+	 * @return The ARGB pixel values, of length <code>width * height</code>
+	 */
+	public int[] getPixels(){
+		return pixels;
+	}
+
+	/**
+	 * Wraps the pixels of this raster in an <code>IntBuffer</code> (e.g. for
+	 * <code>PixelWriter.setPixels(...)</code> or native image libraries).
+	 * Changes to the buffer change the raster and vice versa.
+	 * @return An IntBuffer of ARGB pixel values, in row-major order
+	 */
+	public IntBuffer asIntBuffer(){
+		return IntBuffer.wrap(pixels);
+	}
+
+	@Override
+	public String toString(){
+		return this.getClass().getSimpleName() + "[" + width + "x" + height + "]";
+	}
+}
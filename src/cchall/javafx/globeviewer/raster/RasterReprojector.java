@@ -0,0 +1,702 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 .
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cchall.javafx.globeviewer.raster;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Converts texture {@link Raster}s from any map projection into any other map 
+ * projection (e.g. from {@link MapProjections#MERCATOR} to 
+ * {@link MapProjections#DYMAXION}), without any dependency on the JavaFX 
+ * toolkit. This is the engine behind <code>cchall.javafx.globeviewer.Reprojector</code> 
+ * (which converts JavaFX images) and it can be used on its own on headless 
+ * servers, with {@link BufferedImageRasters} to read and write image files 
+ * (or {@link StreamingReprojector} to convert image files that are too large 
+ * to decode all at once).<p>
+ * The inner loop works directly on the <code>int[]</code> pixel arrays of the 
+ * rasters and does not allocate any objects. The per-pixel map projection 
+ * math is done by (and cached in) a {@link ReprojectionPlan}, so converting 
+ * several texture layers with the same dimensions (e.g. the diffuse, ambient, 
+ * specular and normal layers of a globe) only computes it once.<p>
+ * Parallel conversions are split into rectangular tiles which are processed by 
+ * a shared work-stealing <code>ForkJoinPool</code> (the common pool unless 
+ * another one is set with {@link #setThreadPool(java.util.concurrent.ForkJoinPool)}), 
+ * so converting many textures does not create and destroy any threads. Instead 
+ * of a thread count, each conversion takes a parallelism hint: 1 runs the 
+ * conversion on the calling thread, larger numbers split the work into more 
+ * tiles (the number of threads is always the parallelism of the pool).<p>
+ * By default, each output pixel is a copy of the nearest source pixel, which 
+ * is fast but aliased. {@link Filter#BILINEAR} and {@link Filter#BICUBIC} 
+ * blend neighboring source pixels instead.<p>
+ * Example:<br><pre>
+Raster mercator = BufferedImageRasters.toRaster(ImageIO.read(mercatorFile));
+Raster dymaxion = RasterReprojector.reproject(
+		mercator, 
+		MapProjections.MERCATOR, 
+		MapProjections.DYMAXION, 
+		1100, 260, 
+		ForkJoinPool.getCommonPoolParallelism());
+ImageIO.write(BufferedImageRasters.toBufferedImage(dymaxion), "png", dymaxionFile);
+</pre>
+ * @author CCHall <a href="mailto:explosivegnome@yahoo.com">
+ * explosivegnome@yahoo.com</a>
+ */
+public final class RasterReprojector {
+	
+	/** Tiles are not split any further than this many pixels */
+	private static final int MIN_TILE_PIXELS = 64 * 64;
+	/** Maximum number of output pixels buffered before they are written to the output image */
+	private static final int MAX_TILE_PIXELS = 256 * 256;
+	/** Number of tiles per unit of parallelism (for load-balancing) */
+	private static final int TILES_PER_WORKER = 4;
+	/** Number of output pixels per band when streaming files (4 M-pixels, 32 MB working set) */
+	static final int STREAMING_BAND_PIXELS = 4 * 1024 * 1024;
+	
+	private static volatile ForkJoinPool threadPool = ForkJoinPool.commonPool();
+	private static volatile TextureCache cache = null;
+	/** The conversion job (if any) running on each thread, see {@link ConversionJob} */
+	private static final ThreadLocal<TileMonitor> monitor = new ThreadLocal<>();
+	
+	/**
+	 * Texture filtering, which determines how the source image is sampled
+	 */
+	public static enum Filter {
+		/** Copies the source pixel that contains each sample point (fastest, but aliased) */
+		NEAREST, 
+		/** Blends the 2x2 source pixels around each sample point */
+		BILINEAR, 
+		/** Blends the 4x4 source pixels around each sample point along a Catmull-Rom spline (sharpest) */
+		BICUBIC
+	}
+	
+	private RasterReprojector(){
+		// static utility class
+	}
+	
+	/**
+	 * Sets the thread pool used for all parallel conversions (including those 
+	 * of <code>Reprojector</code> and the <code>convertMercatorTo...</code> 
+	 * methods of the GlobeViewer classes).
+	 * @param pool A ForkJoinPool, or <code>null</code> to use 
+	 * <code>ForkJoinPool.commonPool()</code> (the default)
+	 */
+	public static void setThreadPool(ForkJoinPool pool){
+		threadPool = pool == null ? ForkJoinPool.commonPool() : pool;
+	}
+	
+	/**
+	 * @return The thread pool used for all parallel conversions
+	 */
+	public static ForkJoinPool getThreadPool(){
+		return threadPool;
+	}
+	
+	/**
+	 * Sets the disk cache used by all in-memory conversions (including those 
+	 * of <code>Reprojector</code> and the <code>convertMercatorTo...</code> 
+	 * methods of the GlobeViewer classes). While a cache is set, converting the 
+	 * same texture into the same map projection, size and filter again (e.g. 
+	 * every time an application starts) loads the result from the cache 
+	 * instead of converting it.
+	 * @param textureCache A texture cache, or <code>null</code> to not cache 
+	 * conversions (the default)
+	 */
+	public static void setCache(TextureCache textureCache){
+		cache = textureCache;
+	}
+	
+	/**
+	 * @return The disk cache used by all in-memory conversions, or 
+	 * <code>null</code> if there is none
+	 */
+	public static TextureCache getCache(){
+		return cache;
+	}
+	
+	/**
+	 * Sets the maximum total size of the reprojection plans (see 
+	 * {@link ReprojectionPlan}) that are kept in memory for later conversions 
+	 * between the same map projections and sizes, evicting the least recently 
+	 * used plans if necessary. A plan holds one <code>int</code> per output 
+	 * pixel (two for filtered conversions), so e.g. keeping the plan of a 
+	 * 16384x8192 texture needs 128 mega-entries (512 MB). Plans larger than 
+	 * the whole cache are used once and not kept. By default, the cache holds 
+	 * up to a sixteenth of the maximum heap size.
+	 * @param numEntries Capacity in plan entries (4 bytes each), or 0 to not 
+	 * keep any plans
+	 * @throws IllegalArgumentException Thrown if the capacity is negative
+	 */
+	public static void setPlanCacheCapacity(long numEntries){
+		ReprojectionPlan.setCacheCapacity(numEntries);
+	}
+	
+	/**
+	 * @return The maximum total size of the reprojection plans kept in memory, 
+	 * in plan entries (4 bytes each)
+	 */
+	public static long getPlanCacheCapacity(){
+		return ReprojectionPlan.getCacheCapacity();
+	}
+	
+	/**
+	 * @return The total size of the reprojection plans kept in memory, in plan 
+	 * entries (4 bytes each)
+	 */
+	public static long getPlanCacheSize(){
+		return ReprojectionPlan.getCacheSize();
+	}
+	
+	/**
+	 * Removes all reprojection plans from memory (e.g. once an application 
+	 * has converted its textures); later conversions compute them again.
+	 */
+	public static void clearPlanCache(){
+		ReprojectionPlan.clearCache();
+	}
+	
+	/**
+	 * Converts a texture raster from one map projection into another.
+	 * @param source The input texture raster
+	 * @param sourceProjection The map projection of the input raster (e.g. 
+	 * {@link MapProjections#MERCATOR})
+	 * @param targetProjection The map projection of the output raster (e.g. 
+	 * {@link MapProjections#CUBIC})
+	 * @param newWidth Width of the output raster
+	 * @param newHeight Height of the output raster
+	 * @param parallelism Parallel processing hint. 1 converts the raster on the 
+	 * calling thread, larger numbers split the conversion into more tiles for the 
+	 * shared thread pool (e.g. <code>ForkJoinPool.getCommonPoolParallelism()</code>).
+	 * @return A new raster of size <code>newWidth</code> x <code>newHeight</code>
+	 * @throws InterruptedException Thrown if this thread is interrupted while 
+	 * waiting for the thread pool to finish the conversion.
+	 */
+	public static Raster reproject(
+			final Raster source, 
+			final MapProjection sourceProjection, 
+			final MapProjection targetProjection, 
+			final int newWidth, 
+			final int newHeight, 
+			final int parallelism
+	) throws InterruptedException {
+		return reproject(source, sourceProjection, targetProjection, newWidth, newHeight, 
+				parallelism, Filter.NEAREST);
+	}
+	
+	/**
+	 * Converts a texture raster from one map projection into another, using the 
+	 * given texture filter.
+	 * @param source The input texture raster
+	 * @param sourceProjection The map projection of the input raster
+	 * @param targetProjection The map projection of the output raster
+	 * @param newWidth Width of the output raster
+	 * @param newHeight Height of the output raster
+	 * @param parallelism Parallel processing hint (1 converts the raster on the 
+	 * calling thread).
+	 * @param filter Texture filter (e.g. {@link Filter#BILINEAR} to reduce 
+	 * aliasing)
+	 * @return A new raster of size <code>newWidth</code> x <code>newHeight</code>
+	 * @throws InterruptedException Thrown if this thread is interrupted while 
+	 * waiting for the thread pool to finish the conversion.
+	 */
+	public static Raster reproject(
+			final Raster source, 
+			final MapProjection sourceProjection, 
+			final MapProjection targetProjection, 
+			final int newWidth, 
+			final int newHeight, 
+			final int parallelism, 
+			final Filter filter
+	) throws InterruptedException {
+		return reprojectLayers(new Raster[]{source}, sourceProjection, targetProjection, 
+				newWidth, newHeight, parallelism, filter)[0];
+	}
+	
+	/**
+	 * Converts several texture layers of the same size (e.g. the diffuse, 
+	 * ambient, specular and normal maps of a globe) from one map projection into 
+	 * another in a single pass. The map projection math is done once per output 
+	 * pixel (or not at all if a matching {@link ReprojectionPlan} is cached) and 
+	 * every layer is copied in the same loop, so converting four layers costs 
+	 * little more than converting one.
+	 * @param sources The input texture rasters, which must all be the same size
+	 * @param sourceProjection The map projection of the input rasters
+	 * @param targetProjection The map projection of the output rasters
+	 * @param newWidth Width of the output rasters
+	 * @param newHeight Height of the output rasters
+	 * @param parallelism Parallel processing hint (1 converts the rasters on the 
+	 * calling thread).
+	 * @return An array of new rasters of size <code>newWidth</code> x 
+	 * <code>newHeight</code>, in the same order as <code>sources</code>
+	 * @throws InterruptedException Thrown if this thread is interrupted while 
+	 * waiting for the thread pool to finish the conversion.
+	 * @throws IllegalArgumentException Thrown if the input rasters are not all 
+	 * the same size
+	 */
+	public static Raster[] reprojectLayers(
+			final Raster[] sources, 
+			final MapProjection sourceProjection, 
+			final MapProjection targetProjection, 
+			final int newWidth, 
+			final int newHeight, 
+			final int parallelism
+	) throws InterruptedException {
+		return reprojectLayers(sources, sourceProjection, targetProjection, newWidth, newHeight, 
+				parallelism, Filter.NEAREST);
+	}
+	
+	/**
+	 * Converts several texture layers of the same size from one map projection 
+	 * into another in a single pass, using the given texture filter.
+	 * @param sources The input texture rasters, which must all be the same size
+	 * @param sourceProjection The map projection of the input rasters
+	 * @param targetProjection The map projection of the output rasters
+	 * @param newWidth Width of the output rasters
+	 * @param newHeight Height of the output rasters
+	 * @param parallelism Parallel processing hint (1 converts the rasters on the 
+	 * calling thread).
+	 * @param filter Texture filter (e.g. {@link Filter#BILINEAR} to reduce 
+	 * aliasing)
+	 * @return An array of new rasters of size <code>newWidth</code> x 
+	 * <code>newHeight</code>, in the same order as <code>sources</code>
+	 * @throws InterruptedException Thrown if this thread is interrupted while 
+	 * waiting for the thread pool to finish the conversion.
+	 * @throws IllegalArgumentException Thrown if the input rasters are not all 
+	 * the same size
+	 */
+	public static Raster[] reprojectLayers(
+			final Raster[] sources, 
+			final MapProjection sourceProjection, 
+			final MapProjection targetProjection, 
+			final int newWidth, 
+			final int newHeight, 
+			final int parallelism, 
+			final Filter filter
+	) throws InterruptedException {
+		if(newWidth <= 0 || newHeight <= 0){
+			throw new IllegalArgumentException(String.format("Invalid output size %sx%s", newWidth, newHeight));
+		}
+		if(sources.length == 0){
+			return new Raster[0];
+		}
+		final int srcWidth = sources[0].getWidth();
+		final int srcHeight = sources[0].getHeight();
+		for(int l = 0; l < sources.length; l++){
+			if(sources[l].getWidth() != srcWidth || sources[l].getHeight() != srcHeight){
+				throw new IllegalArgumentException(String.format(
+						"Layer %s is %sx%s, but layer 0 is %sx%s", l, 
+						sources[l].getWidth(), sources[l].getHeight(), srcWidth, srcHeight));
+			}
+		}
+		final TextureCache textureCache = cache;
+		if(textureCache == null || sourceProjection.getCacheDescription() == null 
+				|| targetProjection.getCacheDescription() == null){
+			return convertLayers(sources, sourceProjection, targetProjection, newWidth, newHeight, 
+					parallelism, filter);
+		}
+		// only the layers which are not in the cache are converted
+		final String[] keys = new String[sources.length];
+		final Raster[] outputs = new Raster[sources.length];
+		final List<Integer> misses = new ArrayList<>(sources.length);
+		for(int l = 0; l < sources.length; l++){
+			keys[l] = textureCache.key(sources[l], sourceProjection, targetProjection, newWidth, newHeight, filter);
+			outputs[l] = textureCache.load(keys[l], newWidth, newHeight);
+			if(outputs[l] == null){
+				misses.add(l);
+			}
+		}
+		if(misses.isEmpty()){
+			return outputs;
+		}
+		final Raster[] missing = new Raster[misses.size()];
+		for(int i = 0; i < missing.length; i++){
+			missing[i] = sources[misses.get(i)];
+		}
+		final Raster[] converted = convertLayers(missing, sourceProjection, targetProjection, newWidth, newHeight, 
+				parallelism, filter);
+		for(int i = 0; i < converted.length; i++){
+			outputs[misses.get(i)] = converted[i];
+			textureCache.store(keys[misses.get(i)], converted[i]);
+		}
+		return outputs;
+	}
+	
+	/** Implementation of reprojectLayers(...), for layers which are known to be the same size */
+	private static Raster[] convertLayers(
+			final Raster[] sources, 
+			final MapProjection sourceProjection, 
+			final MapProjection targetProjection, 
+			final int newWidth, 
+			final int newHeight, 
+			final int parallelism, 
+			final Filter filter
+	) throws InterruptedException {
+		final int srcWidth = sources[0].getWidth();
+		final int srcHeight = sources[0].getHeight();
+		final int layers = sources.length;
+		final int[][] srcs = new int[layers][];
+		final Raster[] outputs = new Raster[layers];
+		final int[][] dsts = new int[layers][];
+		for(int l = 0; l < layers; l++){
+			srcs[l] = sources[l].getPixels();
+			outputs[l] = new Raster(newWidth, newHeight);
+			dsts[l] = outputs[l].getPixels();
+		}
+		final ReprojectionPlan plan = ReprojectionPlan.get(sourceProjection, targetProjection, 
+				srcWidth, srcHeight, newWidth, newHeight, parallelism, filter);
+		forEachTile(newWidth, newHeight, parallelism, (int x, int y, int w, int h)->{
+			final int[][] tiles = new int[layers][w * h];
+			plan.gather(srcs, tiles, x, y, w, h);
+			// tiles do not overlap, so they can be copied without locking
+			for(int l = 0; l < layers; l++){
+				for(int row = 0; row < h; row++){
+					System.arraycopy(tiles[l], row * w, dsts[l], (y + row) * newWidth + x, w);
+				}
+			}
+		});
+		return outputs;
+	}
+	
+	/**
+	 * Converts a texture image stored in a file from one map projection into 
+	 * another, without ever loading either image into memory. This is intended 
+	 * for images that are too large for a {@link Raster} or for the Java heap (e.g. 86400 x 43200 satellite imagery).<p>
+	 * Both files are raw, uncompressed RGBA images: 4 bytes per pixel in the 
+	 * order red, green, blue, alpha, with rows from top to bottom and no header 
+	 * or padding. The source file is memory-mapped, so only the parts of it 
+	 * that are needed are read (by the operating system, outside of the heap). 
+	 * The output is computed and written in bands of rows, so the heap memory 
+	 * used is fixed (about 32 MB) regardless of the image sizes. Pixels are not 
+	 * cached in a {@link ReprojectionPlan}.
+	 * @param source The input image file
+	 * @param srcWidth Width of the input image
+	 * @param srcHeight Height of the input image
+	 * @param sourceProjection The map projection of the input image
+	 * @param destination The output image file (replaced if it already exists)
+	 * @param targetProjection The map projection of the output image
+	 * @param newWidth Width of the output image
+	 * @param newHeight Height of the output image
+	 * @param parallelism Parallel processing hint (1 converts the image on the 
+	 * calling thread).
+	 * @throws IOException Thrown if there was a problem reading or writing the files
+	 * @throws InterruptedException Thrown if this thread is interrupted while 
+	 * waiting for the thread pool to finish the conversion.
+	 */
+	public static void reproject(
+			final Path source, final int srcWidth, final int srcHeight, 
+			final MapProjection sourceProjection, 
+			final Path destination, 
+			final MapProjection targetProjection, 
+			final int newWidth, 
+			final int newHeight, 
+			final int parallelism
+	) throws IOException, InterruptedException {
+		reproject(source, srcWidth, srcHeight, sourceProjection, destination, targetProjection, 
+				newWidth, newHeight, parallelism, STREAMING_BAND_PIXELS);
+	}
+	
+	/** Implementation of the file-to-file reprojection, with an adjustable band size */
+	static void reproject(
+			final Path source, final int srcWidth, final int srcHeight, 
+			final MapProjection sourceProjection, 
+			final Path destination, 
+			final MapProjection targetProjection, 
+			final int newWidth, 
+			final int newHeight, 
+			final int parallelism, 
+			final int bandPixels
+	) throws IOException, InterruptedException {
+		if(newWidth <= 0 || newHeight <= 0){
+			throw new IllegalArgumentException(String.format("Invalid output size %sx%s", newWidth, newHeight));
+		}
+		final int bandHeight = Math.max(1, Math.min(newHeight, bandPixels / newWidth));
+		final int[] band = new int[newWidth * bandHeight];
+		final ByteBuffer bytes = ByteBuffer.allocate(band.length * 4).order(ByteOrder.BIG_ENDIAN);
+		try(MappedRaster src = new MappedRaster(source, srcWidth, srcHeight);
+				FileChannel out = FileChannel.open(destination, StandardOpenOption.CREATE, 
+						StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+			for(int by = 0; by < newHeight; by += bandHeight){
+				final int bandY = by;
+				final int rows = Math.min(bandHeight, newHeight - by);
+				forEachTile(newWidth, rows, parallelism, (int x0, int y0, int w, int h)->{
+					final ReprojectionPlan.RowSampler sampler = new ReprojectionPlan.RowSampler(w);
+					for(int y = y0; y < y0 + h; y++){
+						sampler.sample(sourceProjection, targetProjection, x0, bandY + y, w, newWidth, newHeight);
+						int i = y * newWidth + x0;
+						for(int n = 0; n < w; n++){
+							final int argb = src.getArgb(ReprojectionPlan.toPixel(sampler.sourceRelX[n], srcWidth), 
+									ReprojectionPlan.toPixel(sampler.sourceRelY[n], srcHeight));
+							band[i++] = (argb << 8) | (argb >>> 24); // back to RGBA
+						}
+					}
+				});
+				bytes.clear();
+				bytes.asIntBuffer().put(band, 0, rows * newWidth);
+				bytes.limit(rows * newWidth * 4);
+				long position = 4L * newWidth * bandY;
+				while(bytes.hasRemaining()){
+					position += out.write(bytes, position);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * A unit of work covering a rectangular tile of pixels
+	 */
+	interface TileTask {
+		/**
+		 * Processes a tile
+		 * @param x0 First column of the tile
+		 * @param y0 First row of the tile
+		 * @param width Number of columns in the tile
+		 * @param height Number of rows in the tile
+		 */
+		void run(int x0, int y0, int width, int height);
+	}
+	
+	/**
+	 * Cancellation and progress of a conversion job, which is checked and 
+	 * updated for every tile
+	 */
+	interface TileMonitor {
+		/**
+		 * @return Whether the remaining tiles should be skipped
+		 */
+		boolean isCancelled();
+		
+		/**
+		 * Called after each tile is processed (on the thread that processed it)
+		 * @param pixels The number of pixels in the tile
+		 */
+		void tileDone(int pixels);
+	}
+	
+	/**
+	 * Sets the monitor of the conversion job running on the calling thread, 
+	 * which every later call of forEachTile(...) on this thread will use
+	 * @param tileMonitor A monitor, or <code>null</code> to remove it
+	 */
+	static void setTileMonitor(TileMonitor tileMonitor){
+		if(tileMonitor == null){
+			monitor.remove();
+		} else {
+			monitor.set(tileMonitor);
+		}
+	}
+	
+	/**
+	 * Splits an area into tiles and runs the task on each of them, either on the 
+	 * calling thread (<code>parallelism</code> of 1 or less) or on the shared 
+	 * thread pool. Each pixel is covered by exactly one tile. If a conversion 
+	 * job is running on the calling thread (see {@link #setTileMonitor(cchall.javafx.globeviewer.raster.RasterReprojector.TileMonitor)}), 
+	 * its progress is updated after each tile, and once it is cancelled the 
+	 * remaining tiles are skipped and a <code>CancellationException</code> is 
+	 * thrown.
+	 * @param width Total number of columns
+	 * @param height Total number of rows
+	 * @param parallelism Parallel processing hint
+	 * @param task The task to run for each tile
+	 * @throws InterruptedException Thrown if this thread is interrupted while 
+	 * waiting for the thread pool to finish.
+	 */
+	static void forEachTile(final int width, final int height, final int parallelism, final TileTask tileTask) 
+			throws InterruptedException {
+		if(width <= 0 || height <= 0){
+			return;
+		}
+		final TileMonitor tileMonitor = monitor.get();
+		final TileTask task = tileMonitor == null ? tileTask : (int x0, int y0, int w, int h)->{
+			if(tileMonitor.isCancelled()){
+				throw new CancellationException();
+			}
+			tileTask.run(x0, y0, w, h);
+			tileMonitor.tileDone(w * h);
+		};
+		if(parallelism <= 1){
+			// full-width bands, so that consecutive tiles are consecutive in memory
+			final int bandHeight = Math.max(1, Math.min(height, MAX_TILE_PIXELS / width));
+			for(int y = 0; y < height; y += bandHeight){
+				task.run(0, y, width, Math.min(bandHeight, height - y));
+			}
+			return;
+		}
+		final long area = (long)width * (long)height;
+		final long tileArea = Math.min(MAX_TILE_PIXELS, 
+				Math.max(MIN_TILE_PIXELS, area / ((long)parallelism * TILES_PER_WORKER)));
+		invoke(new TileAction(null, 0, 0, width, height, tileArea, task));
+	}
+	
+	/**
+	 * Runs a task for each index from 0 to <code>count - 1</code> (e.g. for 
+	 * each band of a {@link CompressedRaster}), either on the calling thread 
+	 * (<code>parallelism</code> of 1 or less) or on the shared thread pool, 
+	 * one index per pool task. If a conversion job is running on the calling 
+	 * thread (see {@link #setTileMonitor(cchall.javafx.globeviewer.raster.RasterReprojector.TileMonitor)}), 
+	 * the remaining indices are skipped once it is cancelled and a 
+	 * <code>CancellationException</code> is thrown.
+	 * @param count Number of indices
+	 * @param parallelism Parallel processing hint
+	 * @param indexTask The task to run for each index
+	 * @throws InterruptedException Thrown if this thread is interrupted while 
+	 * waiting for the thread pool to finish.
+	 */
+	static void forEachTask(final int count, final int parallelism, final IntConsumer indexTask) 
+			throws InterruptedException {
+		if(count <= 0){
+			return;
+		}
+		final TileMonitor tileMonitor = monitor.get();
+		final IntConsumer task = tileMonitor == null ? indexTask : (int i)->{
+			if(tileMonitor.isCancelled()){
+				throw new CancellationException();
+			}
+			indexTask.accept(i);
+		};
+		if(parallelism <= 1 || count == 1){
+			for(int i = 0; i < count; i++){
+				task.accept(i);
+			}
+			return;
+		}
+		invoke(new IndexAction(null, 0, count, task));
+	}
+	
+	/** runs a root action on the shared thread pool and waits for it */
+	private static void invoke(final RecursiveAction root) throws InterruptedException {
+		final ForkJoinPool pool = threadPool;
+		if(ForkJoinTask.getPool() == pool){
+			// already running on a thread of the pool, so help out instead of 
+			// blocking it (a thread of any other pool submits and waits)
+			root.invoke();
+			return;
+		}
+		final ForkJoinTask<Void> job = pool.submit(root);
+		try {
+			job.get();
+		} catch (InterruptedException ex) {
+			job.cancel(false);
+			throw ex;
+		} catch (ExecutionException ex) {
+			if(ex.getCause() instanceof RuntimeException){
+				throw (RuntimeException)ex.getCause();
+			} else if(ex.getCause() instanceof Error){
+				throw (Error)ex.getCause();
+			}
+			throw new IllegalStateException(ex.getCause());
+		}
+	}
+	
+	/**
+	 * Recursively halves a tile along its longer edge until it is no larger than 
+	 * the target area. The halves are forked, so idle pool threads steal the 
+	 * larger (not yet split) tiles first.
+	 */
+	private static final class TileAction extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final TileAction root;
+		private final int x0, y0, width, height;
+		private final long tileArea;
+		private final transient TileTask task;
+		
+		TileAction(TileAction root, int x0, int y0, int width, int height, long tileArea, TileTask task){
+			this.root = root;
+			this.x0 = x0;
+			this.y0 = y0;
+			this.width = width;
+			this.height = height;
+			this.tileArea = tileArea;
+			this.task = task;
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected void compute() {
+			final TileAction top = root == null ? this : root;
+			if(top.isCancelled()){
+				throw new CancellationException();
+			}
+			if((long)width * (long)height <= tileArea || (width == 1 && height == 1)){
+				task.run(x0, y0, width, height);
+			} else if(width > height){
+				final int w = width / 2;
+				invokeAll(new TileAction(top, x0, y0, w, height, tileArea, task), 
+						new TileAction(top, x0 + w, y0, width - w, height, tileArea, task));
+			} else {
+				final int h = height / 2;
+				invokeAll(new TileAction(top, x0, y0, width, h, tileArea, task), 
+						new TileAction(top, x0, y0 + h, width, height - h, tileArea, task));
+			}
+		}
+	}
+	
+	/**
+	 * Recursively halves a range of indices until it is a single index, like 
+	 * {@link TileAction}.
+	 */
+	private static final class IndexAction extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final IndexAction root;
+		private final int start, end;
+		private final transient IntConsumer task;
+		
+		IndexAction(IndexAction root, int start, int end, IntConsumer task){
+			this.root = root;
+			this.start = start;
+			this.end = end;
+			this.task = task;
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected void compute() {
+			final IndexAction top = root == null ? this : root;
+			if(top.isCancelled()){
+				throw new CancellationException();
+			}
+			if(end - start == 1){
+				task.accept(start);
+			} else {
+				final int middle = (start + end) >>> 1;
+				invokeAll(new IndexAction(top, start, middle, task), new IndexAction(top, middle, end, task));
+			}
+		}
+	}
+}
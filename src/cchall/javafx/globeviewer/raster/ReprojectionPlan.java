@@ -0,0 +1,707 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 .
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cchall.javafx.globeviewer.raster;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A reprojection plan is a precomputed destination-to-source pixel index map 
+ * for one combination of source map projection, target map projection, source 
+ * image size and destination image size. Once a plan exists, reprojecting a texture layer is a simple 
+ * gather-copy (<code>dst[i] = src[plan[i]]</code>) without any trigonometry, 
+ * so the diffuse, ambient, specular and normal layers of a globe (and every 
+ * later conversion of same-sized textures) only pay for the map projection 
+ * math once.<p>
+ * Plans are kept in a process-wide least-recently-used cache whose capacity is 
+ * measured in plan entries (one <code>int</code>, or 4 bytes, per destination 
+ * pixel, two for filtered plans) and by default holds up to a sixteenth of 
+ * the maximum heap size (see {@link RasterReprojector#setPlanCacheCapacity(long)} 
+ * to keep the plans of larger textures). Plans larger than the whole cache 
+ * are used once and not retained.<p>
+ * Filtered plans ({@link RasterReprojector.Filter#BILINEAR} and 
+ * {@link RasterReprojector.Filter#BICUBIC}) store the top-left source pixel of the 
+ * filter footprint plus 8-bit sub-pixel offsets. The bilinear kernel blends 
+ * two 8-bit channels at a time in each 32-bit multiply (the red and blue 
+ * channels in one <code>int</code>, alpha and green in another), which is 
+ * what makes it almost as fast as the nearest-neighbor copy.
+ * @author CCHall <a href="mailto:explosivegnome@yahoo.com">
+ * explosivegnome@yahoo.com</a>
+ */
+final class ReprojectionPlan {
+	
+	/** 
+	 * Default cache capacity: a sixteenth of the maximum heap size (e.g. 32 
+	 * mega-entries, enough for four 4096x2048 plans, with a 2 GB heap)
+	 */
+	static final long DEFAULT_CACHE_CAPACITY = defaultCacheCapacity(Runtime.getRuntime().maxMemory());
+	
+	private static final Object cacheLock = new Object();
+	private static final Map<Key, ReprojectionPlan> cache = new LinkedHashMap<>(16, 0.75f, true);
+	private static long cacheCapacity = DEFAULT_CACHE_CAPACITY;
+	private static long cacheSize = 0;
+	
+	/** Width of the source image */
+	final int srcWidth;
+	/** Height of the source image */
+	final int srcHeight;
+	/** Width of the destination image */
+	final int dstWidth;
+	/** Height of the destination image */
+	final int dstHeight;
+	/** Texture filter */
+	final RasterReprojector.Filter filter;
+	/** 
+	 * for each destination pixel (row-major order), the index of the source 
+	 * pixel (or for filtered plans, the top-left pixel of the 2x2 bilinear 
+	 * footprint, which is the center of the 4x4 bicubic footprint)
+	 */
+	private final int[] sourceIndices;
+	/** 
+	 * for filtered plans, the X (bits 0-7) and Y (bits 8-15) sub-pixel offsets, 
+	 * in 256ths of a pixel, of each sample point from its top-left source pixel
+	 */
+	private final int[] fractions;
+	
+	private ReprojectionPlan(int srcWidth, int srcHeight, int dstWidth, int dstHeight, RasterReprojector.Filter filter){
+		this.srcWidth = srcWidth;
+		this.srcHeight = srcHeight;
+		this.dstWidth = dstWidth;
+		this.dstHeight = dstHeight;
+		this.filter = filter;
+		this.sourceIndices = new int[dstWidth * dstHeight];
+		this.fractions = filter == RasterReprojector.Filter.NEAREST ? null : new int[dstWidth * dstHeight];
+	}
+	
+	/**
+	 * Gets the nearest-neighbor plan for reprojecting an image from one map 
+	 * projection to another, either from the cache or by computing it (and then 
+	 * adding it to the cache).
+	 * @param source The map projection of the input image
+	 * @param target The map projection of the output image
+	 * @param srcWidth Width of the input image
+	 * @param srcHeight Height of the input image
+	 * @param dstWidth Width of the output image
+	 * @param dstHeight Height of the output image
+	 * @param parallelism Parallel processing hint (see {@link RasterReprojector}) used 
+	 * if the plan needs to be computed.
+	 * @return A reprojection plan
+	 * @throws InterruptedException Thrown if this thread is interrupted while 
+	 * waiting for the thread pool to compute the plan.
+	 */
+	static ReprojectionPlan get(
+			final MapProjection source, 
+			final MapProjection target, 
+			final int srcWidth, final int srcHeight, 
+			final int dstWidth, final int dstHeight, 
+			final int parallelism
+	) throws InterruptedException {
+		return get(source, target, srcWidth, srcHeight, dstWidth, dstHeight, parallelism, 
+				RasterReprojector.Filter.NEAREST);
+	}
+	
+	/**
+	 * Gets the plan for reprojecting an image from one map projection to another 
+	 * with the given texture filter, either from the cache or by computing it 
+	 * (and then adding it to the cache).
+	 * @param source The map projection of the input image
+	 * @param target The map projection of the output image
+	 * @param srcWidth Width of the input image
+	 * @param srcHeight Height of the input image
+	 * @param dstWidth Width of the output image
+	 * @param dstHeight Height of the output image
+	 * @param parallelism Parallel processing hint (see {@link RasterReprojector}) used 
+	 * if the plan needs to be computed.
+	 * @param filter Texture filter
+	 * @return A reprojection plan
+	 * @throws InterruptedException Thrown if this thread is interrupted while 
+	 * waiting for the thread pool to compute the plan.
+	 */
+	static ReprojectionPlan get(
+			final MapProjection source, 
+			final MapProjection target, 
+			final int srcWidth, final int srcHeight, 
+			final int dstWidth, final int dstHeight, 
+			final int parallelism, 
+			final RasterReprojector.Filter filter
+	) throws InterruptedException {
+		if(filter == null){
+			throw new NullPointerException("filter cannot be null");
+		}
+		final Key key = new Key(source, target, srcWidth, srcHeight, dstWidth, dstHeight, filter);
+		ReprojectionPlan plan = lookup(key);
+		if(plan == null){
+			// computed outside of the lock so that other conversions are not blocked
+			final ReprojectionPlan newPlan = new ReprojectionPlan(srcWidth, srcHeight, dstWidth, dstHeight, filter);
+			RasterReprojector.forEachTile(dstWidth, dstHeight, parallelism, (int x, int y, int w, int h)->
+					newPlan.computeSourceIndices(source, target, x, y, w, h, new RowSampler(w)));
+			plan = store(key, newPlan);
+		}
+		return plan;
+	}
+	
+	/** Inner loop of the plan computation (must not allocate) */
+	private void computeSourceIndices(
+			final MapProjection source, final MapProjection target, 
+			final int x0, final int y0, final int width, final int height, 
+			final RowSampler sampler
+	){
+		for(int y = y0; y < y0 + height; y++){
+			sampler.sample(source, target, x0, y, width, dstWidth, dstHeight);
+			final double[] relX = sampler.sourceRelX;
+			final double[] relY = sampler.sourceRelY;
+			int i = y * dstWidth + x0;
+			for(int n = 0; n < width; n++){
+				if(fractions == null){
+					sourceIndices[i] = toPixel(relY[n], srcHeight) * srcWidth + toPixel(relX[n], srcWidth);
+				} else {
+					// filter footprint is centered on the sample point
+					final int fixedX = toFixedPoint(relX[n], srcWidth);
+					final int fixedY = toFixedPoint(relY[n], srcHeight);
+					sourceIndices[i] = (fixedY >> 8) * srcWidth + (fixedX >> 8);
+					fractions[i] = (fixedX & 0xFF) | ((fixedY & 0xFF) << 8);
+				}
+				i++;
+			}
+		}
+	}
+	
+	/**
+	 * Finds where the centers of a row of destination pixels are in the source 
+	 * image, using the row conversion methods of the map projections (which 
+	 * may be specialized to do the work that is the same for the whole row 
+	 * only once). Each thread needs its own RowSampler.
+	 */
+	static final class RowSampler {
+		private final double[] relX, lon, lat;
+		/** relative X coordinates in the source image of the last sampled row */
+		final double[] sourceRelX;
+		/** relative Y coordinates in the source image of the last sampled row */
+		final double[] sourceRelY;
+		
+		/**
+		 * @param capacity maximum number of pixels per row
+		 */
+		RowSampler(int capacity){
+			relX = new double[capacity];
+			lon = new double[capacity];
+			lat = new double[capacity];
+			sourceRelX = new double[capacity];
+			sourceRelY = new double[capacity];
+		}
+		
+		/**
+		 * Samples the centers of a row of destination pixels.
+		 * @param source map projection of the source image
+		 * @param target map projection of the destination image
+		 * @param x0 first destination column
+		 * @param y destination row
+		 * @param count number of pixels
+		 * @param dstWidth width of the destination image
+		 * @param dstHeight height of the destination image
+		 */
+		void sample(MapProjection source, MapProjection target, int x0, int y, int count, 
+				int dstWidth, int dstHeight){
+			final double relXConversionFactor = 1.0 / (double)dstWidth;
+			for(int n = 0; n < count; n++){
+				relX[n] = (x0 + n + 0.5) * relXConversionFactor;
+			}
+			target.convertRelativePixelRowToLonLat(relX, (y + 0.5) * (1.0 / (double)dstHeight), count, lon, lat);
+			source.convertLonLatRowToRelativePixelXY(lon, lat, count, sourceRelX, sourceRelY);
+		}
+	}
+	
+	/**
+	 * Converts a relative pixel coordinate into a 24.8 fixed-point coordinate 
+	 * relative to the pixel centers, so that the integer part is the left (or 
+	 * top) pixel of the 2x2 bilinear footprint and the fractional part is the 
+	 * weight of the right (or bottom) pixel. Samples beyond the outer pixel 
+	 * centers are clamped to them.
+	 * @param rel relative pixel X or Y coordinate (0 to 1)
+	 * @param size image width (for X) or height (for Y)
+	 * @return fixed-point pixel coordinate, from 0 to <code>(size - 1) * 256</code>
+	 */
+	static int toFixedPoint(double rel, int size){
+		final double p = rel * size - 0.5;
+		if(p >= size - 1) return (size - 1) << 8;
+		if(p > 0) return (int)(p * 256);
+		return 0; // also catches NaN
+	}
+	
+	/**
+	 * Converts a relative pixel coordinate into the pixel that contains it.
+	 * @param rel relative pixel X or Y coordinate (0 to 1)
+	 * @param size image width (for X) or height (for Y)
+	 * @return the pixel coordinate, clamped to the range 0 to <code>size - 1</code>
+	 */
+	static int toPixel(double rel, int size){
+		final int p = (int)(rel * size);
+		if(p >= size) return size - 1;
+		if(p < 0) return 0;
+		return p;
+	}
+	
+	/**
+	 * Gets the source pixel index (<code>y * srcWidth + x</code>) for a given 
+	 * destination pixel.
+	 * @param x destination pixel X coordinate
+	 * @param y destination pixel Y coordinate
+	 * @return the index of the source pixel that is copied to (x, y)
+	 */
+	int sourceIndex(int x, int y){
+		return sourceIndices[y * dstWidth + x];
+	}
+	
+	/**
+	 * Copies source pixels into a tile of the destination.
+	 * @param src Source pixels (row-major, <code>srcWidth * srcHeight</code> in size)
+	 * @param tile Destination buffer, which will receive <code>width * height</code> 
+	 * pixels (row-major) starting at index 0
+	 * @param x0 First destination column of the tile
+	 * @param y0 First destination row of the tile
+	 * @param width Number of columns in the tile
+	 * @param height Number of rows in the tile
+	 */
+	void gather(final int[] src, final int[] tile, final int x0, final int y0, final int width, final int height){
+		if(fractions != null){
+			gather(new int[][]{src}, new int[][]{tile}, x0, y0, width, height);
+			return;
+		}
+		gatherNearest(src, 0, tile, x0, y0, width, height);
+	}
+	
+	/** Nearest-neighbor version of gather(...) for a single layer */
+	private void gatherNearest(final int[] src, final int offset, final int[] tile, 
+			final int x0, final int y0, final int width, final int height){
+		final int[] indices = sourceIndices;
+		int o = 0;
+		for(int y = y0; y < y0 + height; y++){
+			final int start = y * dstWidth + x0;
+			for(int i = start; i < start + width; i++){
+				tile[o++] = src[indices[i] - offset];
+			}
+		}
+	}
+	
+	/**
+	 * Copies source pixels from several same-sized source layers into tiles of 
+	 * the corresponding destination layers, reading each plan entry only once.
+	 * @param srcs Source layers (each row-major, <code>srcWidth * srcHeight</code> in size)
+	 * @param tiles Destination buffers, one per source layer, each of which will 
+	 * receive <code>width * height</code> pixels (row-major) starting at index 0
+	 * @param x0 First destination column of the tile
+	 * @param y0 First destination row of the tile
+	 * @param width Number of columns in the tile
+	 * @param height Number of rows in the tile
+	 */
+	void gather(final int[][] srcs, final int[][] tiles, final int x0, final int y0, final int width, final int height){
+		gather(srcs, 0, tiles, x0, y0, width, height);
+	}
+	
+	/**
+	 * Copies source pixels from several same-sized windows of source layers 
+	 * into tiles of the corresponding destination layers. Each window holds 
+	 * only some (full-width) rows of its source layer, which must include all 
+	 * of the rows returned by {@link #getSourceRows(int, int, int[])} for the 
+	 * rows of the tile.
+	 * @param srcs Source windows (each row-major, <code>srcWidth</code> pixels per row)
+	 * @param firstRow The source row of the first row of the windows
+	 * @param tiles Destination buffers, one per source layer, each of which will 
+	 * receive <code>width * height</code> pixels (row-major) starting at index 0
+	 * @param x0 First destination column of the tile
+	 * @param y0 First destination row of the tile
+	 * @param width Number of columns in the tile
+	 * @param height Number of rows in the tile
+	 */
+	void gather(final int[][] srcs, final int firstRow, final int[][] tiles, 
+			final int x0, final int y0, final int width, final int height){
+		final int offset = firstRow * srcWidth;
+		if(filter == RasterReprojector.Filter.BILINEAR){
+			gatherBilinear(srcs, offset, tiles, x0, y0, width, height);
+			return;
+		} else if(filter == RasterReprojector.Filter.BICUBIC){
+			gatherBicubic(srcs, offset, tiles, x0, y0, width, height);
+			return;
+		} else if(srcs.length == 1){
+			gatherNearest(srcs[0], offset, tiles[0], x0, y0, width, height);
+			return;
+		}
+		final int[] indices = sourceIndices;
+		final int layers = srcs.length;
+		int o = 0;
+		for(int y = y0; y < y0 + height; y++){
+			final int start = y * dstWidth + x0;
+			for(int i = start; i < start + width; i++){
+				final int index = indices[i] - offset;
+				for(int l = 0; l < layers; l++){
+					tiles[l][o] = srcs[l][index];
+				}
+				o++;
+			}
+		}
+	}
+	
+	/** Bilinear filtered version of gather(...) */
+	private void gatherBilinear(final int[][] srcs, final int offset, final int[][] tiles, 
+			final int x0, final int y0, final int width, final int height){
+		final int[] indices = sourceIndices;
+		final int layers = srcs.length;
+		int o = 0;
+		for(int y = y0; y < y0 + height; y++){
+			final int start = y * dstWidth + x0;
+			for(int i = start; i < start + width; i++){
+				final int index = indices[i] - offset;
+				final int fx = fractions[i] & 0xFF;
+				final int fy = (fractions[i] >> 8) & 0xFF;
+				// a zero weight means that the neighbor may be past the edge of the image
+				final int right = fx == 0 ? 0 : 1;
+				final int down = fy == 0 ? 0 : srcWidth;
+				for(int l = 0; l < layers; l++){
+					final int[] src = srcs[l];
+					tiles[l][o] = bilinear(src[index], src[index + right], 
+							src[index + down], src[index + down + right], fx, fy);
+				}
+				o++;
+			}
+		}
+	}
+	
+	/** Bicubic filtered version of gather(...) */
+	private void gatherBicubic(final int[][] srcs, final int offset, final int[][] tiles, 
+			final int x0, final int y0, final int width, final int height){
+		final int[] indices = sourceIndices;
+		final int layers = srcs.length;
+		final int maxX = srcWidth - 1;
+		final int maxY = srcHeight - 1;
+		final int[] columns = new int[4];
+		final int[] rows = new int[4];
+		int o = 0;
+		for(int y = y0; y < y0 + height; y++){
+			final int start = y * dstWidth + x0;
+			for(int i = start; i < start + width; i++){
+				final int index = indices[i];
+				final int fx = fractions[i] & 0xFF;
+				final int fy = (fractions[i] >> 8) & 0xFF;
+				final int sy = index / srcWidth;
+				final int sx = index - sy * srcWidth;
+				for(int k = 0; k < 4; k++){
+					columns[k] = Math.max(0, Math.min(maxX, sx + k - 1));
+					rows[k] = Math.max(0, Math.min(maxY, sy + k - 1)) * srcWidth - offset;
+				}
+				for(int l = 0; l < layers; l++){
+					tiles[l][o] = bicubic(srcs[l], columns, rows, fx, fy);
+				}
+				o++;
+			}
+		}
+	}
+	
+	/**
+	 * Finds which source rows are needed for a band of destination rows 
+	 * (including the rows of the filter footprints), so that the source image 
+	 * can be read one window of rows at a time.
+	 * @param y0 First destination row
+	 * @param height Number of destination rows
+	 * @param range Receives the first (index 0) and last (index 1) source row
+	 */
+	void getSourceRows(final int y0, final int height, final int[] range){
+		final int[] indices = sourceIndices;
+		int min = Integer.MAX_VALUE, max = 0;
+		for(int i = y0 * dstWidth; i < (y0 + height) * dstWidth; i++){
+			final int index = indices[i];
+			if(index < min) min = index;
+			if(index > max) max = index;
+		}
+		range[0] = Math.max(0, min / srcWidth - footprintBefore());
+		range[1] = Math.min(srcHeight - 1, max / srcWidth + footprintAfter());
+	}
+	
+	/**
+	 * @return The number of source rows (and columns) above (and left of) the 
+	 * pixel given by the source index that the filter footprint includes
+	 */
+	int footprintBefore(){
+		return filter == RasterReprojector.Filter.BICUBIC ? 1 : 0;
+	}
+	
+	/**
+	 * @return The number of source rows (and columns) below (and right of) the 
+	 * pixel given by the source index that the filter footprint includes
+	 */
+	int footprintAfter(){
+		if(filter == RasterReprojector.Filter.BILINEAR){
+			return 1;
+		} else if(filter == RasterReprojector.Filter.BICUBIC){
+			return 2;
+		}
+		return 0;
+	}
+	
+	/**
+	 * Bilinear interpolation of four ARGB pixels, two channels per multiply 
+	 * (the channels are spaced 16 bits apart and no product exceeds 16 bits).
+	 * @param c00 top-left pixel
+	 * @param c01 top-right pixel
+	 * @param c10 bottom-left pixel
+	 * @param c11 bottom-right pixel
+	 * @param fx weight of the right pixels, in 256ths (0-255)
+	 * @param fy weight of the bottom pixels, in 256ths (0-255)
+	 * @return interpolated ARGB pixel
+	 */
+	static int bilinear(int c00, int c01, int c10, int c11, int fx, int fy){
+		final int mask = 0x00FF00FF;
+		final int gx = 256 - fx;
+		final int gy = 256 - fy;
+		final int rbTop = (((c00 & mask) * gx + (c01 & mask) * fx) >>> 8) & mask;
+		final int agTop = ((((c00 >>> 8) & mask) * gx + ((c01 >>> 8) & mask) * fx) >>> 8) & mask;
+		final int rbBottom = (((c10 & mask) * gx + (c11 & mask) * fx) >>> 8) & mask;
+		final int agBottom = ((((c10 >>> 8) & mask) * gx + ((c11 >>> 8) & mask) * fx) >>> 8) & mask;
+		final int rb = ((rbTop * gy + rbBottom * fy) >>> 8) & mask;
+		final int ag = ((agTop * gy + agBottom * fy) >>> 8) & mask;
+		return (ag << 8) | rb;
+	}
+	
+	/** Catmull-Rom spline weights (4 per sub-pixel offset, summing to exactly 1 &lt;&lt; 12) */
+	private static final int[] CUBIC_WEIGHTS = new int[256 * 4];
+	static {
+		for(int f = 0; f < 256; f++){
+			final double t = f / 256.0;
+			final double t2 = t * t;
+			final double t3 = t2 * t;
+			final int w0 = (int)Math.round(4096 * 0.5 * (-t3 + 2 * t2 - t));
+			final int w2 = (int)Math.round(4096 * 0.5 * (-3 * t3 + 4 * t2 + t));
+			final int w3 = (int)Math.round(4096 * 0.5 * (t3 - t2));
+			CUBIC_WEIGHTS[4 * f] = w0;
+			CUBIC_WEIGHTS[4 * f + 1] = 4096 - w0 - w2 - w3;
+			CUBIC_WEIGHTS[4 * f + 2] = w2;
+			CUBIC_WEIGHTS[4 * f + 3] = w3;
+		}
+	}
+	
+	/**
+	 * Bicubic (Catmull-Rom) interpolation of a 4x4 block of ARGB pixels.
+	 * @param src source pixels
+	 * @param columns the X coordinates of the 4 columns of the block
+	 * @param rows the indices of the first pixel of the 4 rows of the block
+	 * @param fx sub-pixel X offset of the sample point from the second column, in 256ths
+	 * @param fy sub-pixel Y offset of the sample point from the second row, in 256ths
+	 * @return interpolated ARGB pixel
+	 */
+	static int bicubic(int[] src, int[] columns, int[] rows, int fx, int fy){
+		int a = 0, r = 0, g = 0, b = 0;
+		for(int k = 0; k < 4; k++){
+			final int row = rows[k];
+			int ra = 0, rr = 0, rg = 0, rb = 0;
+			for(int j = 0; j < 4; j++){
+				final int c = src[row + columns[j]];
+				final int w = CUBIC_WEIGHTS[4 * fx + j];
+				ra += (c >>> 24) * w;
+				rr += ((c >> 16) & 0xFF) * w;
+				rg += ((c >> 8) & 0xFF) * w;
+				rb += (c & 0xFF) * w;
+			}
+			final int w = CUBIC_WEIGHTS[4 * fy + k];
+			// row sums are 20-bit, so scale down before the second pass to stay within 32 bits
+			a += (ra >> 6) * w;
+			r += (rr >> 6) * w;
+			g += (rg >> 6) * w;
+			b += (rb >> 6) * w;
+		}
+		return (clampChannel(a) << 24) | (clampChannel(r) << 16) | (clampChannel(g) << 8) | clampChannel(b);
+	}
+	
+	/** rounds a 255 &lt;&lt; 18 fixed-point channel value and clamps it to 0-255 */
+	private static int clampChannel(int v){
+		final int c = (v + (1 << 17)) >> 18;
+		return c < 0 ? 0 : (c > 255 ? 255 : c);
+	}
+	
+	/** Number of cache entries (<code>int</code>s) held by this plan */
+	long size(){
+		return fractions == null ? sourceIndices.length : 2L * sourceIndices.length;
+	}
+	
+	/**
+	 * Checks whether a plan is in the cache (without marking it as recently 
+	 * used)
+	 * @return True if {@link #get(cchall.javafx.globeviewer.raster.MapProjection, cchall.javafx.globeviewer.raster.MapProjection, int, int, int, int, int, cchall.javafx.globeviewer.raster.RasterReprojector.Filter)} 
+	 * would not need to compute the plan
+	 */
+	static boolean isCached(
+			final MapProjection source, 
+			final MapProjection target, 
+			final int srcWidth, final int srcHeight, 
+			final int dstWidth, final int dstHeight, 
+			final RasterReprojector.Filter filter
+	){
+		final Key key = new Key(source, target, srcWidth, srcHeight, dstWidth, dstHeight, filter);
+		synchronized(cacheLock){
+			return cache.containsKey(key);
+		}
+	}
+	
+	private static ReprojectionPlan lookup(Key key){
+		synchronized(cacheLock){
+			return cache.get(key);
+		}
+	}
+	
+	private static ReprojectionPlan store(Key key, ReprojectionPlan plan){
+		synchronized(cacheLock){
+			ReprojectionPlan existing = cache.get(key);
+			if(existing != null){
+				// another thread computed the same plan in the mean time
+				return existing;
+			}
+			if(plan.size() <= cacheCapacity){
+				cache.put(key, plan);
+				cacheSize += plan.size();
+				evict();
+			}
+			return plan;
+		}
+	}
+	
+	/** removes least-recently-used plans until the cache fits its capacity (call with lock held) */
+	private static void evict(){
+		Iterator<ReprojectionPlan> iter = cache.values().iterator();
+		while(cacheSize > cacheCapacity && iter.hasNext()){
+			cacheSize -= iter.next().size();
+			iter.remove();
+		}
+	}
+	
+	/**
+	 * Sets the maximum total size of all cached plans, evicting least-recently-used 
+	 * plans if necessary.
+	 * @param numEntries Capacity in plan entries (each entry is an <code>int</code>, 
+	 * one per destination pixel). Zero disables caching.
+	 */
+	static void setCacheCapacity(long numEntries){
+		if(numEntries < 0){
+			throw new IllegalArgumentException("Cache capacity cannot be negative");
+		}
+		synchronized(cacheLock){
+			cacheCapacity = numEntries;
+			evict();
+		}
+	}
+	
+	/**
+	 * @param maxMemory The maximum heap size, in bytes
+	 * @return The default cache capacity for that heap size, in plan entries 
+	 * (a sixteenth of the heap, at 4 bytes per entry)
+	 */
+	static long defaultCacheCapacity(long maxMemory){
+		return Math.max(0, maxMemory / 16 / 4);
+	}
+	
+	/**
+	 * @return The maximum total size of all cached plans, in plan entries
+	 */
+	static long getCacheCapacity(){
+		synchronized(cacheLock){
+			return cacheCapacity;
+		}
+	}
+	
+	/**
+	 * @return The current total size of all cached plans, in plan entries
+	 */
+	static long getCacheSize(){
+		synchronized(cacheLock){
+			return cacheSize;
+		}
+	}
+	
+	/**
+	 * Removes all plans from the cache
+	 */
+	static void clearCache(){
+		synchronized(cacheLock){
+			cache.clear();
+			cacheSize = 0;
+		}
+	}
+	
+	/** Cache key: map projections, image dimensions and filter */
+	private static final class Key {
+		private final MapProjection source, target;
+		private final int srcWidth, srcHeight, dstWidth, dstHeight;
+		private final RasterReprojector.Filter filter;
+		
+		Key(MapProjection source, MapProjection target, int srcWidth, int srcHeight, int dstWidth, int dstHeight, 
+				RasterReprojector.Filter filter){
+			this.source = source;
+			this.target = target;
+			this.srcWidth = srcWidth;
+			this.srcHeight = srcHeight;
+			this.dstWidth = dstWidth;
+			this.dstHeight = dstHeight;
+			this.filter = filter;
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int hashCode() {
+			int hash = 7;
+			hash = 59 * hash + Objects.hashCode(source);
+			hash = 59 * hash + Objects.hashCode(target);
+			hash = 59 * hash + srcWidth;
+			hash = 59 * hash + srcHeight;
+			hash = 59 * hash + dstWidth;
+			hash = 59 * hash + dstHeight;
+			hash = 59 * hash + Objects.hashCode(filter);
+			return hash;
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null) {
+				return false;
+			}
+			if (getClass() != obj.getClass()) {
+				return false;
+			}
+			final Key other = (Key) obj;
+			return this.srcWidth == other.srcWidth 
+					&& this.srcHeight == other.srcHeight 
+					&& this.dstWidth == other.dstWidth 
+					&& this.dstHeight == other.dstHeight 
+					&& this.filter == other.filter 
+					&& Objects.equals(this.source, other.source)
+					&& Objects.equals(this.target, other.target);
+		}
+	}
+}
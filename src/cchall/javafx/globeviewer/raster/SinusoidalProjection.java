@@ -0,0 +1,141 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 .
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cchall.javafx.globeviewer.raster;
+
+import static cchall.javafx.globeviewer.raster.MercatorProjection.clamp;
+
+/**
+ * The sinusoidal map projection, which has the highest level of detail at
+ * longitude and latitude (0,0) and decreases in precision towards the edges and
+ * poles of the map.
+ * @author CCHall <a href="mailto:explosivegnome@yahoo.com">
+ * explosivegnome@yahoo.com</a>
+ */
+final class SinusoidalProjection implements MapProjection {
+
+	/* package private */
+	static final SinusoidalProjection INSTANCE = new SinusoidalProjection(false);
+	/** {@link #INSTANCE} with approximate trigonometry (see {@link FastTrig}) */
+	private static final SinusoidalProjection APPROXIMATE = new SinusoidalProjection(true);
+
+	private final boolean approximate;
+
+	private SinusoidalProjection(boolean approximate){
+		this.approximate = approximate;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void convertLonLatToRelativePixelXY(final double lon, final double lat, final double[] relXY) {
+		final double oneOverPi = 1.0 / Math.PI;
+		final double oneOverTwoPi = 0.5 / Math.PI;
+		double y = 0.5 - (oneOverPi * lat);
+		double width = approximate ? FastTrig.cos(lat) : Math.cos(lat);
+		double offset = 0.5 * (1.0 - width);
+		double x = offset + width * clamp(lon * oneOverTwoPi);
+		relXY[0] = x;
+		relXY[1] = y;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void convertRelativePixelXYToLonLat(final double relX, final double relY, final double[] lonLat) {
+		final double twoPi = 2.0 * Math.PI;
+		double lat = (0.5 - clamp(relY)) * Math.PI;
+		double width = approximate ? FastTrig.cos(lat) : Math.cos(lat);
+		double offset = 0.5 * (1.0 - width);
+		double limit = 1.0 - offset;
+		double x = clamp(relX);
+		double lon = 0;
+		if(x > offset && x < limit){
+			lon = twoPi * (x - offset) / width;
+		}
+		if(lon > Math.PI) lon -= twoPi;
+		lonLat[0] = lon;
+		lonLat[1] = lat;
+	}
+
+	/* row versions of the above, for bulk conversions (same results, but with
+	 * the cosine of the latitude computed once per row, or once per run of
+	 * equal latitudes) */
+	@Override
+	public void convertLonLatRowToRelativePixelXY(final double[] lon, final double[] lat, final int count,
+			final double[] relX, final double[] relY) {
+		final double oneOverPi = 1.0 / Math.PI;
+		final double oneOverTwoPi = 0.5 / Math.PI;
+		double lastLat = Double.NaN, y = 0, width = 0, offset = 0;
+		for(int i = 0; i < count; i++){
+			if(lat[i] != lastLat){
+				lastLat = lat[i];
+				y = 0.5 - (oneOverPi * lastLat);
+				width = approximate ? FastTrig.cos(lastLat) : Math.cos(lastLat);
+				offset = 0.5 * (1.0 - width);
+			}
+			relX[i] = offset + width * clamp(lon[i] * oneOverTwoPi);
+			relY[i] = y;
+		}
+	}
+
+	@Override
+	public void convertRelativePixelRowToLonLat(final double[] relX, final double relY, final int count,
+			final double[] lon, final double[] lat) {
+		final double twoPi = 2.0 * Math.PI;
+		final double rowLat = (0.5 - clamp(relY)) * Math.PI;
+		final double width = approximate ? FastTrig.cos(rowLat) : Math.cos(rowLat);
+		final double offset = 0.5 * (1.0 - width);
+		final double limit = 1.0 - offset;
+		for(int i = 0; i < count; i++){
+			final double x = clamp(relX[i]);
+			double rowLon = 0;
+			if(x > offset && x < limit){
+				rowLon = twoPi * (x - offset) / width;
+			}
+			if(rowLon > Math.PI) rowLon -= twoPi;
+			lon[i] = rowLon;
+			lat[i] = rowLat;
+		}
+	}
+
+	/**
+	 * Gets the approximate version of this map projection, whose relative
+	 * pixel coordinates are within 10<sup>-6</sup> of the exact version.
+	 * Longitudes are within 10<sup>-6</sup> radians except close to the
+	 * poles, where the error grows but stays under a hundredth of a texel
+	 * for textures up to 16384 pixels tall.
+	 * @return the approximate sinusoidal map projection
+	 */
+	@Override
+	public MapProjection approximate(){
+		return APPROXIMATE;
+	}
+
+	@Override
+	public String toString(){
+		return approximate ? "Sinusoidal (approximate)" : "Sinusoidal";
+	}
+}
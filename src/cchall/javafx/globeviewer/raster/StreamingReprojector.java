@@ -0,0 +1,244 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 .
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cchall.javafx.globeviewer.raster;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Converts a texture image file (PNG, JPEG, or any other format supported by 
+ * <code>javax.imageio</code>) from one map projection into another without 
+ * decoding the whole source image into memory. The output is computed in 
+ * bands of rows, and for each band only the window of source rows that the 
+ * band samples from is decoded (with <code>ImageReadParam.setSourceRegion(...)</code>), 
+ * so the peak memory is the output raster plus one window of source rows 
+ * instead of the whole decoded source. The bands are as tall as the window 
+ * budget allows: the equatorial band of a {@link MapProjections#CUBIC} or 
+ * {@link MapProjections#DYMAXION} texture only samples a narrow range of 
+ * latitudes, so it needs far fewer source rows than the polar bands.<p>
+ * Formats that can only be decoded from the top (like PNG and JPEG) are 
+ * decoded again up to the last row of each window (the rows above the window 
+ * are discarded as they are decoded, not stored), so a smaller window budget 
+ * trades decoding time for memory. The source can also be subsampled while it 
+ * is decoded (only every n-th row and column is kept), which is useful when the 
+ * output is much smaller than the source.<p>
+ * With a subsampling of 1, the output is exactly the same as decoding the 
+ * whole image and converting it with {@link RasterReprojector}.<br><pre>
+Raster dymaxion = StreamingReprojector.reproject(
+		Paths.get("earth_mercator_21600x21600.png"), 
+		MapProjections.MERCATOR, 
+		MapProjections.DYMAXION, 
+		2200, 520, 
+		ForkJoinPool.getCommonPoolParallelism(), 
+		RasterReprojector.Filter.BILINEAR);
+</pre>
+ * @author CCHall <a href="mailto:explosivegnome@yahoo.com">
+ * explosivegnome@yahoo.com</a>
+ */
+public final class StreamingReprojector {
+	
+	/** Default maximum number of decoded source pixels in memory (16 M-pixels, 64 MB) */
+	public static final long DEFAULT_WINDOW_PIXELS = 16L * 1024L * 1024L;
+	
+	private StreamingReprojector(){
+		// static utility class
+	}
+	
+	/**
+	 * Converts a texture image file from one map projection into another, 
+	 * decoding at most {@link #DEFAULT_WINDOW_PIXELS} source pixels at a time.
+	 * @param source The input image file
+	 * @param sourceProjection The map projection of the input image
+	 * @param targetProjection The map projection of the output image
+	 * @param newWidth Width of the output image
+	 * @param newHeight Height of the output image
+	 * @param parallelism Parallel processing hint (1 converts the image on the 
+	 * calling thread).
+	 * @param filter Texture filter (see {@link RasterReprojector.Filter})
+	 * @return A new raster holding the converted image
+	 * @throws IOException Thrown if the file could not be read or is not a 
+	 * supported image format
+	 * @throws InterruptedException Thrown if this thread is interrupted while 
+	 * waiting for the thread pool to finish the conversion.
+	 */
+	public static Raster reproject(
+			final Path source, 
+			final MapProjection sourceProjection, 
+			final MapProjection targetProjection, 
+			final int newWidth, 
+			final int newHeight, 
+			final int parallelism, 
+			final RasterReprojector.Filter filter
+	) throws IOException, InterruptedException {
+		try(ImageInputStream in = ImageIO.createImageInputStream(source.toFile())){
+			if(in == null){
+				throw new IOException("Cannot read " + source);
+			}
+			return reproject(in, sourceProjection, targetProjection, newWidth, newHeight, 
+					parallelism, filter, 1, DEFAULT_WINDOW_PIXELS);
+		}
+	}
+	
+	/**
+	 * Converts a texture image from one map projection into another, decoding 
+	 * only one window of source rows at a time.
+	 * @param source The input image stream (which must support seeking back to 
+	 * the start of the image, as file and memory-cached streams do). If it 
+	 * holds several images, the first one is converted.
+	 * @param sourceProjection The map projection of the input image
+	 * @param targetProjection The map projection of the output image
+	 * @param newWidth Width of the output image
+	 * @param newHeight Height of the output image
+	 * @param parallelism Parallel processing hint (1 converts the image on the 
+	 * calling thread).
+	 * @param filter Texture filter (see {@link RasterReprojector.Filter})
+	 * @param subsampling Only every n-th row and column of the input image is 
+	 * decoded (1 decodes all of them)
+	 * @param maxWindowPixels The maximum number of decoded source pixels held 
+	 * in memory at a time. The window is always at least as large as the 
+	 * source rows needed by one output row, even if that exceeds this limit.
+	 * @return A new raster holding the converted image
+	 * @throws IOException Thrown if the image could not be read or is not a 
+	 * supported image format
+	 * @throws InterruptedException Thrown if this thread is interrupted while 
+	 * waiting for the thread pool to finish the conversion.
+	 */
+	public static Raster reproject(
+			final ImageInputStream source, 
+			final MapProjection sourceProjection, 
+			final MapProjection targetProjection, 
+			final int newWidth, 
+			final int newHeight, 
+			final int parallelism, 
+			final RasterReprojector.Filter filter, 
+			final int subsampling, 
+			final long maxWindowPixels
+	) throws IOException, InterruptedException {
+		if(newWidth <= 0 || newHeight <= 0){
+			throw new IllegalArgumentException(String.format("Invalid output size %sx%s", newWidth, newHeight));
+		}
+		if(subsampling <= 0){
+			throw new IllegalArgumentException("Invalid subsampling: " + subsampling);
+		}
+		final Iterator<ImageReader> readers = ImageIO.getImageReaders(source);
+		if(!readers.hasNext()){
+			throw new IOException("Unsupported image format");
+		}
+		final ImageReader reader = readers.next();
+		try {
+			// not seek-forward-only, because the image is read once per window
+			reader.setInput(source, false, true);
+			final int fullWidth = reader.getWidth(0);
+			final int fullHeight = reader.getHeight(0);
+			final int srcWidth = (fullWidth + subsampling - 1) / subsampling;
+			final int srcHeight = (fullHeight + subsampling - 1) / subsampling;
+			final ReprojectionPlan plan = ReprojectionPlan.get(sourceProjection, targetProjection, 
+					srcWidth, srcHeight, newWidth, newHeight, parallelism, filter);
+			final Raster output = new Raster(newWidth, newHeight);
+			final int[] dst = output.getPixels();
+			final ImageReadParam param = reader.getDefaultReadParam();
+			param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+			for(Band band : bands(plan, maxWindowPixels)){
+				final int rows = band.lastRow - band.firstRow + 1;
+				param.setSourceRegion(new Rectangle(0, band.firstRow * subsampling, 
+						fullWidth, Math.min(rows * subsampling, fullHeight - band.firstRow * subsampling)));
+				BufferedImage img = reader.read(0, param);
+				if(img.getWidth() != srcWidth || img.getHeight() != rows){
+					throw new IOException(String.format("Expected %sx%s pixels but %s decoded %sx%s", 
+							srcWidth, rows, reader.getFormatName(), img.getWidth(), img.getHeight()));
+				}
+				final int[][] window = {img.getRGB(0, 0, srcWidth, rows, null, 0, srcWidth)};
+				img = null; // only one copy of the window in memory
+				final int bandY = band.y0;
+				RasterReprojector.forEachTile(newWidth, band.height, parallelism, (int x, int y, int w, int h)->{
+					final int[][] tile = {new int[w * h]};
+					plan.gather(window, band.firstRow, tile, x, bandY + y, w, h);
+					// tiles do not overlap, so they can be copied without locking
+					for(int row = 0; row < h; row++){
+						System.arraycopy(tile[0], row * w, dst, (bandY + y + row) * newWidth + x, w);
+					}
+				});
+			}
+			return output;
+		} finally {
+			reader.dispose();
+		}
+	}
+	
+	/**
+	 * Splits the destination image into bands of rows, each as tall as 
+	 * possible without needing more than the given number of source pixels.
+	 * @param plan The reprojection plan
+	 * @param maxWindowPixels The maximum number of source pixels per band
+	 * @return The bands, from top to bottom
+	 */
+	static List<Band> bands(final ReprojectionPlan plan, final long maxWindowPixels){
+		final List<Band> bands = new ArrayList<>();
+		final int[] range = new int[2];
+		Band band = null;
+		for(int y = 0; y < plan.dstHeight; y++){
+			plan.getSourceRows(y, 1, range);
+			if(band != null){
+				final int first = Math.min(band.firstRow, range[0]);
+				final int last = Math.max(band.lastRow, range[1]);
+				if((long)(last - first + 1) * plan.srcWidth <= maxWindowPixels){
+					band = new Band(band.y0, band.height + 1, first, last);
+					continue;
+				}
+				bands.add(band);
+			}
+			band = new Band(y, 1, range[0], range[1]);
+		}
+		bands.add(band);
+		return bands;
+	}
+	
+	/** A band of destination rows and the source rows it needs */
+	static final class Band {
+		/** first destination row */
+		final int y0;
+		/** number of destination rows */
+		final int height;
+		/** first source row */
+		final int firstRow;
+		/** last source row (inclusive) */
+		final int lastRow;
+		
+		Band(int y0, int height, int firstRow, int lastRow){
+			this.y0 = y0;
+			this.height = height;
+			this.firstRow = firstRow;
+			this.lastRow = lastRow;
+		}
+	}
+}
@@ -0,0 +1,312 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 .
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cchall.javafx.globeviewer.raster;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A persistent cache of converted textures, stored as files in a directory, so
+ * that converting the same texture again (e.g. every time an application
+ * starts) only costs reading the result. Set it with
+ * {@link RasterReprojector#setCache(cchall.javafx.globeviewer.raster.TextureCache)}
+ * and all conversions will use it transparently:<br><pre>
+RasterReprojector.setCache(new TextureCache(Paths.get(System.getProperty("user.home"), ".globeviewer-cache"), 1L << 30));
+Image dymaxion = DymaxionGlobeViewer.convertMercatorToDymaxion(mercator, 4); // converted once, then loaded from the cache
+</pre>
+ * Each conversion is identified by a SHA-256 hash of the source pixels, the
+ * source and target map projections (see
+ * {@link MapProjection#getCacheDescription()}; conversions from or to map
+ * projections without a description are not cached), the output size and
+ * the texture filter. Each result is stored as a raw file with a 16 byte
+ * header and then the ARGB pixels as little-endian ints, which is memory-mapped
+ * and copied in bulk when it is loaded. When the total size of the files
+ * exceeds the maximum size, the least recently used files are deleted (files
+ * are marked as used by their last-modified time, so the order survives
+ * restarts).<p>
+ * The cache never causes a conversion to fail: a file that cannot be read is
+ * a cache miss, and a result that cannot be written is simply not cached.
+ * Several threads may use the same cache at the same time.
+ * @author CCHall <a href="mailto:explosivegnome@yahoo.com">
+ * explosivegnome@yahoo.com</a>
+ */
+public final class TextureCache {
+
+	/** File name extension of the cached textures */
+	static final String EXTENSION = ".argb";
+	/** "GVTC" */
+	private static final int MAGIC = 0x47565443;
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 16;
+
+	private final Path directory;
+	private final long maxBytes;
+	private long totalBytes;
+
+	/**
+	 * Opens (or creates) a texture cache.
+	 * @param directory The directory in which the cached textures are stored
+	 * (created if it does not exist). The directory should not contain other
+	 * files.
+	 * @param maxBytes The maximum total size of the cached textures, in bytes
+	 * @throws IOException Thrown if the directory could not be created or read
+	 */
+	public TextureCache(Path directory, long maxBytes) throws IOException {
+		if(maxBytes <= 0){
+			throw new IllegalArgumentException("Invalid cache size: " + maxBytes);
+		}
+		this.directory = Files.createDirectories(directory);
+		this.maxBytes = maxBytes;
+		long total = 0;
+		for(Path file : listFiles()){
+			total += Files.size(file);
+		}
+		this.totalBytes = total;
+	}
+
+	/**
+	 * @return The directory in which the cached textures are stored
+	 */
+	public Path getDirectory(){
+		return directory;
+	}
+
+	/**
+	 * @return The maximum total size of the cached textures, in bytes
+	 */
+	public long getMaxSize(){
+		return maxBytes;
+	}
+
+	/**
+	 * @return The current total size of the cached textures, in bytes
+	 */
+	public synchronized long getSize(){
+		return totalBytes;
+	}
+
+	/**
+	 * Deletes all cached textures.
+	 * @throws IOException Thrown if a file could not be deleted
+	 */
+	public synchronized void clear() throws IOException {
+		for(Path file : listFiles()){
+			Files.deleteIfExists(file);
+		}
+		totalBytes = 0;
+	}
+
+	/**
+	 * Computes the cache key of a conversion
+	 * @return A hexadecimal SHA-256 hash, which is also the file name
+	 */
+	String key(Raster source, MapProjection sourceProjection, MapProjection targetProjection,
+			int newWidth, int newHeight, RasterReprojector.Filter filter){
+		final MessageDigest sha;
+		try {
+			sha = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			// every Java platform must support SHA-256
+			throw new IllegalStateException(ex);
+		}
+		final String description = String.format("%s -> %s %sx%s -> %sx%s %s",
+				sourceProjection.getCacheDescription(), targetProjection.getCacheDescription(),
+				source.getWidth(), source.getHeight(), newWidth, newHeight, filter);
+		sha.update(description.getBytes(StandardCharsets.UTF_8));
+		final int[] pixels = source.getPixels();
+		final ByteBuffer chunk = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+		final IntBuffer ints = chunk.asIntBuffer();
+		for(int i = 0; i < pixels.length; i += ints.capacity()){
+			final int n = Math.min(ints.capacity(), pixels.length - i);
+			ints.clear();
+			ints.put(pixels, i, n);
+			chunk.clear();
+			chunk.limit(n * 4);
+			sha.update(chunk);
+		}
+		final StringBuilder sb = new StringBuilder(64);
+		for(byte b : sha.digest()){
+			sb.append(String.format("%02x", b & 0xFF));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Loads a cached texture and marks it as recently used
+	 * @param key The cache key
+	 * @param width The expected width
+	 * @param height The expected height
+	 * @return The cached texture, or <code>null</code> if it is not in the
+	 * cache (or could not be read)
+	 */
+	Raster load(String key, int width, int height){
+		final Path file = directory.resolve(key + EXTENSION);
+		try(FileChannel in = FileChannel.open(file, StandardOpenOption.READ)){
+			final long size = in.size();
+			if(size != HEADER_BYTES + 4L * width * height){
+				return null;
+			}
+			final MappedByteBuffer map = in.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			map.order(ByteOrder.LITTLE_ENDIAN);
+			if(map.getInt(0) != MAGIC || map.getInt(4) != VERSION
+					|| map.getInt(8) != width || map.getInt(12) != height){
+				return null;
+			}
+			final Raster raster = new Raster(width, height);
+			map.position(HEADER_BYTES);
+			map.asIntBuffer().get(raster.getPixels());
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+			return raster;
+		} catch (NoSuchFileException ex) {
+			return null;
+		} catch (IOException | RuntimeException ex) {
+			// unreadable, truncated or deleted by another process while reading
+			return null;
+		}
+	}
+
+	/**
+	 * Stores a texture in the cache, then deletes the least recently used
+	 * textures if the cache is larger than its maximum size
+	 * @param key The cache key
+	 * @param raster The texture
+	 */
+	void store(String key, Raster raster){
+		final long size = HEADER_BYTES + 4L * raster.getPixels().length;
+		if(size > maxBytes){
+			return;
+		}
+		final Path file = directory.resolve(key + EXTENSION);
+		try {
+			// written to a temporary file first, so that other threads (and
+			// processes) never see a partial file
+			final Path temp = Files.createTempFile(directory, key, ".tmp");
+			try {
+				try(FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)){
+					write(out, raster);
+				}
+				synchronized(this){
+					// the same texture may have been stored before (e.g. by 
+					// another thread), in which case it is replaced, not added
+					long replaced = 0;
+					try {
+						replaced = Files.size(file);
+					} catch (NoSuchFileException ex) {
+						// new
+					}
+					Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+					totalBytes += size - replaced;
+					if(totalBytes > maxBytes){
+						evict();
+					}
+				}
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+		} catch (IOException ex) {
+			// not cached
+		}
+	}
+
+	/** writes the header and pixels (not memory-mapped, so that the file can be moved right away) */
+	private static void write(FileChannel out, Raster raster) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(raster.getWidth()).putInt(raster.getHeight());
+		final int[] pixels = raster.getPixels();
+		int i = 0;
+		do {
+			final int n = Math.min(buffer.remaining() / 4, pixels.length - i);
+			buffer.asIntBuffer().put(pixels, i, n);
+			buffer.position(buffer.position() + 4 * n);
+			i += n;
+			buffer.flip();
+			while(buffer.hasRemaining()){
+				out.write(buffer);
+			}
+			buffer.clear();
+		} while(i < pixels.length);
+	}
+
+	/** deletes least recently used files until the cache is within its maximum size */
+	private void evict() throws IOException {
+		final List<Path> files = listFiles();
+		final List<FileTime> times = new ArrayList<>(files.size());
+		long total = 0;
+		for(Path file : files){
+			try {
+				times.add(Files.getLastModifiedTime(file));
+				total += Files.size(file);
+			} catch (NoSuchFileException ex) {
+				// deleted by another process
+				times.add(FileTime.fromMillis(0));
+			}
+		}
+		final List<Integer> order = new ArrayList<>(files.size());
+		for(int i = 0; i < files.size(); i++){
+			order.add(i);
+		}
+		order.sort(Comparator.comparing(times::get));
+		for(int i : order){
+			if(total <= maxBytes){
+				break;
+			}
+			try {
+				final long size = Files.size(files.get(i));
+				if(Files.deleteIfExists(files.get(i))){
+					total -= size;
+				}
+			} catch (IOException ex) {
+				// in use (e.g. still memory-mapped on Windows), try the next one
+			}
+		}
+		totalBytes = total;
+	}
+
+	private List<Path> listFiles() throws IOException {
+		final List<Path> files = new ArrayList<>();
+		try(DirectoryStream<Path> dir = Files.newDirectoryStream(directory, "*" + EXTENSION)){
+			for(Path file : dir){
+				files.add(file);
+			}
+		}
+		return files;
+	}
+}
@@ -0,0 +1,313 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 .
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cchall.javafx.globeviewer.raster;
+
+import java.util.Arrays;
+
+/**
+ * Builds mipmap pyramids of globe textures: each level is half the width and 
+ * height of the previous one (rounded down, like OpenGL mipmaps), down to 
+ * 1 x 1 pixels, so that a globe which is drawn small can use a texture that 
+ * matches its size on screen (see {@link #selectLevel(cchall.javafx.globeviewer.raster.Raster[], int)}) 
+ * instead of the full size texture.<p>
+ * Each pixel of a level is the average of the (up to) 2 x 2 pixels it covers in 
+ * the previous level, except that the average respects the layout of the 
+ * map projection: pixels outside of the layout (e.g. the gaps between the 
+ * triangles of the {@link MapProjections#DYMAXION} layout, which map to 
+ * nowhere on the globe, or the blank areas around the faces of the 
+ * {@link MapProjections#CUBIC} layout) and pixels on the other side of a seam 
+ * (a border between parts of the layout which do not touch on the globe) are 
+ * left out. A pixel belongs to the layout if converting its 
+ * center to longitude-latitude and back lands (almost) where it started, and it is on 
+ * the same side of a seam if its center is close to the center of the larger 
+ * pixel on the globe. Pixels outside of the layout are the average of the 
+ * pixels of the layout that they cover, so the colors at the edges of the 
+ * layout bleed into the gaps (instead of the gaps bleeding into the layout 
+ * when the texture is sampled).<p>
+ * The levels are computed tile by tile on the thread pool of 
+ * {@link RasterReprojector}.
+ * @author CCHall <a href="mailto:explosivegnome@yahoo.com">
+ * explosivegnome@yahoo.com</a>
+ */
+public final class TexturePyramid {
+	
+	/** 
+	 * Maximum distance between the centers of a pixel and a pixel of the 
+	 * previous level (as a multiple of the pixel size) for them to be on the 
+	 * same side of a seam
+	 */
+	private static final double SEAM_DISTANCE = 3.0;
+	/** 
+	 * Maximum distance (in pixels) between a pixel center and the same point 
+	 * converted to longitude-latitude and back for the pixel to be part of the 
+	 * layout (pixels in the gaps are converted to the nearest edge of the layout)
+	 */
+	private static final double ROUND_TRIP_TOLERANCE = 0.25;
+	
+	private TexturePyramid(){
+		// static utility class
+	}
+	
+	/**
+	 * Builds the mipmap pyramid of a texture.
+	 * @param base The full size texture (level 0)
+	 * @param projection The map projection of the texture
+	 * @param parallelism Parallel processing hint (see {@link RasterReprojector})
+	 * @return The levels of the pyramid, from the full size texture (the 
+	 * <code>base</code> raster itself, not a copy) at index 0 to the 1 x 1 
+	 * pixel level
+	 * @throws InterruptedException Thrown if this thread is interrupted while 
+	 * waiting for the thread pool to finish.
+	 */
+	public static Raster[] build(final Raster base, final MapProjection projection, final int parallelism) 
+			throws InterruptedException {
+		final int levels = levelCount(base.getWidth(), base.getHeight());
+		final Raster[] pyramid = new Raster[levels];
+		pyramid[0] = base;
+		for(int l = 1; l < levels; l++){
+			pyramid[l] = reduce(pyramid[l - 1], projection, parallelism);
+		}
+		return pyramid;
+	}
+	
+	/**
+	 * @param width Width of the full size texture
+	 * @param height Height of the full size texture
+	 * @return The number of levels in the pyramid (including the full size 
+	 * texture)
+	 */
+	public static int levelCount(int width, int height){
+		final int largest = Math.max(width, height);
+		return 32 - Integer.numberOfLeadingZeros(largest);
+	}
+	
+	/**
+	 * Selects the smallest level of a pyramid which is at least the given 
+	 * width, so that every pixel on screen gets at least one texture pixel. 
+	 * For a globe drawn <code>d</code> pixels wide, the center of the globe 
+	 * shows about <code>d / 2</code> texture pixels per radian, so a 
+	 * mercator texture needs to be about <code>Math.PI * d</code> pixels wide 
+	 * (and a texture in another layout proportionally wider or narrower, 
+	 * depending on how many pixels its equator spans).
+	 * @param pyramid The levels of the pyramid, as returned by 
+	 * {@link #build(cchall.javafx.globeviewer.raster.Raster, cchall.javafx.globeviewer.raster.MapProjection, int)}
+	 * @param minWidth The required texture width
+	 * @return The index of the selected level (0 if even the full size 
+	 * texture is narrower than <code>minWidth</code>)
+	 */
+	public static int selectLevel(final Raster[] pyramid, final int minWidth){
+		for(int l = pyramid.length - 1; l > 0; l--){
+			if(pyramid[l].getWidth() >= minWidth){
+				return l;
+			}
+		}
+		return 0;
+	}
+	
+	/**
+	 * Computes a single level of the mipmap pyramid of a texture, without 
+	 * keeping the larger levels (the same pixels as level <code>level</code> 
+	 * of {@link #build(cchall.javafx.globeviewer.raster.Raster, cchall.javafx.globeviewer.raster.MapProjection, int)}).
+	 * @param base The full size texture (level 0)
+	 * @param projection The map projection of the texture
+	 * @param level The level to compute (0 returns <code>base</code> itself)
+	 * @param parallelism Parallel processing hint (see {@link RasterReprojector})
+	 * @return The requested level
+	 * @throws InterruptedException Thrown if this thread is interrupted while 
+	 * waiting for the thread pool to finish.
+	 */
+	public static Raster buildLevel(final Raster base, final MapProjection projection, final int level, 
+			final int parallelism) throws InterruptedException {
+		if(level < 0 || level >= levelCount(base.getWidth(), base.getHeight())){
+			throw new IllegalArgumentException(String.format("%s has no mipmap level %s", base, level));
+		}
+		Raster raster = base;
+		for(int l = 1; l <= level; l++){
+			raster = reduce(raster, projection, parallelism);
+		}
+		return raster;
+	}
+	
+	/**
+	 * Selects the smallest level of the pyramid of a texture of the given 
+	 * size which is at least the given width, like 
+	 * {@link #selectLevel(cchall.javafx.globeviewer.raster.Raster[], int)} 
+	 * but without building the pyramid.
+	 * @param width Width of the full size texture
+	 * @param height Height of the full size texture
+	 * @param minWidth The required texture width
+	 * @return The index of the selected level (0 if even the full size 
+	 * texture is narrower than <code>minWidth</code>)
+	 */
+	public static int selectLevel(final int width, final int height, final int minWidth){
+		for(int l = levelCount(width, height) - 1; l > 0; l--){
+			if(Math.max(1, width >> l) >= minWidth){
+				return l;
+			}
+		}
+		return 0;
+	}
+	
+	/** computes the next level of the pyramid */
+	private static Raster reduce(final Raster src, final MapProjection projection, final int parallelism) 
+			throws InterruptedException {
+		final int srcWidth = src.getWidth();
+		final int srcHeight = src.getHeight();
+		final Raster dst = new Raster(Math.max(1, srcWidth / 2), Math.max(1, srcHeight / 2));
+		final int dstWidth = dst.getWidth();
+		final int dstHeight = dst.getHeight();
+		final int[] in = src.getPixels();
+		final int[] out = dst.getPixels();
+		// roughly the distance between neighboring pixel centers on the unit sphere, times SEAM_DISTANCE
+		final double seamDistance = SEAM_DISTANCE * Math.max(2 * Math.PI / dstWidth, Math.PI / dstHeight);
+		final double maxDistanceSquared = seamDistance * seamDistance;
+		RasterReprojector.forEachTile(dstWidth, dstHeight, parallelism, (int x0, int y0, int w, int h)->{
+			final PixelCenters parents = new PixelCenters(w);
+			final PixelCenters children = new PixelCenters(2 * w + 1);
+			final int cx0 = Math.min(2 * x0, srcWidth - 1);
+			// the last column (and row) also covers the left-over pixel of an odd size
+			final int childCount = (x0 + w == dstWidth ? srcWidth : 2 * (x0 + w)) - cx0;
+			// counts[2p] and sums[8p...] are for the valid pixels near the 
+			// parent, counts[2p+1] and sums[8p+4...] for all valid pixels
+			final int[] sums = new int[4 * 2 * w];
+			final int[] counts = new int[2 * w];
+			for(int y = y0; y < y0 + h; y++){
+				parents.sample(projection, x0, y, w, dstWidth, dstHeight);
+				final int cy1 = y == dstHeight - 1 ? srcHeight - 1 : 2 * y + 1;
+				Arrays.fill(sums, 0);
+				Arrays.fill(counts, 0);
+				for(int cy = Math.min(2 * y, srcHeight - 1); cy <= cy1; cy++){
+					children.sample(projection, cx0, cy, childCount, srcWidth, srcHeight);
+					for(int n = 0; n < childCount; n++){
+						if(!children.valid[n]){
+							continue;
+						}
+						final int p = Math.min(w - 1, (cx0 + n) / 2 - x0);
+						final int argb = in[cy * srcWidth + cx0 + n];
+						final boolean near = parents.valid[p] 
+								&& parents.distanceSquared(p, children, n) <= maxDistanceSquared;
+						for(int k = near ? 0 : 1; k < 2; k++){
+							final int s = 4 * (2 * p + k);
+							sums[s] += argb >>> 24;
+							sums[s + 1] += (argb >> 16) & 0xFF;
+							sums[s + 2] += (argb >> 8) & 0xFF;
+							sums[s + 3] += argb & 0xFF;
+							counts[2 * p + k]++;
+						}
+					}
+				}
+				for(int p = 0; p < w; p++){
+					final int x = x0 + p;
+					int k = -1;
+					if(parents.valid[p] && counts[2 * p] > 0){
+						k = 0;
+					} else if(counts[2 * p + 1] > 0){
+						k = 1;
+					}
+					if(k >= 0){
+						out[y * dstWidth + x] = average(sums, 4 * (2 * p + k), counts[2 * p + k]);
+					} else {
+						// nothing to respect, so a plain box filter
+						out[y * dstWidth + x] = box(in, srcWidth, srcHeight, 2 * x, 2 * y);
+					}
+				}
+			}
+		});
+		return dst;
+	}
+	
+	/** rounded average of the channel sums */
+	private static int average(int[] sums, int s, int count){
+		final int half = count / 2;
+		return (((sums[s] + half) / count) << 24) 
+				| (((sums[s + 1] + half) / count) << 16) 
+				| (((sums[s + 2] + half) / count) << 8) 
+				| ((sums[s + 3] + half) / count);
+	}
+	
+	/** average of the (up to) 2 x 2 pixels starting at (x, y) */
+	private static int box(int[] in, int width, int height, int x, int y){
+		final int[] sums = new int[4];
+		int count = 0;
+		for(int cy = y; cy <= Math.min(y + 1, height - 1); cy++){
+			for(int cx = x; cx <= Math.min(x + 1, width - 1); cx++){
+				final int argb = in[cy * width + cx];
+				sums[0] += argb >>> 24;
+				sums[1] += (argb >> 16) & 0xFF;
+				sums[2] += (argb >> 8) & 0xFF;
+				sums[3] += argb & 0xFF;
+				count++;
+			}
+		}
+		return average(sums, 0, count);
+	}
+	
+	/**
+	 * The centers of a row of pixels on the unit sphere, and whether they are 
+	 * part of the layout of the map projection. Each thread needs its own.
+	 */
+	private static final class PixelCenters {
+		private final double[] relX, lon, lat, roundTripX, roundTripY;
+		/** X, Y and Z coordinates on the unit sphere */
+		final double[] x, y, z;
+		/** whether each pixel center converts back to the same pixel */
+		final boolean[] valid;
+		
+		PixelCenters(int capacity){
+			relX = new double[capacity];
+			lon = new double[capacity];
+			lat = new double[capacity];
+			roundTripX = new double[capacity];
+			roundTripY = new double[capacity];
+			x = new double[capacity];
+			y = new double[capacity];
+			z = new double[capacity];
+			valid = new boolean[capacity];
+		}
+		
+		void sample(MapProjection projection, int x0, int row, int count, int width, int height){
+			for(int n = 0; n < count; n++){
+				relX[n] = (x0 + n + 0.5) / width;
+			}
+			final double relY = (row + 0.5) / height;
+			projection.convertRelativePixelRowToLonLat(relX, relY, count, lon, lat);
+			projection.convertLonLatRowToRelativePixelXY(lon, lat, count, roundTripX, roundTripY);
+			for(int n = 0; n < count; n++){
+				valid[n] = Math.abs(roundTripX[n] - relX[n]) * width < ROUND_TRIP_TOLERANCE 
+						&& Math.abs(roundTripY[n] - relY) * height < ROUND_TRIP_TOLERANCE;
+				final double cosLat = Math.cos(lat[n]);
+				x[n] = cosLat * Math.cos(lon[n]);
+				y[n] = cosLat * Math.sin(lon[n]);
+				z[n] = Math.sin(lat[n]);
+			}
+		}
+		
+		double distanceSquared(int n, PixelCenters other, int m){
+			final double dx = x[n] - other.x[m];
+			final double dy = y[n] - other.y[m];
+			final double dz = z[n] - other.z[m];
+			return dx * dx + dy * dy + dz * dz;
+		}
+	}
+}
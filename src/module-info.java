@@ -1,5 +1,7 @@
 module name.cchall.globeviewer {
 	exports cchall.javafx.globeviewer;
 	exports cchall.javafx.globeviewer.interaction;
+	exports cchall.javafx.globeviewer.raster;
+	requires java.desktop;
 	requires javafx.graphics;
 }
\ No newline at end of file
@@ -6,12 +6,15 @@
 package cchall.javafx.globeviewer;
 
 import java.util.concurrent.ForkJoinPool;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
 
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import static org.junit.Assert.*;
 
 /**
  *
@@ -54,4 +57,40 @@ public class CuboidGlobeViewerTest {
 	}
 
 	
+	/**
+	 * Test of convertCubeFacesToCuboid and convertCuboidToCubeFaces methods, 
+	 * of class CubicGlobeViewer.
+	 */
+	@Test
+	public void testCubeFacesRoundTrip() throws InterruptedException {
+		final Image[] images = new Image[6];
+		for(int f = 0; f < images.length; f++){
+			// the top face is larger, so it is resampled
+			final int size = f == 4 ? 24 : 12;
+			final WritableImage img = new WritableImage(size, size);
+			for(int y = 0; y < size; y++){
+				for(int x = 0; x < size; x++){
+					img.getPixelWriter().setArgb(x, y, 0xFF000000 | (f << 16) | (size == 12 ? y * 12 + x : 0x3F));
+				}
+			}
+			images[f] = img;
+		}
+		final CubicGlobeViewer.CubeFaces faces = new CubicGlobeViewer.CubeFaces(
+				images[0], images[1], images[2], images[3], images[4], images[5]);
+		final Image cuboid = CubicGlobeViewer.convertCubeFacesToCuboid(faces);
+		assertEquals(48, (int)cuboid.getWidth());
+		assertEquals(24, (int)cuboid.getHeight());
+		final CubicGlobeViewer.CubeFaces split = CubicGlobeViewer.convertCuboidToCubeFaces(cuboid, 2);
+		final Image[] results = {split.left, split.front, split.right, split.back, split.top, split.bottom};
+		for(int f = 0; f < images.length; f++){
+			assertEquals(12, (int)results[f].getWidth());
+			for(int y = 0; y < 12; y++){
+				for(int x = 0; x < 12; x++){
+					final int expected = f == 4 ? 0xFF04003F : images[f].getPixelReader().getArgb(x, y);
+					assertEquals(expected, results[f].getPixelReader().getArgb(x, y));
+				}
+			}
+		}
+	}
+
 }
@@ -7,11 +7,14 @@ package cchall.javafx.globeviewer;
 
 import java.util.concurrent.ForkJoinPool;
 
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import static org.junit.Assert.*;
 
 /**
  *
@@ -52,5 +55,32 @@ public class DymaxionGlobeViewerTest {
 		MercatorGlobeViewerTest.doCoordinateTestOn(gv);
 	}
 
+	/**
+	 * Test of convertMercatorToDymaxion method, of class DymaxionGlobeViewer.
+	 */
+	@Test
+	public void testConvertMercatorToDymaxion() throws InterruptedException {
+		final WritableImage mercator = new WritableImage(200, 100);
+		for(int y = 0; y < 100; y++){
+			for(int x = 0; x < 200; x++){
+				mercator.getPixelWriter().setArgb(x, y, 0xFF000000 | (x << 8) | y);
+			}
+		}
+		final Image serial = DymaxionGlobeViewer.convertMercatorToDymaxion(mercator);
+		assertEquals(220, (int)serial.getWidth());
+		assertEquals(51, (int)serial.getHeight());
+		final Image parallel = DymaxionGlobeViewer.convertMercatorToDymaxion(mercator, 4);
+		assertEquals(220, (int)parallel.getWidth());
+		assertEquals(51, (int)parallel.getHeight());
+		for(int y = 0; y < 51; y++){
+			for(int x = 0; x < 220; x++){
+				assertEquals(serial.getPixelReader().getArgb(x, y), parallel.getPixelReader().getArgb(x, y));
+			}
+		}
+		final Image sized = DymaxionGlobeViewer.convertMercatorToDymaxion(mercator, 330, 3);
+		assertEquals(330, (int)sized.getWidth());
+		assertEquals(77, (int)sized.getHeight());
+	}
+
 	
 }
@@ -24,13 +24,27 @@
 package cchall.javafx.globeviewer;
 
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 
 import cchall.javafx.globeviewer.GlobeViewer;
 import cchall.javafx.globeviewer.MercatorGlobeViewer;
+import cchall.javafx.globeviewer.raster.MapProjection;
+import cchall.javafx.globeviewer.raster.MapProjections;
+import javafx.application.Platform;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.geometry.Point2D;
 import javafx.geometry.Point3D;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+import javafx.scene.Scene;
+import javafx.scene.layout.StackPane;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.Shape3D;
+import javafx.scene.shape.Sphere;
+import javafx.stage.Stage;
 import org.junit.*;
 import static org.junit.Assert.*;
 
@@ -190,4 +204,150 @@ public class GlobeViewerTest {
 		}
 	}
 	
+	/**
+	 * Test of createIlluminationMapFromColorMap method, of class GlobeViewer.
+	 */
+	@Test
+	public void testCreateIlluminationMapFromColorMap() {
+		System.out.println("testCreateIlluminationMapFromColorMap");
+		final WritableImage colorMap = new WritableImage(700, 400);
+		for(int y = 0; y < 400; y++){
+			for(int x = 0; x < 700; x++){
+				colorMap.getPixelWriter().setArgb(x, y, 0xFF000000 | ((x & 0xFF) << 16) | ((y & 0xFF) << 8) | 0xC8);
+			}
+		}
+		final Image dark = GlobeViewer.createIlluminationMapFromColorMap(colorMap, 0.5);
+		assertEquals(0xFF401164, dark.getPixelReader().getArgb(0x7F, 0x21));
+		assertEquals(0xFF808064, dark.getPixelReader().getArgb(0xFF, 0xFF));
+		// animating the intensity rewrites the same image
+		final WritableImage lights = new WritableImage(700, 400);
+		GlobeViewer.createIlluminationMapFromColorMap(Reprojector.toRaster(colorMap), 1.0, lights);
+		assertEquals(colorMap.getPixelReader().getArgb(399, 399), lights.getPixelReader().getArgb(399, 399));
+		GlobeViewer.createIlluminationMapFromColorMap(Reprojector.toRaster(colorMap), 0.0, lights);
+		assertEquals(0xFF000000, lights.getPixelReader().getArgb(399, 399));
+	}
+
+	/**
+	 * Test of requiredTextureWidth method, of class GlobeViewer.
+	 */
+	@Test
+	public void testRequiredTextureWidth() {
+		System.out.println("testRequiredTextureWidth");
+		// a globe 150 pixels tall shows about 76 pixels per radian at its 
+		// center, and a mercator texture spans 2 pi radians
+		final int mercator = GlobeViewer.requiredTextureWidth(MercatorGlobeViewer.MAP_PROJECTION, 150, 1);
+		assertEquals(2 * Math.PI * 76, mercator, 10);
+		assertEquals(2 * mercator, GlobeViewer.requiredTextureWidth(MercatorGlobeViewer.MAP_PROJECTION, 150, 2), 1);
+		assertEquals(2 * mercator, GlobeViewer.requiredTextureWidth(MercatorGlobeViewer.MAP_PROJECTION, 300, 1), 1);
+		// a cubic texture spans the equator with 4 faces, so it needs the same width
+		assertEquals(mercator, GlobeViewer.requiredTextureWidth(CubicGlobeViewer.MAP_PROJECTION, 150, 1), 1);
+	}
+
+	/**
+	 * Test of textureParkingProperty method, of class GlobeViewer, with a 
+	 * GlobeViewer that is hidden by one of its parents (e.g. a tab that is 
+	 * not selected).
+	 */
+	@Test
+	public void testTextureParkingHiddenParent() throws Exception {
+		System.out.println("testTextureParkingHiddenParent");
+		runOnFxThread(() -> {
+			final GlobeViewer gv = new MercatorGlobeViewer();
+			final Image texture = new WritableImage(64, 32);
+			gv.diffuseTextureProperty().set(texture);
+			gv.textureParkingProperty().set(true);
+			final StackPane tab = new StackPane(gv.getScene());
+			final StackPane root = new StackPane(tab);
+			final Stage stage = new Stage();
+			stage.setScene(new Scene(root, 200, 200));
+			stage.show();
+			try {
+				final PhongMaterial material = (PhongMaterial)gv.getGlobe().getMaterial();
+				assertSame(texture, material.getDiffuseMap());
+				tab.setVisible(false);
+				assertNull(material.getDiffuseMap());
+				tab.setVisible(true);
+				assertSame(texture, material.getDiffuseMap());
+				// moved into another parent, which is then hidden
+				final StackPane other = new StackPane();
+				root.getChildren().add(other);
+				other.getChildren().add(gv.getScene());
+				assertSame(texture, material.getDiffuseMap());
+				other.setVisible(false);
+				assertNull(material.getDiffuseMap());
+				// the old parent no longer matters
+				tab.setVisible(false);
+				other.setVisible(true);
+				assertSame(texture, material.getDiffuseMap());
+			} finally {
+				stage.hide();
+			}
+		});
+	}
+	
+	/** runs a test on the JavaFX application thread and waits for it */
+	private static void runOnFxThread(Runnable test) throws Exception {
+		try {
+			Platform.startup(() -> {});
+		} catch (IllegalStateException ex) {
+			// already started
+		}
+		final CountDownLatch done = new CountDownLatch(1);
+		final AtomicReference<Throwable> failure = new AtomicReference<>(null);
+		Platform.runLater(() -> {
+			try {
+				test.run();
+			} catch (Throwable t) {
+				failure.set(t);
+			} finally {
+				done.countDown();
+			}
+		});
+		assertTrue("timed out", done.await(30, TimeUnit.SECONDS));
+		if(failure.get() instanceof Error){
+			throw (Error)failure.get();
+		} else if(failure.get() != null){
+			throw (Exception)failure.get();
+		}
+	}
+
+	/**
+	 * Test of getMapProjection method, of class GlobeViewer, for a GlobeViewer 
+	 * that does not override it.
+	 */
+	@Test
+	public void testDefaultMapProjection(){
+		System.out.println("testDefaultMapProjection");
+		final MapProjection mercator = MapProjections.MERCATOR;
+		final GlobeViewer gv = new GlobeViewer(){
+			@Override
+			protected Shape3D createGlobeModel(double radius) {
+				return new Sphere(radius);
+			}
+			@Override
+			public Point2D convertLonLatToRelativePixelXY(Point2D lonLat) {
+				final double[] relXY = new double[2];
+				mercator.convertLonLatToRelativePixelXY(lonLat.getX(), lonLat.getY(), relXY);
+				return new Point2D(relXY[0], relXY[1]);
+			}
+			@Override
+			public Point2D convertRelativePixelXYToLonLat(Point2D relXY) {
+				final double[] lonLat = new double[2];
+				mercator.convertRelativePixelXYToLonLat(relXY.getX(), relXY.getY(), lonLat);
+				return new Point2D(lonLat[0], lonLat[1]);
+			}
+		};
+		// the same instance every time, so that reprojection plans are reused
+		final MapProjection projection = gv.getMapProjection();
+		assertSame(projection, gv.getMapProjection());
+		final double[] expected = new double[2];
+		final double[] actual = new double[2];
+		mercator.convertLonLatToRelativePixelXY(0.5, 0.25, expected);
+		projection.convertLonLatToRelativePixelXY(0.5, 0.25, actual);
+		assertArrayEquals(expected, actual, 0);
+		mercator.convertRelativePixelXYToLonLat(0.3, 0.6, expected);
+		projection.convertRelativePixelXYToLonLat(0.3, 0.6, actual);
+		assertArrayEquals(expected, actual, 0);
+	}
+	
 }
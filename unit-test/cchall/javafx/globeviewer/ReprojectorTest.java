@@ -0,0 +1,343 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cchall.javafx.globeviewer;
+
+import cchall.javafx.globeviewer.raster.ConversionQueue;
+import cchall.javafx.globeviewer.raster.IncrementalReprojector;
+import cchall.javafx.globeviewer.raster.MapProjection;
+import cchall.javafx.globeviewer.raster.Raster;
+import cchall.javafx.globeviewer.raster.RasterReprojector;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.WritableImage;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Cybergnome
+ */
+public class ReprojectorTest {
+
+	public ReprojectorTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() {
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+	}
+
+	@Before
+	public void setUp() {
+		System.out.println(this.getClass().getSimpleName()+": {");
+	}
+
+	@After
+	public void tearDown() {
+		System.out.println("} :"+this.getClass().getSimpleName());
+	}
+
+	/**
+	 * Test of the mercator converters of the GlobeViewers, which use the 
+	 * Reprojector.
+	 */
+	@Test
+	public void testConvertMercatorSamplesMercatorSource() throws InterruptedException {
+		final Image mercator = indexImage(90, 45);
+		doMercatorSamplingTestOn("Cubic", CubicGlobeViewer.MAP_PROJECTION, 
+				CubicGlobeViewer.convertMercatorToCubic(mercator, 2));
+		doMercatorSamplingTestOn("Sinusoidal", SinusoidalGlobeViewer.MAP_PROJECTION, 
+				SinusoidalGlobeViewer.convertMercatorToSinusoidal(mercator, 2));
+		doMercatorSamplingTestOn("Dymaxion", DymaxionGlobeViewer.MAP_PROJECTION, 
+				DymaxionGlobeViewer.convertMercatorToDymaxion(mercator, 143, 2));
+	}
+	
+	/** an image whose "color" is the index of each pixel */
+	private static Image indexImage(int width, int height){
+		final WritableImage img = new WritableImage(width, height);
+		for(int y = 0; y < height; y++){
+			for(int x = 0; x < width; x++){
+				img.getPixelWriter().setArgb(x, y, 0xFF000000 | (y * width + x));
+			}
+		}
+		return img;
+	}
+	
+	/**
+	 * Checks that every output pixel was copied from the mercator source pixel 
+	 * whose longitude-latitude cell contains the output pixel's longitude-latitude.
+	 */
+	static void doMercatorSamplingTestOn(String name, MapProjection projection, Image output) {
+		System.out.println("\t"+name);
+		final int srcWidth = 90, srcHeight = 45;
+		final int newWidth = (int)output.getWidth();
+		final int newHeight = (int)output.getHeight();
+		final PixelReader pr = output.getPixelReader();
+		final double[] lonLat = new double[2];
+		final double cellLon = 2 * Math.PI / srcWidth;
+		final double cellLat = Math.PI / srcHeight;
+		final double tolerance = 1e-9;
+		for(int y = 0; y < newHeight; y++){
+			for(int x = 0; x < newWidth; x++){
+				projection.convertRelativePixelXYToLonLat((x + 0.5) / newWidth, (y + 0.5) / newHeight, lonLat);
+				final int srcIndex = pr.getArgb(x, y) & 0xFFFFFF;
+				final int srcX = srcIndex % srcWidth;
+				final int srcY = srcIndex / srcWidth;
+				final double turns = lonLat[0] / (2 * Math.PI);
+				final double lon = (turns - Math.floor(turns)) * 2 * Math.PI;
+				final double north = (0.5 * Math.PI) - srcY * cellLat;
+				final double south = north - cellLat;
+				assertTrue(String.format("%s (%s, %s): latitude %s outside of source row %s", name, x, y, lonLat[1], srcY),
+						lonLat[1] <= north + tolerance && (lonLat[1] >= south - tolerance || srcY == srcHeight - 1));
+				assertTrue(String.format("%s (%s, %s): longitude %s outside of source column %s", name, x, y, lonLat[0], srcX),
+						lon >= srcX * cellLon - tolerance && lon <= (srcX + 1) * cellLon + tolerance);
+			}
+		}
+	}
+
+	/**
+	 * Test of reprojectLayers method, of class Reprojector.
+	 */
+	@Test
+	public void testReprojectLayers() throws InterruptedException {
+		final int srcWidth = 40, srcHeight = 20;
+		final int newWidth = 48, newHeight = 24;
+		final Image[] layers = new Image[3];
+		for(int l = 0; l < layers.length; l++){
+			final WritableImage img = new WritableImage(srcWidth, srcHeight);
+			for(int y = 0; y < srcHeight; y++){
+				for(int x = 0; x < srcWidth; x++){
+					img.getPixelWriter().setArgb(x, y, 0xFF000000 | (l << 16) | (y * srcWidth + x));
+				}
+			}
+			layers[l] = img;
+		}
+		final Image[] outputs = Reprojector.reprojectLayers(layers, 
+				MercatorGlobeViewer.MAP_PROJECTION, CubicGlobeViewer.MAP_PROJECTION, newWidth, newHeight, 2);
+		assertEquals(layers.length, outputs.length);
+		final Raster[] expected = new Raster[layers.length];
+		for(int l = 0; l < layers.length; l++){
+			expected[l] = Reprojector.toRaster(layers[l]);
+		}
+		final Raster[] expectedOutputs = RasterReprojector.reprojectLayers(expected, 
+				MercatorGlobeViewer.MAP_PROJECTION, CubicGlobeViewer.MAP_PROJECTION, newWidth, newHeight, 1);
+		for(int l = 0; l < outputs.length; l++){
+			assertEquals(newWidth, (int)outputs[l].getWidth());
+			assertEquals(newHeight, (int)outputs[l].getHeight());
+			final PixelReader pr = outputs[l].getPixelReader();
+			for(int y = 0; y < newHeight; y++){
+				for(int x = 0; x < newWidth; x++){
+					assertEquals(String.format("layer %s, pixel (%s, %s)", l, x, y), 
+							expectedOutputs[l].getArgb(x, y), pr.getArgb(x, y));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test of toRaster and toImage methods, of class Reprojector.
+	 */
+	@Test
+	public void testToRasterToImage() {
+		final WritableImage img = new WritableImage(7, 5);
+		for(int y = 0; y < 5; y++){
+			for(int x = 0; x < 7; x++){
+				img.getPixelWriter().setArgb(x, y, 0xFF000000 | (x << 8) | y);
+			}
+		}
+		final Raster raster = Reprojector.toRaster(img);
+		assertEquals(7, raster.getWidth());
+		assertEquals(5, raster.getHeight());
+		final Image copy = Reprojector.toImage(raster);
+		for(int y = 0; y < 5; y++){
+			for(int x = 0; x < 7; x++){
+				assertEquals(0xFF000000 | (x << 8) | y, raster.getArgb(x, y));
+				assertEquals(raster.getArgb(x, y), copy.getPixelReader().getArgb(x, y));
+			}
+		}
+	}
+
+	/**
+	 * Test that reprojectLayers method, of class Reprojector, rejects layers 
+	 * of different sizes.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testReprojectLayersSizeMismatch() throws InterruptedException {
+		Reprojector.reprojectLayers(new Image[]{new WritableImage(40, 20), new WritableImage(40, 21)}, 
+				MercatorGlobeViewer.MAP_PROJECTION, CubicGlobeViewer.MAP_PROJECTION, 40, 20, 1);
+	}
+
+	/**
+	 * Test of reprojectProgressively method, of class Reprojector.
+	 */
+	@Test
+	public void testReprojectProgressively() throws Exception {
+		final WritableImage src = new WritableImage(80, 40);
+		for(int y = 0; y < 40; y++){
+			for(int x = 0; x < 80; x++){
+				src.getPixelWriter().setArgb(x, y, 0xFF000000 | (y * 80 + x) * 97);
+			}
+		}
+		final SimpleObjectProperty<Image> texture = new SimpleObjectProperty<>(null);
+		final List<Image> passes = new ArrayList<>();
+		texture.addListener((observable, oldValue, newValue) -> passes.add(newValue));
+		final Image result = Reprojector.reprojectProgressively(src, MercatorGlobeViewer.MAP_PROJECTION, 
+				DymaxionGlobeViewer.MAP_PROJECTION, 88, 41, RasterReprojector.Filter.BILINEAR, texture, Runnable::run)
+				.get(10, TimeUnit.SECONDS);
+		assertSame(result, texture.get());
+		assertEquals(4, passes.size());
+		assertEquals(11, (int)passes.get(0).getWidth());
+		assertEquals(5, (int)passes.get(0).getHeight());
+		assertEquals(44, (int)passes.get(2).getWidth());
+		final Raster expected = RasterReprojector.reproject(Reprojector.toRaster(src), MercatorGlobeViewer.MAP_PROJECTION, 
+				DymaxionGlobeViewer.MAP_PROJECTION, 88, 41, 1, RasterReprojector.Filter.BILINEAR);
+		assertArrayEquals(expected.getPixels(), Reprojector.toRaster(result).getPixels());
+	}
+
+	/**
+	 * Test that reprojectProgressively stops when the texture is replaced.
+	 */
+	@Test
+	public void testReprojectProgressivelyReplaced() throws Exception {
+		final WritableImage src = new WritableImage(80, 40);
+		final Image other = new WritableImage(3, 3);
+		final SimpleObjectProperty<Image> texture = new SimpleObjectProperty<>(null);
+		final AtomicInteger published = new AtomicInteger();
+		final CompletableFuture<Image> future = Reprojector.reprojectProgressively(src, MercatorGlobeViewer.MAP_PROJECTION, 
+				CubicGlobeViewer.MAP_PROJECTION, 64, 48, RasterReprojector.Filter.NEAREST, texture, (Runnable r) -> {
+					r.run();
+					if(published.incrementAndGet() == 1){
+						texture.set(other);
+					}
+				});
+		try {
+			future.get(10, TimeUnit.SECONDS);
+			fail("not cancelled");
+		} catch (CancellationException ex) {
+			// expected
+		}
+		assertSame(other, texture.get());
+	}
+
+	/**
+	 * Test that reprojectProgressively stops between tiles when it is 
+	 * cancelled during the last pass.
+	 */
+	@Test
+	public void testReprojectProgressivelyCancelled() throws Exception {
+		final int width = 2000, height = 1000;
+		final AtomicBoolean lastPass = new AtomicBoolean(false);
+		final AtomicInteger lastPassPixels = new AtomicInteger();
+		final AtomicReference<CompletableFuture<Image>> future = new AtomicReference<>();
+		final MapProjection target = new MapProjection(){
+			@Override
+			public void convertLonLatToRelativePixelXY(double lon, double lat, double[] relXYOut){
+				DymaxionGlobeViewer.MAP_PROJECTION.convertLonLatToRelativePixelXY(lon, lat, relXYOut);
+			}
+
+			@Override
+			public void convertRelativePixelXYToLonLat(double relX, double relY, double[] lonLatOut){
+				if(lastPass.get() && lastPassPixels.incrementAndGet() == 1){
+					future.get().cancel(false);
+				}
+				DymaxionGlobeViewer.MAP_PROJECTION.convertRelativePixelXYToLonLat(relX, relY, lonLatOut);
+			}
+		};
+		final SimpleObjectProperty<Image> texture = new SimpleObjectProperty<>(null);
+		final AtomicInteger published = new AtomicInteger();
+		future.set(Reprojector.reprojectProgressively(new WritableImage(80, 40), MercatorGlobeViewer.MAP_PROJECTION, 
+				target, width, height, RasterReprojector.Filter.NEAREST, texture, (Runnable r) -> {
+					r.run();
+					if(published.incrementAndGet() == 3){
+						lastPass.set(true);
+					}
+				}));
+		try {
+			future.get().get(20, TimeUnit.SECONDS);
+			fail("not cancelled");
+		} catch (CancellationException ex) {
+			// expected
+		}
+		// wait until the tiles that were already running are done
+		int pixels;
+		do {
+			pixels = lastPassPixels.get();
+			Thread.sleep(200);
+		} while(lastPassPixels.get() != pixels);
+		assertEquals(3, published.get());
+		assertEquals(width / 2, (int)texture.get().getWidth());
+		assertTrue("last pass not stopped: " + lastPassPixels.get(), lastPassPixels.get() < width * height / 2);
+	}
+
+	/**
+	 * Test of updateRegion method, of class Reprojector.
+	 */
+	@Test
+	public void testUpdateRegion() throws InterruptedException {
+		final WritableImage src = new WritableImage(60, 40);
+		final Raster srcRaster = Reprojector.toRaster(src);
+		final Raster dstRaster = RasterReprojector.reproject(srcRaster, MercatorGlobeViewer.MAP_PROJECTION, 
+				CubicGlobeViewer.MAP_PROJECTION, 48, 36, 1);
+		final WritableImage dst = Reprojector.toImage(dstRaster);
+		final IncrementalReprojector updater = new IncrementalReprojector(srcRaster, MercatorGlobeViewer.MAP_PROJECTION, 
+				dstRaster, CubicGlobeViewer.MAP_PROJECTION, 1, RasterReprojector.Filter.NEAREST);
+		for(int y = 10; y < 20; y++){
+			for(int x = 20; x < 30; x++){
+				src.getPixelWriter().setArgb(x, y, 0xFF000000 | (y << 8) | x);
+			}
+		}
+		Reprojector.updateRegion(updater, src, 20, 10, 10, 10, dst);
+		final Image expected = Reprojector.reproject(src, MercatorGlobeViewer.MAP_PROJECTION, 
+				CubicGlobeViewer.MAP_PROJECTION, 48, 36, 1);
+		assertArrayEquals(Reprojector.toRaster(expected).getPixels(), Reprojector.toRaster(dst).getPixels());
+	}
+
+	/**
+	 * Test of submit method, of class Reprojector.
+	 */
+	@Test
+	public void testSubmit() throws Exception {
+		final WritableImage src = new WritableImage(80, 40);
+		for(int y = 0; y < 40; y++){
+			for(int x = 0; x < 80; x++){
+				src.getPixelWriter().setArgb(x, y, 0xFF000000 | (y * 80 + x) * 31);
+			}
+		}
+		final ConversionQueue queue = new ConversionQueue(1);
+		try {
+			final ConversionTask task = Reprojector.submit(queue, new Image[]{src}, MercatorGlobeViewer.MAP_PROJECTION, 
+					CubicGlobeViewer.MAP_PROJECTION, 64, 48, RasterReprojector.Filter.NEAREST, 0, Runnable::run);
+			task.getJob().get(10, TimeUnit.SECONDS);
+			for(int i = 0; i < 100 && task.resultProperty().get() == null; i++){
+				Thread.sleep(50);
+			}
+			assertEquals(1.0, task.progressProperty().get(), 0);
+			final Image expected = Reprojector.reproject(src, MercatorGlobeViewer.MAP_PROJECTION, 
+					CubicGlobeViewer.MAP_PROJECTION, 64, 48, 1);
+			assertArrayEquals(Reprojector.toRaster(expected).getPixels(), 
+					Reprojector.toRaster(task.resultProperty().get()[0]).getPixels());
+			assertFalse(task.cancel());
+		} finally {
+			queue.shutdown();
+		}
+	}
+}
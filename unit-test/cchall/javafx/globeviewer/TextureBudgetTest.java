@@ -0,0 +1,202 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cchall.javafx.globeviewer;
+
+import cchall.javafx.globeviewer.raster.MapProjections;
+import java.util.concurrent.Executor;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Cybergnome
+ */
+public class TextureBudgetTest {
+
+	public TextureBudgetTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() {
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+	}
+
+	@Before
+	public void setUp() {
+		System.out.println(this.getClass().getSimpleName()+": {");
+	}
+
+	@After
+	public void tearDown() {
+		System.out.println("} :"+this.getClass().getSimpleName());
+	}
+
+	/** stands in for a GlobeViewer */
+	private static final class Viewer {
+		final SimpleObjectProperty<Image> source;
+		final SimpleObjectProperty<Image> displayed = new SimpleObjectProperty<>(null);
+		final TextureLevels[] levels;
+		boolean showing;
+
+		Viewer(TextureBudget budget, boolean showing, int requiredWidth){
+			this(budget, showing, texture(0xFF336699), requiredWidth);
+		}
+
+		Viewer(TextureBudget budget, boolean showing, Image texture, int requiredWidth){
+			source = new SimpleObjectProperty<>(texture);
+			final Executor now = Runnable::run;
+			levels = new TextureLevels[]{new TextureLevels(source, displayed, 
+					() -> MapProjections.MERCATOR, now, now)};
+			levels[0].setListener(budget::update);
+			levels[0].setRequiredWidth(requiredWidth);
+			this.showing = showing;
+			budget.register(this, (Viewer v) -> v.levels, (Viewer v) -> v.showing);
+		}
+	}
+
+	/** 256x128 pixels, 131072 bytes (32768 bytes at level 1, 8192 bytes at level 2) */
+	private static Image texture(int argb){
+		final WritableImage img = new WritableImage(256, 128);
+		for(int y = 0; y < 128; y++){
+			for(int x = 0; x < 256; x++){
+				img.getPixelWriter().setArgb(x, y, argb);
+			}
+		}
+		return img;
+	}
+
+	/**
+	 * Test that reduced textures are reduced further to fit the budget and 
+	 * restored once there is room for them.
+	 */
+	@Test
+	public void testReduce() {
+		final TextureBudget budget = new TextureBudget(1 << 20);
+		final Viewer a = new Viewer(budget, true, 100);
+		final Viewer b = new Viewer(budget, true, 100);
+		assertEquals(2, budget.getViewerCount());
+		assertEquals(1, a.levels[0].getLevel());
+		assertEquals(1, b.levels[0].getLevel());
+		// the displayed copies are counted, not the source images
+		assertEquals(2 * 32768, budget.getUsedBytes());
+		// one of the two is reduced by a level
+		budget.setMaxBytes(32768 + 8192);
+		assertEquals(3, a.levels[0].getLevel() + b.levels[0].getLevel());
+		assertEquals(32768 + 8192, budget.getUsedBytes());
+		// down to the smallest levels, which still do not fit
+		budget.setMaxBytes(1);
+		assertEquals(a.levels[0].getLevelCount() - 1, a.levels[0].getLevel());
+		assertEquals(b.levels[0].getLevelCount() - 1, b.levels[0].getLevel());
+		assertEquals(2 * 4, budget.getUsedBytes());
+		assertNotNull(a.displayed.get());
+		assertNotNull(b.displayed.get());
+		budget.setMaxBytes(1 << 20);
+		assertEquals(1, a.levels[0].getLevel());
+		assertEquals(1, b.levels[0].getLevel());
+		assertEquals(2 * 32768, budget.getUsedBytes());
+	}
+
+	/**
+	 * Test that textures displayed at full size (without level of detail, 
+	 * the default) are released or reduced to fit the budget.
+	 */
+	@Test
+	public void testFullSize() {
+		final TextureBudget budget = new TextureBudget(1 << 20);
+		final Viewer a = new Viewer(budget, true, Integer.MAX_VALUE);
+		final Viewer b = new Viewer(budget, false, Integer.MAX_VALUE);
+		assertEquals(2 * 131072, budget.getUsedBytes());
+		assertEquals(0, a.levels[0].getLevel());
+		assertEquals(0, b.levels[0].getLevel());
+		assertSame(a.source.get(), a.displayed.get());
+		assertSame(b.source.get(), b.displayed.get());
+		budget.setMaxBytes(100000);
+		assertTrue(budget.getUsedBytes() <= 100000);
+		// the hidden texture is released, the showing one is reduced
+		assertNull(b.displayed.get());
+		assertEquals(1, a.levels[0].getLevel());
+		assertEquals(32768, budget.getUsedBytes());
+		// the source properties are not changed
+		assertNotNull(a.source.get());
+		assertNotNull(b.source.get());
+		// and the full size texture is displayed again once it fits
+		budget.setMaxBytes(131072);
+		assertEquals(0, a.levels[0].getLevel());
+		assertSame(a.source.get(), a.displayed.get());
+		assertEquals(131072, budget.getUsedBytes());
+	}
+
+	/**
+	 * Test that hidden textures are released first and restored when they are 
+	 * shown again.
+	 */
+	@Test
+	public void testRelease() {
+		final TextureBudget budget = new TextureBudget(32768);
+		final Viewer a = new Viewer(budget, false, 100);
+		final Viewer b = new Viewer(budget, true, 100);
+		assertNull(a.displayed.get());
+		assertEquals(-1, a.levels[0].getLevel());
+		assertEquals(1, b.levels[0].getLevel());
+		assertEquals(32768, budget.getUsedBytes());
+		// a new texture for a released viewer is not displayed
+		a.source.set(texture(0xFF000000));
+		assertNull(a.displayed.get());
+		// shown again on demand
+		a.showing = true;
+		b.showing = false;
+		budget.update();
+		assertEquals(128, (int)a.displayed.get().getWidth());
+		assertEquals(0xFF000000, a.displayed.get().getPixelReader().getArgb(10, 10));
+		assertNull(b.displayed.get());
+		assertEquals(32768, budget.getUsedBytes());
+		// room for both
+		b.showing = true;
+		budget.setMaxBytes(1 << 20);
+		assertEquals(128, (int)b.displayed.get().getWidth());
+		assertEquals(2 * 32768, budget.getUsedBytes());
+		// hidden viewers keep their textures while they fit
+		b.showing = false;
+		budget.update();
+		assertNotNull(b.displayed.get());
+		// and are restored when they are removed from the budget
+		budget.setMaxBytes(32768);
+		assertNull(b.displayed.get());
+		budget.unregister(b);
+		assertEquals(128, (int)b.displayed.get().getWidth());
+		assertEquals(1, budget.getViewerCount());
+		assertEquals(32768, budget.getUsedBytes());
+	}
+
+	/**
+	 * Test that textures shared by several viewers are counted once.
+	 */
+	@Test
+	public void testShared() {
+		final TextureBudget budget = new TextureBudget(1 << 20);
+		final Image texture = texture(0xFF336699);
+		final Viewer a = new Viewer(budget, true, texture, 100);
+		final Viewer b = new Viewer(budget, true, texture, 100);
+		assertSame(a.displayed.get(), b.displayed.get());
+		assertEquals(32768, budget.getUsedBytes());
+		// both are reduced to the same level
+		budget.setMaxBytes(8192);
+		assertEquals(2, a.levels[0].getLevel());
+		assertEquals(2, b.levels[0].getLevel());
+		assertSame(a.displayed.get(), b.displayed.get());
+		assertEquals(8192, budget.getUsedBytes());
+	}
+}
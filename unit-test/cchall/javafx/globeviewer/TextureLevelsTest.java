@@ -0,0 +1,277 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cchall.javafx.globeviewer;
+
+import cchall.javafx.globeviewer.raster.MapProjections;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import javafx.application.Platform;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+import javax.imageio.ImageIO;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Cybergnome
+ */
+public class TextureLevelsTest {
+
+	public TextureLevelsTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() {
+		// images loaded in the background report their progress on the JavaFX application thread
+		try {
+			Platform.startup(() -> {});
+		} catch (IllegalStateException ex) {
+			// already started
+		}
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+	}
+
+	@Before
+	public void setUp() {
+		System.out.println(this.getClass().getSimpleName()+": {");
+	}
+
+	@After
+	public void tearDown() {
+		System.out.println("} :"+this.getClass().getSimpleName());
+	}
+
+	private static Image texture(int argb){
+		final WritableImage img = new WritableImage(256, 128);
+		for(int y = 0; y < 128; y++){
+			for(int x = 0; x < 256; x++){
+				img.getPixelWriter().setArgb(x, y, argb);
+			}
+		}
+		return img;
+	}
+
+	/**
+	 * Test of setRequiredWidth method, of class TextureLevels.
+	 */
+	@Test
+	public void testSelection() {
+		final SimpleObjectProperty<Image> source = new SimpleObjectProperty<>(texture(0xFF336699));
+		final SimpleObjectProperty<Image> displayed = new SimpleObjectProperty<>(null);
+		final Executor now = Runnable::run;
+		final TextureLevels levels = new TextureLevels(source, displayed, 
+				() -> MapProjections.MERCATOR, now, now);
+		assertSame(source.get(), displayed.get());
+		levels.setRequiredWidth(50);
+		assertEquals(2, levels.getLevel());
+		assertEquals(64, (int)displayed.get().getWidth());
+		assertEquals(32, (int)displayed.get().getHeight());
+		assertEquals(0xFF336699, displayed.get().getPixelReader().getArgb(10, 10));
+		// finer levels are used as soon as they are needed
+		levels.setRequiredWidth(70);
+		assertEquals(1, levels.getLevel());
+		assertEquals(128, (int)displayed.get().getWidth());
+		// but coarser levels only with room to spare
+		levels.setRequiredWidth(60);
+		assertEquals(1, levels.getLevel());
+		levels.setRequiredWidth(50);
+		assertEquals(2, levels.getLevel());
+		levels.setRequiredWidth(Integer.MAX_VALUE);
+		assertEquals(0, levels.getLevel());
+		assertSame(source.get(), displayed.get());
+		// a new texture is shown right away, then reduced
+		levels.setRequiredWidth(25);
+		assertEquals(3, levels.getLevel());
+		source.set(texture(0xFF000000));
+		assertEquals(3, levels.getLevel());
+		assertEquals(32, (int)displayed.get().getWidth());
+		assertEquals(0xFF000000, displayed.get().getPixelReader().getArgb(10, 10));
+	}
+
+	/**
+	 * Test that levels which are superseded while they are computed are 
+	 * discarded.
+	 */
+	@Test
+	public void testSuperseded() {
+		final SimpleObjectProperty<Image> source = new SimpleObjectProperty<>(texture(0xFF336699));
+		final SimpleObjectProperty<Image> displayed = new SimpleObjectProperty<>(null);
+		final List<Runnable> background = new ArrayList<>();
+		final TextureLevels levels = new TextureLevels(source, displayed, 
+				() -> MapProjections.MERCATOR, Runnable::run, background::add);
+		levels.setRequiredWidth(50);
+		levels.setRequiredWidth(25);
+		assertEquals(2, background.size());
+		// the first computation finishes last
+		background.get(1).run();
+		assertEquals(3, levels.getLevel());
+		background.get(0).run();
+		assertEquals(3, levels.getLevel());
+		assertEquals(32, (int)displayed.get().getWidth());
+		// the same level is not computed twice
+		levels.setRequiredWidth(120);
+		levels.setRequiredWidth(120);
+		assertEquals(3, background.size());
+		// back to the displayed level before the computation finishes
+		levels.setRequiredWidth(25);
+		background.get(2).run();
+		assertEquals(3, levels.getLevel());
+		assertEquals(32, (int)displayed.get().getWidth());
+	}
+
+	/**
+	 * Test that the levels of the same source image are shared.
+	 */
+	@Test
+	public void testShared() {
+		final Image texture = texture(0xFF336699);
+		final SimpleObjectProperty<Image> source1 = new SimpleObjectProperty<>(texture);
+		final SimpleObjectProperty<Image> source2 = new SimpleObjectProperty<>(texture);
+		final SimpleObjectProperty<Image> displayed1 = new SimpleObjectProperty<>(null);
+		final SimpleObjectProperty<Image> displayed2 = new SimpleObjectProperty<>(null);
+		final List<Runnable> background = new ArrayList<>();
+		final TextureLevels levels1 = new TextureLevels(source1, displayed1, 
+				() -> MapProjections.MERCATOR, Runnable::run, background::add);
+		final TextureLevels levels2 = new TextureLevels(source2, displayed2, 
+				() -> MapProjections.MERCATOR, Runnable::run, background::add);
+		levels1.setRequiredWidth(50);
+		background.get(0).run();
+		assertEquals(2, levels1.getLevel());
+		// already computed
+		levels2.setRequiredWidth(50);
+		assertEquals(1, background.size());
+		assertEquals(2, levels2.getLevel());
+		assertSame(displayed1.get(), displayed2.get());
+		// computed at the same time, but only one is kept
+		levels1.setRequiredWidth(25);
+		levels2.setRequiredWidth(25);
+		assertEquals(3, background.size());
+		background.get(1).run();
+		background.get(2).run();
+		assertEquals(3, levels2.getLevel());
+		assertSame(displayed1.get(), displayed2.get());
+	}
+
+	/**
+	 * Test that an image loading in the background is reduced once it has 
+	 * loaded.
+	 */
+	@Test
+	public void testLoading() throws IOException, InterruptedException {
+		final File file = File.createTempFile("texture", ".png");
+		file.deleteOnExit();
+		final BufferedImage img = new BufferedImage(256, 128, BufferedImage.TYPE_INT_ARGB);
+		for(int y = 0; y < 128; y++){
+			for(int x = 0; x < 256; x++){
+				img.setRGB(x, y, 0xFF336699);
+			}
+		}
+		ImageIO.write(img, "png", file);
+		final Image texture = new Image(file.toURI().toString(), true);
+		final SimpleObjectProperty<Image> source = new SimpleObjectProperty<>(texture);
+		final SimpleObjectProperty<Image> displayed = new SimpleObjectProperty<>(null);
+		final CountDownLatch reduced = new CountDownLatch(1);
+		displayed.addListener((observable, oldValue, newValue) -> {
+			if(newValue != null && newValue.getWidth() == 64){
+				reduced.countDown();
+			}
+		});
+		final Executor now = Runnable::run;
+		Platform.runLater(() -> {
+			final TextureLevels levels = new TextureLevels(source, displayed, 
+					() -> MapProjections.MERCATOR, now, now);
+			levels.setRequiredWidth(50);
+		});
+		assertTrue(reduced.await(10, TimeUnit.SECONDS));
+		assertEquals(1, texture.getProgress(), 0);
+		assertEquals(0xFF336699, displayed.get().getPixelReader().getArgb(10, 10));
+	}
+
+	/**
+	 * Test of setParked method, of class TextureLevels.
+	 */
+	@Test
+	public void testParked() {
+		final Image texture = texture(0xFF336699);
+		final SimpleObjectProperty<Image> source = new SimpleObjectProperty<>(texture);
+		final SimpleObjectProperty<Image> displayed = new SimpleObjectProperty<>(null);
+		final List<Runnable> background = new ArrayList<>();
+		final TextureLevels levels = new TextureLevels(source, displayed, 
+				() -> MapProjections.MERCATOR, Runnable::run, background::add);
+		levels.setRequiredWidth(50);
+		background.remove(0).run();
+		final Image reduced = displayed.get();
+		assertEquals(64, (int)reduced.getWidth());
+		// the displayed level is compressed, then removed from the material
+		levels.setParked(true);
+		assertFalse(levels.isParked());
+		background.remove(0).run();
+		assertTrue(levels.isParked());
+		assertTrue(levels.getParkedBytes() < 4 * 64 * 32 / 4);
+		assertNull(displayed.get());
+		assertEquals(-1, levels.getLevel());
+		assertEquals(-1, levels.getTargetLevel());
+		// but the source property is left alone
+		assertSame(texture, source.get());
+		levels.setRequiredWidth(50);
+		assertTrue(background.isEmpty());
+		// restored (the same instance, since it is still held elsewhere)
+		levels.setParked(false);
+		assertTrue(levels.isParked());
+		background.remove(0).run();
+		assertFalse(levels.isParked());
+		assertEquals(2, levels.getLevel());
+		assertSame(reduced, displayed.get());
+		assertSame(texture, source.get());
+		assertTrue(background.isEmpty());
+		// parked and shown again before the compression finishes
+		levels.setParked(true);
+		levels.setParked(false);
+		background.remove(0).run();
+		assertFalse(levels.isParked());
+		assertEquals(2, levels.getLevel());
+		assertSame(reduced, displayed.get());
+		assertTrue(background.isEmpty());
+		// full size textures are only removed from the material
+		levels.setRequiredWidth(Integer.MAX_VALUE);
+		levels.setParked(true);
+		assertTrue(background.isEmpty());
+		assertFalse(levels.isParked());
+		assertNull(displayed.get());
+		levels.setParked(false);
+		assertSame(texture, displayed.get());
+		// a new source image while parked discards the parked level, and is shown once no longer parked
+		levels.setRequiredWidth(50);
+		assertSame(reduced, displayed.get());
+		levels.setParked(true);
+		background.remove(0).run();
+		assertTrue(levels.isParked());
+		final Image other = texture(0xFF000000);
+		source.set(other);
+		assertFalse(levels.isParked());
+		assertNull(displayed.get());
+		levels.setParked(false);
+		background.remove(0).run();
+		assertEquals(2, levels.getLevel());
+		assertEquals(0xFF000000, displayed.get().getPixelReader().getArgb(10, 10));
+		assertSame(other, source.get());
+	}
+}
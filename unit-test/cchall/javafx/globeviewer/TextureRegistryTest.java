@@ -0,0 +1,198 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cchall.javafx.globeviewer;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javax.imageio.ImageIO;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Cybergnome
+ */
+public class TextureRegistryTest {
+
+	public TextureRegistryTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() {
+		// loading images from URLs needs the JavaFX toolkit
+		try {
+			Platform.startup(() -> {});
+		} catch (IllegalStateException ex) {
+			// already started
+		}
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+	}
+
+	@Before
+	public void setUp() {
+		System.out.println(this.getClass().getSimpleName()+": {");
+	}
+
+	@After
+	public void tearDown() {
+		System.out.println("} :"+this.getClass().getSimpleName());
+	}
+
+	private static WritableImage texture(int argb){
+		final WritableImage img = new WritableImage(16, 8);
+		for(int y = 0; y < 8; y++){
+			for(int x = 0; x < 16; x++){
+				img.getPixelWriter().setArgb(x, y, argb);
+			}
+		}
+		return img;
+	}
+
+	/**
+	 * Test of acquire and release methods, of class TextureRegistry.
+	 */
+	@Test
+	public void testReferenceCounting() {
+		final TextureRegistry registry = new TextureRegistry();
+		final Image a = texture(0xFF336699);
+		final Image b = texture(0xFF336699);
+		final Image c = texture(0xFF000000);
+		assertSame(a, registry.acquire(a));
+		// same pixels
+		assertSame(a, registry.acquire(b));
+		assertSame(c, registry.acquire(c));
+		assertEquals(2, registry.size());
+		assertEquals(2, registry.getReferenceCount(a));
+		assertEquals(0, registry.getReferenceCount(b));
+		registry.release(a);
+		assertEquals(1, registry.getReferenceCount(a));
+		registry.release(a);
+		assertEquals(0, registry.getReferenceCount(a));
+		assertEquals(1, registry.size());
+		// forgotten
+		assertSame(b, registry.acquire(b));
+		try {
+			registry.release(a);
+			fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException ex) {
+			// expected
+		}
+	}
+
+	/**
+	 * Test of acquire method from several threads at once, of class 
+	 * TextureRegistry.
+	 */
+	@Test
+	public void testConcurrent() throws InterruptedException {
+		final TextureRegistry registry = new TextureRegistry();
+		final Image a = texture(0xFF336699);
+		final Image b = texture(0xFF336699);
+		final Thread[] threads = new Thread[4];
+		for(int i = 0; i < threads.length; i++){
+			final Image img = i % 2 == 0 ? a : b;
+			threads[i] = new Thread(() -> {
+				for(int n = 0; n < 50; n++){
+					registry.acquire(img);
+				}
+			});
+			threads[i].start();
+		}
+		for(Thread t : threads){
+			t.join();
+		}
+		assertEquals(1, registry.size());
+		final Image shared = registry.getReferenceCount(a) > 0 ? a : b;
+		assertEquals(200, registry.getReferenceCount(shared));
+		assertEquals(TextureRegistry.hash(a), TextureRegistry.hash(b));
+	}
+
+	/**
+	 * Test of acquire method with an image that was modified after it was
+	 * released, of class TextureRegistry.
+	 */
+	@Test
+	public void testModified() {
+		final TextureRegistry registry = new TextureRegistry();
+		final WritableImage a = texture(0xFF336699);
+		final String before = TextureRegistry.hash(a);
+		assertSame(a, registry.acquire(a));
+		registry.release(a);
+		for(int y = 0; y < 8; y++){
+			for(int x = 0; x < 16; x++){
+				a.getPixelWriter().setArgb(x, y, 0xFF000000);
+			}
+		}
+		assertNotEquals(before, TextureRegistry.hash(a));
+		assertSame(a, registry.acquire(a));
+		// registered with its new pixels
+		assertSame(a, registry.acquire(texture(0xFF000000)));
+		assertNotSame(a, registry.acquire(texture(0xFF336699)));
+		assertEquals(2, registry.getReferenceCount(a));
+		assertEquals(2, registry.size());
+	}
+
+	/**
+	 * Test of acquire method with URLs, of class TextureRegistry.
+	 */
+	@Test
+	public void testUrl() throws IOException {
+		final File file = File.createTempFile("texture", ".png");
+		final File copy = File.createTempFile("texture", ".png");
+		try {
+			final BufferedImage png = new BufferedImage(16, 8, BufferedImage.TYPE_INT_ARGB);
+			for(int y = 0; y < 8; y++){
+				for(int x = 0; x < 16; x++){
+					png.setRGB(x, y, 0xFF336699);
+				}
+			}
+			ImageIO.write(png, "png", file);
+			ImageIO.write(png, "png", copy);
+			final TextureRegistry registry = new TextureRegistry();
+			final Image loaded = registry.acquire(file.toURI().toString());
+			assertEquals(16, (int)loaded.getWidth());
+			assertSame(loaded, registry.acquire(file.toURI().toString()));
+			// same content at another URL
+			assertSame(loaded, registry.acquire(copy.toURI().toString()));
+			assertSame(loaded, registry.acquire(texture(0xFF336699)));
+			assertEquals(4, registry.getReferenceCount(loaded));
+			assertEquals(1, registry.size());
+			try {
+				registry.acquire(new File(file.getPath() + ".missing").toURI().toString());
+				fail("IllegalArgumentException expected");
+			} catch (IllegalArgumentException ex) {
+				// expected
+			}
+		} finally {
+			file.delete();
+			copy.delete();
+		}
+	}
+
+	/**
+	 * Test of getSolidColor method, of class TextureRegistry.
+	 */
+	@Test
+	public void testSolidColor() {
+		final Image white = TextureRegistry.getSolidColor(Color.WHITE);
+		assertSame(white, TextureRegistry.getSolidColor(Color.color(1, 1, 1)));
+		assertNotSame(white, TextureRegistry.getSolidColor(Color.BLACK));
+		assertEquals(1, (int)white.getWidth());
+		assertEquals(0xFFFFFFFF, white.getPixelReader().getArgb(0, 0));
+	}
+}
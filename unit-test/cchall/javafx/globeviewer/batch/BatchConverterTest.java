@@ -0,0 +1,136 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cchall.javafx.globeviewer.batch;
+
+import cchall.javafx.globeviewer.raster.BufferedImageRasters;
+import cchall.javafx.globeviewer.raster.MapProjections;
+import cchall.javafx.globeviewer.raster.Raster;
+import cchall.javafx.globeviewer.raster.RasterReprojector;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Cybergnome
+ */
+public class BatchConverterTest {
+
+	private Path dir;
+
+	public BatchConverterTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() {
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		System.out.println(this.getClass().getSimpleName()+": {");
+		dir = Files.createTempDirectory("batch");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		System.out.println("} :"+this.getClass().getSimpleName());
+		try(Stream<Path> files = Files.walk(dir)){
+			for(Path p : (Iterable<Path>)files.sorted(Comparator.reverseOrder())::iterator){
+				Files.delete(p);
+			}
+		}
+	}
+
+	/**
+	 * Test of parse method, of class BatchConverter.
+	 */
+	@Test
+	public void testParse() {
+		final BatchConverter bc = BatchConverter.parse(new String[]{
+			"-source", "Sinusoidal", "-targets", "cubic,dymaxion", "-memory", "64", "in", "out"});
+		assertArrayEquals(new int[]{220, 51}, bc.outputSize(200, BatchConverter.Projection.DYMAXION));
+		assertArrayEquals(new int[]{200, 100}, bc.outputSize(200, BatchConverter.Projection.CUBIC));
+		for(String[] args : new String[][]{
+			{"in"}, {"-targets", "cubic,foo", "in", "out"}, {"-jobs", "0", "in", "out"}, 
+			{"-filter", "sharp", "in", "out"}, {"-bogus", "in", "out"}, {"in", "out", "-width"}
+		}){
+			try {
+				BatchConverter.parse(args);
+				fail("invalid arguments: " + String.join(" ", args));
+			} catch (IllegalArgumentException ex) {
+				// expected
+			}
+		}
+	}
+
+	/**
+	 * Test of run method, of class BatchConverter.
+	 */
+	@Test
+	public void testRun() throws IOException, InterruptedException {
+		final Path input = Files.createDirectories(dir.resolve("in").resolve("planets"));
+		final BufferedImage diffuse = testImage(80, 40, 0);
+		final BufferedImage normal = testImage(80, 40, 1);
+		ImageIO.write(diffuse, "png", input.resolve("mars_diffuse.png").toFile());
+		ImageIO.write(normal, "png", input.resolve("mars_normal.png").toFile());
+		ImageIO.write(testImage(60, 30, 2), "png", input.resolve("moon.png").toFile());
+		Files.write(input.resolve("notes.txt"), List.of("not an image"));
+		final Path output = dir.resolve("out");
+		final BatchConverter bc = BatchConverter.parse(new String[]{
+			"-targets", "cubic,dymaxion", "-jobs", "2", dir.resolve("in").toString(), output.toString()});
+		final Map<String, List<Path>> groups = bc.findImages();
+		assertEquals(2, groups.size());
+		assertEquals(2, groups.get("planets" + dir.getFileSystem().getSeparator() + "mars").size());
+		
+		final ByteArrayOutputStream log = new ByteArrayOutputStream();
+		assertTrue(bc.run(new PrintStream(log, true)));
+		System.out.print(log);
+		assertTrue(log.toString().contains("Mpixels/s overall"));
+		assertTrue(log.toString().contains("ms waiting for memory)"));
+		
+		final Raster expected = RasterReprojector.reproject(BufferedImageRasters.toRaster(normal), 
+				MapProjections.MERCATOR, MapProjections.DYMAXION, 88, 20, 1);
+		final BufferedImage actual = ImageIO.read(output.resolve("dymaxion/planets/mars_normal.png").toFile());
+		assertEquals(88, actual.getWidth());
+		assertEquals(20, actual.getHeight());
+		for(int y = 0; y < 20; y++){
+			for(int x = 0; x < 88; x++){
+				assertEquals(expected.getArgb(x, y), actual.getRGB(x, y));
+			}
+		}
+		assertEquals(60, ImageIO.read(output.resolve("cubic/planets/moon.png").toFile()).getWidth());
+		assertTrue(Files.exists(output.resolve("cubic/planets/mars_diffuse.png")));
+		assertFalse(Files.exists(output.resolve("cubic/planets/notes.txt")));
+	}
+
+	private static BufferedImage testImage(int width, int height, int seed){
+		final BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		for(int y = 0; y < height; y++){
+			for(int x = 0; x < width; x++){
+				img.setRGB(x, y, 0xFF000000 | (seed << 16) | (y << 8) | x);
+			}
+		}
+		return img;
+	}
+}
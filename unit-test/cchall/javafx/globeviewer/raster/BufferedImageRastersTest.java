@@ -0,0 +1,86 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cchall.javafx.globeviewer.raster;
+
+import java.awt.image.BufferedImage;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Cybergnome
+ */
+public class BufferedImageRastersTest {
+
+	public BufferedImageRastersTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() {
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+	}
+
+	@Before
+	public void setUp() {
+		System.out.println(this.getClass().getSimpleName()+": {");
+	}
+
+	@After
+	public void tearDown() {
+		System.out.println("} :"+this.getClass().getSimpleName());
+	}
+
+	/**
+	 * Test of toRaster and toBufferedImage methods, of class BufferedImageRasters.
+	 */
+	@Test
+	public void testRoundTrip() {
+		final int width = 9, height = 4;
+		for(int type : new int[]{BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_INT_RGB}){
+			final BufferedImage img = new BufferedImage(width, height, type);
+			for(int y = 0; y < height; y++){
+				for(int x = 0; x < width; x++){
+					img.setRGB(x, y, 0xFF000000 | (x << 16) | (y << 8) | (x * y));
+				}
+			}
+			final Raster raster = BufferedImageRasters.toRaster(img);
+			assertEquals(width, raster.getWidth());
+			assertEquals(height, raster.getHeight());
+			final BufferedImage copy = BufferedImageRasters.toBufferedImage(raster);
+			for(int y = 0; y < height; y++){
+				for(int x = 0; x < width; x++){
+					assertEquals(0xFF000000 | (x << 16) | (y << 8) | (x * y), raster.getArgb(x, y));
+					assertEquals(raster.getArgb(x, y), copy.getRGB(x, y));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test of the Raster constructor which wraps an existing array.
+	 */
+	@Test
+	public void testWrap() {
+		final int[] pixels = new int[6];
+		final Raster raster = new Raster(3, 2, pixels);
+		raster.setArgb(2, 1, 0xFF123456);
+		assertEquals(0xFF123456, pixels[5]);
+		assertEquals(0xFF123456, raster.asIntBuffer().get(5));
+		try {
+			new Raster(3, 3, pixels);
+			fail("array of the wrong length");
+		} catch (IllegalArgumentException ex) {
+			// expected
+		}
+	}
+}
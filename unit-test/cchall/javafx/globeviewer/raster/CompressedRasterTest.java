@@ -0,0 +1,95 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cchall.javafx.globeviewer.raster;
+
+import java.util.Random;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Cybergnome
+ */
+public class CompressedRasterTest {
+
+	public CompressedRasterTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() {
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+	}
+
+	@Before
+	public void setUp() {
+		System.out.println(this.getClass().getSimpleName()+": {");
+	}
+
+	@After
+	public void tearDown() {
+		System.out.println("} :"+this.getClass().getSimpleName());
+	}
+
+	/**
+	 * Test of subtractBytes and addBytes methods, of class CompressedRaster.
+	 */
+	@Test
+	public void testBytes() {
+		assertEquals(0x01FF0080, CompressedRaster.subtractBytes(0x02000080, 0x01010000));
+		assertEquals(0x02000080, CompressedRaster.addBytes(0x01010000, 0x01FF0080));
+		final Random random = new Random(7);
+		for(int i = 0; i < 10000; i++){
+			final int a = random.nextInt();
+			final int b = random.nextInt();
+			final int d = CompressedRaster.subtractBytes(a, b);
+			for(int shift = 0; shift < 32; shift += 8){
+				assertEquals(((a >>> shift) - (b >>> shift)) & 0xFF, (d >>> shift) & 0xFF);
+			}
+			assertEquals(a, CompressedRaster.addBytes(b, d));
+		}
+	}
+
+	/**
+	 * Test of compress and decompress methods, of class CompressedRaster.
+	 */
+	@Test
+	public void testRoundTrip() throws InterruptedException {
+		final Random random = new Random(42);
+		// several bands, the last one partial
+		final int width = 1000;
+		final int height = 3 * (CompressedRaster.BAND_PIXELS / width) + 7;
+		final Raster raster = new Raster(width, height);
+		for(int y = 0; y < height; y++){
+			for(int x = 0; x < width; x++){
+				// a smooth gradient with some noise, and random pixels in a corner
+				final int noise = random.nextInt(4);
+				raster.setArgb(x, y, x < 50 && y < 50 ? random.nextInt()
+						: 0xFF000000 | ((x / 4 + noise) & 0xFF) << 16 | ((y / 4) & 0xFF) << 8 | noise);
+			}
+		}
+		for(int parallelism : new int[]{1, 4}){
+			final CompressedRaster compressed = CompressedRaster.compress(raster, parallelism);
+			assertEquals(width, compressed.getWidth());
+			assertEquals(height, compressed.getHeight());
+			assertTrue(compressed.getCompressedSize() < 4L * width * height / 4);
+			final Raster restored = compressed.decompress(parallelism);
+			assertEquals(width, restored.getWidth());
+			assertEquals(height, restored.getHeight());
+			assertArrayEquals(raster.getPixels(), restored.getPixels());
+		}
+		// tiny and one pixel wide rasters
+		for(Raster r : new Raster[]{new Raster(1, 1, new int[]{0x12345678}), new Raster(1, 300000)}){
+			assertArrayEquals(r.getPixels(), CompressedRaster.compress(r, 4).decompress(4).getPixels());
+		}
+	}
+}
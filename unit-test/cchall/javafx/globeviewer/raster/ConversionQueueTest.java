@@ -0,0 +1,178 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cchall.javafx.globeviewer.raster;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Cybergnome
+ */
+public class ConversionQueueTest {
+
+	private ConversionQueue queue;
+	private ForkJoinPool pool;
+	private ForkJoinPool oldPool;
+
+	public ConversionQueueTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() {
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+	}
+
+	@Before
+	public void setUp() {
+		System.out.println(this.getClass().getSimpleName()+": {");
+		queue = new ConversionQueue(1);
+		oldPool = RasterReprojector.getThreadPool();
+		pool = new ForkJoinPool(2);
+		RasterReprojector.setThreadPool(pool);
+	}
+
+	@After
+	public void tearDown() {
+		queue.shutdown();
+		RasterReprojector.setThreadPool(oldPool);
+		pool.shutdown();
+		System.out.println("} :"+this.getClass().getSimpleName());
+	}
+
+	/**
+	 * A map projection which waits for a latch the first time it is used, 
+	 * and counts the pixels it converts
+	 */
+	private static final class BlockingProjection implements MapProjection {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicLong pixels = new AtomicLong();
+
+		@Override
+		public void convertLonLatToRelativePixelXY(double lon, double lat, double[] relXYOut) {
+			MapProjections.MERCATOR.convertLonLatToRelativePixelXY(lon, lat, relXYOut);
+		}
+
+		@Override
+		public void convertRelativePixelXYToLonLat(double relX, double relY, double[] lonLatOut) {
+			MapProjections.MERCATOR.convertRelativePixelXYToLonLat(relX, relY, lonLatOut);
+		}
+
+		@Override
+		public void convertRelativePixelRowToLonLat(double[] relX, double relY, int count, double[] lonOut, double[] latOut) {
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+			pixels.addAndGet(count);
+			MapProjection.super.convertRelativePixelRowToLonLat(relX, relY, count, lonOut, latOut);
+		}
+	}
+
+	private static Raster[] layers(){
+		return new Raster[]{new Raster(64, 64), new Raster(64, 64)};
+	}
+
+	/**
+	 * Test of job priorities, of class ConversionQueue.
+	 */
+	@Test
+	public void testPriority() throws Exception {
+		final BlockingProjection blocking = new BlockingProjection();
+		final ConversionJob first = queue.submit(layers(), MapProjections.MERCATOR, blocking, 16, 16, RasterReprojector.Filter.NEAREST, 0);
+		assertTrue(blocking.started.await(10, TimeUnit.SECONDS));
+		final List<String> order = Collections.synchronizedList(new ArrayList<>());
+		final ConversionJob low = queue.submit(layers(), MapProjections.MERCATOR, MapProjections.CUBIC, 16, 12, RasterReprojector.Filter.NEAREST, 0);
+		final ConversionJob high = queue.submit(layers(), MapProjections.MERCATOR, MapProjections.CUBIC, 16, 12, RasterReprojector.Filter.NEAREST, 5);
+		final ConversionJob medium = queue.submit(layers(), MapProjections.MERCATOR, MapProjections.CUBIC, 16, 12, RasterReprojector.Filter.NEAREST, 1);
+		final ConversionJob promoted = queue.submit(layers(), MapProjections.MERCATOR, MapProjections.CUBIC, 16, 12, RasterReprojector.Filter.NEAREST, 0);
+		final ConversionJob cancelled = queue.submit(layers(), MapProjections.MERCATOR, MapProjections.CUBIC, 16, 12, RasterReprojector.Filter.NEAREST, 9);
+		promoted.setPriority(10);
+		assertEquals(10, promoted.getPriority());
+		low.toCompletableFuture().thenRun(() -> order.add("low"));
+		high.toCompletableFuture().thenRun(() -> order.add("high"));
+		medium.toCompletableFuture().thenRun(() -> order.add("medium"));
+		promoted.toCompletableFuture().thenRun(() -> order.add("promoted"));
+		assertEquals(5, queue.getQueueLength());
+		assertTrue(cancelled.cancel(false));
+		assertEquals(4, queue.getQueueLength());
+		blocking.release.countDown();
+		assertEquals(2, low.get(10, TimeUnit.SECONDS).length);
+		assertEquals(16, first.get()[1].getWidth());
+		assertEquals(1.0, low.getProgress(), 0);
+		assertEquals("[promoted, high, medium, low]", order.toString());
+		assertTrue(cancelled.isCancelled());
+		try {
+			cancelled.get();
+			fail("not cancelled");
+		} catch (CancellationException ex) {
+			// expected
+		}
+	}
+
+	/**
+	 * Test of cancelling a running job, of class ConversionJob.
+	 */
+	@Test
+	public void testCancelRunning() throws Exception {
+		final BlockingProjection blocking = new BlockingProjection();
+		final ConversionJob job = queue.submit(layers(), MapProjections.MERCATOR, blocking, 1024, 1024, RasterReprojector.Filter.NEAREST, 0);
+		assertTrue(blocking.started.await(10, TimeUnit.SECONDS));
+		assertTrue(job.cancel(false));
+		blocking.release.countDown();
+		// the next job only starts after the cancelled job has stopped
+		final ConversionJob next = queue.submit(layers(), MapProjections.MERCATOR, MapProjections.CUBIC, 16, 12, RasterReprojector.Filter.NEAREST, 0);
+		next.get(10, TimeUnit.SECONDS);
+		assertTrue(job.isCancelled());
+		assertTrue(job.getProgress() < 0.5);
+		// at most the tiles in progress were finished (2 threads, 256x256 pixels each)
+		assertTrue(blocking.pixels.get() <= 2 * 256 * 256);
+	}
+
+	/**
+	 * Test of getProgress and addProgressListener methods, of class ConversionJob.
+	 */
+	@Test
+	public void testProgress() throws Exception {
+		final List<Double> progress = Collections.synchronizedList(new ArrayList<>());
+		final BlockingProjection blocking = new BlockingProjection();
+		final ConversionJob job = queue.submit(layers(), MapProjections.MERCATOR, blocking, 512, 512, RasterReprojector.Filter.BILINEAR, 0);
+		job.addProgressListener(() -> progress.add(job.getProgress()));
+		assertTrue(blocking.started.await(10, TimeUnit.SECONDS));
+		assertTrue(job.getProgress() < 1);
+		blocking.release.countDown();
+		job.get(10, TimeUnit.SECONDS);
+		assertEquals(1.0, job.getProgress(), 0);
+		assertTrue(progress.size() > 2);
+		boolean partial = false;
+		for(double p : progress){
+			partial |= p > 0 && p < 1;
+		}
+		assertTrue(partial);
+		// a listener added later is called at once
+		final CountDownLatch called = new CountDownLatch(1);
+		job.addProgressListener(called::countDown);
+		assertEquals(0, called.getCount());
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cchall.javafx.globeviewer.raster;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Cybergnome
+ */
+public class CubeFaceRastersTest {
+
+	public CubeFaceRastersTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() {
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+	}
+
+	@Before
+	public void setUp() {
+		System.out.println(this.getClass().getSimpleName()+": {");
+	}
+
+	@After
+	public void tearDown() {
+		System.out.println("} :"+this.getClass().getSimpleName());
+	}
+
+	private static Raster[] makeFaces(int size){
+		final CubeFaceRasters.Face[] names = CubeFaceRasters.Face.values();
+		final Raster[] faces = new Raster[names.length];
+		for(int f = 0; f < faces.length; f++){
+			faces[f] = new Raster(size, size);
+			for(int i = 0; i < size * size; i++){
+				faces[f].getPixels()[i] = 0xFF000000 | (f << 20) | i;
+			}
+		}
+		return faces;
+	}
+
+	/**
+	 * Test of join and split methods, of class CubeFaceRasters.
+	 */
+	@Test
+	public void testRoundTrip() throws InterruptedException {
+		final int size = 37;
+		final Raster[] faces = makeFaces(size);
+		for(int parallelism : new int[]{1, 4}){
+			final Raster cuboid = CubeFaceRasters.join(faces, size, RasterReprojector.Filter.BICUBIC, parallelism);
+			assertEquals(4 * size, cuboid.getWidth());
+			assertEquals(2 * size, cuboid.getHeight());
+			for(CubeFaceRasters.Face face : CubeFaceRasters.Face.values()){
+				assertEquals(faces[face.ordinal()].getArgb(5, 7), 
+						cuboid.getArgb(face.getColumn() * size + 5, face.getRow() * size + 7));
+			}
+			// unused parts of the layout stay transparent
+			assertEquals(0, cuboid.getArgb(size + 3, 3));
+			assertEquals(0, cuboid.getArgb(3 * size - 1, size - 1));
+			final Raster[] split = CubeFaceRasters.split(cuboid, parallelism);
+			for(int f = 0; f < faces.length; f++){
+				assertArrayEquals(faces[f].getPixels(), split[f].getPixels());
+			}
+		}
+	}
+
+	/**
+	 * Test that faces of a different size are resampled.
+	 */
+	@Test
+	public void testResample() throws InterruptedException {
+		final Raster[] faces = makeFaces(16);
+		// a uniform face stays uniform with every filter
+		java.util.Arrays.fill(faces[CubeFaceRasters.Face.TOP.ordinal()].getPixels(), 0xFF336699);
+		// a 2 pixel checkerboard averages out when reduced
+		final Raster back = new Raster(64, 64);
+		for(int y = 0; y < 64; y++){
+			for(int x = 0; x < 64; x++){
+				back.setArgb(x, y, ((x / 2 + y / 2) & 1) == 0 ? 0xFF000000 : 0xFFFFFFFF);
+			}
+		}
+		faces[CubeFaceRasters.Face.BACK.ordinal()] = back;
+		for(RasterReprojector.Filter filter : RasterReprojector.Filter.values()){
+			final Raster enlarged = CubeFaceRasters.join(faces, 40, filter, 3);
+			final Raster reduced = CubeFaceRasters.join(faces, 8, filter, 3);
+			for(int y = 0; y < 40; y++){
+				for(int x = 0; x < 40; x++){
+					assertEquals(0xFF336699, enlarged.getArgb(x, y));
+				}
+			}
+			for(int y = 0; y < 8; y++){
+				for(int x = 0; x < 8; x++){
+					assertEquals(0xFF336699, reduced.getArgb(x, y));
+					final int gray = reduced.getArgb(16 + x, 8 + y) & 0xFF;
+					if(filter == RasterReprojector.Filter.NEAREST){
+						assertTrue(gray == 0 || gray == 0xFF);
+					} else {
+						assertEquals(0x80, gray, 2);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test of halve method, of class CubeFaceRasters.
+	 */
+	@Test
+	public void testHalve() {
+		final Raster src = new Raster(3, 2, new int[]{
+			0xFF000000, 0xFF0000FF, 0x00FFFFFF, 
+			0xFF000004, 0xFF0000FF, 0x00FFFFFF});
+		final Raster half = CubeFaceRasters.halve(src);
+		assertEquals(2, half.getWidth());
+		assertEquals(1, half.getHeight());
+		assertEquals(0xFF000081, half.getArgb(0, 0));
+		assertEquals(0x00FFFFFF, half.getArgb(1, 0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSplitInvalidSize() throws InterruptedException {
+		CubeFaceRasters.split(new Raster(30, 16), 1);
+	}
+}
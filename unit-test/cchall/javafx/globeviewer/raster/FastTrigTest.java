@@ -0,0 +1,124 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cchall.javafx.globeviewer.raster;
+
+import java.util.Random;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Cybergnome
+ */
+public class FastTrigTest {
+
+	public FastTrigTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() {
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+	}
+
+	@Before
+	public void setUp() {
+		System.out.println(this.getClass().getSimpleName()+": {");
+	}
+
+	@After
+	public void tearDown() {
+		System.out.println("} :"+this.getClass().getSimpleName());
+	}
+
+	/**
+	 * Test of sin, cos and tan methods, of class FastTrig.
+	 */
+	@Test
+	public void testSinCosTan() {
+		double maxSinError = 0, maxCosError = 0, maxTanError = 0;
+		for(int i = -200000; i <= 200000; i++){
+			final double x = i * 1e-4; // -20 to 20 radians
+			maxSinError = Math.max(maxSinError, Math.abs(Math.sin(x) - FastTrig.sin(x)));
+			maxCosError = Math.max(maxCosError, Math.abs(Math.cos(x) - FastTrig.cos(x)));
+			if(Math.abs(x) <= 0.25 * Math.PI){
+				maxTanError = Math.max(maxTanError, Math.abs(Math.tan(x) - FastTrig.tan(x)));
+			}
+		}
+		System.out.printf("\tmax errors: sin %s, cos %s, tan %s\n", maxSinError, maxCosError, maxTanError);
+		assertTrue(maxSinError <= FastTrig.MAX_SIN_ERROR);
+		assertTrue(maxCosError <= FastTrig.MAX_SIN_ERROR);
+		assertTrue(maxTanError <= FastTrig.MAX_SIN_ERROR);
+	}
+
+	/**
+	 * Test of atan2 method, of class FastTrig.
+	 */
+	@Test
+	public void testAtan2() {
+		final Random prng = new Random(1234);
+		double maxError = 0;
+		for(int i = 0; i < 1000000; i++){
+			final double y = prng.nextGaussian() * Math.pow(10, prng.nextInt(7) - 3);
+			final double x = prng.nextGaussian() * Math.pow(10, prng.nextInt(7) - 3);
+			maxError = Math.max(maxError, Math.abs(Math.atan2(y, x) - FastTrig.atan2(y, x)));
+		}
+		System.out.printf("\tmax error: atan2 %s\n", maxError);
+		assertTrue(maxError <= FastTrig.MAX_ATAN_ERROR);
+		final double[] special = {0.0, -0.0, 1.0, -1.0, 1e300, -1e-300};
+		for(double y : special){
+			for(double x : special){
+				assertEquals(String.format("atan2(%s, %s)", y, x), Math.atan2(y, x), FastTrig.atan2(y, x), FastTrig.MAX_ATAN_ERROR);
+			}
+		}
+	}
+
+	/**
+	 * Compares the approximate map projections against the exact ones.
+	 */
+	@Test
+	public void testApproximateMapProjections() {
+		final MapProjection[] projections = {
+			MapProjections.MERCATOR, MapProjections.SINUSOIDAL, 
+			MapProjections.CUBIC, MapProjections.DYMAXION
+		};
+		final double tolerance = 1e-6;
+		final double[] exact = new double[2], approx = new double[2];
+		for(MapProjection projection : projections){
+			System.out.println("\t"+projection.approximate());
+			final MapProjection approximate = projection.approximate();
+			assertSame(approximate, approximate.approximate());
+			for(int j = 0; j < 500; j++){
+				final double relY = (j + 0.5) / 500;
+				for(int i = 0; i < 1000; i++){
+					final double relX = (i + 0.5) / 1000;
+					projection.convertRelativePixelXYToLonLat(relX, relY, exact);
+					approximate.convertRelativePixelXYToLonLat(relX, relY, approx);
+					// near the poles, the error in longitude is relative to the length of the line of latitude
+					final double scale = Math.max(Math.cos(exact[1]), 1e-2);
+					// (-pi and pi are the same longitude)
+					final double dLon = Math.IEEEremainder(exact[0] - approx[0], 2 * Math.PI);
+					assertEquals(String.format("%s longitude at (%s, %s)", projection, relX, relY), 
+							0, dLon, tolerance / scale);
+					assertEquals(String.format("%s latitude at (%s, %s)", projection, relX, relY), 
+							exact[1], approx[1], tolerance);
+					final double lon = (relX - 0.5) * 2 * Math.PI;
+					final double lat = (0.5 - relY) * Math.PI;
+					projection.convertLonLatToRelativePixelXY(lon, lat, exact);
+					approximate.convertLonLatToRelativePixelXY(lon, lat, approx);
+					assertEquals(String.format("%s X at (%s, %s)", projection, lon, lat), exact[0], approx[0], tolerance);
+					assertEquals(String.format("%s Y at (%s, %s)", projection, lon, lat), exact[1], approx[1], tolerance);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cchall.javafx.globeviewer.raster;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Cybergnome
+ */
+public class IlluminationMapsTest {
+
+	public IlluminationMapsTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() {
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+	}
+
+	@Before
+	public void setUp() {
+		System.out.println(this.getClass().getSimpleName()+": {");
+	}
+
+	@After
+	public void tearDown() {
+		System.out.println("} :"+this.getClass().getSimpleName());
+	}
+
+	/**
+	 * Test of darken method, of class IlluminationMaps.
+	 */
+	@Test
+	public void testDarken() {
+		assertEquals(0xFFFFFFFF, IlluminationMaps.darken(0x80FFFFFF, IlluminationMaps.toMultiplier(1)));
+		assertEquals(0xFF000000, IlluminationMaps.darken(0xFFFFFFFF, IlluminationMaps.toMultiplier(0)));
+		assertEquals(0xFF000000, IlluminationMaps.darken(0xFFFFFFFF, IlluminationMaps.toMultiplier(Double.NaN)));
+		assertEquals(0xFF804020, IlluminationMaps.darken(0xFFFF8040, IlluminationMaps.toMultiplier(0.5)));
+		// every channel matches the floating point result
+		for(int c = 0; c < 256; c++){
+			for(double intensity : new double[]{0.15, 0.3, 0.77}){
+				final int argb = IlluminationMaps.darken((c << 16) | (c << 8) | c, IlluminationMaps.toMultiplier(intensity));
+				final double expected = c * intensity;
+				assertEquals(expected, (argb >> 16) & 0xFF, 1.0);
+				assertEquals(expected, (argb >> 8) & 0xFF, 1.0);
+				assertEquals(expected, argb & 0xFF, 1.0);
+			}
+		}
+	}
+
+	/**
+	 * Test of create method, of class IlluminationMaps.
+	 */
+	@Test
+	public void testCreate() throws InterruptedException {
+		final Raster colorMap = new Raster(300, 200);
+		for(int i = 0; i < colorMap.getPixels().length; i++){
+			colorMap.getPixels()[i] = i * 0x010305;
+		}
+		final int multiplier = IlluminationMaps.toMultiplier(0.4);
+		for(int parallelism : new int[]{1, 4}){
+			final Raster map = IlluminationMaps.create(colorMap, 0.4, parallelism);
+			for(int i = 0; i < colorMap.getPixels().length; i++){
+				assertEquals(IlluminationMaps.darken(colorMap.getPixels()[i], multiplier), map.getPixels()[i]);
+			}
+		}
+		// a band of rows
+		final int[] band = new int[300 * 10];
+		IlluminationMaps.darken(colorMap, 150, 10, 0.4, band, 3);
+		assertEquals(IlluminationMaps.darken(colorMap.getArgb(7, 153), multiplier), band[3 * 300 + 7]);
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cchall.javafx.globeviewer.raster;
+
+import java.awt.Rectangle;
+import java.util.List;
+import java.util.Random;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Cybergnome
+ */
+public class IncrementalReprojectorTest {
+
+	public IncrementalReprojectorTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() {
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+	}
+
+	@Before
+	public void setUp() {
+		System.out.println(this.getClass().getSimpleName()+": {");
+	}
+
+	@After
+	public void tearDown() {
+		System.out.println("} :"+this.getClass().getSimpleName());
+	}
+
+	private static Raster randomRaster(int width, int height, Random prng){
+		final Raster raster = new Raster(width, height);
+		for(int i = 0; i < raster.getPixels().length; i++){
+			raster.getPixels()[i] = prng.nextInt();
+		}
+		return raster;
+	}
+
+	/**
+	 * Test of update method, of class IncrementalReprojector.
+	 */
+	@Test
+	public void testUpdate() throws InterruptedException {
+		final Random prng = new Random(16);
+		for(MapProjection target : new MapProjection[]{MapProjections.CUBIC, MapProjections.DYMAXION, MapProjections.SINUSOIDAL}){
+			for(RasterReprojector.Filter filter : RasterReprojector.Filter.values()){
+				final Raster src = randomRaster(150, 100, prng);
+				final Raster dst = RasterReprojector.reproject(src, MapProjections.MERCATOR, target, 130, 70, 1, filter);
+				final IncrementalReprojector updater = new IncrementalReprojector(src, MapProjections.MERCATOR, 
+						dst, target, 1, filter);
+				// includes the edges, where the poles and the seams are
+				for(int[] region : new int[][]{{40, 45, 7, 5}, {0, 0, 3, 2}, {147, 90, 10, 10}, {-5, 50, 8, 1}}){
+					final int[] before = dst.getPixels().clone();
+					for(int y = Math.max(0, region[1]); y < Math.min(100, region[1] + region[3]); y++){
+						for(int x = Math.max(0, region[0]); x < Math.min(150, region[0] + region[2]); x++){
+							src.setArgb(x, y, prng.nextInt());
+						}
+					}
+					final List<Rectangle> changed = updater.update(region[0], region[1], region[2], region[3]);
+					final Raster expected = RasterReprojector.reproject(src, MapProjections.MERCATOR, target, 130, 70, 1, filter);
+					final String msg = target + " " + filter + " " + region[0] + "," + region[1];
+					assertArrayEquals(msg, expected.getPixels(), dst.getPixels());
+					int changedArea = 0;
+					for(Rectangle r : changed){
+						changedArea += r.width * r.height;
+					}
+					assertTrue(msg, changedArea < 130 * 70);
+					for(int y = 0; y < 70; y++){
+						for(int x = 0; x < 130; x++){
+							if(before[y * 130 + x] != dst.getArgb(x, y)){
+								boolean inside = false;
+								for(Rectangle r : changed){
+									inside |= r.contains(x, y);
+								}
+								assertTrue(msg + " " + x + "," + y, inside);
+							}
+						}
+					}
+				}
+				assertTrue(updater.update(200, 0, 10, 10).isEmpty());
+			}
+		}
+	}
+
+	/**
+	 * Test of toSourceRegion method, of class IncrementalReprojector.
+	 */
+	@Test
+	public void testToSourceRegion() throws InterruptedException {
+		final Raster src = new Raster(360, 180);
+		final IncrementalReprojector updater = new IncrementalReprojector(src, MapProjections.MERCATOR, 
+				new Raster(100, 50), MapProjections.CUBIC, 1, RasterReprojector.Filter.NEAREST);
+		final Rectangle region = updater.toSourceRegion(Math.toRadians(10), Math.toRadians(-5), Math.toRadians(20), Math.toRadians(5));
+		final double[] relXY = new double[2];
+		for(double lon = 10; lon <= 20; lon += 0.25){
+			for(double lat = -5; lat <= 5; lat += 0.25){
+				MapProjections.MERCATOR.convertLonLatToRelativePixelXY(Math.toRadians(lon), Math.toRadians(lat), relXY);
+				assertTrue(region.contains((int)(relXY[0] * 360), (int)(relXY[1] * 180)));
+			}
+		}
+		assertTrue(region.width < 20 && region.height < 20);
+		// across the 180th meridian
+		final Rectangle wrapped = updater.toSourceRegion(Math.toRadians(170), 0, Math.toRadians(-170), 0.1);
+		assertTrue(wrapped.contains(170, wrapped.y) && wrapped.contains(189, wrapped.y));
+		assertTrue(wrapped.width < 30);
+		// across the edge of the texture (the prime meridian), so both sides are included
+		final Rectangle split = updater.toSourceRegion(Math.toRadians(-5), 0, Math.toRadians(5), 0.1);
+		assertTrue(split.contains(0, split.y) && split.contains(359, split.y));
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cchall.javafx.globeviewer.raster;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Cybergnome
+ */
+public class MapProjectionTest {
+
+	public MapProjectionTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() {
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+	}
+
+	@Before
+	public void setUp() {
+		System.out.println(this.getClass().getSimpleName()+": {");
+	}
+
+	@After
+	public void tearDown() {
+		System.out.println("} :"+this.getClass().getSimpleName());
+	}
+
+	/**
+	 * Test of convertRelativePixelRowToLonLat and convertLonLatRowToRelativePixelXY 
+	 * methods, of interface MapProjection: the row versions of the conversions 
+	 * must give exactly the same results as the single-point versions.
+	 */
+	@Test
+	public void testRowConversions() {
+		final MapProjection[] projections = {
+			MapProjections.MERCATOR, MapProjections.SINUSOIDAL, 
+			MapProjections.CUBIC, MapProjections.DYMAXION, 
+			MapProjections.SINUSOIDAL.approximate(), MapProjections.CUBIC.approximate()
+		};
+		for(MapProjection projection : projections){
+			doRowConversionTestOn(projection);
+		}
+	}
+
+	static void doRowConversionTestOn(MapProjection projection){
+		System.out.println("\t"+projection);
+		final int width = 500, height = 250;
+		final double[] relX = new double[width];
+		final double[] lon = new double[width], lat = new double[width];
+		final double[] outX = new double[width], outY = new double[width];
+		final double[] coord = new double[2];
+		for(int i = 0; i < width; i++){
+			relX[i] = (i + 0.5) / width;
+		}
+		for(int y = 0; y < height; y++){
+			final double relY = (y + 0.5) / height;
+			projection.convertRelativePixelRowToLonLat(relX, relY, width, lon, lat);
+			for(int i = 0; i < width; i++){
+				projection.convertRelativePixelXYToLonLat(relX[i], relY, coord);
+				assertEquals(String.format("%s longitude at (%s, %s)", projection, relX[i], relY), coord[0], lon[i], 0);
+				assertEquals(String.format("%s latitude at (%s, %s)", projection, relX[i], relY), coord[1], lat[i], 0);
+			}
+			// rows of constant latitude and rows of varying latitude
+			final double rowLat = (0.5 - relY) * Math.PI;
+			for(int i = 0; i < width; i++){
+				lon[i] = (relX[i] - 0.5) * 2 * Math.PI;
+				lat[i] = (y % 2 == 0) ? rowLat : (relX[i] - 0.5) * Math.PI;
+			}
+			projection.convertLonLatRowToRelativePixelXY(lon, lat, width, outX, outY);
+			for(int i = 0; i < width; i++){
+				projection.convertLonLatToRelativePixelXY(lon[i], lat[i], coord);
+				assertEquals(String.format("%s X at (%s, %s)", projection, lon[i], lat[i]), coord[0], outX[i], 0);
+				assertEquals(String.format("%s Y at (%s, %s)", projection, lon[i], lat[i]), coord[1], outY[i], 0);
+			}
+		}
+	}
+}
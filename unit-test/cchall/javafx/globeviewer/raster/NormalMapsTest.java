@@ -0,0 +1,187 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cchall.javafx.globeviewer.raster;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Cybergnome
+ */
+public class NormalMapsTest {
+
+	public NormalMapsTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() {
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+	}
+
+	@Before
+	public void setUp() {
+		System.out.println(this.getClass().getSimpleName()+": {");
+	}
+
+	@After
+	public void tearDown() {
+		System.out.println("} :"+this.getClass().getSimpleName());
+	}
+
+	/** direction of the tilted plane used as terrain */
+	private static final double[] D = {0.3, -0.5, 0.8};
+	/** height of the terrain */
+	private static final double SCALE = 2.0;
+
+	/**
+	 * Heights of a terrain which rises towards D, with garbage in the pixels 
+	 * outside of the layout
+	 */
+	private static float[] terrain(MapProjection projection, int width, int height, boolean[] valid){
+		final float[] heights = new float[width * height];
+		final double[] lonLat = new double[2];
+		final double[] relXY = new double[2];
+		for(int y = 0; y < height; y++){
+			for(int x = 0; x < width; x++){
+				projection.convertRelativePixelXYToLonLat((x + 0.5) / width, (y + 0.5) / height, lonLat);
+				projection.convertLonLatToRelativePixelXY(lonLat[0], lonLat[1], relXY);
+				final int i = y * width + x;
+				valid[i] = Math.abs(relXY[0] * width - (x + 0.5)) < 0.25 && Math.abs(relXY[1] * height - (y + 0.5)) < 0.25;
+				heights[i] = valid[i] ? (float)(SCALE * dot(lonLat)) : 1000f * (x % 3);
+			}
+		}
+		return heights;
+	}
+
+	private static double dot(double[] lonLat){
+		final double cosLat = Math.cos(lonLat[1]);
+		return D[0] * cosLat * Math.cos(lonLat[0]) + D[1] * cosLat * Math.sin(lonLat[0]) + D[2] * Math.sin(lonLat[1]);
+	}
+
+	/**
+	 * Test of fromHeightMap method, of class NormalMaps.
+	 */
+	@Test
+	public void testFlat() throws InterruptedException {
+		final Raster heightMap = new Raster(80, 40);
+		java.util.Arrays.fill(heightMap.getPixels(), 0xFF808080);
+		for(NormalMaps.Kernel kernel : NormalMaps.Kernel.values()){
+			final Raster normals = NormalMaps.fromHeightMap(heightMap, MapProjections.CUBIC, 0.01, kernel, 3);
+			for(int argb : normals.getPixels()){
+				assertEquals(NormalMaps.FLAT, argb);
+			}
+		}
+	}
+
+	/**
+	 * Test that the normals tilt away from the uphill direction.
+	 */
+	@Test
+	public void testDirection() throws InterruptedException {
+		final int width = 200, height = 100;
+		final boolean[] valid = new boolean[width * height];
+		final float[] heights = terrain(MapProjections.MERCATOR, width, height, valid);
+		final Raster normals = NormalMaps.fromHeights(heights, width, height, 
+				MapProjections.MERCATOR, 1, NormalMaps.Kernel.CENTRAL_DIFFERENCE, 4);
+		final double[] lonLat = new double[2];
+		for(int y = 10; y < height - 10; y++){
+			for(int x = 0; x < width; x++){
+				MapProjections.MERCATOR.convertRelativePixelXYToLonLat((x + 0.5) / width, (y + 0.5) / height, lonLat);
+				final double lon = lonLat[0], lat = lonLat[1];
+				// slopes towards east and north
+				final double east = SCALE * (-D[0] * Math.sin(lon) + D[1] * Math.cos(lon));
+				final double north = SCALE * (-D[0] * Math.sin(lat) * Math.cos(lon) 
+						- D[1] * Math.sin(lat) * Math.sin(lon) + D[2] * Math.cos(lat));
+				final int expected = NormalMaps.encode(-east, -north, 1);
+				final int argb = normals.getArgb(x, y);
+				for(int shift = 0; shift <= 16; shift += 8){
+					assertEquals("pixel " + x + "," + y, (expected >> shift) & 0xFF, (argb >> shift) & 0xFF, 3);
+				}
+			}
+		}
+	}
+
+	/** point on the unit sphere at a relative pixel coordinate */
+	private static double[] point(MapProjection projection, double relX, double relY){
+		final double[] lonLat = new double[2];
+		projection.convertRelativePixelXYToLonLat(relX, relY, lonLat);
+		final double cosLat = Math.cos(lonLat[1]);
+		return new double[]{cosLat * Math.cos(lonLat[0]), cosLat * Math.sin(lonLat[0]), Math.sin(lonLat[1])};
+	}
+
+	/** unit vector from a to b */
+	private static double[] direction(double[] a, double[] b){
+		final double[] d = {b[0] - a[0], b[1] - a[1], b[2] - a[2]};
+		final double length = Math.sqrt(d[0] * d[0] + d[1] * d[1] + d[2] * d[2]);
+		return new double[]{d[0] / length, d[1] / length, d[2] / length};
+	}
+
+	/**
+	 * Test that the normals are right across the seams and gaps of the 
+	 * layouts, by combining them with the directions of the texture on the 
+	 * globe (like a renderer does) and comparing the result with the normal 
+	 * of the terrain.
+	 */
+	@Test
+	public void testSeams() throws InterruptedException {
+		for(MapProjection projection : new MapProjection[]{MapProjections.MERCATOR, MapProjections.CUBIC, MapProjections.DYMAXION}){
+			final int width = projection == MapProjections.DYMAXION ? 440 : 320;
+			final int height = projection == MapProjections.DYMAXION ? 240 : 160;
+			final boolean[] valid = new boolean[width * height];
+			final float[] heights = terrain(projection, width, height, valid);
+			for(NormalMaps.Kernel kernel : NormalMaps.Kernel.values()){
+				final Raster normals = NormalMaps.fromHeights(heights, width, height, projection, 1, kernel, 4);
+				int count = 0, accurate = 0;
+				for(int y = 0; y < height; y++){
+					for(int x = 0; x < width; x++){
+						final int argb = normals.getArgb(x, y);
+						if(!valid[y * width + x]){
+							assertEquals(NormalMaps.FLAT, argb);
+							continue;
+						}
+						final double relX = (x + 0.5) / width, relY = (y + 0.5) / height;
+						final double[] n = point(projection, relX, relY);
+						final double[] right = direction(point(projection, relX - 0.1 / width, relY), 
+								point(projection, relX + 0.1 / width, relY));
+						final double[] down = direction(point(projection, relX, relY - 0.1 / height), 
+								point(projection, relX, relY + 0.1 / height));
+						final double nx = ((argb >> 16) & 0xFF) / 127.5 - 1;
+						final double ny = ((argb >> 8) & 0xFF) / 127.5 - 1;
+						final double nz = (argb & 0xFF) / 127.5 - 1;
+						final double d = D[0] * n[0] + D[1] * n[1] + D[2] * n[2];
+						double dot = 0, actualLength = 0, expectedLength = 0;
+						for(int k = 0; k < 3; k++){
+							final double actual = nx * right[k] - ny * down[k] + nz * n[k];
+							// the surface normal minus the slope (the tangential part of D)
+							final double expected = n[k] - SCALE * (D[k] - d * n[k]);
+							dot += actual * expected;
+							actualLength += actual * actual;
+							expectedLength += expected * expected;
+						}
+						final double angle = Math.toDegrees(Math.acos(Math.min(1, dot / Math.sqrt(actualLength * expectedLength))));
+						count++;
+						if(angle < 5){
+							accurate++;
+						} else if(projection == MapProjections.MERCATOR){
+							fail(projection + " " + kernel + " pixel " + x + "," + y + " is off by " + angle + " degrees");
+						}
+					}
+				}
+				// the layouts of the other projections have folds where the texture changes direction
+				assertTrue(projection + " " + kernel + ": " + accurate + " of " + count + " pixels are accurate", 
+						accurate >= 0.97 * count);
+			}
+		}
+	}
+}
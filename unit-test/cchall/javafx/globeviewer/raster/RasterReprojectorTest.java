@@ -0,0 +1,249 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cchall.javafx.globeviewer.raster;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Cybergnome
+ */
+public class RasterReprojectorTest {
+
+	public RasterReprojectorTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() {
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+	}
+
+	@Before
+	public void setUp() {
+		System.out.println(this.getClass().getSimpleName()+": {");
+	}
+
+	@After
+	public void tearDown() {
+		System.out.println("} :"+this.getClass().getSimpleName());
+		RasterReprojector.setThreadPool(null);
+	}
+
+	/**
+	 * Test of forEachTile method, of class RasterReprojector.
+	 */
+	@Test
+	public void testForEachTile() throws InterruptedException {
+		int[][] sizes = {{1, 1}, {7, 3}, {256, 128}, {1100, 260}, {3, 2000}, {5000, 17}};
+		int[] parallelisms = {1, 2, 3, 8, 64};
+		for(int[] size : sizes){
+			for(int parallelism : parallelisms){
+				doTileCoverageTestOn(size[0], size[1], parallelism);
+			}
+		}
+	}
+
+	/**
+	 * Test of forEachTask method, of class RasterReprojector.
+	 */
+	@Test
+	public void testForEachTask() throws InterruptedException {
+		int[] counts = {0, 1, 2, 7, 100};
+		int[] parallelisms = {1, 2, 8};
+		for(int count : counts){
+			for(int parallelism : parallelisms){
+				final AtomicIntegerArray runs = new AtomicIntegerArray(count);
+				RasterReprojector.forEachTask(count, parallelism, (int i)->runs.incrementAndGet(i));
+				for(int i = 0; i < count; i++){
+					assertEquals("index " + i + " of " + count, 1, runs.get(i));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test that tiles requested from a thread of another ForkJoinPool run on 
+	 * the configured pool rather than inline.
+	 */
+	@Test
+	public void testCallerOnOtherPool() throws Exception {
+		final ForkJoinPool pool = new ForkJoinPool(2);
+		final ForkJoinPool other = new ForkJoinPool(1);
+		try {
+			RasterReprojector.setThreadPool(pool);
+			final AtomicIntegerArray tiles = new AtomicIntegerArray(2);
+			other.submit(() -> {
+				RasterReprojector.forEachTile(1024, 1024, 4, (int x, int y, int w, int h)->{
+					tiles.incrementAndGet(ForkJoinTask.getPool() == pool ? 0 : 1);
+				});
+				return null;
+			}).get();
+			assertTrue(tiles.get(0) > 0);
+			assertEquals("tiles run inline on the calling pool", 0, tiles.get(1));
+		} finally {
+			RasterReprojector.setThreadPool(null);
+			pool.shutdown();
+			other.shutdown();
+		}
+	}
+
+	/**
+	 * Test of setThreadPool method, of class RasterReprojector.
+	 */
+	@Test
+	public void testSetThreadPool() throws InterruptedException {
+		final ForkJoinPool pool = new ForkJoinPool(3);
+		try {
+			RasterReprojector.setThreadPool(pool);
+			assertSame(pool, RasterReprojector.getThreadPool());
+			final AtomicIntegerArray onPool = new AtomicIntegerArray(1);
+			RasterReprojector.forEachTile(1024, 1024, 4, (int x, int y, int w, int h)->{
+				if(ForkJoinTask.getPool() == pool){
+					onPool.incrementAndGet(0);
+				}
+			});
+			assertTrue("tiles run on the configured pool", onPool.get(0) > 0);
+			RasterReprojector.setThreadPool(null);
+			assertSame(ForkJoinPool.commonPool(), RasterReprojector.getThreadPool());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Test that exceptions thrown by a tile are passed on to the caller.
+	 */
+	@Test(expected = ArithmeticException.class)
+	public void testTileException() throws InterruptedException {
+		RasterReprojector.forEachTile(512, 512, 4, (int x, int y, int w, int h)->{
+			if(x > 0 && y > 0){
+				throw new ArithmeticException("test");
+			}
+		});
+	}
+
+	/**
+	 * Test of reprojectLayers method, of class RasterReprojector.
+	 */
+	@Test
+	public void testReprojectLayers() throws InterruptedException {
+		final int srcWidth = 40, srcHeight = 20;
+		final int newWidth = 48, newHeight = 24;
+		final Raster[] layers = new Raster[3];
+		for(int l = 0; l < layers.length; l++){
+			layers[l] = new Raster(srcWidth, srcHeight);
+			for(int y = 0; y < srcHeight; y++){
+				for(int x = 0; x < srcWidth; x++){
+					layers[l].setArgb(x, y, 0xFF000000 | (l << 16) | (y * srcWidth + x));
+				}
+			}
+		}
+		final ReprojectionPlan plan = ReprojectionPlan.get(MapProjections.MERCATOR, 
+				MapProjections.CUBIC, srcWidth, srcHeight, newWidth, newHeight, 1);
+		for(int parallelism : new int[]{1, 3}){
+			final Raster[] outputs = RasterReprojector.reprojectLayers(layers, 
+					MapProjections.MERCATOR, MapProjections.CUBIC, newWidth, newHeight, parallelism);
+			assertEquals(layers.length, outputs.length);
+			for(int l = 0; l < outputs.length; l++){
+				assertEquals(newWidth, outputs[l].getWidth());
+				assertEquals(newHeight, outputs[l].getHeight());
+				for(int y = 0; y < newHeight; y++){
+					for(int x = 0; x < newWidth; x++){
+						assertEquals(String.format("layer %s, pixel (%s, %s)", l, x, y), 
+								0xFF000000 | (l << 16) | plan.sourceIndex(x, y), outputs[l].getArgb(x, y));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test that reprojectLayers method, of class RasterReprojector, rejects layers 
+	 * of different sizes.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testReprojectLayersSizeMismatch() throws InterruptedException {
+		RasterReprojector.reprojectLayers(new Raster[]{new Raster(40, 20), new Raster(40, 21)}, 
+				MapProjections.MERCATOR, MapProjections.CUBIC, 40, 20, 1);
+	}
+
+	/**
+	 * Test of reproject method (file to file), of class RasterReprojector.
+	 */
+	@Test
+	public void testReprojectFile() throws IOException, InterruptedException {
+		final int srcWidth = 90, srcHeight = 45;
+		final int newWidth = 110, newHeight = 26;
+		final MapProjection mercator = MapProjections.MERCATOR;
+		final MapProjection dymaxion = MapProjections.DYMAXION;
+		final Path source = Files.createTempFile("source", ".rgba");
+		final Path destination = Files.createTempFile("destination", ".rgba");
+		try {
+			// each RGB value is the index of the source pixel
+			try(DataOutputStream out = new DataOutputStream(Files.newOutputStream(source))){
+				for(int i = 0; i < srcWidth * srcHeight; i++){
+					out.writeInt((i << 8) | 0xFF);
+				}
+			}
+			final ReprojectionPlan plan = ReprojectionPlan.get(mercator, dymaxion, 
+					srcWidth, srcHeight, newWidth, newHeight, 1);
+			for(int parallelism : new int[]{1, 3}){
+				System.out.println("\tparallelism "+parallelism);
+				// small bands, so that the output is written in several parts
+				RasterReprojector.reproject(source, srcWidth, srcHeight, mercator, 
+						destination, dymaxion, newWidth, newHeight, parallelism, 1000);
+				assertEquals(4L * newWidth * newHeight, Files.size(destination));
+				try(DataInputStream in = new DataInputStream(Files.newInputStream(destination))){
+					for(int y = 0; y < newHeight; y++){
+						for(int x = 0; x < newWidth; x++){
+							final int rgba = in.readInt();
+							assertEquals(0xFF, rgba & 0xFF);
+							assertEquals(String.format("pixel (%s, %s)", x, y), plan.sourceIndex(x, y), rgba >>> 8);
+						}
+					}
+				}
+			}
+		} finally {
+			Files.deleteIfExists(source);
+			Files.deleteIfExists(destination);
+		}
+	}
+
+	/**
+	 * Checks that every pixel is covered by exactly one tile.
+	 */
+	static void doTileCoverageTestOn(int width, int height, int parallelism) throws InterruptedException {
+		System.out.println("\t"+width+"x"+height+" with parallelism "+parallelism);
+		final AtomicIntegerArray counts = new AtomicIntegerArray(width * height);
+		RasterReprojector.forEachTile(width, height, parallelism, (int x0, int y0, int w, int h)->{
+			assertTrue(w > 0 && h > 0);
+			for(int y = y0; y < y0 + h; y++){
+				for(int x = x0; x < x0 + w; x++){
+					counts.incrementAndGet(y * width + x);
+				}
+			}
+		});
+		for(int i = 0; i < counts.length(); i++){
+			assertEquals(String.format("tiles covering pixel (%s, %s)", i % width, i / width), 1, counts.get(i));
+		}
+	}
+}
@@ -0,0 +1,249 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cchall.javafx.globeviewer.raster;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Cybergnome
+ */
+public class ReprojectionPlanTest {
+	
+	public ReprojectionPlanTest() {
+	}
+	
+	@BeforeClass
+	public static void setUpClass() {
+	}
+	
+	@AfterClass
+	public static void tearDownClass() {
+	}
+	
+	@Before
+	public void setUp() {
+		System.out.println(this.getClass().getSimpleName()+": {");
+		ReprojectionPlan.clearCache();
+		ReprojectionPlan.setCacheCapacity(ReprojectionPlan.DEFAULT_CACHE_CAPACITY);
+	}
+	
+	@After
+	public void tearDown() {
+		System.out.println("} :"+this.getClass().getSimpleName());
+		ReprojectionPlan.clearCache();
+		ReprojectionPlan.setCacheCapacity(ReprojectionPlan.DEFAULT_CACHE_CAPACITY);
+	}
+
+	/**
+	 * Test of get method, of class ReprojectionPlan.
+	 */
+	@Test
+	public void testMercatorSourceIndices() throws InterruptedException {
+		doMercatorSamplingTestOn(MapProjections.CUBIC, 128, 64);
+		doMercatorSamplingTestOn(MapProjections.SINUSOIDAL, 128, 64);
+		doMercatorSamplingTestOn(MapProjections.DYMAXION, 143, 39);
+		doMercatorSamplingTestOn(MapProjections.MERCATOR, 90, 45);
+	}
+	
+	/**
+	 * Test of get method, of class ReprojectionPlan, converting from each map 
+	 * projection to each other map projection and back again.
+	 */
+	@Test
+	public void testRoundTrip() throws InterruptedException {
+		MapProjection[] projections = {
+			MapProjections.MERCATOR, MapProjections.SINUSOIDAL, 
+			MapProjections.CUBIC, MapProjections.DYMAXION
+		};
+		for(MapProjection a : projections){
+			for(MapProjection b : projections){
+				doRoundTripTestOn(a, b);
+			}
+		}
+	}
+	
+	/**
+	 * Test of the plan cache, of class ReprojectionPlan.
+	 */
+	@Test
+	public void testCache() throws InterruptedException {
+		System.out.println("\ttestCache");
+		final MapProjection mercator = MapProjections.MERCATOR;
+		final MapProjection cubic = MapProjections.CUBIC;
+		ReprojectionPlan a = ReprojectionPlan.get(mercator, cubic, 40, 20, 40, 20, 1);
+		assertSame("plan is reused", a, ReprojectionPlan.get(mercator, cubic, 40, 20, 40, 20, 3));
+		assertNotSame("plans depend on source size", a, ReprojectionPlan.get(mercator, cubic, 20, 10, 40, 20, 1));
+		assertNotSame("plans depend on target projection", a, ReprojectionPlan.get(mercator, MapProjections.SINUSOIDAL, 40, 20, 40, 20, 1));
+		assertNotSame("plans depend on source projection", a, ReprojectionPlan.get(cubic, cubic, 40, 20, 40, 20, 1));
+		assertEquals(4 * 40 * 20, ReprojectionPlan.getCacheSize());
+		
+		ReprojectionPlan.setCacheCapacity(2 * 40 * 20);
+		assertEquals("least recently used plans were evicted", 2 * 40 * 20, ReprojectionPlan.getCacheSize());
+		assertNotSame(a, ReprojectionPlan.get(mercator, cubic, 40, 20, 40, 20, 1));
+		
+		ReprojectionPlan.setCacheCapacity(100);
+		assertEquals(0, ReprojectionPlan.getCacheSize());
+		ReprojectionPlan.get(mercator, cubic, 40, 20, 40, 20, 1);
+		assertEquals("oversized plans are not cached", 0, ReprojectionPlan.getCacheSize());
+	}
+	
+	/**
+	 * Test that the default cache is a small part of the heap, and that a 
+	 * 16384x8192 plan is kept once the application makes room for it.
+	 */
+	@Test
+	public void testLargePlanCached() throws InterruptedException {
+		System.out.println("\ttestLargePlanCached");
+		final int width = 16384, height = 8192;
+		assertTrue(4 * ReprojectionPlan.defaultCacheCapacity(2L << 30) <= (2L << 30) / 16);
+		assertEquals(ReprojectionPlan.DEFAULT_CACHE_CAPACITY, RasterReprojector.getPlanCacheCapacity());
+		if(Runtime.getRuntime().maxMemory() < 4L * 2 * width * height){
+			System.out.println("\t\tskipped: heap too small for the plan");
+			return;
+		}
+		final MapProjection mercator = MapProjections.MERCATOR;
+		RasterReprojector.setPlanCacheCapacity((long)width * height);
+		try {
+			final ReprojectionPlan plan = ReprojectionPlan.get(mercator, mercator, width, height, width, height, 4);
+			assertTrue(ReprojectionPlan.isCached(mercator, mercator, width, height, width, height, 
+					RasterReprojector.Filter.NEAREST));
+			assertSame("plan is reused", plan, ReprojectionPlan.get(mercator, mercator, width, height, width, height, 4));
+			assertEquals((long)width * height, RasterReprojector.getPlanCacheSize());
+		} finally {
+			RasterReprojector.clearPlanCache();
+		}
+		assertEquals(0, RasterReprojector.getPlanCacheSize());
+	}
+	
+	/**
+	 * Test of bilinear method, of class ReprojectionPlan.
+	 */
+	@Test
+	public void testBilinear() {
+		System.out.println("\ttestBilinear");
+		final Random prng = new Random(8675309);
+		for(int n = 0; n < 10000; n++){
+			final int[] c = {prng.nextInt(), prng.nextInt(), prng.nextInt(), prng.nextInt()};
+			final int fx = prng.nextInt(256), fy = prng.nextInt(256);
+			final int result = ReprojectionPlan.bilinear(c[0], c[1], c[2], c[3], fx, fy);
+			for(int shift = 0; shift < 32; shift += 8){
+				final double tx = fx / 256.0, ty = fy / 256.0;
+				final double top = ((c[0] >>> shift) & 0xFF) * (1 - tx) + ((c[1] >>> shift) & 0xFF) * tx;
+				final double bottom = ((c[2] >>> shift) & 0xFF) * (1 - tx) + ((c[3] >>> shift) & 0xFF) * tx;
+				assertEquals(top * (1 - ty) + bottom * ty, (result >>> shift) & 0xFF, 2.0);
+			}
+		}
+	}
+	
+	/**
+	 * Test of filtered plans, of class ReprojectionPlan: a uniform image must 
+	 * stay uniform and a horizontal gradient must stay a smooth gradient.
+	 */
+	@Test
+	public void testFilters() throws InterruptedException {
+		final int width = 64, height = 32;
+		final int[] uniform = new int[width * height];
+		Arrays.fill(uniform, 0x80FF4010);
+		final int[] gradient = new int[width * height];
+		for(int i = 0; i < gradient.length; i++){
+			gradient[i] = 0xFF000000 | ((i % width) * 4);
+		}
+		for(RasterReprojector.Filter filter : RasterReprojector.Filter.values()){
+			System.out.println("\t"+filter);
+			final ReprojectionPlan plan = ReprojectionPlan.get(MapProjections.MERCATOR, 
+					MapProjections.MERCATOR, width, height, 3 * width, 3 * height, 2, filter);
+			assertEquals(filter, plan.filter);
+			final int[][] tiles = new int[2][9 * width * height];
+			plan.gather(new int[][]{uniform, gradient}, tiles, 0, 0, 3 * width, 3 * height);
+			for(int i = 0; i < tiles[0].length; i++){
+				assertEquals(0x80FF4010, tiles[0][i]);
+				final double x = ((i % (3 * width)) + 0.5) / 3.0 - 0.5;
+				final double expected = 4 * Math.max(0, Math.min(width - 1, x));
+				final double tolerance = filter == RasterReprojector.Filter.NEAREST ? 4 : 1;
+				assertEquals(String.format("%s gradient at %s", filter, i), expected, tiles[1][i] & 0xFF, tolerance);
+			}
+		}
+		assertNotSame("plans depend on filter", 
+				ReprojectionPlan.get(MapProjections.MERCATOR, MapProjections.MERCATOR, width, height, width, height, 1, RasterReprojector.Filter.BILINEAR), 
+				ReprojectionPlan.get(MapProjections.MERCATOR, MapProjections.MERCATOR, width, height, width, height, 1, RasterReprojector.Filter.BICUBIC));
+	}
+	
+	/**
+	 * Converts an image of one map projection to another (at a higher 
+	 * resolution) and back, then checks that the mid-latitudes land within a 
+	 * pixel of where they started. Pixels that straddle a seam in the 
+	 * intermediate map are allowed to miss, so long as nearly all of them hit.
+	 */
+	static void doRoundTripTestOn(MapProjection projection, MapProjection via) throws InterruptedException {
+		System.out.println("\t"+projection+" -> "+via+" -> "+projection);
+		final int width = 60, height = 30;
+		final int viaHeight = 4 * height;
+		final int viaWidth = (int)(via.getAspectRatio() * viaHeight);
+		ReprojectionPlan there = ReprojectionPlan.get(projection, via, width, height, viaWidth, viaHeight, 1);
+		ReprojectionPlan back = ReprojectionPlan.get(via, projection, viaWidth, viaHeight, width, height, 2);
+		final double[] coord = new double[2];
+		int count = 0, hits = 0;
+		for(int y = 0; y < height; y++){
+			for(int x = 0; x < width; x++){
+				final int viaIndex = back.sourceIndex(x, y);
+				final int index = there.sourceIndex(viaIndex % viaWidth, viaIndex / viaWidth);
+				projection.convertRelativePixelXYToLonLat((x + 0.5) / width, (y + 0.5) / height, coord);
+				final double lat = coord[1];
+				if(Math.abs(lat) > Math.PI / 3){
+					continue;
+				}
+				projection.convertRelativePixelXYToLonLat(
+						((index % width) + 0.5) / width, ((index / width) + 0.5) / height, coord);
+				count++;
+				if(Math.abs(lat - coord[1]) <= Math.PI / height + 1e-9){
+					hits++;
+				}
+			}
+		}
+		assertTrue(String.format("%s -> %s -> %s: only %s of %s pixels returned home", projection, via, projection, hits, count), 
+				hits >= 0.95 * count);
+	}
+	
+	/**
+	 * Checks that every output pixel was copied from the mercator source pixel 
+	 * whose longitude-latitude cell contains the output pixel's longitude-latitude.
+	 */
+	static void doMercatorSamplingTestOn(MapProjection projection, int newWidth, int newHeight) throws InterruptedException {
+		final String name = projection.toString();
+		System.out.println("\tMercator -> "+name);
+		final int srcWidth = 90, srcHeight = 45;
+		final ReprojectionPlan plan = ReprojectionPlan.get(MapProjections.MERCATOR, 
+				projection, srcWidth, srcHeight, newWidth, newHeight, 2);
+		final double[] lonLat = new double[2];
+		final double cellLon = 2 * Math.PI / srcWidth;
+		final double cellLat = Math.PI / srcHeight;
+		final double tolerance = 1e-9;
+		for(int y = 0; y < newHeight; y++){
+			for(int x = 0; x < newWidth; x++){
+				projection.convertRelativePixelXYToLonLat((x + 0.5) / newWidth, (y + 0.5) / newHeight, lonLat);
+				final int srcIndex = plan.sourceIndex(x, y);
+				final int srcX = srcIndex % srcWidth;
+				final int srcY = srcIndex / srcWidth;
+				final double lon = MercatorProjection.clamp(lonLat[0] / (2 * Math.PI)) * 2 * Math.PI;
+				final double north = (0.5 * Math.PI) - srcY * cellLat;
+				final double south = north - cellLat;
+				assertTrue(String.format("%s (%s, %s): latitude %s outside of source row %s", name, x, y, lonLat[1], srcY),
+						lonLat[1] <= north + tolerance && (lonLat[1] >= south - tolerance || srcY == srcHeight - 1));
+				assertTrue(String.format("%s (%s, %s): longitude %s outside of source column %s", name, x, y, lonLat[0], srcX),
+						lon >= srcX * cellLon - tolerance && lon <= (srcX + 1) * cellLon + tolerance);
+			}
+		}
+	}
+	
+}
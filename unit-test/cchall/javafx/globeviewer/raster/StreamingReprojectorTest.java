@@ -0,0 +1,121 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cchall.javafx.globeviewer.raster;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Cybergnome
+ */
+public class StreamingReprojectorTest {
+
+	private Path file;
+	private Raster mercator;
+
+	public StreamingReprojectorTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() {
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		System.out.println(this.getClass().getSimpleName()+": {");
+		final Random prng = new Random(14);
+		mercator = new Raster(120, 90);
+		for(int i = 0; i < mercator.getPixels().length; i++){
+			mercator.getPixels()[i] = prng.nextInt();
+		}
+		file = Files.createTempFile("StreamingReprojectorTest", ".png");
+		assertTrue(ImageIO.write(BufferedImageRasters.toBufferedImage(mercator), "png", file.toFile()));
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+		System.out.println("} :"+this.getClass().getSimpleName());
+	}
+
+	/**
+	 * Test of reproject method, of class StreamingReprojector.
+	 */
+	@Test
+	public void testReproject() throws IOException, InterruptedException {
+		for(MapProjection target : new MapProjection[]{MapProjections.CUBIC, MapProjections.DYMAXION}){
+			for(RasterReprojector.Filter filter : RasterReprojector.Filter.values()){
+				final Raster expected = RasterReprojector.reproject(mercator, MapProjections.MERCATOR, target, 66, 31, 1, filter);
+				final Raster whole = StreamingReprojector.reproject(file, MapProjections.MERCATOR, target, 66, 31, 2, filter);
+				assertArrayEquals(target + " " + filter, expected.getPixels(), whole.getPixels());
+				// many small windows
+				try(ImageInputStream in = ImageIO.createImageInputStream(file.toFile())){
+					final Raster banded = StreamingReprojector.reproject(in, MapProjections.MERCATOR, target, 66, 31, 2, filter, 1, 120 * 10);
+					assertArrayEquals(target + " " + filter, expected.getPixels(), banded.getPixels());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test of reproject method with subsampling, of class StreamingReprojector.
+	 */
+	@Test
+	public void testSubsampling() throws IOException, InterruptedException {
+		final Raster half = new Raster(60, 45);
+		for(int y = 0; y < 45; y++){
+			for(int x = 0; x < 60; x++){
+				half.setArgb(x, y, mercator.getArgb(2 * x, 2 * y));
+			}
+		}
+		final Raster expected = RasterReprojector.reproject(half, MapProjections.MERCATOR, MapProjections.DYMAXION, 44, 21, 1);
+		try(ImageInputStream in = ImageIO.createImageInputStream(file.toFile())){
+			final Raster actual = StreamingReprojector.reproject(in, MapProjections.MERCATOR, MapProjections.DYMAXION, 44, 21, 1, 
+					RasterReprojector.Filter.NEAREST, 2, 60 * 10);
+			assertArrayEquals(expected.getPixels(), actual.getPixels());
+		}
+	}
+
+	/**
+	 * Test of bands method, of class StreamingReprojector.
+	 */
+	@Test
+	public void testBands() throws InterruptedException {
+		final ReprojectionPlan plan = ReprojectionPlan.get(MapProjections.MERCATOR, MapProjections.CUBIC, 
+				400, 400, 120, 90, 1, RasterReprojector.Filter.BILINEAR);
+		final List<StreamingReprojector.Band> bands = StreamingReprojector.bands(plan, 400 * 200);
+		int y = 0;
+		boolean narrow = false;
+		for(StreamingReprojector.Band band : bands){
+			assertEquals(y, band.y0);
+			y += band.height;
+			final int rows = band.lastRow - band.firstRow + 1;
+			assertTrue(band.height == 1 || rows <= 200);
+			// the equatorial faces need much less than the whole source
+			narrow |= band.height > 1 && rows < 200;
+		}
+		assertEquals(90, y);
+		assertTrue(narrow);
+		// everything in one band
+		assertEquals(1, StreamingReprojector.bands(plan, 400 * 400).size());
+	}
+}
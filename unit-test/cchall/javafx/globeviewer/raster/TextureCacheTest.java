@@ -0,0 +1,210 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cchall.javafx.globeviewer.raster;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Cybergnome
+ */
+public class TextureCacheTest {
+
+	private Path dir;
+
+	public TextureCacheTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() {
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		System.out.println(this.getClass().getSimpleName()+": {");
+		dir = Files.createTempDirectory("TextureCacheTest");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		RasterReprojector.setCache(null);
+		try(DirectoryStream<Path> files = Files.newDirectoryStream(dir)){
+			for(Path file : files){
+				Files.delete(file);
+			}
+		}
+		Files.delete(dir);
+		System.out.println("} :"+this.getClass().getSimpleName());
+	}
+
+	private static Raster randomRaster(int width, int height, long seed){
+		final Random prng = new Random(seed);
+		final Raster raster = new Raster(width, height);
+		for(int i = 0; i < raster.getPixels().length; i++){
+			raster.getPixels()[i] = prng.nextInt();
+		}
+		return raster;
+	}
+
+	/**
+	 * Test of store and load methods, of class TextureCache.
+	 */
+	@Test
+	public void testStoreLoad() throws IOException {
+		final TextureCache cache = new TextureCache(dir, 1 << 20);
+		final Raster raster = randomRaster(37, 11, 1);
+		assertNull(cache.load("abc", 37, 11));
+		cache.store("abc", raster);
+		assertEquals(16 + 4 * 37 * 11, cache.getSize());
+		final Raster loaded = cache.load("abc", 37, 11);
+		assertNotNull(loaded);
+		assertArrayEquals(raster.getPixels(), loaded.getPixels());
+		// wrong size is a miss
+		assertNull(cache.load("abc", 11, 37));
+		// storing it again replaces it
+		cache.store("abc", raster);
+		assertEquals(16 + 4 * 37 * 11, cache.getSize());
+		// the size is remembered
+		assertEquals(cache.getSize(), new TextureCache(dir, 1 << 20).getSize());
+		cache.clear();
+		assertEquals(0, cache.getSize());
+		assertNull(cache.load("abc", 37, 11));
+	}
+
+	/**
+	 * Test of key method, of class TextureCache.
+	 */
+	@Test
+	public void testKey() throws IOException {
+		final TextureCache cache = new TextureCache(dir, 1 << 20);
+		final Raster a = randomRaster(20, 10, 1);
+		final Raster b = randomRaster(20, 10, 1);
+		final String key = cache.key(a, MapProjections.MERCATOR, MapProjections.DYMAXION, 22, 7, RasterReprojector.Filter.BILINEAR);
+		assertEquals(64, key.length());
+		assertEquals(key, cache.key(b, MapProjections.MERCATOR, MapProjections.DYMAXION, 22, 7, RasterReprojector.Filter.BILINEAR));
+		assertNotEquals(key, cache.key(a, MapProjections.MERCATOR, MapProjections.CUBIC, 22, 7, RasterReprojector.Filter.BILINEAR));
+		assertNotEquals(key, cache.key(a, MapProjections.MERCATOR, MapProjections.DYMAXION, 22, 8, RasterReprojector.Filter.BILINEAR));
+		assertNotEquals(key, cache.key(a, MapProjections.MERCATOR, MapProjections.DYMAXION, 22, 7, RasterReprojector.Filter.NEAREST));
+		assertNotEquals(cache.key(a, MapProjections.MERCATOR, MapProjections.CUBIC, 22, 7, RasterReprojector.Filter.BILINEAR),
+				cache.key(a, MapProjections.MERCATOR, MapProjections.CUBIC.approximate(), 22, 7, RasterReprojector.Filter.BILINEAR));
+		b.setArgb(19, 9, ~b.getArgb(19, 9));
+		assertNotEquals(key, cache.key(b, MapProjections.MERCATOR, MapProjections.DYMAXION, 22, 7, RasterReprojector.Filter.BILINEAR));
+	}
+
+	/**
+	 * Test of eviction of least recently used textures.
+	 */
+	@Test
+	public void testEviction() throws IOException {
+		final long fileSize = 16 + 4 * 10 * 10;
+		final TextureCache cache = new TextureCache(dir, 3 * fileSize);
+		for(int i = 0; i < 3; i++){
+			cache.store("k" + i, randomRaster(10, 10, i));
+			Files.setLastModifiedTime(dir.resolve("k" + i + TextureCache.EXTENSION), FileTime.fromMillis(1000000L * (i + 1)));
+		}
+		assertEquals(3 * fileSize, cache.getSize());
+		// using k0 makes k1 the least recently used
+		assertNotNull(cache.load("k0", 10, 10));
+		cache.store("k3", randomRaster(10, 10, 3));
+		assertEquals(3 * fileSize, cache.getSize());
+		assertNotNull(cache.load("k0", 10, 10));
+		assertNull(cache.load("k1", 10, 10));
+		assertNotNull(cache.load("k2", 10, 10));
+		assertNotNull(cache.load("k3", 10, 10));
+		// too big to cache at all
+		cache.store("big", randomRaster(20, 20, 4));
+		assertNull(cache.load("big", 20, 20));
+		assertEquals(3 * fileSize, cache.getSize());
+	}
+
+	/**
+	 * Test that damaged files are cache misses.
+	 */
+	@Test
+	public void testCorruptFile() throws IOException {
+		final TextureCache cache = new TextureCache(dir, 1 << 20);
+		cache.store("k", randomRaster(10, 10, 1));
+		final Path file = dir.resolve("k" + TextureCache.EXTENSION);
+		final byte[] bytes = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+		assertNull(cache.load("k", 10, 10));
+		bytes[0] ^= 1;
+		Files.write(file, bytes, StandardOpenOption.TRUNCATE_EXISTING);
+		assertNull(cache.load("k", 10, 10));
+	}
+
+	/**
+	 * Test of RasterReprojector.setCache method.
+	 */
+	@Test
+	public void testReprojectorCache() throws IOException, InterruptedException {
+		final Raster src = randomRaster(80, 40, 5);
+		final Raster src2 = randomRaster(80, 40, 6);
+		final Raster expected = RasterReprojector.reproject(src, MapProjections.MERCATOR, MapProjections.DYMAXION, 88, 41, 2);
+		final Raster expected2 = RasterReprojector.reproject(src2, MapProjections.MERCATOR, MapProjections.DYMAXION, 88, 41, 2);
+		final TextureCache cache = new TextureCache(dir, 1 << 20);
+		RasterReprojector.setCache(cache);
+		assertSame(cache, RasterReprojector.getCache());
+		final Raster cold = RasterReprojector.reproject(src, MapProjections.MERCATOR, MapProjections.DYMAXION, 88, 41, 2);
+		assertArrayEquals(expected.getPixels(), cold.getPixels());
+		final String key = cache.key(src, MapProjections.MERCATOR, MapProjections.DYMAXION, 88, 41, RasterReprojector.Filter.NEAREST);
+		assertTrue(Files.exists(dir.resolve(key + TextureCache.EXTENSION)));
+		final Raster warm = RasterReprojector.reproject(src, MapProjections.MERCATOR, MapProjections.DYMAXION, 88, 41, 2);
+		assertNotSame(cold, warm);
+		assertArrayEquals(expected.getPixels(), warm.getPixels());
+		// one layer cached, one not
+		final Raster[] layers = RasterReprojector.reprojectLayers(new Raster[]{src2, src}, MapProjections.MERCATOR, MapProjections.DYMAXION, 88, 41, 2);
+		assertArrayEquals(expected2.getPixels(), layers[0].getPixels());
+		assertArrayEquals(expected.getPixels(), layers[1].getPixels());
+		assertEquals(2 * (16 + 4 * 88 * 41), cache.getSize());
+	}
+
+	/**
+	 * Test that conversions with map projections that have no stable 
+	 * description are not cached.
+	 */
+	@Test
+	public void testUncachedProjection() throws IOException, InterruptedException {
+		final MapProjection custom = new MapProjection(){
+			@Override
+			public void convertLonLatToRelativePixelXY(double lon, double lat, double[] relXYOut) {
+				MapProjections.DYMAXION.convertLonLatToRelativePixelXY(lon, lat, relXYOut);
+			}
+			@Override
+			public void convertRelativePixelXYToLonLat(double relX, double relY, double[] lonLatOut) {
+				MapProjections.DYMAXION.convertRelativePixelXYToLonLat(relX, relY, lonLatOut);
+			}
+			@Override
+			public String getCacheDescription() {
+				return null;
+			}
+		};
+		final Raster src = randomRaster(80, 40, 5);
+		final TextureCache cache = new TextureCache(dir, 1 << 20);
+		RasterReprojector.setCache(cache);
+		final Raster converted = RasterReprojector.reproject(src, MapProjections.MERCATOR, custom, 88, 41, 2);
+		assertArrayEquals(RasterReprojector.reproject(src, MapProjections.MERCATOR, MapProjections.DYMAXION, 88, 41, 2).getPixels(), 
+				converted.getPixels());
+		assertEquals(16 + 4 * 88 * 41, cache.getSize());
+	}
+}
@@ -0,0 +1,145 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cchall.javafx.globeviewer.raster;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Cybergnome
+ */
+public class TexturePyramidTest {
+
+	public TexturePyramidTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() {
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+	}
+
+	@Before
+	public void setUp() {
+		System.out.println(this.getClass().getSimpleName()+": {");
+	}
+
+	@After
+	public void tearDown() {
+		System.out.println("} :"+this.getClass().getSimpleName());
+	}
+
+	/**
+	 * Test of build method, of class TexturePyramid.
+	 */
+	@Test
+	public void testBuild() throws InterruptedException {
+		final Raster base = new Raster(100, 36);
+		java.util.Arrays.fill(base.getPixels(), 0xFF336699);
+		final Raster[] pyramid = TexturePyramid.build(base, MapProjections.MERCATOR, 3);
+		assertEquals(7, pyramid.length);
+		assertSame(base, pyramid[0]);
+		final int[][] sizes = {{100, 36}, {50, 18}, {25, 9}, {12, 4}, {6, 2}, {3, 1}, {1, 1}};
+		for(int l = 0; l < pyramid.length; l++){
+			assertEquals(sizes[l][0], pyramid[l].getWidth());
+			assertEquals(sizes[l][1], pyramid[l].getHeight());
+			for(int argb : pyramid[l].getPixels()){
+				assertEquals(0xFF336699, argb);
+			}
+		}
+		assertEquals(0, TexturePyramid.selectLevel(pyramid, 200));
+		assertEquals(0, TexturePyramid.selectLevel(pyramid, 100));
+		assertEquals(1, TexturePyramid.selectLevel(pyramid, 26));
+		assertEquals(2, TexturePyramid.selectLevel(pyramid, 25));
+		assertEquals(6, TexturePyramid.selectLevel(pyramid, 1));
+	}
+
+	/**
+	 * Test of buildLevel and selectLevel(int, int, int) methods, of class 
+	 * TexturePyramid.
+	 */
+	@Test
+	public void testBuildLevel() throws InterruptedException {
+		final Raster base = new Raster(100, 36);
+		for(int i = 0; i < base.getPixels().length; i++){
+			base.getPixels()[i] = 0xFF000000 | (i * 7919);
+		}
+		final Raster[] pyramid = TexturePyramid.build(base, MapProjections.CUBIC, 2);
+		assertSame(base, TexturePyramid.buildLevel(base, MapProjections.CUBIC, 0, 2));
+		for(int l = 1; l < pyramid.length; l++){
+			assertArrayEquals(pyramid[l].getPixels(), 
+					TexturePyramid.buildLevel(base, MapProjections.CUBIC, l, 2).getPixels());
+		}
+		for(int minWidth = 1; minWidth <= 120; minWidth++){
+			assertEquals(TexturePyramid.selectLevel(pyramid, minWidth), 
+					TexturePyramid.selectLevel(100, 36, minWidth));
+		}
+	}
+
+	/** a color which only depends on the region of the globe */
+	private static int regionColor(double lon, double lat){
+		final int sector = (int)Math.floor((lon + Math.PI) / (Math.PI / 2)) & 3;
+		return 0xFF000000 | (lat > 0 ? 0xFF0000 : 0) | (sector * 0x50);
+	}
+
+	/**
+	 * Test that build does not blend pixels across seams or from the gaps of 
+	 * the layout.
+	 */
+	@Test
+	public void testSeams() throws InterruptedException {
+		for(MapProjection projection : new MapProjection[]{MapProjections.CUBIC, MapProjections.DYMAXION}){
+			final int width = 440, height = 240;
+			final Raster base = new Raster(width, height);
+			final double[] lonLat = new double[2];
+			final double[] relXY = new double[2];
+			for(int y = 0; y < height; y++){
+				for(int x = 0; x < width; x++){
+					projection.convertRelativePixelXYToLonLat((x + 0.5) / width, (y + 0.5) / height, lonLat);
+					projection.convertLonLatToRelativePixelXY(lonLat[0], lonLat[1], relXY);
+					final boolean valid = Math.abs(relXY[0] * width - x - 0.5) < 0.25 && Math.abs(relXY[1] * height - y - 0.5) < 0.25;
+					// gaps are transparent
+					base.setArgb(x, y, valid ? regionColor(lonLat[0], lonLat[1]) : 0);
+				}
+			}
+			final Raster[] pyramid = TexturePyramid.build(base, projection, 2);
+			for(int l = 1; l <= 2; l++){
+				final Raster level = pyramid[l];
+				// pixels away from the region borders must not be blended
+				final double margin = 2 * Math.max(2 * Math.PI / level.getWidth(), Math.PI / level.getHeight());
+				int checked = 0;
+				for(int y = 0; y < level.getHeight(); y++){
+					for(int x = 0; x < level.getWidth(); x++){
+						projection.convertRelativePixelXYToLonLat((x + 0.5) / level.getWidth(), (y + 0.5) / level.getHeight(), lonLat);
+						projection.convertLonLatToRelativePixelXY(lonLat[0], lonLat[1], relXY);
+						if(Math.abs(relXY[0] * level.getWidth() - x - 0.5) >= 0.25 || Math.abs(relXY[1] * level.getHeight() - y - 0.5) >= 0.25){
+							continue; // in a gap
+						}
+						final double lon = lonLat[0], lat = lonLat[1];
+						if(Math.abs(lat) < margin || Math.abs(lat) > Math.PI / 2 - 2 * margin){
+							continue;
+						}
+						final double sectorPos = (lon + Math.PI) / (Math.PI / 2);
+						if(Math.abs(sectorPos - Math.rint(sectorPos)) * (Math.PI / 2) * Math.cos(lat) < margin){
+							continue;
+						}
+						assertEquals(projection + " level " + l + " at " + x + "," + y, 
+								Integer.toHexString(regionColor(lon, lat)), Integer.toHexString(level.getArgb(x, y)));
+						checked++;
+					}
+				}
+				assertTrue(checked > level.getWidth() * level.getHeight() / 5);
+			}
+		}
+	}
+}